@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.audio;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the per band filters of BandsButterworth with the fused
+ * ButterworthBank on one block of samples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ButterworthBankBenchmark {
+	private static final double S_RATE = 48000;
+	private static final double LOWER  = 40;
+	private static final double UPPER  = 8000;
+
+	@Param({"40"})
+	public int numBands;
+
+	@Param({"1", "4"})
+	public int strength;
+
+	@Param({"128", "512", "2048"})
+	public int blockSize;
+
+	private ButterworthFilter[][] filters;
+	private ButterworthBank       bank;
+	private ButterworthBank       parallelBank;
+	private float[]               samples;
+	private float[]               energies;
+
+	@Setup
+	public void setup() {
+		filters      = createFilters();
+		bank         = new ButterworthBank(createFilters(), false);
+		parallelBank = new ButterworthBank(createFilters(), true);
+		samples      = new float[blockSize];
+		energies     = new float[numBands];
+		Random random = new Random(0);
+		for (int i = 0; i < samples.length; i++)
+			samples[i] = (float)random.nextGaussian() * 0.25f;
+	}
+
+	private ButterworthFilter[][] createFilters() {
+		ButterworthFilter[][] result = new ButterworthFilter[numBands][strength];
+		double ratio = Math.pow(UPPER / LOWER, 1.0 / numBands);
+		for (int band = 0; band < numBands; band++) {
+			double lower = LOWER * Math.pow(ratio, band);
+			for (int stage = 0; stage < strength; stage++)
+				result[band][stage] = ButterworthFilter.getBandpassFilter(S_RATE, lower, lower * ratio);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public float[] filters() {
+		for (int band = 0; band < numBands; band++) {
+			float[] buffer = samples.clone();
+			for (int stage = 0; stage < strength; stage++)
+				filters[band][stage].processBand(buffer);
+			energies[band] = AudioUtilities.energy(buffer);
+		}
+		return energies;
+	}
+
+	@Benchmark
+	public float[] bank() {
+		return bank.energies(samples, energies);
+	}
+
+	@Benchmark
+	public float[] parallelBank() {
+		return parallelBank.energies(samples, energies);
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares one play of a WAV file decoded from the file, as URLAudioSource
+ * does for every loop without a cache, with one play from the PCMCache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PCMCacheBenchmark {
+	private static final float S_RATE    = 44100;
+	private static final int   CHANNELS  = 2;
+	private static final int   SECONDS   = 10;
+
+	@Param({"512", "4096"})
+	public int frameSize;
+
+	private File     file;
+	private File     cacheDir;
+	private PCMCache cache;
+	private byte[]   buffer;
+	private float[]  frame;
+
+	@Setup
+	public void setup() throws Exception {
+		file     = File.createTempFile("pcmbench", ".wav");
+		cacheDir = new File(file.getParentFile(), file.getName() + ".cache");
+		int    frames = (int)S_RATE * SECONDS;
+		byte[] pcm    = new byte[frames * CHANNELS * 2];
+		new Random(0).nextBytes(pcm);
+		AudioFormat fmt = new AudioFormat(S_RATE, 16, CHANNELS, true, false);
+		AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), fmt, frames), AudioFileFormat.Type.WAVE, file);
+
+		PCMCache.setCacheDirectory(cacheDir);
+		cache  = PCMCache.get(file.toURI().toURL(), () -> AudioSystem.getAudioInputStream(file));
+		buffer = new byte[frameSize * 2];
+		frame  = new float[frameSize];
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+		File[] files = cacheDir.listFiles();
+		if (files != null)
+			for (File f : files)
+				f.delete();
+		cacheDir.delete();
+	}
+
+	@Benchmark
+	public float decode() throws Exception {
+		float result = 0;
+		try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+			for (int read; (read = in.read(buffer)) >= 0;) {
+				float[] samples = AudioUtilities.pcmBytes2float(in.getFormat(), buffer, read);
+				result += samples[0];
+			}
+		}
+		return result;
+	}
+
+	@Benchmark
+	public float cached() {
+		float       result = 0;
+		FloatBuffer view   = cache.view();
+		while (view.hasRemaining()) {
+			int len = Math.min(frame.length, view.remaining());
+			view.get(frame, 0, len);
+			result += frame[0];
+		}
+		return result;
+	}
+}
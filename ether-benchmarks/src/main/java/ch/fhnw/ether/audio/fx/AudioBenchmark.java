@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.audio.fx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.ether.audio.AudioUtilities.Window;
+import ch.fhnw.ether.audio.IAudioRenderTarget;
+import ch.fhnw.ether.audio.NullAudioTarget;
+import ch.fhnw.ether.audio.SilenceAudioSource;
+import ch.fhnw.ether.media.AbstractRenderCommand;
+import ch.fhnw.ether.media.RenderCommandException;
+import ch.fhnw.ether.media.RenderProgram;
+
+/**
+ * Measures the cost of one audio block through FFT and filter bank chains. 
+ * Each invocation runs one cycle of the render program on a null target.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioBenchmark {
+	private static final float S_RATE     = 48000;
+	private static final int   N_CHANNELS = 2;
+
+	@Param({"128", "512", "2048"})
+	public int blockSize;
+
+	private BenchmarkTarget fftTarget;
+	private BenchmarkTarget invFftTarget;
+	private BenchmarkTarget bandsTarget;
+
+	static final class BenchmarkTarget extends NullAudioTarget {
+		BenchmarkTarget() {
+			super(N_CHANNELS, S_RATE);
+		}
+
+		void cycle() throws RenderCommandException {
+			runOneCycle();
+		}
+	}
+
+	@Setup
+	public void setup() throws RenderCommandException {
+		FFT fft = new FFT(20, Window.HANN);
+		fftTarget = target(new SinGen(0), fft);
+
+		FFT ifft = new FFT(20, Window.HANN);
+		invFftTarget = target(new SinGen(0), ifft, new InvFFT(ifft));
+
+		bandsTarget = target(new SinGen(0), new BandsButterworth(40, 8000, 40, 40, 1));
+	}
+
+	@SafeVarargs
+	private final BenchmarkTarget target(AbstractRenderCommand<IAudioRenderTarget> ... commands) throws RenderCommandException {
+		BenchmarkTarget result = new BenchmarkTarget();
+		result.useProgram(new RenderProgram<>(new SilenceAudioSource(N_CHANNELS, S_RATE, blockSize * N_CHANNELS), commands));
+		return result;
+	}
+
+	@Benchmark
+	public void fft() throws RenderCommandException {
+		fftTarget.cycle();
+	}
+
+	@Benchmark
+	public void fftAndInverse() throws RenderCommandException {
+		invFftTarget.cycle();
+	}
+
+	@Benchmark
+	public void bandsButterworth() throws RenderCommandException {
+		bandsTarget.cycle();
+	}
+}
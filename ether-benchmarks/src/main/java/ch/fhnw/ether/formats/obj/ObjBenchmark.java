@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.formats.obj;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.ether.formats.IModelReader.Options;
+import ch.fhnw.ether.formats.ModelObject;
+
+/**
+ * Loads a generated grid model by parsing, parsing in parallel and from the
+ * binary cache. Run with "-prof gc" to see the allocation per load.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObjBenchmark {
+	@Param({"100", "500"})
+	public int gridSize;
+
+	private File file;
+
+	@Setup
+	public void setup() throws IOException {
+		file = File.createTempFile("grid", ".obj");
+		try (PrintWriter out = new PrintWriter(file)) {
+			int n = gridSize + 1;
+			for (int y = 0; y < n; y++)
+				for (int x = 0; x < n; x++)
+					out.println("v " + x * 0.1f + " " + y * 0.1f + " " + (float)Math.sin(x * 0.05 + y * 0.07));
+			for (int y = 0; y < n; y++)
+				for (int x = 0; x < n; x++)
+					out.println("vt " + x / (float)gridSize + " " + y / (float)gridSize);
+			out.println("vn 0 0 1");
+			out.println("g grid");
+			for (int y = 0; y < gridSize; y++) {
+				for (int x = 0; x < gridSize; x++) {
+					int i = y * n + x + 1;
+					if ((x & 1) == 0)
+						out.println("f " + i + "/" + i + "/1 " + (i + 1) + "/" + (i + 1) + "/1 " + (i + n + 1) + "/" + (i + n + 1) + "/1 " + (i + n) + "/" + (i + n) + "/1");
+					else
+						out.println("f " + i + "/" + i + "/1 " + (i + 1) + "/" + (i + 1) + "/1 " + (i + n + 1) + "/" + (i + n + 1) + "/1\nf " + i + "/" + i + "/1 " + (i + n + 1) + "/" + (i + n + 1) + "/1 " + (i + n) + "/" + (i + n) + "/1");
+				}
+			}
+		}
+		new ObjReader(file, EnumSet.of(Options.BINARY_CACHE));
+	}
+
+	@TearDown
+	public void tearDown() {
+		ObjCache.getCacheFile(file).delete();
+		file.delete();
+	}
+
+	@Benchmark
+	public ModelObject parse() throws IOException {
+		return new ObjReader(file).getObject();
+	}
+
+	@Benchmark
+	public ModelObject parseParallel() throws IOException {
+		return new ObjReader(file, Options.PARALLEL).getObject();
+	}
+
+	@Benchmark
+	public ModelObject readCache() throws IOException {
+		return new ObjReader(file, EnumSet.of(Options.BINARY_CACHE)).getObject();
+	}
+}
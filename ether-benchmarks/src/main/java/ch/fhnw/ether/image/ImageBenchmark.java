@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.image;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.ether.image.IImage.AlphaMode;
+import ch.fhnw.ether.image.IImage.ComponentFormat;
+import ch.fhnw.ether.image.IImage.ComponentType;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageBenchmark {
+	@Param({"640x480", "1920x1080"})
+	public String size;
+
+	private IHostImage rgb8;
+	private IHostImage rgba8;
+	private IHostImage rgbaF;
+
+	@Setup
+	public void setup() {
+		String[] wh = size.split("x");
+		int      w  = Integer.parseInt(wh[0]);
+		int      h  = Integer.parseInt(wh[1]);
+		rgb8  = fill(IHostImage.create(w, h, ComponentType.BYTE,  ComponentFormat.RGB));
+		rgba8 = fill(IHostImage.create(w, h, ComponentType.BYTE,  ComponentFormat.RGBA));
+		rgbaF = IHostImage.create(w, h, ComponentType.FLOAT, ComponentFormat.RGBA);
+		float[] pixel = new float[4];
+		for(int y = 0; y < h; y++)
+			for(int x = 0; x < w; x++) {
+				pixel[0] = x / (float)w;
+				pixel[1] = y / (float)h;
+				pixel[2] = 0.5f;
+				pixel[3] = 0.75f;
+				rgbaF.setPixel(x, y, pixel);
+			}
+	}
+
+	private static IHostImage fill(IHostImage image) {
+		ByteBuffer pixels = image.getPixels();
+		for(int i = 0; pixels.hasRemaining(); i++)
+			pixels.put((byte)(i * 31));
+		return image;
+	}
+
+	@Benchmark
+	public IHostImage rgb8ToRgba8() {
+		return rgb8.convert(ComponentType.BYTE, ComponentFormat.RGBA, AlphaMode.POST_MULTIPLIED);
+	}
+
+	@Benchmark
+	public IHostImage rgb8ToRgba8PreMultiplied() {
+		return rgb8.convert(ComponentType.BYTE, ComponentFormat.RGBA, AlphaMode.PRE_MULTIPLIED);
+	}
+
+	@Benchmark
+	public IHostImage rgba8ToRgb8() {
+		return rgba8.convert(ComponentType.BYTE, ComponentFormat.RGB, AlphaMode.POST_MULTIPLIED);
+	}
+
+	@Benchmark
+	public IHostImage rgba8ToPreMultiplied() {
+		return rgba8.convert(ComponentType.BYTE, ComponentFormat.RGBA, AlphaMode.PRE_MULTIPLIED);
+	}
+
+	@Benchmark
+	public IHostImage rgba8ToFloat() {
+		return rgba8.convert(ComponentType.FLOAT, ComponentFormat.RGBA, AlphaMode.POST_MULTIPLIED);
+	}
+
+	@Benchmark
+	public IHostImage rgbaFloatToByte() {
+		return rgbaF.convert(ComponentType.BYTE, ComponentFormat.RGBA, AlphaMode.POST_MULTIPLIED);
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.video;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.lwjgl.BufferUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per frame cost of producing a bottom-up RGB host image buffer:
+ * allocating a new direct buffer and flipping an RGB24 picture into it as
+ * XuggleAccess used to (without the preceding resample to RGB24), and
+ * converting a YUV420P picture in one pass into a pooled buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameConversionBenchmark {
+	@Param({"1280", "3840"})
+	public int width;
+
+	private int             height;
+	private ByteBuffer      rgb24;
+	private ByteBuffer      yuv;
+	private FrameBufferPool pool;
+
+	@Setup
+	public void setup() {
+		height = width * 9 / 16;
+		Random random = new Random(0);
+		rgb24 = BufferUtils.createByteBuffer(width * height * 3);
+		yuv   = BufferUtils.createByteBuffer(width * height * 3 / 2);
+		for (int i = 0; i < rgb24.capacity(); i++)
+			rgb24.put(i, (byte) random.nextInt());
+		for (int i = 0; i < yuv.capacity(); i++)
+			yuv.put(i, (byte) random.nextInt());
+		pool = new FrameBufferPool();
+	}
+
+	@Benchmark
+	public ByteBuffer allocateAndFlip() {
+		ByteBuffer dst = BufferUtils.createByteBuffer(width * height * 3);
+		final int rowLength = width * 3;
+		for (int y = height; --y >= 0;) {
+			rgb24.limit(y * rowLength + rowLength);
+			rgb24.position(y * rowLength);
+			dst.put(rgb24);
+		}
+		rgb24.clear();
+		return dst;
+	}
+
+	@Benchmark
+	public ByteBuffer pooledConvert() {
+		ByteBuffer dst = pool.acquire(width * height * 3);
+		int uOff = width * height;
+		int vOff = uOff + (width / 2) * (height / 2);
+		YUV420PConverter.toRGB(yuv, 0, width, uOff, width / 2, vOff, width / 2, dst, width, height);
+		pool.release(dst);
+		return dst;
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.video;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jcodec.api.JCodecException;
+import org.jcodec.api.SequenceEncoder8Bit;
+import org.jcodec.common.NIOUtils;
+import org.jcodec.common.SeekableByteChannel;
+import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.Picture8Bit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.ether.image.IHostImage;
+import ch.fhnw.ether.image.IImage.ComponentFormat;
+import ch.fhnw.ether.image.IImage.ComponentType;
+
+/**
+ * Plays a generated H.264 MP4 in a loop, headless, and measures the time the
+ * frame pump spends per frame: decoding synchronously on the pump as
+ * JCodecAccess used to, and taking frames from the decode-ahead queue.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JCodecPlaybackBenchmark {
+	private static final int NUM_FRAMES = 50;
+
+	@Param({"320", "640"})
+	public int width;
+
+	private File                file;
+	private SeekableByteChannel channel;
+	private FrameGrab           grab;
+	private JCodecAccess        access;
+	private final double[]      attrs = new double[3];
+
+	@Setup
+	public void setup() throws IOException, JCodecException {
+		int height = width * 9 / 16;
+		file = File.createTempFile("playback", ".mp4");
+		SequenceEncoder8Bit encoder = new SequenceEncoder8Bit(file);
+		for (int f = 0; f < NUM_FRAMES; f++) {
+			Picture8Bit picture = Picture8Bit.create(width, height, ColorSpace.RGB);
+			byte[] data = picture.getPlaneData(0);
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					int i = (y * width + x) * 3;
+					data[i]     = (byte) (x + 4 * f - 128);
+					data[i + 1] = (byte) (y - 128);
+					data[i + 2] = (byte) ((((x >> 4) + (y >> 4) + f) & 1) * 200 - 100);
+				}
+			}
+			encoder.encodeNativeFrame(picture);
+		}
+		encoder.finish();
+
+		channel = NIOUtils.readableFileChannel(file);
+		grab    = new FrameGrab(channel);
+		access  = new JCodecAccess(null, file, Integer.MAX_VALUE, 8);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		System.out.printf("%nqueue depth %d, underruns %d, decoded %d, decode time avg %.2fms max %.2fms%n",
+				access.getQueueDepth(), access.getUnderrunCount(), access.getDecodedFrameCount(),
+				access.getAverageDecodeTime() * 1000, access.getMaxDecodeTime() * 1000);
+		access.dispose();
+		channel.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public IHostImage synchronous() throws IOException, JCodecException {
+		Picture8Bit picture = grab.decode(attrs);
+		if (picture == null) {
+			grab.seekToFramePrecise(0);
+			picture = grab.decode(attrs);
+		}
+		IHostImage result = IHostImage.create(grab.getMediaInfo().getDim().getWidth(), grab.getMediaInfo().getDim().getHeight(), ComponentType.BYTE, ComponentFormat.RGB);
+		grab.grabAndSet(picture, result, null);
+		return result;
+	}
+
+	@Benchmark
+	public IHostImage decodeAhead() {
+		access.decodeFrame();
+		return access.getHostImage(null);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scrolls through a library with all resources queued for preview generation:
+ * each step moves the visible rows to the front of the queue and a worker
+ * takes one of them, as in the resman browser.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkedHashDequeBenchmark {
+	private static final int VISIBLE_ROWS = 30;
+
+	@Param({"50000"})
+	private int librarySize;
+
+	private String[]                library;
+	private LinkedHashDeque<String> deque;
+	private BlockingDeque<String>   blockingDeque;
+	private int                     top;
+
+	@Setup
+	public void setup() {
+		library       = new String[librarySize];
+		deque         = new LinkedHashDeque<>();
+		blockingDeque = new LinkedBlockingDeque<>();
+		for (int i = 0; i < library.length; i++) {
+			library[i] = "resource" + i;
+			deque.addLast(library[i]);
+			blockingDeque.addLast(library[i]);
+		}
+		top = library.length / 2;
+	}
+
+	@Benchmark
+	public String scrollLinkedHashDeque() {
+		for (int i = VISIBLE_ROWS; --i >= 0;)
+			deque.addFirst(library[row(i)]);
+		String result = deque.poll();
+		deque.addLast(result);
+		top++;
+		return result;
+	}
+
+	@Benchmark
+	public String scrollBlockingDeque() {
+		for (int i = VISIBLE_ROWS; --i >= 0;) {
+			String resource = library[row(i)];
+			if (blockingDeque.contains(resource))
+				blockingDeque.remove(resource);
+			blockingDeque.addFirst(resource);
+		}
+		String result = blockingDeque.poll();
+		if (!blockingDeque.contains(result))
+			blockingDeque.addLast(result);
+		top++;
+		return result;
+	}
+
+	private int row(int i) {
+		return (top + i) % library.length;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.util.math;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark {
+	private static final int N_VERTICES = 10000;
+
+	private Mat4       a;
+	private Mat4       b;
+	private Mat4       c;
+	private Quaternion q0;
+	private Quaternion q1;
+	private Vec3       v;
+	private float[]    vertices;
+
+	@Setup
+	public void setup() {
+		a  = Mat4.trs(1, 2, 3, 10, 20, 30, 1, 2, 3);
+		b  = Mat4.perspective(45, 1.5f, 0.1f, 100);
+		c  = Mat4.lookAt(new Vec3(1, 2, 3), Vec3.ZERO, Vec3.Z);
+		q0 = Quaternion.fromEulerAngles(10, 20, 30);
+		q1 = Quaternion.fromEulerAngles(-30, 45, 60);
+		v  = new Vec3(1, 2, 3);
+		vertices = new float[N_VERTICES * 3];
+		for(int i = 0; i < vertices.length; i++)
+			vertices[i] = i * 0.1f;
+	}
+
+	@Benchmark
+	public Mat4 mat4Multiply() {
+		return Mat4.multiply(a, b);
+	}
+
+	@Benchmark
+	public Mat4 mat4Multiply3() {
+		return Mat4.multiply(a, b, c);
+	}
+
+	@Benchmark
+	public Mat4 mat4Inverse() {
+		return a.inverse();
+	}
+
+	@Benchmark
+	public Vec3 mat4TransformVec3() {
+		return a.transform(v);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public float[] mat4TransformArray() {
+		return a.transform(vertices);
+	}
+
+	@Benchmark
+	public Quaternion quaternionMultiply() {
+		return q0.postMultiply(q1);
+	}
+
+	@Benchmark
+	public Quaternion quaternionSlerp() {
+		return q0.slerp(q1, 0.3f);
+	}
+
+	@Benchmark
+	public Vec3 quaternionTransform() {
+		return q0.transform(v);
+	}
+
+	@Benchmark
+	public Mat4 quaternionToMat4() {
+		return new Mat4(q0);
+	}
+}
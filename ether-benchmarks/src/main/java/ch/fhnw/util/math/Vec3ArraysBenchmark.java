@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util.math;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.util.math.geometry.BoundingBox;
+
+/**
+ * Compares the packed array kernels of {@link Vec3Arrays} with the same
+ * operations done through {@link Vec3} objects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Vec3ArraysBenchmark {
+	private static final int N_VERTICES = 30000;
+
+	private Mat4    m;
+	private float[] vertices;
+	private float[] other;
+	private float[] result;
+	private float[] dots;
+
+	@Setup
+	public void setup() {
+		m        = Mat4.trs(1, 2, 3, 10, 20, 30, 1, 2, 3);
+		vertices = new float[N_VERTICES * 3];
+		other    = new float[N_VERTICES * 3];
+		for (int i = 0; i < vertices.length; i++) {
+			vertices[i] = (float) Math.sin(i) * 10;
+			other[i]    = (float) Math.cos(i) * 10;
+		}
+		result = new float[N_VERTICES * 3];
+		dots   = new float[N_VERTICES];
+	}
+
+	private static Vec3 get(float[] xyz, int i) {
+		return new Vec3(xyz[i], xyz[i + 1], xyz[i + 2]);
+	}
+
+	private static void set(float[] xyz, int i, Vec3 v) {
+		xyz[i]     = v.x;
+		xyz[i + 1] = v.y;
+		xyz[i + 2] = v.z;
+	}
+
+	@Benchmark
+	public float[] transformObjects() {
+		for (int i = 0; i < vertices.length; i += 3)
+			set(result, i, m.transform(get(vertices, i)));
+		return result;
+	}
+
+	@Benchmark
+	public float[] transformKernel() {
+		Vec3Arrays.transformPoints(m, vertices, 0, result, 0, N_VERTICES);
+		return result;
+	}
+
+	@Benchmark
+	public BoundingBox boundsObjects() {
+		BoundingBox b = new BoundingBox();
+		for (int i = 0; i < vertices.length; i += 3)
+			b.add(get(vertices, i));
+		return b;
+	}
+
+	@Benchmark
+	public BoundingBox boundsKernel() {
+		BoundingBox b = new BoundingBox();
+		b.add(vertices);
+		return b;
+	}
+
+	@Benchmark
+	public float[] normalsObjects() {
+		for (int i = 0; i < vertices.length; i += 9) {
+			Vec3 v0 = get(vertices, i);
+			Vec3 n  = get(vertices, i + 3).subtract(v0).cross(get(vertices, i + 6).subtract(v0)).normalize();
+			set(result, i, n);
+			set(result, i + 3, n);
+			set(result, i + 6, n);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public float[] normalsKernel() {
+		Vec3Arrays.triangleNormals(vertices, 0, result, 0, N_VERTICES / 3);
+		return result;
+	}
+
+	@Benchmark
+	public float[] crossObjects() {
+		for (int i = 0; i < vertices.length; i += 3)
+			set(result, i, get(vertices, i).cross(get(other, i)));
+		return result;
+	}
+
+	@Benchmark
+	public float[] crossKernel() {
+		Vec3Arrays.cross(vertices, other, result);
+		return result;
+	}
+
+	@Benchmark
+	public float[] dotObjects() {
+		for (int i = 0, j = 0; i < vertices.length; i += 3, j++)
+			dots[j] = get(vertices, i).dot(get(other, i));
+		return dots;
+	}
+
+	@Benchmark
+	public float[] dotKernel() {
+		Vec3Arrays.dot(vertices, other, dots);
+		return dots;
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util.net.osc;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * OSC receive and dispatch throughput, for a typical lighting console
+ * message (address, a few ints and floats).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseSerialGC")
+public class OSCBenchmark {
+	private static final class Dispatcher extends OSCDispatcher {
+		float sum;
+
+		Dispatcher(boolean flyweight) {
+			if (flyweight) {
+				addHandler("/console/fader", (IOSCMessageHandler) (message, timestamp) -> {
+					sum += message.getInt(0) + message.getFloat(1) + message.getFloat(2);
+					return null;
+				});
+			} else {
+				addHandler("/console/fader", (IOSCHandler) (address, addrIdx, typeString, timestamp, args) -> {
+					sum += (Integer) args[0] + (Float) args[1] + (Float) args[2];
+					return null;
+				});
+			}
+		}
+
+		void dispatch(ByteBuffer packet) {
+			process(null, packet, OSCCommon.TIMETAG_IMMEDIATE, (destination, reply) -> {});
+		}
+	}
+
+	private final Dispatcher flyweight = new Dispatcher(true);
+	private final Dispatcher legacy    = new Dispatcher(false);
+
+	private ByteBuffer      message;
+	private ByteBuffer      rxBuffer;
+	private DatagramChannel sender;
+	private DatagramChannel receiver;
+	private SocketAddress   target;
+
+	@Setup
+	public void setup() throws IOException {
+		ByteBuffer msg = OSCMessage.getBytes("/console/fader/12", 12, 0.5f, 0.25f);
+		message = ByteBuffer.allocateDirect(msg.capacity());
+		msg.clear();
+		message.put(msg);
+		message.flip();
+
+		rxBuffer = ByteBuffer.allocateDirect(65536);
+		receiver = DatagramChannel.open();
+		receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		target   = receiver.getLocalAddress();
+		sender   = DatagramChannel.open();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		sender.close();
+		receiver.close();
+	}
+
+	@Benchmark
+	public float dispatchFlyweight() {
+		message.rewind();
+		flyweight.dispatch(message);
+		return flyweight.sum;
+	}
+
+	@Benchmark
+	public float dispatchLegacy() {
+		message.rewind();
+		legacy.dispatch(message);
+		return legacy.sum;
+	}
+
+	@Benchmark
+	public float sendReceiveDispatch() throws IOException {
+		message.rewind();
+		sender.send(message, target);
+		rxBuffer.clear();
+		receiver.receive(rxBuffer);
+		rxBuffer.flip();
+		flyweight.dispatch(rxBuffer);
+		return flyweight.sum;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util.net.rtp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.ether.image.IHostImage;
+import ch.fhnw.ether.image.IImage.ComponentFormat;
+import ch.fhnw.ether.image.IImage.ComponentType;
+
+/**
+ * Load test for MJPEG streaming with many local UDP sessions. The cost of
+ * sendFrame should stay flat as sessions increase (apart from the datagram
+ * sends), whereas encodePerSession grows linearly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RTPBenchmark {
+	@Param({"1", "8", "32"})
+	public int sessions;
+
+	private IHostImage      image;
+	private RTPStream       stream;
+	private DatagramChannel receiver;
+	private int             frameNb;
+
+	@Setup
+	public void setup() throws IOException {
+		image = IHostImage.create(640, 360, ComponentType.BYTE, ComponentFormat.RGB);
+		ByteBuffer pixels = image.getPixels();
+		for(int i = 0; pixels.hasRemaining(); i++)
+			pixels.put((byte)((i * 31) ^ (i >> 9)));
+
+		RTPServer server = new RTPServer(0, false);
+		server.setImage(image);
+
+		// packets are dropped once the receive buffer is full
+		receiver = DatagramChannel.open();
+		receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), receiver.socket().getLocalPort());
+
+		stream = new RTPStream(server, false);
+		for(int i = 0; i < sessions; i++)
+			stream.add(new Object(), address);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		receiver.close();
+	}
+
+	@Benchmark
+	public int sendFrame() throws IOException {
+		stream.sendFrame();
+		return stream.getNumTargets();
+	}
+
+	@Benchmark
+	public int encodePerSession() throws IOException {
+		int result = 0;
+		frameNb++;
+		for(int i = 0; i < sessions; i++) {
+			List<RTPpacket> packets = new RTPmjpg(image, frameNb, frameNb).createPackets();
+			result += packets.size();
+		}
+		return result;
+	}
+}
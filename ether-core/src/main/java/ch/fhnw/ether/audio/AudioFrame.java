@@ -31,40 +31,66 @@
 
 package ch.fhnw.ether.audio;
 
+import java.util.Arrays;
+
 import ch.fhnw.ether.media.AbstractFrame;
 
 public class AudioFrame extends AbstractFrame {
-	public final int     nChannels;
-	public final float[] samples;
-	private      float[] monoSamples;
-	public final float   sRate;
-	public final long    sTime;
+	public final  int            nChannels;
+	public final  float[]        samples;
+	private       float[]        monoSamples;
+	private       boolean        monoValid;
+	public final  float          sRate;
+	public        long           sTime;
+	private final AudioFramePool pool;
+	private       boolean        pooled;
 
 	public AudioFrame(long sTime, int nChannels, float sRate, float[] samples) {
+		this(sTime, nChannels, sRate, samples, null);
+	}
+
+	AudioFrame(long sTime, int nChannels, float sRate, float[] samples, AudioFramePool pool) {
 		super((sTime / nChannels) / (double)sRate);
 		this.nChannels = nChannels;
 		this.sRate     = sRate;
 		this.sTime     = sTime;
 		this.samples   = samples;
+		this.pool      = pool;
+	}
+
+	/**
+	 * Reuses this frame for new samples at sample time sTime. Updates the play
+	 * out time and invalidates the mono samples.
+	 */
+	public void reset(long sTime) {
+		this.sTime       = sTime;
+		this.playOutTime = (sTime / nChannels) / (double)sRate;
+		this.monoValid   = false;
+		this.pooled      = false;
+		setLast(false);
 	}
 
 	public float[] getMonoSamples() {
 		if(nChannels == 1)
 			return samples;
 		
-		if(monoSamples == null) {
-			monoSamples = new float[samples.length / nChannels];
+		if(!(monoValid)) {
+			if(monoSamples == null)
+				monoSamples = new float[samples.length / nChannels];
+			else
+				Arrays.fill(monoSamples, 0f);
 			for(int i = 0; i < samples.length; i++)
 				monoSamples[i / nChannels] += samples[i];
 			final float cs = nChannels;
 			for(int i = 0; i< monoSamples.length; i++)
 				monoSamples[i] /= cs;
+			monoValid = true;
 		}
 		return monoSamples;
 	}
 
 	public void modified() {
-		monoSamples = null;
+		monoValid = false;
 	}
 
 	public double lengthInSecs() {
@@ -72,6 +98,18 @@ public class AudioFrame extends AbstractFrame {
 	}
 
 	public boolean isModified() {
-		return monoSamples == null;
+		return !(monoValid);
+	}
+
+	/**
+	 * Returns the frame to its pool if it was acquired from an {@link AudioFramePool}.
+	 * The frame must not be used after disposing it.
+	 */
+	@Override
+	public void dispose() {
+		if(pool != null && !(pooled)) {
+			pooled = true;
+			pool.release(this);
+		}
 	}
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.audio;
+
+import java.util.Arrays;
+
+/**
+ * Recycles audio frames and their sample buffers. Frames are pooled by channel count
+ * and block size and return to the pool when they are disposed. Acquiring and
+ * releasing frames does not allocate once the pool has reached its working size.
+ */
+public final class AudioFramePool {
+	private static final int DEFAULT_CAPACITY = 32;
+
+	private final float    sRate;
+	private final int      capacity;
+	private       Bucket[] buckets = new Bucket[0];
+
+	public AudioFramePool(float sRate) {
+		this(sRate, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a new frame pool.
+	 * 
+	 * @param sRate The sample rate of the frames.
+	 * @param capacity The maximum number of idle frames kept per channel count / block size.
+	 */
+	public AudioFramePool(float sRate, int capacity) {
+		this.sRate    = sRate;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Get a frame from the pool. The samples of the frame are not cleared.
+	 * 
+	 * @param sTime The sample time of the frame.
+	 * @param nChannels The number of channels.
+	 * @param frameSize The number of samples (all channels) of the frame.
+	 * @return A frame that returns to this pool when disposed.
+	 */
+	public AudioFrame acquire(long sTime, int nChannels, int frameSize) {
+		AudioFrame result = bucket(nChannels, frameSize).pop();
+		if(result == null)
+			result = new AudioFrame(sTime, nChannels, sRate, new float[frameSize], this);
+		else
+			result.reset(sTime);
+		return result;
+	}
+
+	/**
+	 * Get a frame with cleared samples from the pool.
+	 */
+	public AudioFrame acquireSilence(long sTime, int nChannels, int frameSize) {
+		AudioFrame result = acquire(sTime, nChannels, frameSize);
+		Arrays.fill(result.samples, 0f);
+		return result;
+	}
+
+	void release(AudioFrame frame) {
+		bucket(frame.nChannels, frame.samples.length).push(frame);
+	}
+
+	public float getSampleRate() {
+		return sRate;
+	}
+
+	private synchronized Bucket bucket(int nChannels, int frameSize) {
+		for(Bucket b : buckets)
+			if(b.nChannels == nChannels && b.frameSize == frameSize)
+				return b;
+		Bucket result = new Bucket(nChannels, frameSize, capacity);
+		buckets = Arrays.copyOf(buckets, buckets.length + 1);
+		buckets[buckets.length - 1] = result;
+		return result;
+	}
+
+	private static final class Bucket {
+		final int          nChannels;
+		final int          frameSize;
+		final AudioFrame[] frames;
+		int                size;
+
+		Bucket(int nChannels, int frameSize, int capacity) {
+			this.nChannels = nChannels;
+			this.frameSize = frameSize;
+			this.frames    = new AudioFrame[capacity];
+		}
+
+		synchronized AudioFrame pop() {
+			if(size == 0) return null;
+			AudioFrame result = frames[--size];
+			frames[size] = null;
+			return result;
+		}
+
+		synchronized void push(AudioFrame frame) {
+			if(size < frames.length)
+				frames[size++] = frame;
+		}
+	}
+}
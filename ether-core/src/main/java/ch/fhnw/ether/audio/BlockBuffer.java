@@ -31,18 +31,19 @@
 
 package ch.fhnw.ether.audio;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.LinkedList;
 
 import ch.fhnw.ether.audio.AudioUtilities.Window;
 
 public final class BlockBuffer {
-	private LinkedList<float[]> blocks = new LinkedList<>();
-	private float[]             c0;
-	private int                 s0;
-	private float[]             c1;
-	private int                 s1;
-	private final Window        windowType;
+	private final ArrayDeque<float[]> blocks = new ArrayDeque<>();
+	private final ArrayDeque<float[]> free   = new ArrayDeque<>();
+	private float[]                   c0;
+	private int                       s0;
+	private float[]                   c1;
+	private int                       s1;
+	private final Window              windowType;
 
 	public BlockBuffer(int blockSize, boolean halfOverlap, Window windowType) {
 		this.windowType = windowType;
@@ -57,14 +58,14 @@ public final class BlockBuffer {
 			c0[s0++] = data[i];
 			if(s0 == c0.length) {
 				push(c0);
-				c0 = new float[c0.length];
+				c0 = newBlock();
 				s0 = 0;
 			}
 			if(c1 != null) {
 				c1[s1++] = data[i];
 				if(s1 == c1.length) {
 					push(c1);
-					c1 = new float[c1.length];
+					c1 = newBlock();
 					s1 = 0;
 				}
 			}
@@ -76,8 +77,25 @@ public final class BlockBuffer {
 		blocks.add(block);
 	}
 
+	private float[] newBlock() {
+		float[] result = free.poll();
+		return result == null ? new float[c0.length] : result;
+	}
+
+	/**
+	 * Returns the next windowed block or null if no complete block is available.
+	 * Blocks that are no longer used may be handed back with {@link #recycle(float[])}.
+	 */
 	public float[] nextBlock() {
-		return blocks.isEmpty() ? null : blocks.remove(); 
+		return blocks.poll(); 
+	}
+
+	/**
+	 * Hands a block obtained from {@link #nextBlock()} back to this buffer for reuse.
+	 */
+	public void recycle(float[] block) {
+		if(block.length == c0.length)
+			free.add(block);
 	}
 
 	public boolean nextBlockComplex(float[] block) {
@@ -87,6 +105,7 @@ public final class BlockBuffer {
 		Arrays.fill(block, 0f);
 		for(int i = 0; i < b.length; i++)
 			block[i*2] = b[i];
+		recycle(b);
 		return true;
 	}
 
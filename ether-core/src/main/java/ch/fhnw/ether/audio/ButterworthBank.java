@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.audio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Bank of cascaded band pass filters. Coefficients and histories of all
+ * filters are kept in flat arrays, the input is never copied and intermediate
+ * stages go to a few reused buffers. Results are identical to running
+ * {@link ButterworthFilter#processBand(float[])} for each stage on a copy of
+ * the samples followed by {@link AudioUtilities#energy(float[])}.
+ */
+public final class ButterworthBank {
+	private static final ExecutorService POOL              = ForkJoinPool.commonPool();
+	private static final int             MIN_PARALLEL_WORK = 1 << 16;
+
+	private final int         numBands;
+	private final int         numStages;
+	private final float[]     a1;
+	private final float[]     a4;
+	private final float[]     a5;
+	private final float[]     prev1;
+	private final float[]     prev2;
+	private final float[][][] scratch;
+
+	/**
+	 * Creates a bank from filters[band][stage]. All bands must have the same
+	 * number of stages. If parallel is set, groups of bands of large blocks
+	 * are filtered concurrently.
+	 */
+	public ButterworthBank(ButterworthFilter[][] filters, boolean parallel) {
+		this.numBands  = filters.length;
+		this.numStages = numBands == 0 ? 0 : filters[0].length;
+		int size = numBands * numStages;
+		a1    = new float[size];
+		a4    = new float[size];
+		a5    = new float[size];
+		prev1 = new float[size];
+		prev2 = new float[size];
+		scratch = new float[parallel ? Math.max(1, ForkJoinPool.getCommonPoolParallelism()) : 1][][];
+		for (int band = 0; band < numBands; band++) {
+			if (filters[band].length != numStages)
+				throw new IllegalArgumentException("band " + band + " has " + filters[band].length + " stages instead of " + numStages);
+			for (int stage = 0; stage < numStages; stage++) {
+				ButterworthFilter filter = filters[band][stage];
+				int               f      = band * numStages + stage;
+				a1[f]    = filter.a1;
+				a4[f]    = filter.a4;
+				a5[f]    = filter.a5;
+				prev1[f] = filter.prev1;
+				prev2[f] = filter.prev2;
+			}
+		}
+	}
+
+	public int numBands() {
+		return numBands;
+	}
+
+	public int numStages() {
+		return numStages;
+	}
+
+	/**
+	 * Filters samples through every band and stores the mean absolute output
+	 * of each band in energies.
+	 */
+	public float[] energies(float[] samples, float[] energies) {
+		int numGroups = Math.min(scratch.length, (numBands + 3) / 4);
+		if (numGroups < 2 || (long)numBands * numStages * samples.length < MIN_PARALLEL_WORK) {
+			energies(samples, energies, 0, 0, numBands);
+			return energies;
+		}
+
+		List<Future<?>> futures = new ArrayList<>(numGroups - 1);
+		for (int group = 1; group < numGroups; group++) {
+			final int index = group;
+			final int from  = groupStart(group, numGroups);
+			final int to    = groupStart(group + 1, numGroups);
+			futures.add(POOL.submit(() -> energies(samples, energies, index, from, to)));
+		}
+		energies(samples, energies, 0, 0, groupStart(1, numGroups));
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		return energies;
+	}
+
+	private int groupStart(int group, int numGroups) {
+		return group == numGroups ? numBands : (group * numBands / numGroups) & ~3;
+	}
+
+	/**
+	 * Filters bands from (inclusive) to to (exclusive). Four bands are filtered
+	 * together because the recursion of a single band leaves the FPU idle.
+	 */
+	private void energies(float[] samples, float[] energies, int group, int from, int to) {
+		float[][] buffers = null;
+		if (numStages > 1) {
+			buffers = scratch[group];
+			if (buffers == null || buffers[0].length != samples.length)
+				scratch[group] = buffers = new float[4][samples.length];
+		}
+		int band = from;
+		for (; band + 4 <= to; band += 4)
+			energies4(samples, buffers, energies, band);
+		for (; band < to; band++)
+			energies[band] = energy(samples, band);
+	}
+
+	private void energies4(float[] samples, float[][] buffers, float[] energies, int band) {
+		double total0 = 0.0f;
+		double total1 = 0.0f;
+		double total2 = 0.0f;
+		double total3 = 0.0f;
+		for (int stage = 0; stage < numStages; stage++) {
+			final boolean last = stage == numStages - 1;
+			final float[] in0  = stage == 0 ? samples : buffers[0];
+			final float[] in1  = stage == 0 ? samples : buffers[1];
+			final float[] in2  = stage == 0 ? samples : buffers[2];
+			final float[] in3  = stage == 0 ? samples : buffers[3];
+			final float[] out0 = last ? null : buffers[0];
+			final float[] out1 = last ? null : buffers[1];
+			final float[] out2 = last ? null : buffers[2];
+			final float[] out3 = last ? null : buffers[3];
+
+			final int f0 = band * numStages + stage;
+			final int f1 = f0 + numStages;
+			final int f2 = f1 + numStages;
+			final int f3 = f2 + numStages;
+			final float a10 = a1[f0], a40 = a4[f0], a50 = a5[f0];
+			final float a11 = a1[f1], a41 = a4[f1], a51 = a5[f1];
+			final float a12 = a1[f2], a42 = a4[f2], a52 = a5[f2];
+			final float a13 = a1[f3], a43 = a4[f3], a53 = a5[f3];
+			float p10 = prev1[f0], p20 = prev2[f0];
+			float p11 = prev1[f1], p21 = prev2[f1];
+			float p12 = prev1[f2], p22 = prev2[f2];
+			float p13 = prev1[f3], p23 = prev2[f3];
+
+			for (int i = 0; i < samples.length; i++) {
+				float b0 = in0[i] - a40 * p10 - a50 * p20;
+				float b1 = in1[i] - a41 * p11 - a51 * p21;
+				float b2 = in2[i] - a42 * p12 - a52 * p22;
+				float b3 = in3[i] - a43 * p13 - a53 * p23;
+				float y0 = (b0 - p20) * a10;
+				float y1 = (b1 - p21) * a11;
+				float y2 = (b2 - p22) * a12;
+				float y3 = (b3 - p23) * a13;
+				p20 = p10; p10 = b0;
+				p21 = p11; p11 = b1;
+				p22 = p12; p12 = b2;
+				p23 = p13; p13 = b3;
+				if (last) {
+					total0 += y0 < 0 ? -y0 : y0;
+					total1 += y1 < 0 ? -y1 : y1;
+					total2 += y2 < 0 ? -y2 : y2;
+					total3 += y3 < 0 ? -y3 : y3;
+				} else {
+					out0[i] = y0;
+					out1[i] = y1;
+					out2[i] = y2;
+					out3[i] = y3;
+				}
+			}
+
+			prev1[f0] = p10; prev2[f0] = p20;
+			prev1[f1] = p11; prev2[f1] = p21;
+			prev1[f2] = p12; prev2[f2] = p22;
+			prev1[f3] = p13; prev2[f3] = p23;
+		}
+		energies[band]     = (float)total0 / samples.length;
+		energies[band + 1] = (float)total1 / samples.length;
+		energies[band + 2] = (float)total2 / samples.length;
+		energies[band + 3] = (float)total3 / samples.length;
+	}
+
+	private float energy(float[] samples, int band) {
+		final int first = band * numStages;
+		final int last  = first + numStages;
+		double total = 0.0f;
+		for (int i = 0; i < samples.length; i++) {
+			float value = samples[i];
+			for (int f = first; f < last; f++) {
+				float b2 = value - a4[f] * prev1[f] - a5[f] * prev2[f];
+				value = (b2 - prev2[f]) * a1[f];
+				prev2[f] = prev1[f];
+				prev1[f] = b2;
+			}
+			total += value < 0 ? -value : value;
+		}
+		return (float)total / samples.length;
+	}
+}
@@ -33,13 +33,13 @@ package ch.fhnw.ether.audio;
 
 public class ButterworthFilter {
     private static final float sqrt2 = (float)Math.sqrt(2D);
-    private final float a1;
+    final float a1;
     private final float a2;
     private final float a3;
-    private final float a4;
-    private final float a5;
-    private float prev1;
-    private float prev2;
+    final float a4;
+    final float a5;
+    float prev1;
+    float prev2;
 
     private ButterworthFilter(float a1, float a2, float a3, float a4, float a5) {
         this.a1 = a1;
@@ -31,37 +31,50 @@
 
 package ch.fhnw.ether.audio;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
-import javax.sound.sampled.AudioFileFormat.Type;
-import javax.sound.sampled.AudioFormat;
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-
 import ch.fhnw.ether.media.RenderCommandException;
-import ch.fhnw.util.FloatList;
 
+/**
+ * Records audio to a WAV file. Samples are streamed to the file while rendering,
+ * the file is complete after the last frame or when the target is stopped.
+ */
 public class FileAudioTarget extends AbstractAudioTarget {
-	private final int        numChannels;
-	private final float      sRate;
-	private double           sTime;
-	private final File       file;
-	private final FloatList  buffer = new FloatList();
+	private final int              numChannels;
+	private final float            sRate;
+	private double                 sTime;
+	private final File             file;
+	private final WAVWriter.Format format;
+	private WAVWriter              writer;
+	private boolean                closed;
 	
 	public FileAudioTarget(File file, int numChannels, float sampleRate) {
+		this(file, numChannels, sampleRate, WAVWriter.Format.PCM_16);
+	}
+
+	public FileAudioTarget(File file, int numChannels, float sampleRate, WAVWriter.Format format) {
 		super(Thread.NORM_PRIORITY, false);
 		this.numChannels = numChannels;
 		this.sRate       = sampleRate;
 		this.file        = file;
+		this.format      = format;
 	}
 
 	@Override
-	public void render() {
+	public synchronized void render() throws RenderCommandException {
+		// the frame pump may still deliver a frame after stop() or the last frame
+		if(closed) return;
 		sTime += getFrame().samples.length;
-		buffer.addAll(getFrame().samples);
+		try {
+			if(writer == null)
+				writer = new WAVWriter(file, numChannels, sRate, format);
+			writer.write(getFrame().samples);
+			if(getFrame().isLast())
+				close();
+		} catch(IOException e) {
+			throw new RenderCommandException(e);
+		}
 	}
 
 	@Override
@@ -82,20 +95,23 @@ public class FileAudioTarget extends AbstractAudioTarget {
 
 	@Override
 	public void stop() throws RenderCommandException {
-		byte[] bytes = new byte[buffer.size() * 2];
-		for(int i = buffer.size(); --i >= 0;) {
-			int val = (int) (buffer.get(i) * Short.MAX_VALUE);
-			bytes[i*2+0] = (byte) val;
-			bytes[i*2+1] = (byte) (val >> 8);
+		super.stop();
+		synchronized (this) {
+			try {
+				close();
+			} catch (IOException e) {
+				throw new RenderCommandException(e);
+			}
 		}
-		AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(bytes), 
-				new AudioFormat(sRate, 16, 1, true, false), 
-				buffer.size());
-		try(FileOutputStream out = new FileOutputStream(file)) {
-			AudioSystem.write(in, Type.WAVE, out);
-		} catch (IOException e) {
-			throw new RenderCommandException(e);
+	}
+
+	private void close() throws IOException {
+		closed = true;
+		if(writer == null) return;
+		try {
+			writer.close();
+		} finally {
+			writer = null;
 		}
-		super.stop();
 	}
 }
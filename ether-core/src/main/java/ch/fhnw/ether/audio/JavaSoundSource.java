@@ -33,8 +33,9 @@ package ch.fhnw.ether.audio;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioSystem;
@@ -61,13 +62,14 @@ public class JavaSoundSource extends AbstractFrameSource implements Runnable, IA
 
 	private static final Parameter SOURCE = new Parameter("src", "Source", 0, getSources());
 
-	private int                          source = -1;
-	private TargetDataLine               line;
-	private final byte[]                 buffer;
-	long                                 samples;
-	Throwable                            lastErr;
-	private final BlockingQueue<float[]> data = new LinkedBlockingQueue<>();
-	Thread                               t;
+	private int                             source = -1;
+	private TargetDataLine                  line;
+	private final byte[]                    buffer;
+	long                                    samples;
+	Throwable                               lastErr;
+	private final BlockingQueue<AudioFrame> data = new ArrayBlockingQueue<>(16);
+	private final AudioFramePool            pool;
+	Thread                                  t;
 
 	public JavaSoundSource(int nChannels, float sampleRate, int frameSize) {
 		super(SOURCE);
@@ -75,21 +77,25 @@ public class JavaSoundSource extends AbstractFrameSource implements Runnable, IA
 		this.sampleRate = sampleRate;
 		this.frameSize  = Math.max(1, (frameSize / nChannels) * nChannels);
 		this.buffer     = new byte[frameSize * 2];
+		this.pool       = new AudioFramePool(sampleRate);
 	}
 
 	@Override
 	public void run() {
 		for(;;) {
 			try {
-				final float[] fbuffer = new float[frameSize];
+				final AudioFrame frame   = pool.acquire(samples, nChannels, frameSize);
+				final float[]    fbuffer = frame.samples;
 				final int read = line.read(buffer, 0, buffer.length);
 				int       idx  = 0;
 				for(int i = 0; i < read; i += 2) {
 					int s = buffer[i] << 8 | (buffer[i+1] & 0xFF);
 					fbuffer[idx++] = s / S2F;
 				}
+				Arrays.fill(fbuffer, idx, fbuffer.length, 0f);
 				samples += read / 2;
-				data.add(fbuffer);
+				if(!(data.offer(frame)))
+					frame.dispose();
 			} catch(Throwable t) {
 				if(lastErr == null)
 					lastErr = t;
@@ -119,8 +125,8 @@ public class JavaSoundSource extends AbstractFrameSource implements Runnable, IA
 			}
 		}
 		try {
-			while(data.size() > 4) data.take();
-			((IAudioRenderTarget)target).setFrame(this, createAudioFrame(samples, data.take()));
+			while(data.size() > 4) data.take().dispose();
+			((IAudioRenderTarget)target).setFrame(this, data.take());
 		} catch(InterruptedException e) {
 			throw new RenderCommandException(e);
 		}
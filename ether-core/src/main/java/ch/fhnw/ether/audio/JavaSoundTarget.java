@@ -54,6 +54,7 @@ public final class JavaSoundTarget extends AbstractAudioTarget {
 	private final int      bufferSize;
 	private ITimebase      timebase;
 	private final ByteList recorder;
+	private byte[]         outBuffer = new byte[0];
 	
 	/**
 	 * Create a new audio target using Java sound output.
@@ -130,7 +131,10 @@ public final class JavaSoundTarget extends AbstractAudioTarget {
 		final float[] samples  = getFrame().samples;
 		final int     channels = getFrame().nChannels;
 
-		final byte[] outBuffer   = new byte[(samples.length / channels) * outChannels * bytesPerSample];   
+		final int outLength = (samples.length / channels) * outChannels * bytesPerSample;
+		if(outBuffer.length != outLength)
+			outBuffer = new byte[outLength];
+		final byte[] outBuffer   = this.outBuffer;   
 		int          outIdx      = 0;
 
 		for(int i = 0; i < samples.length; i += channels) {
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.audio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioFormat.Encoding;
+import javax.sound.sampled.AudioInputStream;
+
+import ch.fhnw.util.Log;
+
+/**
+ * Decoded samples of an audio file. A file is decoded once into a float file in
+ * the cache directory, which is memory-mapped and shared by all sources playing
+ * the same URL. Sources read the samples through their own view of the mapping,
+ * so looping and start offsets neither decode nor copy the file again.
+ */
+public final class PCMCache {
+	private static final Log log = Log.create();
+
+	private static final int  MAGIC       = 0x4550434D; // 'EPCM'
+	private static final int  VERSION     = 1;
+	private static final int  ALIGN       = 16;
+	private static final int  BLOCK_SIZE  = 1 << 16;
+	private static final long MAX_SAMPLES = Integer.MAX_VALUE / 4; // limit of a single mapping
+
+	private static File cacheDir = new File(System.getProperty("java.io.tmpdir"), "ether_pcm");
+
+	private static final Map<String, WeakReference<PCMCache>>   caches  = new HashMap<>();
+	private static final Map<String, CompletableFuture<PCMCache>> pending = new HashMap<>();
+
+	private final String      key;
+	private final int         nChannels;
+	private final float       sRate;
+	private final long        frameCount;
+	private final FloatBuffer samples;
+
+	private PCMCache(String key, int nChannels, float sRate, long frameCount, FloatBuffer samples) {
+		this.key        = key;
+		this.nChannels  = nChannels;
+		this.sRate      = sRate;
+		this.frameCount = frameCount;
+		this.samples    = samples;
+	}
+
+	public int getNumChannels() {
+		return nChannels;
+	}
+
+	public float getSampleRate() {
+		return sRate;
+	}
+
+	/**
+	 * Returns the number of sample frames, i.e. samples per channel.
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	public double getLengthInSeconds() {
+		return frameCount / (double)sRate;
+	}
+
+	/**
+	 * Returns a new read-only view of the interleaved samples. Views share the
+	 * mapped file but have their own position and limit.
+	 */
+	public FloatBuffer view() {
+		return samples.duplicate();
+	}
+
+	@Override
+	public String toString() {
+		return key;
+	}
+
+	/**
+	 * Sets the directory where decoded files are stored. Defaults to a directory
+	 * in java.io.tmpdir.
+	 */
+	public static synchronized void setCacheDirectory(File dir) {
+		cacheDir = dir;
+	}
+
+	public static synchronized File getCacheDirectory() {
+		return cacheDir;
+	}
+
+	/**
+	 * Returns the cache of url. If no instance is open and the cache directory
+	 * holds no valid file for url, the stream returned by decoder is decoded
+	 * into the cache directory first. Concurrent requests for the same url wait
+	 * for a single decode, requests for other urls are not blocked by it.
+	 * 
+	 * @param url The URL of the audio file.
+	 * @param decoder Opens the 16 bit signed PCM stream of url.
+	 * @throws IOException If decoding fails or the decoded samples exceed the size of a mapping.
+	 */
+	public static PCMCache get(URL url, Callable<AudioInputStream> decoder) throws IOException {
+		final String key = key(url);
+		CompletableFuture<PCMCache> future;
+		File                        dir = null;
+		synchronized (PCMCache.class) {
+			for(Iterator<WeakReference<PCMCache>> i = caches.values().iterator(); i.hasNext();)
+				if(i.next().get() == null) i.remove();
+			WeakReference<PCMCache> ref = caches.get(key);
+			PCMCache result = ref == null ? null : ref.get();
+			if(result != null)
+				return result;
+			future = pending.get(key);
+			if(future == null) {
+				future = new CompletableFuture<>();
+				pending.put(key, future);
+				dir = cacheDir;
+			}
+		}
+		// only the first request decodes, on its own thread and outside the lock
+		if(dir != null)
+			open(dir, key, url, decoder, future);
+		try {
+			return future.get();
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			throw new IOException(e.getCause());
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(url.toString());
+		}
+	}
+
+	private static void open(File dir, String key, URL url, Callable<AudioInputStream> decoder, CompletableFuture<PCMCache> future) {
+		PCMCache  result = null;
+		Throwable error  = null;
+		try {
+			if(!(dir.exists()))
+				dir.mkdirs();
+			File file = new File(dir, Integer.toHexString(url.toExternalForm().hashCode()) + ".pcm"); // a modified file replaces its old samples
+			if(file.exists())
+				result = load(file, key);
+			if(result == null) {
+				decode(file, key, url, decoder);
+				result = load(file, key);
+				if(result == null)
+					throw new IOException("Cannot load " + file);
+			}
+		} catch(Throwable t) {
+			error = t;
+		}
+		synchronized (PCMCache.class) {
+			pending.remove(key);
+			if(result != null)
+				caches.put(key, new WeakReference<>(result));
+		}
+		if(error == null)
+			future.complete(result);
+		else
+			future.completeExceptionally(error);
+	}
+
+	/**
+	 * Identifies the content of url. Local files include size and date so that a
+	 * modified file is decoded again.
+	 */
+	private static String key(URL url) {
+		String result = url.toExternalForm();
+		try {
+			if("file".equals(url.getProtocol())) {
+				File file = new File(url.toURI());
+				result += "#" + file.length() + "@" + file.lastModified();
+			}
+		} catch(URISyntaxException e) {
+		}
+		return result;
+	}
+
+	private static PCMCache load(File file, String key) {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			int   offset     = in.readInt();
+			int   nChannels  = in.readInt();
+			float sRate      = in.readFloat();
+			long  frameCount = in.readLong();
+			if(!(in.readUTF().equals(key)))
+				return null;
+			long size = frameCount * nChannels * 4;
+			if(nChannels <= 0 || frameCount < 0 || offset + size > channel.size())
+				return null;
+			FloatBuffer samples = channel.map(MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+			return new PCMCache(key, nChannels, sRate, frameCount, samples);
+		} catch(Throwable t) {
+			log.warning(file.toString(), t);
+			return null;
+		}
+	}
+
+	private static void decode(File file, String key, URL url, Callable<AudioInputStream> decoder) throws IOException {
+		File tmp = null;
+		try {
+			// unique, urls with the same file name may be decoded concurrently
+			tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp").toFile();
+			try (AudioInputStream in = decoder.call(); FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				AudioFormat fmt = in.getFormat();
+				if(fmt.getSampleSizeInBits() != 16 || fmt.getEncoding() != Encoding.PCM_SIGNED)
+					throw new IOException("Only 16 bit signed PCM audio supported, got " + fmt);
+
+				// header is rewritten with the frame count once the stream is decoded
+				write(out, header(key, fmt, 0));
+				byte[]     buffer  = new byte[BLOCK_SIZE];
+				ByteBuffer block   = ByteBuffer.allocate(BLOCK_SIZE * 2).order(ByteOrder.LITTLE_ENDIAN);
+				long       samples = 0;
+				for(int read; (read = in.read(buffer)) >= 0;) {
+					float[] data = AudioUtilities.pcmBytes2float(fmt, buffer, read);
+					samples += data.length;
+					if(samples > MAX_SAMPLES)
+						throw new IOException(url + " is too large to cache");
+					block.clear();
+					block.asFloatBuffer().put(data);
+					block.limit(data.length * 4);
+					write(out, block);
+				}
+				out.position(0);
+				write(out, header(key, fmt, samples / fmt.getChannels()));
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch(IOException e) {
+			if(tmp != null) tmp.delete();
+			throw e;
+		} catch(Exception e) {
+			if(tmp != null) tmp.delete();
+			throw new IOException(e);
+		}
+	}
+
+	private static ByteBuffer header(String key, AudioFormat fmt, long frameCount) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream      out   = new DataOutputStream(bytes);
+		int size = 4 * 5 + 8 + 2 + key.length() * 3; // upper bound of the UTF encoding
+		size += ALIGN - size % ALIGN;
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(size);
+		out.writeInt(fmt.getChannels());
+		out.writeFloat(fmt.getSampleRate());
+		out.writeLong(frameCount);
+		out.writeUTF(key);
+		while(out.size() < size)
+			out.write(0);
+		return ByteBuffer.wrap(bytes.toByteArray());
+	}
+
+	private static void write(FileChannel out, ByteBuffer src) throws IOException {
+		while(src.hasRemaining())
+			out.write(src);
+	}
+}
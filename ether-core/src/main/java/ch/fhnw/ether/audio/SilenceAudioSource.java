@@ -36,9 +36,10 @@ import ch.fhnw.ether.media.IRenderTarget;
 import ch.fhnw.ether.media.RenderCommandException;
 
 public class SilenceAudioSource extends AbstractFrameSource implements IAudioSource {
-	private final float sampleRate;
-	private final int   nChannels;
-	private final int   frameSize;
+	private final float          sampleRate;
+	private final int            nChannels;
+	private final int            frameSize;
+	private final AudioFramePool pool;
 
 	long samples;
 
@@ -47,11 +48,12 @@ public class SilenceAudioSource extends AbstractFrameSource implements IAudioSou
 		this.nChannels  = nChannels;
 		this.sampleRate = sampleRate;
 		this.frameSize  = Math.max(1, (frameSize / nChannels) * nChannels);
+		this.pool       = new AudioFramePool(sampleRate);
 	}
 
 	@Override
 	protected void run(IRenderTarget<?> target) throws RenderCommandException {
-		((IAudioRenderTarget)target).setFrame(this, createAudioFrame(samples, frameSize));
+		((IAudioRenderTarget)target).setFrame(this, pool.acquireSilence(samples, nChannels, frameSize));
 		samples += frameSize;
 	}	
 
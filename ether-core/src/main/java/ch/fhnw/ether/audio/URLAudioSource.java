@@ -36,6 +36,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -98,6 +100,11 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 	private final AtomicInteger          numPlays     = new AtomicInteger();
 	private       long                   samples;
 	private       Semaphore              bufSemaphore = new Semaphore(512);
+	private final long                   startFrame;
+	private       PCMCache               cache;
+	private       FloatBuffer            cached;
+	private       AudioFramePool         pool;
+	private       long                   readPos;
 	
 	public URLAudioSource(URL url) throws IOException {
 		this(url, Integer.MAX_VALUE, -BUFFER_SZ);
@@ -112,9 +119,24 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 	}
 	
 	public URLAudioSource(final URL url, final int numPlays, double frameSizeInSec) throws IOException {
+		this(url, numPlays, frameSizeInSec, 0);
+	}
+
+	/**
+	 * Create a new audio source. Except for MIDI files, the file is decoded once
+	 * into the PCMCache and played from there. If the file cannot be cached, it
+	 * is decoded again for every play.
+	 * 
+	 * @param url The URL of the audio file.
+	 * @param numPlays The number of times the file is played.
+	 * @param frameSizeInSec The frame size in seconds, or the negated frame size in samples per channel.
+	 * @param startFrame The sample frame where every play starts.
+	 */
+	public URLAudioSource(final URL url, final int numPlays, double frameSizeInSec, long startFrame) throws IOException {
 		this.url            = url;
 		this.numPlays.set(numPlays);
 		this.frameSizeInSec = frameSizeInSec;
+		this.startFrame     = startFrame;
 
 		try {
 			if(isMidi(url)) {
@@ -146,10 +168,22 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 				} catch (UnsupportedAudioFileException e) {
 					throw new IOException(e);
 				}
+				try {
+					cache      = PCMCache.get(url, () -> getStream(url));
+					cached     = cache.view();
+					frameCount = cache.getFrameCount();
+					pool       = new AudioFramePool(fmt.getSampleRate());
+				} catch(IOException e) {
+					LOG.warning("Streaming " + url + ": " + e.getMessage());
+					cache = null;
+				}
 			}
 		} catch (UnsupportedAudioFileException | InvalidMidiDataException e) {
 			throw new IOException(e);
 		}
+		frameSizeInBytes = frameSizeInSec > 0 
+				? fmt.getChannels() * fmt.getSampleSizeInBits() / 8 * (int)(frameSizeInSec * fmt.getSampleRate())
+						: fmt.getChannels() * fmt.getSampleSizeInBits() / 8 * (int)-frameSizeInSec;
 		rewind();
 	}
 
@@ -291,14 +325,13 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 	@Override
 	public void run() {
 		try {
-			frameSizeInBytes = frameSizeInSec > 0 
-					? fmt.getChannels() * fmt.getSampleSizeInBits() / 8 * (int)(frameSizeInSec * fmt.getSampleRate())
-							: fmt.getChannels() * fmt.getSampleSizeInBits() / 8 * (int)-frameSizeInSec;
 					byte[] buffer = new byte[frameSizeInBytes];
 
 					do {
 						long sampleCount = 0;
 						try (AudioInputStream in = getStream(url)) {
+							if(midiStream == null)
+								skip(in, startFrame * fmt.getFrameSize());
 							for(;;) {
 								int read = in.read(buffer);
 								if(read < 0) break;
@@ -319,8 +352,20 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 		}
 	}
 
+	private static void skip(AudioInputStream in, long bytes) throws IOException {
+		while(bytes > 0) {
+			long skipped = in.skip(bytes);
+			if(skipped <= 0) break;
+			bytes -= skipped;
+		}
+	}
+
 	@Override
 	protected void run(IRenderTarget<?> target) throws RenderCommandException {
+		if(cache != null) {
+			runCached(target);
+			return;
+		}
 		try {
 			final float[] outData = data.poll(1000, TimeUnit.MILLISECONDS);
 			if(outData != null) {
@@ -339,8 +384,54 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 		}
 	}
 
+	/**
+	 * Copies the next frame from the cache. A play that ends within a frame
+	 * continues at the start frame in the same frame, the last frame is padded
+	 * with silence.
+	 */
+	private void runCached(IRenderTarget<?> target) throws RenderCommandException {
+		final int  nChannels = fmt.getChannels();
+		final int  size      = frameSizeInBytes / (fmt.getSampleSizeInBits() / 8);
+		final long start     = Math.min(startFrame, frameCount) * nChannels;
+		final long end       = frameCount * nChannels;
+
+		AudioFrame frame = pool.acquire(samples, nChannels, size);
+		int        off   = 0;
+		synchronized (cached) {
+			while(off < size) {
+				if(readPos >= end) {
+					if(start >= end || numPlays.decrementAndGet() <= 0)
+						break;
+					readPos = start;
+				}
+				int len = (int)Math.min(size - off, end - readPos);
+				cached.position((int)readPos);
+				cached.get(frame.samples, off, len);
+				off     += len;
+				readPos += len;
+			}
+			if(off < size) {
+				numPlays.set(0);
+				Arrays.fill(frame.samples, off, size, 0f);
+			} else if(readPos >= end && numPlays.get() <= 1) {
+				numPlays.set(0);
+			}
+		}
+		frame.setLast(numPlays.get() <= 0);
+		samples += size;
+		try {
+			((IAudioRenderTarget)target).setFrame(this, frame);
+		} catch(Throwable t) {
+			throw new RenderCommandException(t);
+		}
+	}
+
 	@Override
 	public void dispose() {
+		if(cache != null) {
+			numPlays.set(0);
+			return;
+		}
 		try {
 			numPlays.set(0);
 			while(numPlays.get() >= 0) {
@@ -353,6 +444,12 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 	}
 
 	public void rewind() {
+		if(cache != null) {
+			synchronized (cached) {
+				readPos = Math.min(startFrame, frameCount) * fmt.getChannels();
+			}
+			return;
+		}
 		Thread t = new Thread(this, "AudioReader:" + url.toExternalForm());
 		t.setDaemon(true);
 		t.setPriority(Thread.MIN_PRIORITY);
@@ -427,6 +524,13 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 		recv.send(msg, time);
 	}
 
+	/**
+	 * Returns the decoded samples of this source or null if the source is not cached.
+	 */
+	public PCMCache getPCMCache() {
+		return cache;
+	}
+
 	public int getNumNotes() {
 		return noteOn;
 	}
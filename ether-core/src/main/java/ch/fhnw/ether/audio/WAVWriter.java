@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.audio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes a WAV file incrementally. Samples are converted into one of two direct
+ * buffers while a writer thread spools the other one to the file, so memory
+ * stays constant regardless of the recording length. The sizes in the header
+ * are patched when the writer is closed.
+ */
+public final class WAVWriter implements Closeable {
+	public enum Format {
+		PCM_16(2, 1),
+		PCM_24(3, 1),
+		FLOAT_32(4, 3);
+
+		final int bytesPerSample;
+		final int formatTag;
+
+		Format(int bytesPerSample, int formatTag) {
+			this.bytesPerSample = bytesPerSample;
+			this.formatTag      = formatTag;
+		}
+
+		public int getBitsPerSample() {
+			return bytesPerSample * 8;
+		}
+	}
+
+	private static final int        BUFFER_SIZE = 3 << 16; // a multiple of all sample sizes
+	private static final long       MAX_SIZE    = 0xFFFFFFFFL;
+	private static final ByteBuffer EOF         = ByteBuffer.allocate(0);
+	private static final float      S2F16       = Short.MAX_VALUE;
+	private static final float      S2F24       = (1 << 23) - 1;
+
+	private final File                      file;
+	private final Format                    format;
+	private final int                       nChannels;
+	private final float                     sRate;
+	private final FileChannel               channel;
+	private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(2);
+	private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(3);
+	private final Thread                    writer;
+	private ByteBuffer                      buffer;
+	private long                            dataSize;
+	private volatile IOException            error;
+	private boolean                         closed;
+
+	/**
+	 * Create a new WAV file. An existing file is overwritten.
+	 * 
+	 * @param file The file to write.
+	 * @param nChannels The number of interleaved channels.
+	 * @param sRate The sample rate.
+	 * @param format The sample format of the file.
+	 */
+	public WAVWriter(File file, int nChannels, float sRate, Format format) throws IOException {
+		this.file      = file;
+		this.format    = format;
+		this.nChannels = nChannels;
+		this.sRate     = sRate;
+		this.channel   = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		write(header(0));
+
+		for(int i = 0; i < 2; i++)
+			free.add(ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+		buffer = free.remove();
+
+		writer = new Thread(this::spool, "WAVWriter:" + file.getName());
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	/**
+	 * Returns the number of sample bytes written so far.
+	 */
+	public long getDataSize() {
+		return dataSize;
+	}
+
+	public void write(float[] samples) throws IOException {
+		write(samples, 0, samples.length);
+	}
+
+	/**
+	 * Converts len interleaved samples starting at off. Samples are clipped to
+	 * [-1, 1] for integer formats. Blocks if the writer thread falls behind by
+	 * more than one buffer.
+	 */
+	public void write(float[] samples, int off, int len) throws IOException {
+		if(closed)
+			throw new IOException(file + " is closed");
+		checkError();
+		final int end = off + len;
+		while(off < end) {
+			int n = Math.min(end - off, buffer.remaining() / format.bytesPerSample);
+			switch(format) {
+			case PCM_16:
+				for(int i = off + n; off < i; off++)
+					buffer.putShort((short)(clip(samples[off]) * S2F16));
+				break;
+			case PCM_24:
+				for(int i = off + n; off < i; off++) {
+					int s = (int)(clip(samples[off]) * S2F24);
+					buffer.put((byte)s);
+					buffer.putShort((short)(s >> 8));
+				}
+				break;
+			case FLOAT_32:
+				for(int i = off + n; off < i; off++)
+					buffer.putFloat(samples[off]);
+				break;
+			}
+			dataSize += n * format.bytesPerSample;
+			if(!(buffer.hasRemaining()))
+				flush();
+		}
+	}
+
+	private static float clip(float s) {
+		return s > 1f ? 1f : s < -1f ? -1f : s;
+	}
+
+	private void flush() throws IOException {
+		try {
+			buffer.flip();
+			full.put(buffer);
+			buffer = free.take();
+			buffer.clear();
+		} catch(InterruptedException e) {
+			throw new IOException(e);
+		}
+		checkError();
+	}
+
+	/**
+	 * Writes the remaining samples, waits for the writer thread and patches the
+	 * header. Sizes beyond the 4 GB limit of the format are written as 0xFFFFFFFF.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed)
+			return;
+		closed = true;
+		try {
+			try {
+				if(buffer.position() > 0)
+					flush();
+			} finally {
+				full.put(EOF);
+				writer.join();
+			}
+			checkError();
+			// chunks are word aligned, the pad byte is not part of the data size
+			if((dataSize & 1) != 0)
+				write(ByteBuffer.wrap(new byte[1]));
+			channel.position(0);
+			write(header(dataSize));
+		} catch(InterruptedException e) {
+			throw new IOException(e);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void spool() {
+		try {
+			for(ByteBuffer b; (b = full.take()) != EOF;) {
+				try {
+					if(error == null)
+						write(b);
+				} catch(IOException e) {
+					error = e;
+				}
+				free.put(b);
+			}
+		} catch(InterruptedException e) {
+			error = new IOException(e);
+		}
+	}
+
+	private void checkError() throws IOException {
+		IOException e = error;
+		if(e != null)
+			throw e;
+	}
+
+	private void write(ByteBuffer src) throws IOException {
+		while(src.hasRemaining())
+			channel.write(src);
+	}
+
+	/**
+	 * RIFF header with fmt and, for float samples, fact chunk.
+	 */
+	private ByteBuffer header(long dataSize) {
+		final boolean isFloat    = format == Format.FLOAT_32;
+		final int     fmtSize    = isFloat ? 18 : 16;
+		final int     blockAlign = nChannels * format.bytesPerSample;
+		final int     size       = 12 + 8 + fmtSize + (isFloat ? 12 : 0) + 8;
+
+		ByteBuffer result = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		result.put(new byte[] {'R', 'I', 'F', 'F'});
+		result.putInt((int)Math.min(MAX_SIZE, size - 8 + dataSize + (dataSize & 1)));
+		result.put(new byte[] {'W', 'A', 'V', 'E'});
+		result.put(new byte[] {'f', 'm', 't', ' '});
+		result.putInt(fmtSize);
+		result.putShort((short)format.formatTag);
+		result.putShort((short)nChannels);
+		result.putInt((int)sRate);
+		result.putInt((int)sRate * blockAlign);
+		result.putShort((short)blockAlign);
+		result.putShort((short)format.getBitsPerSample());
+		if(isFloat) {
+			result.putShort((short)0);
+			result.put(new byte[] {'f', 'a', 'c', 't'});
+			result.putInt(4);
+			result.putInt((int)Math.min(MAX_SIZE, dataSize / blockAlign));
+		}
+		result.put(new byte[] {'d', 'a', 't', 'a'});
+		result.putInt((int)Math.min(MAX_SIZE, dataSize));
+		result.flip();
+		return result;
+	}
+}
@@ -30,7 +30,7 @@
  */package ch.fhnw.ether.audio.fx;
 
  import ch.fhnw.ether.audio.AudioFrame;
-import ch.fhnw.ether.audio.AudioUtilities;
+import ch.fhnw.ether.audio.ButterworthBank;
 import ch.fhnw.ether.audio.ButterworthFilter;
 import ch.fhnw.ether.audio.IAudioRenderTarget;
 import ch.fhnw.ether.audio.Smooth;
@@ -48,7 +48,8 @@ import ch.fhnw.util.math.MathUtilities;
 	 private final boolean center[];
 	 private final int     strength;
 
-	 private ButterworthFilter filters[][];
+	 private ButterworthBank   bank;
+	 private boolean           parallel;
 	 private Smooth            smooth;
 	 private float[]           power;
 
@@ -121,7 +122,7 @@ import ch.fhnw.util.math.MathUtilities;
 	 public void init(IAudioRenderTarget target) {
 		 smooth = new Smooth(centers.length, 0.01f);
 		 power  = new float[centers.length];
-		 filters = new ButterworthFilter[size][strength];
+		 ButterworthFilter[][] filters = new ButterworthFilter[size][strength];
 
 		 for(int i = 0; i < size; i++)
 			 for(int j = 0; j < strength; j++)
@@ -129,6 +130,20 @@ import ch.fhnw.util.math.MathUtilities;
 					 filters[i][j] = ButterworthFilter.getBandpassFilter0(target.getSampleRate(), centers[i], uppers[i] - lowers[i]);
 				 else
 					 filters[i][j] = ButterworthFilter.getBandpassFilter(target.getSampleRate(), lowers[i], uppers[i]);
+		 bank = new ButterworthBank(filters, parallel);
+	 }
+
+	 /**
+	  * Filters groups of bands of large blocks on the common fork/join pool. Off by
+	  * default, since the render thread blocks on the pool, which should be avoided
+	  * for real-time targets. Takes effect at the next init.
+	  */
+	 public void setParallel(boolean parallel) {
+		 this.parallel = parallel;
+	 }
+
+	 public boolean isParallel() {
+		 return parallel;
 	 }
 
 	 public float power(int i) {
@@ -151,12 +166,9 @@ import ch.fhnw.util.math.MathUtilities;
 	 @Override
 	 protected void run(final IAudioRenderTarget target) throws RenderCommandException {
 		 final AudioFrame frame = target.getFrame();
-		 for(int band = 0; band < centers.length; band++) {
-			 float[] samples = frame.getMonoSamples().clone();
-			 for(int i = 0; i < filters[band].length; i++)
-				 filters[band][i].processBand(samples);
-			 power[band] = MathUtilities.clamp(AudioUtilities.energy(samples) * centers.length, 0, 1);
-		 }
+		 bank.energies(frame.getMonoSamples(), power);
+		 for(int band = 0; band < centers.length; band++)
+			 power[band] = MathUtilities.clamp(power[band] * centers.length, 0, 1);
 		 smooth.update(frame.playOutTime, power);
 		 clear();
 		 column(power, 0, 1, RGB.WHITE);
@@ -31,9 +31,9 @@
 
 package ch.fhnw.ether.audio.fx;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.jtransforms.fft.FloatFFT_1D;
@@ -54,21 +54,24 @@ import ch.fhnw.util.math.MathUtilities;
 public class FFT extends AbstractRenderCommand<IAudioRenderTarget> implements IPlotable {
 	private static final Log LOG = Log.create();
 
-	private final float         minFreq;
-	private final Window        windowType;
-	private       FloatFFT_1D   fft;
-	private       BlockBuffer   buffer;
-	private       int           fftSize;
-	private       int           fftSize2;
-	private final List<float[]> spectrum = new LinkedList<>();
-	private       float[]       block;
-	private       float         sRate;
-	private       float[]       power;
-	private       float         energy;
-	private       float[]       pcm0;
-	private       int           pcm0rd;
-	private       float[]       pcm1;
-	private       int           pcm1rd;
+	private final float               minFreq;
+	private final Window              windowType;
+	private       FloatFFT_1D         fft;
+	private       BlockBuffer         buffer;
+	private       int                 fftSize;
+	private       int                 fftSize2;
+	private final ArrayDeque<float[]> spectrum     = new ArrayDeque<>();
+	private final ArrayDeque<float[]> spectrumFree = new ArrayDeque<>();
+	private       boolean             retainSpectrum;
+	private       float[]             block;
+	private       AudioFrame          blockFrame;
+	private       float               sRate;
+	private       float[]             power;
+	private       float               energy;
+	private       float[]             pcm0;
+	private       int                 pcm0rd;
+	private       float[]             pcm1;
+	private       int                 pcm1rd;
 	private       List<AbstractRenderCommand<IAudioRenderTarget>> fftCmds = new ArrayList<>();
 	
 	public FFT(float minFreq, Window windowType) {
@@ -85,6 +88,7 @@ public class FFT extends AbstractRenderCommand<IAudioRenderTarget> implements IP
 		fft      = new FloatFFT_1D(fftSize);
 		buffer   = new BlockBuffer(fftSize, true, windowType);
 		block    = new float[fftSize];
+		blockFrame = new AudioFrame(0, 1, sRate, block);
 		power    = new float[fftSize2];
 		pcm1     = new float[fftSize];
 		pcm1rd   = fftSize2;
@@ -149,11 +153,11 @@ public class FFT extends AbstractRenderCommand<IAudioRenderTarget> implements IP
 		if(frame.isModified()) {
 			for(int i = 0; i < samples.length; i += nChannels) {
 				if(pcm0rd >= fftSize) {
-					pcm0  = spectrum.remove(0);
+					pcm0  = nextSpectrum(pcm0);
 					pcm0rd = 0;
 				}
 				if(pcm1rd >= fftSize) {
-					pcm1  = spectrum.remove(0);
+					pcm1  = nextSpectrum(pcm1);
 					pcm1rd = 0;
 				}
 				pcm0rd++;
@@ -162,12 +166,12 @@ public class FFT extends AbstractRenderCommand<IAudioRenderTarget> implements IP
 		} else {
 			for(int i = 0; i < samples.length; i += nChannels) {
 				if(pcm0rd >= fftSize) {
-					pcm0  = spectrum.remove(0);
+					pcm0  = nextSpectrum(pcm0);
 					fft.realInverse(pcm0, true);
 					pcm0rd = 0;
 				}
 				if(pcm1rd >= fftSize) {
-					pcm1  = spectrum.remove(0);
+					pcm1  = nextSpectrum(pcm1);
 					fft.realInverse(pcm1, true);
 					pcm1rd = 0;
 				}
@@ -179,6 +183,21 @@ public class FFT extends AbstractRenderCommand<IAudioRenderTarget> implements IP
 		}
 	}
 
+	private float[] nextSpectrum(float[] current) {
+		if(current != null)
+			spectrumFree.add(current);
+		return spectrum.poll();
+	}
+
+	/**
+	 * Keep computed spectra for {@link #inverse(AudioFrame)}. Spectra are only retained
+	 * when an inverse transform consumes them.
+	 */
+	void setRetainSpectrum(boolean state) {
+		retainSpectrum = state;
+		if(!(state)) spectrum.clear();
+	}
+
 	public void modifySpectrum(IModifier<float[]> modifier) {
 		for(float[] spectrum : spectrum)
 			modifier.modify(spectrum);
@@ -190,13 +209,14 @@ public class FFT extends AbstractRenderCommand<IAudioRenderTarget> implements IP
 		buffer.add(frame.getMonoSamples());
 		int  nBlocks = 0;
 		float energy = 0;
-		for(block = buffer.nextBlock(); block  != null; block = buffer.nextBlock()) {
+		for(float[] b = buffer.nextBlock(); b != null; b = buffer.nextBlock()) {
 			if(nBlocks == 0)
 				Arrays.fill(power, 0f);
 
+			System.arraycopy(b, 0, block, 0, fftSize);
+			buffer.recycle(b);
 			energy += AudioUtilities.energy(block);
 			fft.realForward(block);
-			spectrum.add(block);
 			final int lim = block.length;
 			for(int i = 0; i < lim; i+= 2) {
 				final float  re = block[i+0];
@@ -207,10 +227,18 @@ public class FFT extends AbstractRenderCommand<IAudioRenderTarget> implements IP
 			nBlocks++;
 			
 			this.energy = energy;
-			target.setFrameInternal(new AudioFrame(frame.sTime, 1, target.getSampleRate(), block));
-			for(AbstractRenderCommand<IAudioRenderTarget> cmd : fftCmds)
-				cmd.runInternal(target);
+			blockFrame.reset(frame.sTime);
+			target.setFrameInternal(blockFrame);
+			for(int i = 0; i < fftCmds.size(); i++)
+				fftCmds.get(i).runInternal(target);
 			target.setFrameInternal(frame);
+			
+			if(retainSpectrum) {
+				float[] s = spectrumFree.poll();
+				if(s == null) s = new float[fftSize];
+				System.arraycopy(block, 0, s, 0, fftSize);
+				spectrum.add(s);
+			}
 		}
 
 		if(nBlocks > 0) {
@@ -40,6 +40,7 @@ public class InvFFT extends AbstractRenderCommand<IAudioRenderTarget> {
 
 	public InvFFT(FFT fft) {
 		this.fft = fft;
+		fft.setRetainSpectrum(true);
 	}
 
 	@Override
@@ -31,16 +31,27 @@
 
 package ch.fhnw.ether.controller.tool;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.WeakHashMap;
 
 import ch.fhnw.ether.scene.I3DObject;
 import ch.fhnw.ether.scene.camera.IViewCameraState;
 import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
 import ch.fhnw.ether.view.IView;
 import ch.fhnw.ether.view.ProjectionUtilities;
+import ch.fhnw.util.UpdateRequest;
+import ch.fhnw.util.UpdateRequest.IUpdateListener;
+import ch.fhnw.util.math.Mat4;
+import ch.fhnw.util.math.Vec3;
 import ch.fhnw.util.math.geometry.BoundingBox;
+import ch.fhnw.util.math.geometry.Frustum;
 import ch.fhnw.util.math.geometry.GeometryUtilities;
+import ch.fhnw.util.math.geometry.TriangleBVH;
 
 /**
  * Utilities for 3D object picking
@@ -53,16 +64,47 @@ public final class PickUtilities {
 
 	private static final float PICK_DISTANCE = 10;
 
+	// triangle hierarchies, built lazily per geometry and dropped on geometry
+	// updates. the listener must not reference the geometry, otherwise the
+	// weak key would never be released.
+	private static final class TriangleCache implements IUpdateListener {
+		volatile TriangleBVH bvh;
+
+		@Override
+		public void requested(UpdateRequest request) {
+			bvh = null;
+		}
+	}
+
+	private static final Map<IGeometry, TriangleCache> TRIANGLE_CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
 	public static Map<Float, I3DObject> pickFromScene(PickMode mode, float x, float y, float w, float h, IView view) {
 		IViewCameraState vcs = view.getController().getRenderManager().getViewCameraState(view);
+		Frustum frustum = new Frustum(vcs.getViewProjMatrix(), vcs.getViewport(), 
+									  x - PICK_DISTANCE, y - PICK_DISTANCE, x + w + PICK_DISTANCE, y + h + PICK_DISTANCE);
 		final Map<Float, I3DObject> pickables = new TreeMap<>();
-		for (I3DObject object : view.getController().getScene().get3DObjects()) {
+		view.getController().getScene().visit3DObjects(frustum::intersects, object -> {
 			float d = pickObject(mode, x, y, w, h, vcs, object);
 			if (d < Float.POSITIVE_INFINITY)
 				pickables.put(d, object);
-		}
+		});
 		return pickables;
 	}
+
+	/**
+	 * Returns all objects whose bounds intersect the given screen rectangle.
+	 */
+	public static List<I3DObject> selectFromScene(float x, float y, float w, float h, IView view) {
+		IViewCameraState vcs = view.getController().getRenderManager().getViewCameraState(view);
+		Frustum frustum = new Frustum(vcs.getViewProjMatrix(), vcs.getViewport(), x, y, x + w, y + h);
+		final List<I3DObject> selection = new ArrayList<>();
+		view.getController().getScene().visit3DObjects(frustum::intersects, object -> {
+			BoundingBox b = object.getBounds();
+			if (b != null && b.isValid())
+				selection.add(object);
+		});
+		return selection;
+	}
 	
 	public static float pickObject(PickMode mode, float x, float y, float w, float h, IViewCameraState vcs, I3DObject object) {
 		BoundingBox b = object.getBounds();
@@ -78,6 +120,9 @@ public final class PickUtilities {
 			return d;
 		
 		IMesh mesh = (IMesh)object;
+		if (mesh.getType() == IMesh.Primitive.TRIANGLES)
+			return pickTriangles(mode, x, y, w, h, vcs, mesh);
+
 		float[] data = mesh.getTransformedVertexData();
 		
 		switch (mesh.getType()) {
@@ -176,6 +221,52 @@ public final class PickUtilities {
 		return zMin;
 	}
 
+	/**
+	 * Picks triangles of mesh by casting a ray through its triangle
+	 * hierarchy, which is built on first use and kept until the mesh's
+	 * geometry changes.
+	 */
+	public static float pickTriangles(PickMode mode, float x, float y, float w, float h, IViewCameraState vcs, IMesh mesh) {
+		Vec3 p0 = ProjectionUtilities.unprojectFromScreen(vcs, new Vec3(x, y, 0));
+		Vec3 p1 = ProjectionUtilities.unprojectFromScreen(vcs, new Vec3(x, y, 1));
+		if (p0 == null || p1 == null)
+			return Float.POSITIVE_INFINITY;
+
+		// intersect in object space, t is invariant under the transform
+		Vec3 o = p0;
+		Vec3 d = p1.subtract(p0);
+		Mat4 transform = mesh.getTransform();
+		if (transform != Mat4.ID) {
+			Mat4 inv = transform.inverse();
+			if (inv == null)
+				return Float.POSITIVE_INFINITY;
+			o = inv.transform(p0);
+			d = inv.transform(p1).subtract(o);
+		}
+
+		float t = getTriangleBVH(mesh.getGeometry()).intersect(o, d);
+		if (t == Float.POSITIVE_INFINITY)
+			return Float.POSITIVE_INFINITY;
+		float z = ProjectionUtilities.projectToScreen(vcs, p0.add(p1.subtract(p0).scale(t))).z;
+		return z > 0 ? z : Float.POSITIVE_INFINITY;
+	}
+
+	private static TriangleBVH getTriangleBVH(IGeometry geometry) {
+		TriangleCache cache = TRIANGLE_CACHE.computeIfAbsent(geometry, g -> {
+			TriangleCache c = new TriangleCache();
+			g.getUpdater().addListener(c);
+			return c;
+		});
+		TriangleBVH bvh = cache.bvh;
+		if (bvh == null) {
+			// clear before reading, so concurrent updates invalidate the result
+			geometry.getUpdater().clear();
+			bvh = new TriangleBVH(geometry.getData()[0]);
+			if (!geometry.getUpdater().test())
+				cache.bvh = bvh;
+		}
+		return bvh;
+	}
 	
 	private static float hitLine2D(float x, float y, float x0, float y0, float x1, float y1) {
 		float dx = x1 - x0;
@@ -42,7 +42,11 @@ import ch.fhnw.ether.scene.mesh.material.IMaterial;
 
 public interface IModelReader {
 	enum Options {
-		CONVERT_TO_Z_UP
+		CONVERT_TO_Z_UP,
+		/** Keep a binary cache next to file based models and load from it if it is up to date. */
+		BINARY_CACHE,
+		/** Parse large model files with multiple threads. */
+		PARALLEL
 	}
 
 	ModelObject getObject();
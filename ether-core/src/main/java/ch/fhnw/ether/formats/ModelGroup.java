@@ -31,17 +31,27 @@
 
 package ch.fhnw.ether.formats;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.List;
 
+import ch.fhnw.util.IntList;
+
+/**
+ * Group of faces sharing a material. Faces are stored as flat index lists,
+ * missing normal or texture coordinate indices are stored as -1.
+ */
 public final class ModelGroup {
 	private final String name;
-	private final List<ModelFace> faces = new ArrayList<>();
+	private final IntList faceStarts = new IntList();
+	private final IntList vIndices = new IntList();
+	private final IntList nIndices = new IntList();
+	private final IntList tIndices = new IntList();
 
 	private ModelMaterial material;
 	
 	public ModelGroup(String name) {
 		this.name = name;
+		faceStarts.add(0);
 	}
 
 	public String getName() {
@@ -56,11 +66,141 @@ public final class ModelGroup {
 		this.material = material;
 	}
 
+	/**
+	 * Returns a view of the faces of this group. Faces are created on access.
+	 */
 	public List<ModelFace> getFaces() {
-		return faces;
+		return new AbstractList<ModelFace>() {
+			@Override
+			public ModelFace get(int index) {
+				return getFace(index);
+			}
+
+			@Override
+			public int size() {
+				return getNumFaces();
+			}
+
+			@Override
+			public boolean add(ModelFace face) {
+				addFace(face);
+				return true;
+			}
+		};
 	}
 
 	public void addFace(ModelFace face) {
-		faces.add(face);
+		addFace(face.getVertexIndices(), face.getNormalIndices(), face.getTexCoordIndices(), face.getVertexIndices().length);
+	}
+
+	/**
+	 * Add face with count vertices. Normal and texture coordinate indices may
+	 * be null, or contain -1 for missing indices.
+	 */
+	public void addFace(int[] vIndices, int[] nIndices, int[] tIndices, int count) {
+		for (int i = 0; i < count; i++) {
+			this.vIndices.add(vIndices[i]);
+			this.nIndices.add(nIndices != null ? nIndices[i] : -1);
+			this.tIndices.add(tIndices != null ? tIndices[i] : -1);
+		}
+		faceStarts.add(this.vIndices.size());
+	}
+
+	/**
+	 * Appends all faces of group to this group.
+	 */
+	public void addFaces(ModelGroup group) {
+		int offset = vIndices.size();
+		vIndices.addAll(group.vIndices);
+		nIndices.addAll(group.nIndices);
+		tIndices.addAll(group.tIndices);
+		faceStarts.ensureCapacity(faceStarts.size() + group.getNumFaces());
+		for (int i = 1; i < group.faceStarts.size(); i++)
+			faceStarts.add(offset + group.faceStarts.get(i));
+	}
+
+	public int getNumFaces() {
+		return faceStarts.size() - 1;
+	}
+
+	/**
+	 * Returns the index of the first vertex of face in the flat index lists.
+	 */
+	public int getFaceStart(int face) {
+		return faceStarts.get(face);
+	}
+
+	public int getFaceSize(int face) {
+		return faceStarts.get(face + 1) - faceStarts.get(face);
+	}
+
+	public int getVertexIndex(int index) {
+		return vIndices.get(index);
+	}
+
+	/**
+	 * Returns normal index, or -1 if none.
+	 */
+	public int getNormalIndex(int index) {
+		return nIndices.get(index);
+	}
+
+	/**
+	 * Returns texture coordinate index, or -1 if none.
+	 */
+	public int getTexCoordIndex(int index) {
+		return tIndices.get(index);
+	}
+
+	public boolean hasNormals(int face) {
+		return hasAny(nIndices, face);
+	}
+
+	public boolean hasTexCoords(int face) {
+		return hasAny(tIndices, face);
+	}
+
+	public ModelFace getFace(int face) {
+		int start = getFaceStart(face);
+		int size = getFaceSize(face);
+		int[] vs = new int[size];
+		for (int i = 0; i < size; i++)
+			vs[i] = vIndices.get(start + i);
+		return new ModelFace(vs, hasNormals(face) ? get(nIndices, start, size) : null, hasTexCoords(face) ? get(tIndices, start, size) : null);
+	}
+
+	/**
+	 * Returns the raw face start offsets, including the end offset of the last
+	 * face, i.e. getNumFaces() + 1 entries.
+	 */
+	public IntList getFaceStarts() {
+		return faceStarts;
+	}
+
+	public IntList getVertexIndices() {
+		return vIndices;
+	}
+
+	public IntList getNormalIndices() {
+		return nIndices;
+	}
+
+	public IntList getTexCoordIndices() {
+		return tIndices;
+	}
+
+	private boolean hasAny(IntList indices, int face) {
+		for (int i = getFaceStart(face), end = getFaceStart(face + 1); i < end; i++)
+			if (indices.get(i) >= 0)
+				return true;
+		return false;
+	}
+
+	// missing indices of a face that has some are returned as 0
+	private static int[] get(IntList indices, int start, int size) {
+		int[] result = new int[size];
+		for (int i = 0; i < size; i++)
+			result[i] = Math.max(0, indices.get(start + i));
+		return result;
 	}
 }
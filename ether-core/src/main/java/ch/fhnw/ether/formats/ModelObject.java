@@ -32,12 +32,18 @@
 package ch.fhnw.ether.formats;
 
 import java.net.URL;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
 import ch.fhnw.ether.scene.mesh.DefaultMesh;
@@ -49,6 +55,7 @@ import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
 import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
 import ch.fhnw.ether.scene.mesh.material.IMaterial;
 import ch.fhnw.ether.scene.mesh.material.ShadedMaterial;
+import ch.fhnw.util.FloatList;
 import ch.fhnw.util.IntList;
 import ch.fhnw.util.TextUtilities;
 import ch.fhnw.util.color.RGB;
@@ -57,12 +64,20 @@ import ch.fhnw.util.math.Vec3;
 import ch.fhnw.util.math.geometry.BoundingBox;
 import ch.fhnw.util.math.tessellator.Triangulation;
 
+/**
+ * Model data as read from a model file. Vertices, normals and texture
+ * coordinates are stored as flat float lists (xyz, xyz, uv) which are also
+ * exposed as vector list views for convenience.
+ */
 public class ModelObject {
+	private static final ExecutorService POOL = ForkJoinPool.commonPool();
+	private static final int MIN_PARALLEL_FACES = 16384;
+
 	private final URL resource;
 
-	private final List<Vec3> vertices = new ArrayList<>();
-	private final List<Vec3> normals = new ArrayList<>();
-	private final List<Vec2> texCoords = new ArrayList<>();
+	private final FloatList vertices = new FloatList();
+	private final FloatList normals = new FloatList();
+	private final FloatList texCoords = new FloatList();
 
 	private final List<ModelGroup> groups = new ArrayList<>();
 
@@ -83,14 +98,60 @@ public class ModelObject {
 	}
 
 	public List<Vec3> getVertices() {
-		return vertices;
+		return new Vec3List(vertices);
 	}
 
 	public List<Vec3> getNormals() {
-		return normals;
+		return new Vec3List(normals);
 	}
 
 	public List<Vec2> getTexCoords() {
+		return new AbstractList<Vec2>() {
+			@Override
+			public Vec2 get(int index) {
+				return new Vec2(texCoords.get(index * 2), texCoords.get(index * 2 + 1));
+			}
+
+			@Override
+			public Vec2 set(int index, Vec2 element) {
+				Vec2 result = get(index);
+				texCoords.set(index * 2, element.x);
+				texCoords.set(index * 2 + 1, element.y);
+				return result;
+			}
+
+			@Override
+			public boolean add(Vec2 element) {
+				texCoords.add(element.x);
+				texCoords.add(element.y);
+				return true;
+			}
+
+			@Override
+			public int size() {
+				return texCoords.size() / 2;
+			}
+		};
+	}
+
+	/**
+	 * Returns the raw vertex data (xyz triples).
+	 */
+	public FloatList getVertexData() {
+		return vertices;
+	}
+
+	/**
+	 * Returns the raw normal data (xyz triples).
+	 */
+	public FloatList getNormalData() {
+		return normals;
+	}
+
+	/**
+	 * Returns the raw texture coordinate data (uv pairs).
+	 */
+	public FloatList getTexCoordData() {
 		return texCoords;
 	}
 
@@ -105,19 +166,21 @@ public class ModelObject {
 	public BoundingBox getBounds() {
 		if (bounds == null) {
 			bounds = new BoundingBox();
-			bounds.add(getVertices());
+			float[] vs = vertices._getArray();
+			for (int i = 0; i < vertices.size(); i += 3)
+				bounds.add(vs[i], vs[i + 1], vs[i + 2]);
 		}
 		return bounds;
 	}
 
 	public List<List<Vec3>> getExpandedVertices() {
+		List<Vec3> vertices = getVertices();
 		List<List<Vec3>> vv = new ArrayList<>();
 		for (ModelGroup g : groups) {
-			for (ModelFace f : g.getFaces()) {
+			for (int f = 0; f < g.getNumFaces(); f++) {
 				List<Vec3> v = new ArrayList<>();
-				for (int i : f.getVertexIndices()) {
-					v.add(vertices.get(i));
-				}
+				for (int i = g.getFaceStart(f), end = g.getFaceStart(f + 1); i < end; i++)
+					v.add(vertices.get(g.getVertexIndex(i)));
 				vv.add(v);
 			}
 		}
@@ -125,13 +188,13 @@ public class ModelObject {
 	}
 
 	public List<List<Vec3>> getExpandedNormals() {
+		List<Vec3> normals = getNormals();
 		List<List<Vec3>> vv = new ArrayList<>();
 		for (ModelGroup g : groups) {
-			for (ModelFace f : g.getFaces()) {
+			for (int f = 0; f < g.getNumFaces(); f++) {
 				List<Vec3> v = new ArrayList<>();
-				for (int i : f.getNormalIndices()) {
-					v.add(normals.get(i));
-				}
+				for (int i = g.getFaceStart(f), end = g.getFaceStart(f + 1); i < end; i++)
+					v.add(normals.get(Math.max(0, g.getNormalIndex(i))));
 				vv.add(v);
 			}
 		}
@@ -139,13 +202,13 @@ public class ModelObject {
 	}
 
 	public List<List<Vec2>> getExpandedTexCoords() {
+		List<Vec2> texCoords = getTexCoords();
 		List<List<Vec2>> vv = new ArrayList<>();
 		for (ModelGroup g : groups) {
-			for (ModelFace f : g.getFaces()) {
+			for (int f = 0; f < g.getNumFaces(); f++) {
 				List<Vec2> v = new ArrayList<>();
-				for (int i : f.getNormalIndices()) {
-					v.add(texCoords.get(i));
-				}
+				for (int i = g.getFaceStart(f), end = g.getFaceStart(f + 1); i < end; i++)
+					v.add(texCoords.get(Math.max(0, g.getTexCoordIndex(i))));
 				vv.add(v);
 			}
 		}
@@ -163,44 +226,16 @@ public class ModelObject {
 	public List<IMesh> getMeshes(IMaterial requestedMaterial, Function<String, String> namingPattern, Queue queue, Set<Flag> flags) {
 		final List<IMesh> meshes = new ArrayList<>();
 
-		List<Vec3> vertices = getVertices();
-		List<Vec3> normals = getNormals();
-		List<Vec2> texCoords = getTexCoords();
-
 		Map<ModelMaterial, IMaterial> materials = new IdentityHashMap<>();
-		
-		for (ModelGroup group : getGroups()) {
-			List<ModelFace> faces = group.getFaces();
-			if (faces.isEmpty())
-				continue;
-			boolean hasNormals = faces.get(0).getNormalIndices() != null;
-			boolean hasTexCoords = faces.get(0).getTexCoordIndices() != null;
-
-			List<Vec3> triVertices = new ArrayList<>();
-			List<Vec3> triNormals = hasNormals ? new ArrayList<>() : null;
-			List<Vec2> triTexCoords = hasTexCoords ? new ArrayList<>() : null;
-
-			for (ModelFace face : group.getFaces()) {
-				final int[] vs = face.getVertexIndices();
-				final int[] ns = face.getNormalIndices();
-				final int[] ts = face.getTexCoordIndices();
-
-				List<Vec3> polyVertices = new ArrayList<>();
-				for (int i = 0; i < vs.length; ++i) {
-					polyVertices.add(vertices.get(vs[i]));
-				}
-
-				IntList triangulation = Triangulation.triangulate(Vec3.toArray(polyVertices));
 
-				for (int i = 0; i < triangulation.size(); ++i) {
-					int idx = triangulation.get(i);
-					triVertices.add(vertices.get(vs[idx]));
-					if (hasNormals)
-						triNormals.add(ns != null ? normals.get(ns[idx]) : Vec3.Z);
-					if (hasTexCoords)
-						triTexCoords.add(ts != null ? texCoords.get(ts[idx]) : Vec2.ZERO);
-				}
-			}
+		List<ModelGroup> groups = new ArrayList<>();
+		for (ModelGroup group : getGroups())
+			if (group.getNumFaces() > 0)
+				groups.add(group);
+		IGeometry[] geometries = triangulate(groups);
+		
+		for (int i = 0; i < groups.size(); i++) {
+			ModelGroup group = groups.get(i);
 
 			// TODO: improve material handling
 			IMaterial material;
@@ -220,17 +255,7 @@ public class ModelObject {
 				}
 			}
 			
-			float[] tv = Vec3.toArray(triVertices);
-			float[] tn = Vec3.toArray(triNormals);
-			float[] tt = Vec2.toArray(triTexCoords);
-			
-			IGeometry geometry;
-			if (hasTexCoords)
-				geometry = DefaultGeometry.createVNM(tv, tn, tt);
-			else
-				geometry = DefaultGeometry.createVN(tv, tn);
-
-			DefaultMesh mesh = new DefaultMesh(Primitive.TRIANGLES, material, geometry, queue, flags);
+			DefaultMesh mesh = new DefaultMesh(Primitive.TRIANGLES, material, geometries[i], queue, flags);
 			mesh.setName(namingPattern.apply(group.getName()));
 			meshes.add(mesh);
 		}
@@ -240,4 +265,155 @@ public class ModelObject {
 	public String getMeshName(ModelGroup group){
 		return TextUtilities.getFileName(getResource().getFile()) + '/' + group.getName();
 	}
+
+	/**
+	 * Triangulates groups, in parallel if there are several groups and enough
+	 * faces to make it worthwhile.
+	 */
+	private IGeometry[] triangulate(List<ModelGroup> groups) {
+		IGeometry[] result = new IGeometry[groups.size()];
+		int numFaces = 0;
+		for (ModelGroup group : groups)
+			numFaces += group.getNumFaces();
+		if (groups.size() < 2 || numFaces < MIN_PARALLEL_FACES) {
+			for (int i = 0; i < result.length; i++)
+				result[i] = triangulate(groups.get(i));
+			return result;
+		}
+
+		List<Future<IGeometry>> futures = new ArrayList<>(groups.size());
+		for (ModelGroup group : groups)
+			futures.add(POOL.submit(() -> triangulate(group)));
+		try {
+			for (int i = 0; i < result.length; i++)
+				result[i] = futures.get(i).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Triangulates the faces of a group directly into the geometry arrays.
+	 * Triangles are copied as they are, other polygons are triangulated.
+	 */
+	private IGeometry triangulate(ModelGroup group) {
+		final boolean hasNormals = group.hasNormals(0);
+		final boolean hasTexCoords = group.hasTexCoords(0);
+
+		int numTriangles = 0;
+		for (int f = 0; f < group.getNumFaces(); f++)
+			numTriangles += Math.max(0, group.getFaceSize(f) - 2);
+
+		final float[] vs = vertices._getArray();
+		final float[] ns = normals._getArray();
+		final float[] ts = texCoords._getArray();
+
+		float[] tv = new float[numTriangles * 9];
+		float[] tn = hasNormals ? new float[numTriangles * 9] : null;
+		float[] tt = hasTexCoords ? new float[numTriangles * 6] : null;
+
+		IntList fan = new IntList();
+		int vi = 0;
+		int ti = 0;
+		for (int f = 0; f < group.getNumFaces(); f++) {
+			final int start = group.getFaceStart(f);
+			final int size = group.getFaceSize(f);
+
+			IntList triangulation;
+			if (size == 3) {
+				if (fan.size() != 3) {
+					fan.clear();
+					fan.add(0);
+					fan.add(1);
+					fan.add(2);
+				}
+				triangulation = fan;
+			} else {
+				float[] polygon = new float[size * 3];
+				for (int i = 0; i < size; i++)
+					System.arraycopy(vs, group.getVertexIndex(start + i) * 3, polygon, i * 3, 3);
+				triangulation = Triangulation.triangulate(polygon);
+			}
+
+			// triangulation may return fewer vertices than allocated for degenerate polygons
+			if (vi + triangulation.size() * 3 > tv.length) {
+				tv = Arrays.copyOf(tv, vi + triangulation.size() * 3);
+				if (hasNormals)
+					tn = Arrays.copyOf(tn, vi + triangulation.size() * 3);
+				if (hasTexCoords)
+					tt = Arrays.copyOf(tt, ti + triangulation.size() * 2);
+			}
+
+			for (int i = 0; i < triangulation.size(); i++) {
+				int idx = start + triangulation.get(i);
+				System.arraycopy(vs, group.getVertexIndex(idx) * 3, tv, vi, 3);
+				if (hasNormals) {
+					int n = group.getNormalIndex(idx);
+					if (n >= 0)
+						System.arraycopy(ns, n * 3, tn, vi, 3);
+					else
+						tn[vi + 2] = 1;
+				}
+				vi += 3;
+				if (hasTexCoords) {
+					int t = group.getTexCoordIndex(idx);
+					if (t >= 0)
+						System.arraycopy(ts, t * 2, tt, ti, 2);
+					ti += 2;
+				}
+			}
+		}
+		if (vi != tv.length) {
+			tv = Arrays.copyOf(tv, vi);
+			if (hasNormals)
+				tn = Arrays.copyOf(tn, vi);
+			if (hasTexCoords)
+				tt = Arrays.copyOf(tt, ti);
+		}
+
+		// without normals, createVN/VNM compute face normals
+		if (hasTexCoords)
+			return DefaultGeometry.createVNM(tv, tn, tt);
+		return DefaultGeometry.createVN(tv, tn);
+	}
+
+	private static final class Vec3List extends AbstractList<Vec3> {
+		private final FloatList data;
+
+		Vec3List(FloatList data) {
+			this.data = data;
+		}
+
+		@Override
+		public Vec3 get(int index) {
+			return new Vec3(data.get(index * 3), data.get(index * 3 + 1), data.get(index * 3 + 2));
+		}
+
+		@Override
+		public Vec3 set(int index, Vec3 element) {
+			Vec3 result = get(index);
+			data.set(index * 3, element.x);
+			data.set(index * 3 + 1, element.y);
+			data.set(index * 3 + 2, element.z);
+			return result;
+		}
+
+		@Override
+		public boolean add(Vec3 element) {
+			data.add(element.x);
+			data.add(element.y);
+			data.add(element.z);
+			return true;
+		}
+
+		@Override
+		public int size() {
+			return data.size() / 3;
+		}
+	}
 }
@@ -31,29 +31,31 @@
 
 package ch.fhnw.ether.formats;
 
-import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import ch.fhnw.ether.image.IGPUImage;
+import ch.fhnw.ether.image.ImageCache;
 
-// XXX where should we cache images / textures??? also, images are mutable, so we need to be careful (e.g. cache a copy)
+/**
+ * Loads textures through the shared GPU image cache, see
+ * {@link ImageCache#GPU} for the budget and metrics.
+ */
 public final class TextureLoader {
 	private TextureLoader() {
 	}
 
-	private static final Map<String, IGPUImage> IMAGE_CACHE = new HashMap<>();
-
 	public static IGPUImage loadTexture(String path) {
-		IGPUImage image = IMAGE_CACHE.get(path);
-		if (image == null) {
-			try {
-				image = IGPUImage.read(new File(path));
-				IMAGE_CACHE.put(path, image);
-			} catch (Exception e) {
-				System.err.println("can't load texture image: " + path);
-			}
-		}
+		IGPUImage image = ImageCache.GPU.get(path);
+		if (image == null)
+			System.err.println("can't load texture image: " + path);
 		return image;
 	}
+
+	/**
+	 * Loads a texture on a loader thread, e.g. to keep decoding off the render
+	 * thread.
+	 */
+	public static CompletableFuture<IGPUImage> loadTextureAsync(String path) {
+		return ImageCache.GPU.getAsync(path);
+	}
 }
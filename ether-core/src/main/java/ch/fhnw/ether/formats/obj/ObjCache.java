@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.formats.obj;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import ch.fhnw.ether.formats.ModelGroup;
+import ch.fhnw.ether.formats.ModelMaterial;
+import ch.fhnw.ether.formats.ModelObject;
+import ch.fhnw.util.FloatList;
+import ch.fhnw.util.IntList;
+import ch.fhnw.util.Log;
+
+/**
+ * Binary cache of a parsed OBJ file, stored next to the source file. The
+ * cache contains the raw vertex and index arrays and is read back with bulk
+ * copies from a memory mapped file. Material libraries are referenced by name
+ * and parsed again on load. A cache is only used if length and modification
+ * time of the source file and the parse options match.
+ */
+final class ObjCache {
+	private static final Log log = Log.create();
+
+	private static final String SUFFIX  = ".cache";
+	private static final int    MAGIC   = 0x454f424a; // 'EOBJ'
+	private static final int    VERSION = 1;
+
+	private ObjCache() {
+	}
+
+	static File getCacheFile(File source) {
+		return new File(source.getPath() + SUFFIX);
+	}
+
+	/**
+	 * Loads the cache of source into the parser's object. Returns false if
+	 * there is no valid cache, in which case the object is left untouched.
+	 */
+	static boolean read(File source, ObjParser parser) {
+		File cache = getCacheFile(source);
+		if (!cache.isFile() || cache.lastModified() < source.lastModified())
+			return false;
+		try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer in = channel.map(MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+			if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != source.length() || in.getLong() != source.lastModified() || (in.get() != 0) != parser.isConvertToZUp())
+				return false;
+
+			// parse everything before touching the object, so a truncated cache does not leave partial data
+			String[] libraries = new String[in.getInt()];
+			for (int i = 0; i < libraries.length; i++)
+				libraries[i] = getString(in);
+			float[] vertices = getFloats(in);
+			float[] normals = getFloats(in);
+			float[] texCoords = getFloats(in);
+			int numGroups = in.getInt();
+			ModelGroup[] groups = new ModelGroup[numGroups];
+			String[] materials = new String[numGroups];
+			for (int i = 0; i < numGroups; i++) {
+				groups[i] = new ModelGroup(getString(in));
+				materials[i] = in.get() != 0 ? getString(in) : null;
+				getInts(in, groups[i].getFaceStarts());
+				getInts(in, groups[i].getVertexIndices());
+				getInts(in, groups[i].getNormalIndices());
+				getInts(in, groups[i].getTexCoordIndices());
+			}
+
+			ModelObject object = parser.getObject();
+			for (String library : libraries)
+				parser.parseMtllib(library);
+			object.getVertexData().addAll(vertices);
+			object.getNormalData().addAll(normals);
+			object.getTexCoordData().addAll(texCoords);
+			for (int i = 0; i < numGroups; i++) {
+				if (materials[i] != null)
+					groups[i].setMaterial(object.getMaterials().get(materials[i]));
+				object.getGroups().add(groups[i]);
+			}
+			return true;
+		} catch (Exception e) {
+			log.warning("Ignoring invalid OBJ cache '" + cache + "': " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the parser's object to the cache of source. Failures are logged
+	 * and otherwise ignored.
+	 */
+	static void write(File source, ObjParser parser) {
+		File cache = getCacheFile(source);
+		File tmp = new File(cache.getPath() + ".tmp");
+		ModelObject object = parser.getObject();
+		try {
+			try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer out = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+				out.putInt(MAGIC);
+				out.putInt(VERSION);
+				out.putLong(source.length());
+				out.putLong(source.lastModified());
+				out.put((byte) (parser.isConvertToZUp() ? 1 : 0));
+				out.putInt(parser.getMaterialLibraries().size());
+				for (String library : parser.getMaterialLibraries())
+					out = putString(channel, out, library);
+				out = putFloats(channel, out, object.getVertexData());
+				out = putFloats(channel, out, object.getNormalData());
+				out = putFloats(channel, out, object.getTexCoordData());
+				out.putInt(object.getGroups().size());
+				for (ModelGroup group : object.getGroups()) {
+					ModelMaterial material = group.getMaterial();
+					out = putString(channel, out, group.getName());
+					out = flush(channel, out, 1);
+					out.put((byte) (material != null ? 1 : 0));
+					if (material != null)
+						out = putString(channel, out, material.getName());
+					out = putInts(channel, out, group.getFaceStarts());
+					out = putInts(channel, out, group.getVertexIndices());
+					out = putInts(channel, out, group.getNormalIndices());
+					out = putInts(channel, out, group.getTexCoordIndices());
+				}
+				flush(channel, out, out.capacity());
+			}
+			Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			log.warning("Could not write OBJ cache '" + cache + "': " + e);
+			tmp.delete();
+		}
+	}
+
+	private static String getString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static float[] getFloats(ByteBuffer in) {
+		float[] result = new float[in.getInt()];
+		in.asFloatBuffer().get(result);
+		in.position(in.position() + result.length * 4);
+		return result;
+	}
+
+	private static void getInts(ByteBuffer in, IntList result) {
+		int[] values = new int[in.getInt()];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + values.length * 4);
+		result.clear();
+		result.addAll(values);
+	}
+
+	/**
+	 * Writes out the buffer if less than count bytes remain, returns a buffer
+	 * with at least count bytes remaining.
+	 */
+	private static ByteBuffer flush(FileChannel channel, ByteBuffer out, int count) throws IOException {
+		if (out.remaining() >= count)
+			return out;
+		out.flip();
+		while (out.hasRemaining())
+			channel.write(out);
+		out.clear();
+		if (out.capacity() < count)
+			out = ByteBuffer.allocate(count).order(ByteOrder.LITTLE_ENDIAN);
+		return out;
+	}
+
+	private static ByteBuffer putString(FileChannel channel, ByteBuffer out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out = flush(channel, out, 4 + bytes.length);
+		out.putInt(bytes.length);
+		out.put(bytes);
+		return out;
+	}
+
+	private static ByteBuffer putFloats(FileChannel channel, ByteBuffer out, FloatList values) throws IOException {
+		float[] array = values._getArray();
+		out = flush(channel, out, 4);
+		out.putInt(values.size());
+		for (int i = 0; i < values.size();) {
+			out = flush(channel, out, 4);
+			int count = Math.min(values.size() - i, out.remaining() / 4);
+			out.asFloatBuffer().put(array, i, count);
+			out.position(out.position() + count * 4);
+			i += count;
+		}
+		return out;
+	}
+
+	private static ByteBuffer putInts(FileChannel channel, ByteBuffer out, IntList values) throws IOException {
+		int[] array = values._getArray();
+		out = flush(channel, out, 4);
+		out.putInt(values.size());
+		for (int i = 0; i < values.size();) {
+			out = flush(channel, out, 4);
+			int count = Math.min(values.size() - i, out.remaining() / 4);
+			out.asIntBuffer().put(array, i, count);
+			out.position(out.position() + count * 4);
+			i += count;
+		}
+		return out;
+	}
+}
@@ -31,34 +31,119 @@
 
 package ch.fhnw.ether.formats.obj;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-import ch.fhnw.ether.formats.ModelFace;
 import ch.fhnw.ether.formats.ModelGroup;
 import ch.fhnw.ether.formats.ModelObject;
-import ch.fhnw.util.ArrayUtilities;
+import ch.fhnw.util.FloatList;
 import ch.fhnw.util.Log;
-import ch.fhnw.util.TextUtilities;
-import ch.fhnw.util.math.Vec2;
-import ch.fhnw.util.math.Vec3;
 
+/**
+ * OBJ parser working directly on bytes. Files are memory mapped, streams are
+ * read in chunks. Numbers are parsed in place and appended to the primitive
+ * lists of the model object, so apart from group and material names no
+ * objects are allocated per line.
+ * <p>
+ * In parallel mode, mapped files are split into line aligned chunks. A first
+ * pass counts the vertex records of each chunk, so every chunk parser knows
+ * the global index base for relative face indices. The chunks are then
+ * parsed concurrently and merged in file order, replaying group, material
+ * and material library changes as they occurred.
+ */
 final class ObjParser {
 	private static final Log log = Log.create();
+
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private static final ExecutorService POOL = ForkJoinPool.commonPool();
+	private static final int NUM_CHUNKS = Runtime.getRuntime().availableProcessors();
+	private static final int MIN_PARALLEL_CHUNK_SIZE = 1 << 20;
+
+	private static final byte[] MTLLIB = "mtllib".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] USEMTL = "usemtl".getBytes(StandardCharsets.US_ASCII);
+
+	private static final double[] POW10 = new double[23];
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++)
+			POW10[i] = POW10[i - 1] * 10;
+	}
 	
+	private enum SegmentType {
+		MTLLIB, GROUP, USEMTL, CONTINUE
+	}
+
+	/**
+	 * Group or material change recorded by a chunk parser, replayed on merge.
+	 */
+	private static final class Segment {
+		final SegmentType type;
+		final String name;
+		final ModelGroup group;
+
+		Segment(SegmentType type, String name, ModelGroup group) {
+			this.type = type;
+			this.name = name;
+			this.group = group;
+		}
+	}
+
 	private final ModelObject object;
 	private final boolean convertToZUp;
+	private final boolean parallel;
 
 	private final String path;
 
+	// chunk parsers only
+	private final List<Segment> segments;
+	private int vertexBase;
+	private int normalBase;
+	private int texCoordBase;
+
+	private final FloatList vertices;
+	private final FloatList normals;
+	private final FloatList texCoords;
+	private final List<String> materialLibraries = new ArrayList<>();
+
 	private ModelGroup currentGroup;
 
+	private ByteBuffer buffer;
+	private int pos;
+	private int end;
+	private int line;
+
+	private int[] vIndices = new int[8];
+	private int[] nIndices = new int[8];
+	private int[] tIndices = new int[8];
+
 	public ObjParser(ModelObject object, boolean convertToZUp) {
+		this(object, convertToZUp, false);
+	}
+
+	public ObjParser(ModelObject object, boolean convertToZUp, boolean parallel) {
 		this.object = object;
 		this.convertToZUp = convertToZUp;
+		this.parallel = parallel;
+		this.segments = null;
+		this.vertices = object.getVertexData();
+		this.normals = object.getNormalData();
+		this.texCoords = object.getTexCoordData();
 		
 		// obtain context path (for mtl and textures)
 		String file = object.getResource().getFile();
@@ -76,176 +161,557 @@ final class ObjParser {
 	public ObjParser(boolean convertToZUp, ModelObject object){
 		this.convertToZUp = convertToZUp;
 		this.object = object;
+		this.parallel = false;
+		this.segments = null;
+		this.vertices = object.getVertexData();
+		this.normals = object.getNormalData();
+		this.texCoords = object.getTexCoordData();
 		path = null;
 	}
+
+	private ObjParser(ObjParser parent) {
+		this.object = parent.object;
+		this.convertToZUp = parent.convertToZUp;
+		this.parallel = false;
+		this.path = parent.path;
+		this.segments = new ArrayList<>();
+		this.vertices = new FloatList();
+		this.normals = new FloatList();
+		this.texCoords = new FloatList();
+	}
+
+	ModelObject getObject() {
+		return object;
+	}
+
+	boolean isConvertToZUp() {
+		return convertToZUp;
+	}
+
+	/**
+	 * Returns the names of the material libraries referenced so far.
+	 */
+	List<String> getMaterialLibraries() {
+		return materialLibraries;
+	}
 	
 	public void parse() throws IOException {
-		parse(object.getResource().openStream());
+		File file = getFile(object.getResource());
+		if (file == null || file.length() > Integer.MAX_VALUE) {
+			parse(object.getResource().openStream());
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer data = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (parallel)
+				parseParallel(data);
+			else
+				parse(data);
+		}
+	}
+
+	public void parseParallel(ByteBuffer data) {
+		final int from = data.position();
+		final int to = data.limit();
+		final int numChunks = Math.min(NUM_CHUNKS, (to - from) / MIN_PARALLEL_CHUNK_SIZE);
+		if (numChunks < 2) {
+			parse(data);
+			return;
+		}
+
+		// line aligned chunk boundaries
+		int[] bounds = new int[numChunks + 1];
+		bounds[0] = from;
+		for (int i = 1; i < numChunks; i++) {
+			int bound = Math.max(bounds[i - 1], from + (int) ((long) (to - from) * i / numChunks));
+			while (bound < to && data.get(bound++) != '\n')
+				;
+			bounds[i] = bound;
+		}
+		bounds[numChunks] = to;
+
+		// count records, then parse each chunk with its global index base
+		List<ObjParser> chunks = new ArrayList<>(numChunks);
+		List<Future<int[]>> counts = new ArrayList<>(numChunks);
+		for (int i = 0; i < numChunks; i++) {
+			final int chunkFrom = bounds[i];
+			final int chunkTo = bounds[i + 1];
+			chunks.add(new ObjParser(this));
+			counts.add(POOL.submit(() -> count(data, chunkFrom, chunkTo)));
+		}
+		int[] base = { vertices.size() / 3, normals.size() / 3, texCoords.size() / 2, 1 };
+		List<Future<?>> results = new ArrayList<>(numChunks);
+		for (int i = 0; i < numChunks; i++) {
+			final ObjParser chunk = chunks.get(i);
+			final int chunkFrom = bounds[i];
+			final int chunkTo = bounds[i + 1];
+			chunk.vertexBase = base[0];
+			chunk.normalBase = base[1];
+			chunk.texCoordBase = base[2];
+			chunk.line = base[3];
+			int[] count = get(counts.get(i));
+			for (int j = 0; j < base.length; j++)
+				base[j] += count[j];
+			results.add(POOL.submit(() -> chunk.parseChunk(data.duplicate(), chunkFrom, chunkTo)));
+		}
+		for (Future<?> result : results)
+			get(result);
+
+		vertices.ensureCapacity(base[0] * 3);
+		normals.ensureCapacity(base[1] * 3);
+		texCoords.ensureCapacity(base[2] * 2);
+		for (ObjParser chunk : chunks)
+			merge(chunk);
+	}
+
+	public void parse(ByteBuffer data) {
+		line = 1;
+		try {
+			parseLines(data, data.position(), data.limit());
+		} catch (Exception e) {
+			throw new RuntimeException("Error reading OBJ file:'" + object.getResource() + "' (line " + line + ")", e);
+		}
 	}
 
 	public void parse(InputStream input) {
-		int line = 1;
-		try (BufferedReader in = new BufferedReader(new InputStreamReader(input))) {
-			for (String string = null; (string = in.readLine()) != null;) {
-				parseLine(string, line);
-				line++;
+		line = 1;
+		try (InputStream in = input) {
+			byte[] chunk = new byte[CHUNK_SIZE];
+			ByteBuffer data = ByteBuffer.wrap(chunk);
+			int fill = 0;
+			for (;;) {
+				if (fill == chunk.length) {
+					// line longer than chunk
+					chunk = Arrays.copyOf(chunk, chunk.length * 2);
+					data = ByteBuffer.wrap(chunk);
+				}
+				int read = in.read(chunk, fill, chunk.length - fill);
+				if (read < 0) {
+					parseLines(data, 0, fill);
+					break;
+				}
+				int last = fill + read - 1;
+				while (last >= fill && chunk[last] != '\n')
+					last--;
+				boolean complete = last >= fill;
+				fill += read;
+				if (!complete)
+					continue;
+				parseLines(data, 0, last + 1);
+				fill -= last + 1;
+				System.arraycopy(chunk, last + 1, chunk, 0, fill);
 			}
 		} catch (Exception e) {
-			e.printStackTrace();
-			throw new RuntimeException("Error reading OBJ file:'" + object.getResource() + "' (line " + line + ")");
+			throw new RuntimeException("Error reading OBJ file:'" + object.getResource() + "' (line " + line + ")", e);
 		}
 	}
 
-	private void parseLine(String string, int line) {
-		if ("".equals(string))
+	void parseMtllib(String file) {
+		if (segments != null) {
+			segments.add(new Segment(SegmentType.MTLLIB, file, null));
 			return;
+		}
+		materialLibraries.add(file);
+		new MtlParser(object, path, file).parse();
+	}
 
-		String[] words = TextUtilities.tokens(string);
+	private void parseChunk(ByteBuffer data, int from, int to) {
+		try {
+			parseLines(data, from, to);
+		} catch (Exception e) {
+			throw new RuntimeException("Error reading OBJ file:'" + object.getResource() + "' (line " + line + ")", e);
+		}
+	}
 
-		for(int i = 0; i < words.length; i++)
-			if(words[i].startsWith("#"))
-				words = ArrayUtilities.keep(words, i);
-		
-		if (words.length == 0)
-			return;
-		
-		switch (words[0]) {
-		case "v":
-			parseVertex(words);
-			break;
-		case "vn":
-			parseNormal(words);
-			break;
-		case "vt":
-			parseTexCoord(words);
-			break;
-		case "f":
-			parseFace(words);
-			break;
-		case "mtllib":
-			parseMtllib(words);
-			break;
-		case "usemtl":
-			parseUsemtl(words);
-			break;
-		case "g":
-		case "o":
-			parseGroup(words);
-			break;
-		case "s":
-			// TODO: we silently ignore smoothing groups
-			break;
-		case "l":
-			// TODO: we silently ignore lines
-			break;
-		default:
-			log.warning("Ignoring unknown OBJ key '" + words[0] + "' (line " + line + ")");
-		}
-	}
-
-	private static String[] expand(String[] words, int count) {
-		if(words.length >= count) return words;
-		String[] result = Arrays.copyOf(words, count);
-		for(int i = words.length; i < result.length; i++) result[i] = "0";
+	private void merge(ObjParser chunk) {
+		vertices.addAll(chunk.vertices._getArray(), 0, chunk.vertices.size());
+		normals.addAll(chunk.normals._getArray(), 0, chunk.normals.size());
+		texCoords.addAll(chunk.texCoords._getArray(), 0, chunk.texCoords.size());
+		for (Segment segment : chunk.segments) {
+			switch (segment.type) {
+			case MTLLIB:
+				parseMtllib(segment.name);
+				break;
+			case GROUP:
+				setCurrentGroup(segment.group);
+				break;
+			case USEMTL:
+				parseUsemtl(segment.name);
+				currentGroup.addFaces(segment.group);
+				break;
+			case CONTINUE:
+				getCurrentGroup().addFaces(segment.group);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Counts vertices, normals, texture coordinates and lines in a range of
+	 * complete lines.
+	 */
+	private static int[] count(ByteBuffer data, int from, int to) {
+		int[] result = new int[4];
+		for (int pos = from; pos < to; pos++) {
+			while (pos < to && isWhitespace(data.get(pos)))
+				pos++;
+			if (pos < to && data.get(pos) == 'v') {
+				if (isKeyEnd(data, pos + 1, to))
+					result[0]++;
+				else if (isKeyEnd(data, pos + 2, to))
+					if (data.get(pos + 1) == 'n')
+						result[1]++;
+					else if (data.get(pos + 1) == 't')
+						result[2]++;
+			}
+			while (pos < to && data.get(pos) != '\n')
+				pos++;
+			result[3]++;
+		}
 		return result;
 	}
 
-	private void parseVertex(String[] words) {
-		words = expand(words, 4);
-		float x = Float.parseFloat(words[1]);
-		float y = convertToZUp ? -Float.parseFloat(words[3]) : Float.parseFloat(words[2]);
-		float z = convertToZUp ? Float.parseFloat(words[2]) : Float.parseFloat(words[3]);
-		object.getVertices().add(new Vec3(x, y , z));
+	private static boolean isKeyEnd(ByteBuffer data, int pos, int to) {
+		if (pos >= to)
+			return true;
+		byte c = data.get(pos);
+		return c == '\n' || isWhitespace(c);
 	}
 
-	private void parseNormal(String[] words) {
-		words = expand(words, 4);
-		float x = Float.parseFloat(words[1]);
-		float y = convertToZUp ? -Float.parseFloat(words[3]) : Float.parseFloat(words[2]);
-		float z = convertToZUp ? Float.parseFloat(words[2]) : Float.parseFloat(words[3]);
-		object.getNormals().add(new Vec3(x, y , z));
+	private static <T> T get(Future<T> future) {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
-	private void parseTexCoord(String[] words) {
-		words = expand(words, 3);
-		// obj is upper left, opengl is lower left
-		float u = 0;
-		float v = 0;
-		if (words.length > 1)
-			u = Float.parseFloat(words[1]);
-		if (words.length > 2)
-			v = 1 - Float.parseFloat(words[2]);
-		object.getTexCoords().add(new Vec2(u, v));
+	static File getFile(URL resource) {
+		if (resource == null || !"file".equals(resource.getProtocol()))
+			return null;
+		try {
+			File file = new File(resource.toURI());
+			return file.isFile() ? file : null;
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
 	}
 
-	private void parseFace(String[] words) {
-		int numVertices = words.length - 1;
-		int[] vIndices = new int[numVertices];
-		int[] nIndices = null;
-		int[] tIndices = null;
+	private void parseLines(ByteBuffer data, int from, int to) {
+		buffer = data;
+		for (int start = from; start < to; line++) {
+			int eol = start;
+			while (eol < to && data.get(eol) != '\n')
+				eol++;
+			pos = start;
+			end = eol;
+			parseLine();
+			start = eol + 1;
+		}
+	}
 
-		int currentTexCoord;
-		for (int i = 0; i < numVertices; ++i) {
-			String[] indices = words[i + 1].split("/");
+	private void parseLine() {
+		if (!skipWhitespace())
+			return;
 
-			// vertex
-			vIndices[i] = Integer.parseInt(indices[0]) - 1;
-			if (vIndices[i] < 0)
-				vIndices[i] = object.getVertices().size() + vIndices[i] + 1;
-
-			if (indices.length == 1)
-				continue;
-
-			// texcoord
-			if (!indices[1].equals("")) {
-				currentTexCoord = Integer.parseInt(indices[1]);
-				// sometimes '1' is put instead blank if there are no texcoords
-				// (v/1/n instead of v//n or v/n)
-				if (currentTexCoord <= object.getTexCoords().size()) {
-					if (tIndices == null)
-						tIndices = new int[numVertices];
-					tIndices[i] = currentTexCoord - 1;
-				}
-				if (tIndices[i] < 0)
-					tIndices[i] = object.getTexCoords().size() + tIndices[i] + 1;
+		final int key = pos;
+		while (pos < end && !isWhitespace(buffer.get(pos)))
+			pos++;
+		final int length = pos - key;
+
+		final byte c = buffer.get(key);
+		if (length == 1) {
+			switch (c) {
+			case 'v':
+				parseVector(vertices);
+				return;
+			case 'f':
+				parseFace();
+				return;
+			case 'g':
+			case 'o':
+				parseGroup();
+				return;
+			case 's':
+				// TODO: we silently ignore smoothing groups
+				return;
+			case 'l':
+				// TODO: we silently ignore lines
+				return;
 			}
+		} else if (length == 2 && c == 'v') {
+			switch (buffer.get(key + 1)) {
+			case 'n':
+				parseVector(normals);
+				return;
+			case 't':
+				parseTexCoord();
+				return;
+			}
+		} else if (matches(key, length, MTLLIB)) {
+			parseMtllib(nextName());
+			return;
+		} else if (matches(key, length, USEMTL)) {
+			parseUsemtl(nextName());
+			return;
+		}
+		log.warning("Ignoring unknown OBJ key '" + string(key, length) + "' (line " + line + ")");
+	}
 
-			if (indices.length == 2)
-				continue;
+	private void parseVector(FloatList target) {
+		float x = nextFloat();
+		float y = nextFloat();
+		float z = nextFloat();
+		target.add(x);
+		target.add(convertToZUp ? -z : y);
+		target.add(convertToZUp ? y : z);
+	}
 
-			// normal
-			if (nIndices == null)
-				nIndices = new int[numVertices];
-			nIndices[i] = Integer.parseInt(indices[2]) - 1;
-			if (nIndices[i] < 0)
-				nIndices[i] = object.getNormals().size() + nIndices[i] + 1;
-		}
-		getCurrentGroup().addFace(new ModelFace(vIndices, nIndices, tIndices));
+	private void parseTexCoord() {
+		// obj is upper left, opengl is lower left
+		float u = nextFloat();
+		float v = 1 - nextFloat();
+		texCoords.add(u);
+		texCoords.add(v);
 	}
 
-	private void parseMtllib(String[] words) {
-		new MtlParser(object, path, words[1]).parse();
+	private void parseFace() {
+		final int numVertices = vertexBase + vertices.size() / 3;
+		final int numNormals = normalBase + normals.size() / 3;
+		final int numTexCoords = texCoordBase + texCoords.size() / 2;
+
+		boolean hasNormals = false;
+		boolean hasTexCoords = false;
+		int count = 0;
+		while (skipWhitespace()) {
+			if (count == vIndices.length) {
+				vIndices = Arrays.copyOf(vIndices, count * 2);
+				nIndices = Arrays.copyOf(nIndices, count * 2);
+				tIndices = Arrays.copyOf(tIndices, count * 2);
+			}
+
+			// vertex
+			int index = parseInt();
+			vIndices[count] = index < 0 ? numVertices + index : index - 1;
+			nIndices[count] = -1;
+			tIndices[count] = -1;
+
+			if (pos < end && buffer.get(pos) == '/') {
+				pos++;
+
+				// texcoord
+				if (pos < end && buffer.get(pos) != '/' && !isWhitespace(buffer.get(pos))) {
+					index = parseInt();
+					// sometimes '1' is put instead blank if there are no texcoords
+					// (v/1/n instead of v//n or v/n)
+					if (index <= numTexCoords) {
+						tIndices[count] = index < 0 ? numTexCoords + index : index - 1;
+						hasTexCoords = true;
+					}
+				}
+
+				// normal
+				if (pos < end && buffer.get(pos) == '/') {
+					pos++;
+					if (pos < end && !isWhitespace(buffer.get(pos))) {
+						index = parseInt();
+						nIndices[count] = index < 0 ? numNormals + index : index - 1;
+						hasNormals = true;
+					}
+				}
+			}
+			if (pos < end && !isWhitespace(buffer.get(pos)))
+				throw new NumberFormatException("invalid face index '" + string(pos, end - pos) + "'");
+			count++;
+		}
+		getCurrentGroup().addFace(vIndices, hasNormals ? nIndices : null, hasTexCoords ? tIndices : null, count);
 	}
 
-	private void parseUsemtl(String[] words) {
-		String name = getCurrentGroup().getName() + " " + words[1];
+	private void parseUsemtl(String material) {
+		if (segments != null) {
+			currentGroup = new ModelGroup(material);
+			segments.add(new Segment(SegmentType.USEMTL, material, currentGroup));
+			return;
+		}
+		String name = getCurrentGroup().getName() + " " + material;
 		setCurrentGroup(new ModelGroup(name));
-		getCurrentGroup().setMaterial(object.getMaterials().get(words[1]));
+		getCurrentGroup().setMaterial(object.getMaterials().get(material));
 	}
 
-	private void parseGroup(String[] words) {
-		setCurrentGroup(new ModelGroup(words.length == 1 ? "default" : words[1]));
+	private void parseGroup() {
+		String name = nextToken();
+		setCurrentGroup(new ModelGroup(name == null ? "default" : name));
 	}
 
 	private ModelGroup getCurrentGroup() {
-		if (currentGroup == null)
-			setCurrentGroup(new ModelGroup("default"));
+		if (currentGroup == null) {
+			if (segments != null) {
+				// faces continuing the group of the previous chunk
+				currentGroup = new ModelGroup("default");
+				segments.add(new Segment(SegmentType.CONTINUE, null, currentGroup));
+			} else {
+				setCurrentGroup(new ModelGroup("default"));
+			}
+		}
 		return currentGroup;
 	}
 
 	private void setCurrentGroup(ModelGroup group) {
-		object.getGroups().add(group);
+		if (segments != null)
+			segments.add(new Segment(SegmentType.GROUP, null, group));
+		else
+			object.getGroups().add(group);
 		currentGroup = group;
 	}
 
+	private static boolean isWhitespace(byte c) {
+		return c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == 0x0b;
+	}
+
+	/**
+	 * Skips whitespace and comments, returns true if a token follows.
+	 */
+	private boolean skipWhitespace() {
+		while (pos < end && isWhitespace(buffer.get(pos)))
+			pos++;
+		if (pos < end && buffer.get(pos) == '#')
+			pos = end;
+		return pos < end;
+	}
+
+	private String nextToken() {
+		if (!skipWhitespace())
+			return null;
+		int start = pos;
+		while (pos < end && !isWhitespace(buffer.get(pos)))
+			pos++;
+		return string(start, pos - start);
+	}
+
+	private String nextName() {
+		String result = nextToken();
+		if (result == null)
+			throw new IllegalArgumentException("missing name");
+		return result;
+	}
+
+	private boolean matches(int start, int length, byte[] key) {
+		if (length != key.length)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (buffer.get(start + i) != key[i])
+				return false;
+		return true;
+	}
+
+	private String string(int start, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = buffer.get(start + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private int parseInt() {
+		boolean negative = false;
+		if (pos < end) {
+			byte c = buffer.get(pos);
+			if (c == '-' || c == '+') {
+				negative = c == '-';
+				pos++;
+			}
+		}
+		final int start = pos;
+		int result = 0;
+		for (; pos < end; pos++) {
+			byte c = buffer.get(pos);
+			if (c < '0' || c > '9')
+				break;
+			result = result * 10 + (c - '0');
+		}
+		if (pos == start)
+			throw new NumberFormatException("invalid index '" + string(start, end - start) + "'");
+		return negative ? -result : result;
+	}
+
+	/**
+	 * Parses the next float, missing values are returned as 0. Decimal numbers
+	 * with up to 18 significant digits and small exponents are converted
+	 * directly, everything else is handed to Float.parseFloat().
+	 */
+	private float nextFloat() {
+		if (!skipWhitespace())
+			return 0;
+
+		final int start = pos;
+		boolean negative = false;
+		byte c = buffer.get(pos);
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			pos++;
+		}
+
+		long mantissa = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean valid = false;
+		for (; pos < end; pos++) {
+			c = buffer.get(pos);
+			if (c < '0' || c > '9')
+				break;
+			valid = true;
+			if (digits < 18) {
+				mantissa = mantissa * 10 + (c - '0');
+				if (mantissa != 0)
+					digits++;
+			} else {
+				exponent++;
+			}
+		}
+		if (pos < end && buffer.get(pos) == '.') {
+			for (pos++; pos < end; pos++) {
+				c = buffer.get(pos);
+				if (c < '0' || c > '9')
+					break;
+				valid = true;
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					exponent--;
+					if (mantissa != 0)
+						digits++;
+				}
+			}
+		}
+		if (valid && pos < end && ((c = buffer.get(pos)) == 'e' || c == 'E')) {
+			pos++;
+			boolean negativeExponent = false;
+			if (pos < end && ((c = buffer.get(pos)) == '-' || c == '+')) {
+				negativeExponent = c == '-';
+				pos++;
+			}
+			int e = 0;
+			valid = false;
+			for (; pos < end; pos++) {
+				c = buffer.get(pos);
+				if (c < '0' || c > '9')
+					break;
+				valid = true;
+				if (e < 10000)
+					e = e * 10 + (c - '0');
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+
+		if (!valid || (pos < end && !isWhitespace(buffer.get(pos))) || exponent < -22 || exponent > 22) {
+			while (pos < end && !isWhitespace(buffer.get(pos)))
+				pos++;
+			return Float.parseFloat(string(start, pos - start));
+		}
+
+		double result = exponent < 0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+		return (float) (negative ? -result : result);
+	}
 }
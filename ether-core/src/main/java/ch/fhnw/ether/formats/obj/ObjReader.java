@@ -62,7 +62,13 @@ public final class ObjReader extends AbstractModelReader {
 
 	public ObjReader(URL resource, EnumSet<Options> options) throws IOException {
 		super(resource, options);
-		new ObjParser(getObject(), options.contains(Options.CONVERT_TO_Z_UP)).parse();
+		ObjParser parser = new ObjParser(getObject(), options.contains(Options.CONVERT_TO_Z_UP), options.contains(Options.PARALLEL));
+		File file = options.contains(Options.BINARY_CACHE) ? ObjParser.getFile(resource) : null;
+		if (file != null && ObjCache.read(file, parser))
+			return;
+		parser.parse();
+		if (file != null)
+			ObjCache.write(file, parser);
 	}
 	
 	public ObjReader(InputStream obj){
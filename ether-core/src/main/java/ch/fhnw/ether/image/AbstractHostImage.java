@@ -90,7 +90,6 @@ abstract class AbstractHostImage extends AbstractImage implements IHostImage {
 		return Platform.get().getImageSupport().scale(this, width, height);
 	}
 	
-	// TODO test & optimize
 	@Override
 	public final IHostImage convert(ComponentType componentType, ComponentFormat componentFormat, AlphaMode alphaMode) {
 		if (getComponentType() == componentType && getComponentFormat() == componentFormat && getAlphaMode() == alphaMode)
@@ -114,6 +113,9 @@ abstract class AbstractHostImage extends AbstractImage implements IHostImage {
 		
 		IHostImage result = create(getWidth(), getHeight(), componentType, componentFormat, alphaMode, null);
 		
+		if (ImageConverter.convert(this, result))
+			return result;
+		
 		float[] pixel = new float[4];
 		for (int y = 0; y < getHeight(); ++y) {
 			for (int x = 0; x < getWidth(); ++x) {
@@ -206,7 +208,7 @@ abstract class AbstractHostImage extends AbstractImage implements IHostImage {
 		throw new IllegalArgumentException("unsupported component type: " + componentType);
 	}
 	
-	private static void convertFormatToRGBA(ComponentFormat format, float[] pixel) {
+	static void convertFormatToRGBA(ComponentFormat format, float[] pixel) {
 		switch (format) {
 		case G:
 			pixel[3] = 1;
@@ -226,7 +228,7 @@ abstract class AbstractHostImage extends AbstractImage implements IHostImage {
 		}
 	}
 	
-	private static void convertRGBAToFormat(ComponentFormat format, float[] pixel) {
+	static void convertRGBAToFormat(ComponentFormat format, float[] pixel) {
 		switch (format) {
 		case G:
 			pixel[0] = (pixel[0] + pixel[1] + pixel[2]) / 3f;
@@ -241,7 +243,7 @@ abstract class AbstractHostImage extends AbstractImage implements IHostImage {
 		}
 	}
 	
-	private static void convertAlphaToPostMultiplied(ComponentFormat format, float[] pixel) {
+	static void convertAlphaToPostMultiplied(ComponentFormat format, float[] pixel) {
 		switch (format) {
 		case G:
 			break;
@@ -256,16 +258,16 @@ abstract class AbstractHostImage extends AbstractImage implements IHostImage {
 			break;
 		case RGBA:
 			if (pixel[3] > 0) {
-				pixel[0] = pixel[0] / pixel[1];
-				pixel[1] = pixel[1] / pixel[1];
-				pixel[2] = pixel[2] / pixel[1];
+				pixel[0] = pixel[0] / pixel[3];
+				pixel[1] = pixel[1] / pixel[3];
+				pixel[2] = pixel[2] / pixel[3];
 			} else {
 				pixel[0] = pixel[1] = pixel[2] = pixel[3] = 0;
 			}
 		}
 	}
 
-	private static void convertAlphaToPreMultiplied(ComponentFormat format, float[] pixel) {
+	static void convertAlphaToPreMultiplied(ComponentFormat format, float[] pixel) {
 		switch (format) {
 		case G:
 			break;
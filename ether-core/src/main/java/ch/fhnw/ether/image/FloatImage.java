@@ -38,14 +38,14 @@ import ch.fhnw.util.color.ColorUtilities;
 final class FloatImage extends AbstractHostImage {
 	
 	FloatImage(int width, int height, ComponentFormat componentFormat, AlphaMode alphaMode, ByteBuffer pixels) {
-		super(width, height, ComponentType.BYTE, componentFormat, alphaMode, pixels);
+		super(width, height, ComponentType.FLOAT, componentFormat, alphaMode, pixels);
 	}
 	
 	@Override
 	public byte[] getPixel(int x, int y, byte[] dst) {
 		int pos = pos(x, y);
 		for (int i = 0; i < getComponentFormat().getNumComponents(); ++i)
-			dst[i] = ColorUtilities.toByte(getPixels().getFloat(pos + i));
+			dst[i] = ColorUtilities.toByte(getPixels().getFloat(pos + i * 4));
 		return dst;
 	}
 
@@ -83,11 +83,11 @@ final class FloatImage extends AbstractHostImage {
 
 	@Override
 	public float getComponentFloat(int x, int y, int component) {
-		return getPixels().getFloat(pos(x, y));
+		return getPixels().getFloat(pos(x, y) + component * 4);
 	}
 
 	@Override
 	public void setComponentFloat(int x, int y, int component, float value) {
-		getPixels().putFloat(pos(x, y), value);
+		getPixels().putFloat(pos(x, y) + component * 4, value);
 	}
 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Thread safe image cache with a byte budget. Images are evicted in least
+ * recently used order once the budget is exceeded. Concurrent requests for the
+ * same path share a single load, and images can be loaded asynchronously on a
+ * pool of loader threads. Evicted images are only dropped from the cache, GPU
+ * resources are released once the image is no longer referenced.
+ * <p>
+ * Cached images are shared and must not be modified by clients.
+ */
+public final class ImageCache<T extends IImage> {
+	@FunctionalInterface
+	public interface ILoader<T extends IImage> {
+		T load(String path) throws IOException;
+	}
+
+	public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+	private static final ExecutorService POOL = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2), r -> {
+		Thread thread = new Thread(r, "ImageCache");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Shared cache for GPU images (textures) read from files. */
+	public static final ImageCache<IGPUImage> GPU = new ImageCache<>(DEFAULT_BUDGET, path -> IGPUImage.read(new File(path)));
+
+	/** Shared cache for host images read from files. */
+	public static final ImageCache<IHostImage> HOST = new ImageCache<>(DEFAULT_BUDGET, path -> IHostImage.read(new File(path)));
+
+	private final ILoader<T> loader;
+	private final Map<String, T> images = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, CompletableFuture<T>> pending = new HashMap<>();
+
+	private long budget;
+	private long size;
+
+	private long numHits;
+	private long numMisses;
+	private long numEvictions;
+
+	public ImageCache(long budget, ILoader<T> loader) {
+		this.budget = budget;
+		this.loader = loader;
+	}
+
+	/**
+	 * Returns the image for path, loading it on the calling thread if it is
+	 * not cached, or waiting for a pending load. Returns null if the image
+	 * cannot be loaded.
+	 */
+	public T get(String path) {
+		try {
+			return request(path, false).get();
+		} catch (ExecutionException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/**
+	 * Returns a future for the image for path. If the image is not cached it
+	 * is loaded on a loader thread. The future completes exceptionally if the
+	 * image cannot be loaded.
+	 */
+	public CompletableFuture<T> getAsync(String path) {
+		return request(path, true);
+	}
+
+	/**
+	 * Returns the image for path if it is cached, null otherwise.
+	 */
+	public synchronized T getIfPresent(String path) {
+		return images.get(path);
+	}
+
+	/**
+	 * Adds or replaces the image for path, e.g. after generating it. A
+	 * pending load for path completes, but its result is not cached.
+	 */
+	public synchronized void put(String path, T image) {
+		pending.remove(path);
+		insert(path, image);
+	}
+
+	/**
+	 * Removes the image for path from the cache. A pending load for path
+	 * completes, but its result is not cached.
+	 */
+	public synchronized void invalidate(String path) {
+		pending.remove(path);
+		T image = images.remove(path);
+		if (image != null)
+			size -= getNumBytes(image);
+	}
+
+	public synchronized void clear() {
+		pending.clear();
+		images.clear();
+		size = 0;
+	}
+
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the byte budget, evicting images if the cache exceeds it.
+	 */
+	public synchronized void setBudget(long budget) {
+		this.budget = budget;
+		evict();
+	}
+
+	/**
+	 * Returns the number of bytes of all cached images.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getNumImages() {
+		return images.size();
+	}
+
+	public synchronized long getNumHits() {
+		return numHits;
+	}
+
+	/**
+	 * Returns the number of requests that were not served from the cache,
+	 * including requests joining a pending load.
+	 */
+	public synchronized long getNumMisses() {
+		return numMisses;
+	}
+
+	public synchronized long getNumEvictions() {
+		return numEvictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "images=" + images.size() + " size=" + size + " budget=" + budget + " hits=" + numHits + " misses=" + numMisses + " evictions=" + numEvictions;
+	}
+
+	/**
+	 * Returns the number of bytes used by the pixels of image.
+	 */
+	public static long getNumBytes(IImage image) {
+		return (long) image.getWidth() * image.getHeight() * image.getNumBytesPerPixel();
+	}
+
+	private CompletableFuture<T> request(String path, boolean async) {
+		CompletableFuture<T> future;
+		synchronized (this) {
+			T image = images.get(path);
+			if (image != null) {
+				numHits++;
+				return CompletableFuture.completedFuture(image);
+			}
+			numMisses++;
+			future = pending.get(path);
+			if (future != null)
+				return shared(future);
+			future = new CompletableFuture<>();
+			pending.put(path, future);
+		}
+		final CompletableFuture<T> result = future;
+		if (async)
+			POOL.execute(() -> load(path, result));
+		else
+			load(path, result);
+		return shared(result);
+	}
+
+	// callers get a dependent future, so that they cannot complete or cancel the load for others
+	private static <T> CompletableFuture<T> shared(CompletableFuture<T> future) {
+		return future.thenApply(Function.identity());
+	}
+
+	private void load(String path, CompletableFuture<T> future) {
+		T image = null;
+		Throwable error = null;
+		try {
+			image = loader.load(path);
+			if (image == null)
+				error = new IOException("cannot load image: " + path);
+		} catch (Throwable t) {
+			error = t;
+		}
+		synchronized (this) {
+			if (pending.get(path) == future) {
+				pending.remove(path);
+				if (image != null)
+					insert(path, image);
+			}
+		}
+		if (error == null)
+			future.complete(image);
+		else
+			future.completeExceptionally(error);
+	}
+
+	private void insert(String path, T image) {
+		T old = images.put(path, image);
+		if (old != null)
+			size -= getNumBytes(old);
+		size += getNumBytes(image);
+		evict();
+	}
+
+	// evict least recently used images, but always keep the most recent one
+	private void evict() {
+		for (Iterator<T> i = images.values().iterator(); size > budget && images.size() > 1;) {
+			size -= getNumBytes(i.next());
+			i.remove();
+			numEvictions++;
+		}
+	}
+}
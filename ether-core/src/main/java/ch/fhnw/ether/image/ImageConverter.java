@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.image;
+
+import java.nio.ByteBuffer;
+
+import ch.fhnw.ether.image.IImage.AlphaMode;
+import ch.fhnw.ether.image.IImage.ComponentFormat;
+import ch.fhnw.ether.image.IImage.ComponentType;
+import ch.fhnw.util.color.ColorUtilities;
+
+/**
+ * Bulk converters for byte images. Lines are converted in parallel with
+ * {@link ImageProcessor} directly on the backing buffers. Results are identical
+ * to the per-pixel conversion in {@link AbstractHostImage#convert}.
+ */
+final class ImageConverter {
+	private static final float[] TO_FLOAT = new float[256];
+
+	static {
+		for (int i = 0; i < TO_FLOAT.length; i++)
+			TO_FLOAT[i] = ColorUtilities.toFloat((byte) i);
+	}
+
+	private static final ThreadLocal<byte[][]> ROWS = ThreadLocal.withInitial(() -> new byte[2][0]);
+
+	private ImageConverter() {
+	}
+
+	@FunctionalInterface
+	private interface IRowConverter {
+		void convert(byte[] src, byte[] dst, int width);
+	}
+
+	/**
+	 * Converts src into dst if a bulk converter exists for the given combination.
+	 * 
+	 * @return false if the combination is not supported and the generic path must be used.
+	 */
+	static boolean convert(IHostImage src, IHostImage dst) {
+		if (src.getComponentType() != ComponentType.BYTE || dst.getComponentType() != ComponentType.BYTE)
+			return false;
+		if (src.getWidth() != dst.getWidth() || src.getHeight() != dst.getHeight())
+			return false;
+
+		final IRowConverter converter = select(src.getComponentFormat(), dst.getComponentFormat(), src.getAlphaMode(), dst.getAlphaMode());
+		final int width      = src.getWidth();
+		final int srcLineLen = width * src.getNumBytesPerPixel();
+		final int dstLineLen = width * dst.getNumBytesPerPixel();
+		final ByteBuffer srcPixels = src.getPixels();
+
+		ImageProcessor.processLines(dst, (pixels, j) -> {
+			byte[][] rows = ROWS.get();
+			if (rows[0].length < srcLineLen) rows[0] = new byte[srcLineLen];
+			if (rows[1].length < dstLineLen) rows[1] = new byte[dstLineLen];
+			ByteBuffer s = srcPixels.duplicate();
+			s.position(j * srcLineLen);
+			s.get(rows[0], 0, srcLineLen);
+			converter.convert(rows[0], rows[1], width);
+			pixels.put(rows[1], 0, dstLineLen);
+		});
+		return true;
+	}
+
+	private static IRowConverter select(ComponentFormat srcFormat, ComponentFormat dstFormat, AlphaMode srcAlpha, AlphaMode dstAlpha) {
+		final boolean toPre  = dstFormat.hasAlpha() && srcAlpha == AlphaMode.POST_MULTIPLIED && dstAlpha == AlphaMode.PRE_MULTIPLIED;
+		final boolean toPost = dstFormat.hasAlpha() && srcAlpha == AlphaMode.PRE_MULTIPLIED  && dstAlpha == AlphaMode.POST_MULTIPLIED;
+
+		if (srcFormat == ComponentFormat.RGB && dstFormat == ComponentFormat.RGBA)
+			return ImageConverter::rgbToRgba;
+		if (srcFormat == ComponentFormat.RGBA && dstFormat == ComponentFormat.RGB)
+			return ImageConverter::rgbaToRgb;
+		if (srcFormat == ComponentFormat.RGBA && dstFormat == ComponentFormat.RGBA) {
+			if (toPre)  return ImageConverter::rgbaToPreMultiplied;
+			if (toPost) return ImageConverter::rgbaToPostMultiplied;
+			return ImageConverter::copy;
+		}
+		if (srcFormat == dstFormat && !toPre && !toPost)
+			return ImageConverter::copy;
+		return (src, dst, width) -> generic(src, dst, width, srcFormat, dstFormat, toPre, toPost);
+	}
+
+	private static void copy(byte[] src, byte[] dst, int width) {
+		System.arraycopy(src, 0, dst, 0, Math.min(src.length, dst.length));
+	}
+
+	private static void rgbToRgba(byte[] src, byte[] dst, int width) {
+		for (int i = 0, s = 0, d = 0; i < width; i++) {
+			dst[d++] = src[s++];
+			dst[d++] = src[s++];
+			dst[d++] = src[s++];
+			dst[d++] = (byte) 0xFF;
+		}
+	}
+
+	private static void rgbaToRgb(byte[] src, byte[] dst, int width) {
+		for (int i = 0, s = 0, d = 0; i < width; i++, s++) {
+			dst[d++] = src[s++];
+			dst[d++] = src[s++];
+			dst[d++] = src[s++];
+		}
+	}
+
+	private static void rgbaToPreMultiplied(byte[] src, byte[] dst, int width) {
+		for (int i = 0, p = 0; i < width; i++, p += 4) {
+			final int a = src[p + 3] & 0xFF;
+			dst[p + 0] = (byte) (((src[p + 0] & 0xFF) * a) / 255);
+			dst[p + 1] = (byte) (((src[p + 1] & 0xFF) * a) / 255);
+			dst[p + 2] = (byte) (((src[p + 2] & 0xFF) * a) / 255);
+			dst[p + 3] = (byte) a;
+		}
+	}
+
+	private static void rgbaToPostMultiplied(byte[] src, byte[] dst, int width) {
+		for (int i = 0, p = 0; i < width; i++, p += 4) {
+			final int a = src[p + 3] & 0xFF;
+			if (a > 0) {
+				final float fa = TO_FLOAT[a];
+				dst[p + 0] = ColorUtilities.toByte(TO_FLOAT[src[p + 0] & 0xFF] / fa);
+				dst[p + 1] = ColorUtilities.toByte(TO_FLOAT[src[p + 1] & 0xFF] / fa);
+				dst[p + 2] = ColorUtilities.toByte(TO_FLOAT[src[p + 2] & 0xFF] / fa);
+				dst[p + 3] = (byte) a;
+			} else {
+				dst[p + 0] = dst[p + 1] = dst[p + 2] = dst[p + 3] = 0;
+			}
+		}
+	}
+
+	private static void generic(byte[] src, byte[] dst, int width, ComponentFormat srcFormat, ComponentFormat dstFormat, boolean toPre, boolean toPost) {
+		final int     sn      = srcFormat.getNumComponents();
+		final int     dn      = dstFormat.getNumComponents();
+		final boolean convert = srcFormat != dstFormat;
+		final float[] pixel   = new float[4];
+		for (int i = 0, s = 0, d = 0; i < width; i++, s += sn, d += dn) {
+			for (int c = 0; c < sn; c++)
+				pixel[c] = TO_FLOAT[src[s + c] & 0xFF];
+			if (convert) {
+				AbstractHostImage.convertFormatToRGBA(srcFormat, pixel);
+				AbstractHostImage.convertRGBAToFormat(dstFormat, pixel);
+			}
+			if (toPost)
+				AbstractHostImage.convertAlphaToPostMultiplied(dstFormat, pixel);
+			else if (toPre)
+				AbstractHostImage.convertAlphaToPreMultiplied(dstFormat, pixel);
+			for (int c = 0; c < dn; c++)
+				dst[d + c] = ColorUtilities.toByte(pixel[c]);
+		}
+	}
+}
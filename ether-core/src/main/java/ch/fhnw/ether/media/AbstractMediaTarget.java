@@ -31,12 +31,15 @@
 
 package ch.fhnw.ether.media;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import ch.fhnw.util.Log;
 import ch.fhnw.util.TextUtilities;
@@ -44,18 +47,30 @@ import ch.fhnw.util.TextUtilities;
 public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRenderTarget<F>> implements IRenderTarget<F> {
 	private static final Log log = Log.create();
 
-	private   final int                     priority;
-	private   final boolean                 realTime;
-	protected RenderProgram<T>              program;
-	protected ITimebase                     timebase;
-	protected final AtomicBoolean           isRendering  = new AtomicBoolean();
-	protected final AtomicReference<F>      frame        = new AtomicReference<>();
-	private         CountDownLatch          startLatch;
-	private   final List<BlockingTimeEvent> timeEvents   = new LinkedList<>();
-	private   long                          startTime;
-	private   Thread                        framePump;
-	private   long                          totalFrames;
-	private   long                          relFrames;
+	/** Remaining time in ns below which the precise scheduler spins instead of parking. */
+	private static final long SPIN_NS = 200 * 1000;
+	/** Park interval in ns used while waiting for a target to stop rendering. */
+	private static final long NAP_NS  = 1000 * 1000;
+
+	private   final int                              priority;
+	private   final boolean                          realTime;
+	protected RenderProgram<T>                       program;
+	protected ITimebase                              timebase;
+	protected final AtomicBoolean                    isRendering = new AtomicBoolean();
+	protected final AtomicReference<F>               frame       = new AtomicReference<>();
+	private         CountDownLatch                   startLatch;
+	private   final Queue<BlockingTimeEvent>         stopEvents  = new ConcurrentLinkedQueue<>();
+	private   final NavigableSet<BlockingTimeEvent>  timeEvents  = new ConcurrentSkipListSet<>();
+	private   final AtomicLong                       eventSeq    = new AtomicLong();
+	private   volatile boolean                       precise;
+	private   long                                   startTime;
+	private   Thread                                 framePump;
+	private   long                                   totalFrames;
+	private   long                                   relFrames;
+	private   volatile long                          deadlines;
+	private   volatile long                          overruns;
+	private   volatile long                          jitterSum;
+	private   volatile long                          jitterMax;
 
 	protected AbstractMediaTarget(int threadPriority, boolean realTime) {
 		this.priority = threadPriority;
@@ -108,22 +123,25 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 				setRendering(false);
 			tmp.dispose();
 		}
-		synchronized (timeEvents) {
-			for(final Iterator<BlockingTimeEvent> i = timeEvents.iterator(); i.hasNext();) {
-				final BlockingTimeEvent e = i.next();
-				if(e.time == NOT_RENDERING) {
-					if(!isRendering()) {
-						e.unblock();
-						i.remove();
-					}
-				} else if(e.time >= getTime()) {
+		if(!(isRendering()))
+			unblockAll();
+		else if(!(timeEvents.isEmpty())) {
+			final double time = getTime();
+			for(final BlockingTimeEvent e : timeEvents) {
+				if(e.time > time) break;
+				if(timeEvents.remove(e))
 					e.unblock();
-					i.remove();
-				}
 			}
 		}
 	}
 
+	private void unblockAll() {
+		for(BlockingTimeEvent e; (e = timeEvents.pollFirst()) != null;)
+			e.unblock();
+		for(BlockingTimeEvent e; (e = stopEvents.poll()) != null;)
+			e.unblock();
+	}
+
 	@SuppressWarnings("unchecked")
 	public void useProgram(RenderProgram<T> program) throws RenderCommandException {
 		if(this.program == program) return;
@@ -146,15 +164,23 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 
 	protected final void setRendering(boolean state) {
 		isRendering.set(state);
-		if(!(state)) {
-			synchronized (timeEvents) {
-				for(final Iterator<BlockingTimeEvent> i = timeEvents.iterator(); i.hasNext();) {
-					BlockingTimeEvent e = i.next();
-					e.unblock();
-				}
-				timeEvents.clear();
-			}
-		}
+		if(!(state))
+			unblockAll();
+	}
+
+	/**
+	 * Enables or disables precise scheduling. In precise mode the frame pump parks
+	 * until shortly before the deadline and spins for the remaining time instead
+	 * of napping in 1 ms steps.
+	 *
+	 * @param state true to enable precise scheduling.
+	 */
+	public final void setPreciseScheduling(boolean state) {
+		this.precise = state;
+	}
+
+	public final boolean isPreciseScheduling() {
+		return precise;
 	}
 
 	@Override
@@ -176,7 +202,10 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 		if(Thread.currentThread() == framePump)
 			if(time == NOT_RENDERING) {
 				while(isRendering())
-					nap();
+					if(precise) LockSupport.parkNanos(NAP_NS);
+					else        nap();
+			} else if(precise) {
+				parkUntil(time);
 			} else {
 				if(isRealTime()) {
 					try {
@@ -191,14 +220,80 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 					nap();
 			}
 		else if((time == NOT_RENDERING || time > getTime()) && isRendering()) {
-			BlockingTimeEvent event = new BlockingTimeEvent(time, runnable);
-			synchronized (timeEvents) {
+			BlockingTimeEvent event = new BlockingTimeEvent(time, eventSeq.incrementAndGet(), runnable);
+			if(time == NOT_RENDERING) {
+				stopEvents.add(event);
+				if(!(isRendering()) && stopEvents.remove(event))
+					event.unblock();
+			} else {
 				timeEvents.add(event);
+				if(!(isRendering()) && timeEvents.remove(event))
+					event.unblock();
 			}
 			event.sleep();
 		}
 	}
 
+	private void parkUntil(double time) {
+		double remaining = time - getTime();
+		deadlines++;
+		if(remaining < 0) {
+			overruns++;
+			recordJitter((long)(-remaining * SEC2NS));
+			return;
+		}
+		for(;;) {
+			final long remainingNs = (long)(remaining * SEC2NS);
+			if(remainingNs > SPIN_NS)
+				LockSupport.parkNanos(remainingNs - SPIN_NS);
+			remaining = time - getTime();
+			if(remaining < 0) break;
+			if(!(isRendering())) return;
+		}
+		recordJitter((long)(-remaining * SEC2NS));
+	}
+
+	private void recordJitter(long lateNs) {
+		jitterSum += lateNs;
+		if(lateNs > jitterMax) jitterMax = lateNs;
+	}
+
+	/**
+	 * Returns the number of deadlines the frame pump waited for in precise scheduling mode.
+	 */
+	public final long getDeadlineCount() {
+		return deadlines;
+	}
+
+	/**
+	 * Returns the number of deadlines that had already passed when the frame pump started waiting for them.
+	 */
+	public final long getOverrunCount() {
+		return overruns;
+	}
+
+	/**
+	 * Returns the average lateness of the frame pump wake-ups in seconds.
+	 */
+	public final double getAverageJitter() {
+		final long count = deadlines;
+		return count == 0 ? 0 : (jitterSum / (double)count) / SEC2NS;
+	}
+
+	/**
+	 * Returns the maximum lateness of the frame pump wake-ups in seconds.
+	 */
+	public final double getMaxJitter() {
+		return jitterMax / SEC2NS;
+	}
+
+	public final void resetSchedulingStats() {
+		deadlines = 0;
+		overruns  = 0;
+		jitterSum = 0;
+		jitterMax = 0;
+	}
+
 	@Override
 	public final F getFrame() {
 		return frame.get();
@@ -218,16 +313,24 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 		relFrames++;
 	}
 
-	static final class BlockingTimeEvent {
+	static final class BlockingTimeEvent implements Comparable<BlockingTimeEvent> {
 		public  final double         time;
+		private final long           seq;
 		private final CountDownLatch latch = new CountDownLatch(1);
 		private final Runnable       callback;
 
-		public BlockingTimeEvent(double time, Runnable callback) {
-			this.time    = time;
+		public BlockingTimeEvent(double time, long seq, Runnable callback) {
+			this.time     = time;
+			this.seq      = seq;
 			this.callback = callback;
 		}
 
+		@Override
+		public int compareTo(BlockingTimeEvent o) {
+			int result = Double.compare(time, o.time);
+			return result == 0 ? Long.compare(seq, o.seq) : result;
+		}
+
 		public void unblock() {
 			if(callback != null)
 				callback.run();
@@ -31,13 +31,12 @@
 
 package ch.fhnw.ether.render;
 
-import java.util.Collection;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import org.lwjgl.opengl.GL11;
 
@@ -206,51 +205,53 @@ public abstract class AbstractRenderer implements IRenderer {
 	protected abstract void render(IRenderTargetState state);
 
 	protected void renderObjects(IRenderTargetState state, Queue pass) {
-		state.getRenderables().forEach((mat,renderables) -> {
-			if (renderables.size() > 0){
-				Renderable r1 = renderables.get(0);
+		List<Renderable> renderables = state.getRenderables();
+		Renderable r1 = null;
+		for (int i = 0; i < renderables.size(); i++) {
+			Renderable renderable = renderables.get(i);
+			if (renderable.getQueue() != pass)
+				continue;
+			if (r1 == null || r1.getMaterial() != renderable.getMaterial() || r1.getShader().getProgram() != renderable.getShader().getProgram()) {
+				if (r1 != null)
+					r1.getShader().disable();
+				r1 = renderable;
 				// if renderables are taken out of the scene
 				// we might end up with a shader here that was
 				// not initialized (has no program)
 				Program p = r1.getShader().getProgram();
-				if (p == null) r1.getShader().update(mat.getData());
+				if (p == null) r1.getShader().update(r1.getMaterial().getData());
 				r1.getShader().enable();
-				for (Renderable renderable : renderables) {
-					if (renderable.getQueue() == pass) {
-						renderable.render();
-					}
-				}
-				r1.getShader().disable();
 			}
-		});
-		
+			renderable.render();
+		}
+		if (r1 != null)
+			r1.getShader().disable();
 	}
 
 	protected void renderPostObjects(IRenderTargetState state, Queue pass, Texture colorMap, Texture depthMap) {
-		state.getRenderables().forEach((mat,renderables) -> {
-			for (Renderable renderable : renderables) {
-				if (renderable.getQueue() == pass) {
-					// XXX: set color/depth map to renderable's shader
-					IShader shader = renderable.getShader();
-					if (shader instanceof AbstractPostShader) {
-						((AbstractPostShader)shader).setMaps(colorMap, depthMap);
-						renderable.render();
-					} else {
-						// XXX warn?? fail? we should be able to test for this case much earlier in a flexible way
-						renderable.render();
-					}
+		List<Renderable> renderables = state.getRenderables();
+		for (int i = 0; i < renderables.size(); i++) {
+			Renderable renderable = renderables.get(i);
+			if (renderable.getQueue() == pass) {
+				// XXX: set color/depth map to renderable's shader
+				IShader shader = renderable.getShader();
+				if (shader instanceof AbstractPostShader) {
+					((AbstractPostShader)shader).setMaps(colorMap, depthMap);
+					renderable.render();
+				} else {
+					// XXX warn?? fail? we should be able to test for this case much earlier in a flexible way
+					renderable.render();
 				}
 			}
-		});
+		}
 	}
 	
 	protected void renderShadowVolumes(IRenderTargetState state, Queue pass) {
 		if (shadowVolumes == null) {
 			shadowVolumes = new ShadowVolumes(globals.attributes);
 		}
-		shadowVolumes.render(pass, state.getRenderables().values().stream()
-										.flatMap(Collection::stream)
-										.collect(Collectors.toList()), globals.lightInfo.getNumLights());
+		// casters outside the view frustum may still cast shadows into it
+		shadowVolumes.render(pass, state.getAllRenderables(), globals.lightInfo.getNumLights());
 	}
 
 	private void runRenderThread() {
@@ -32,18 +32,21 @@
 package ch.fhnw.ether.render;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import ch.fhnw.ether.controller.IController;
 import ch.fhnw.ether.render.IRenderer.IRenderState;
 import ch.fhnw.ether.render.IRenderer.IRenderTargetState;
 import ch.fhnw.ether.render.IRenderer.IRenderUpdate;
+import ch.fhnw.ether.render.shader.IShader;
 import ch.fhnw.ether.render.variable.builtin.LightUniformBlock;
 import ch.fhnw.ether.scene.camera.Camera;
 import ch.fhnw.ether.scene.camera.ICamera;
@@ -52,15 +55,22 @@ import ch.fhnw.ether.scene.light.GenericLight;
 import ch.fhnw.ether.scene.light.ILight;
 import ch.fhnw.ether.scene.light.ILight.LightSource;
 import ch.fhnw.ether.scene.mesh.IMesh;
-import ch.fhnw.ether.scene.mesh.IMesh.Queue;
 import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
 import ch.fhnw.ether.scene.mesh.material.IMaterial;
 import ch.fhnw.ether.view.IView;
+import ch.fhnw.util.UpdateRequest;
+import ch.fhnw.util.UpdateRequest.IUpdateListener;
 import ch.fhnw.util.math.Mat4;
+import ch.fhnw.util.math.geometry.BoundingBox;
+import ch.fhnw.util.math.geometry.BoundingVolumeHierarchy;
+import ch.fhnw.util.math.geometry.Frustum;
 
 /**
- * Default render manager. This would also be the place to do various
- * optimizations such as geometry / material merging etc. Currently
+ * Default render manager. If batching is enabled, static meshes are merged
+ * by material and instanced meshes are drawn with a single instanced draw
+ * call (see {@link MeshBatcher}). If culling is enabled, meshes outside the
+ * view frustum are removed from the per-view draw lists on the scene thread,
+ * so the render thread only sees visible renderables. Otherwise
  * straightforward, as provided by scene.
  *
  * @author radar
@@ -69,14 +79,211 @@ public class DefaultRenderManager implements IRenderManager {
 	private static final class SceneViewState {
 		ICamera camera = new Camera();
 		IViewCameraState viewCameraState;
+		int numDrawn;
+		int numCulled;
 
 		SceneViewState(IView view) {
 			viewCameraState = new ViewCameraState(view, camera);
 		}
 	}
 
-	private static final class SceneMeshState {
+	/**
+	 * Scene side state that is notified through {@link UpdateRequest} and
+	 * queued for processing on the next {@link SceneState#create(IRenderer)}.
+	 * Requests may have other listeners (e.g. the {@link MeshBatcher}), hence
+	 * the notification itself marks a change, and the request is cleared
+	 * before data is fetched.
+	 */
+	private static abstract class TrackedState implements IUpdateListener {
+		private final Queue<TrackedState> dirty;
+
+		TrackedState(Queue<TrackedState> dirty) {
+			this.dirty = dirty;
+		}
+
+		@Override
+		public final void requested(UpdateRequest request) {
+			dirty.add(this);
+		}
+
+		abstract void collect(List<SceneMeshState> touched);
+	}
+
+	private static final class SceneMeshState extends TrackedState {
+		final IMesh mesh;
+		final MaterialState material;
+		final GeometryState geometry;
 		Renderable renderable;
+		long key;
+		boolean cullable;
+		BoundingBox bounds;
+		boolean removed;
+		boolean touched;
+		boolean materialChanged;
+		boolean geometryChanged;
+
+		SceneMeshState(Queue<TrackedState> dirty, IMesh mesh, MaterialState material, GeometryState geometry) {
+			super(dirty);
+			this.mesh = mesh;
+			this.material = material;
+			this.geometry = geometry;
+		}
+
+		void touch(List<SceneMeshState> touched, boolean materialChanged, boolean geometryChanged) {
+			if (removed || renderable == null)
+				return;
+			this.materialChanged |= materialChanged;
+			this.geometryChanged |= geometryChanged;
+			if (!this.touched) {
+				this.touched = true;
+				touched.add(this);
+			}
+		}
+
+		@Override
+		void collect(List<SceneMeshState> touched) {
+			mesh.getUpdater().clear();
+			touch(touched, false, true);
+		}
+	}
+
+	private static final class MaterialState extends TrackedState {
+		final IMaterial material;
+		final int id;
+		final Set<SceneMeshState> meshes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		MaterialState(Queue<TrackedState> dirty, IMaterial material, int id) {
+			super(dirty);
+			this.material = material;
+			this.id = id;
+		}
+
+		@Override
+		void collect(List<SceneMeshState> touched) {
+			material.getUpdater().clear();
+			meshes.forEach(state -> state.touch(touched, true, false));
+		}
+	}
+
+	private static final class GeometryState extends TrackedState {
+		final IGeometry geometry;
+		final int id;
+		final Set<SceneMeshState> meshes = Collections.newSetFromMap(new IdentityHashMap<>());
+		BoundingBox bounds;
+
+		GeometryState(Queue<TrackedState> dirty, IGeometry geometry, int id) {
+			super(dirty);
+			this.geometry = geometry;
+			this.id = id;
+		}
+
+		@Override
+		void collect(List<SceneMeshState> touched) {
+			geometry.getUpdater().clear();
+			bounds = null;
+			meshes.forEach(state -> state.touch(touched, false, true));
+		}
+
+		// object space bounds, computed on demand after each update
+		BoundingBox getBounds() {
+			if (bounds == null) {
+				bounds = new BoundingBox();
+				bounds.add(geometry.getData()[0]);
+			}
+			return bounds;
+		}
+	}
+
+	/**
+	 * Persistent draw list, sorted by queue, shader, material and geometry.
+	 * Patched in place on mesh add / remove. An immutable snapshot is handed
+	 * to the renderer and only re-created if the list changed.
+	 */
+	private static final class DrawList {
+		private long[] keys = new long[64];
+		private SceneMeshState[] items = new SceneMeshState[64];
+		private int size;
+		private List<Renderable> snapshot = Collections.emptyList();
+		private boolean modified;
+
+		void add(long key, SceneMeshState state) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				items = Arrays.copyOf(items, size * 2);
+			}
+			int idx = bound(key, true);
+			System.arraycopy(keys, idx, keys, idx + 1, size - idx);
+			System.arraycopy(items, idx, items, idx + 1, size - idx);
+			keys[idx] = key;
+			items[idx] = state;
+			size++;
+			modified = true;
+		}
+
+		void remove(long key, SceneMeshState state) {
+			for (int idx = bound(key, false); idx < size && keys[idx] == key; idx++) {
+				if (items[idx] == state) {
+					System.arraycopy(keys, idx + 1, keys, idx, size - idx - 1);
+					System.arraycopy(items, idx + 1, items, idx, size - idx - 1);
+					items[--size] = null;
+					modified = true;
+					return;
+				}
+			}
+		}
+
+		void clear() {
+			Arrays.fill(items, 0, size, null);
+			size = 0;
+			modified = true;
+		}
+
+		int size() {
+			return size;
+		}
+
+		List<Renderable> snapshot() {
+			if (modified) {
+				Renderable[] renderables = new Renderable[size];
+				for (int i = 0; i < size; ++i)
+					renderables[i] = items[i].renderable;
+				snapshot = Collections.unmodifiableList(Arrays.asList(renderables));
+				modified = false;
+			}
+			return snapshot;
+		}
+
+		/**
+		 * Merges this list with the given states (sorted by key) and returns
+		 * the renderables in draw order.
+		 */
+		List<Renderable> merge(SceneMeshState[] states, int n) {
+			Renderable[] renderables = new Renderable[size + n];
+			int i = 0;
+			int j = 0;
+			int k = 0;
+			while (i < size || j < n) {
+				if (j == n || (i < size && keys[i] <= states[j].key))
+					renderables[k++] = items[i++].renderable;
+				else
+					renderables[k++] = states[j++].renderable;
+			}
+			return Collections.unmodifiableList(Arrays.asList(renderables));
+		}
+
+		// returns first index with keys[index] > key (upper) or >= key (lower)
+		private int bound(long key, boolean upper) {
+			int lo = 0;
+			int hi = size;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (keys[mid] < key || (upper && keys[mid] == key))
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
 	}
 
 	private static final class RenderUpdate implements IRenderUpdate {
@@ -105,15 +312,23 @@ public class DefaultRenderManager implements IRenderManager {
 
 	private final class SceneState {
 		final Map<IView, SceneViewState> views = new IdentityHashMap<>();
-		final Set<IMaterial> materials = Collections.newSetFromMap(new IdentityHashMap<>());
-		final Set<IGeometry> geometries = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Map<IMaterial, MaterialState> materials = new IdentityHashMap<>();
+		final Map<IGeometry, GeometryState> geometries = new IdentityHashMap<>();
 		final Map<IMesh, SceneMeshState> meshes = new IdentityHashMap<>();
 		final List<ILight> lights = new ArrayList<>(Collections.singletonList(ILight.DEFAULT_LIGHT));
 
-		Map<IMaterial, List<Renderable>> renderables = new HashMap<>();
-		boolean hasPost = false;
-
-		boolean rebuildMeshes = true;
+		final Queue<TrackedState> dirty = new ConcurrentLinkedQueue<>();
+		final List<SceneMeshState> added = new ArrayList<>();
+		final Map<String, Integer> shaderIds = new HashMap<>();
+		final DrawList drawList = new DrawList();
+		// meshes that are never culled, e.g. overlays or shader transformed
+		final DrawList fixedList = new DrawList();
+		final BoundingVolumeHierarchy<SceneMeshState> cullTree = new BoundingVolumeHierarchy<>();
+		SceneMeshState[] visible = new SceneMeshState[64];
+		int numVisible;
+		int numPost;
+		int nextMaterialId;
+		int nextGeometryId;
 
 		SceneState() {
 		}
@@ -149,17 +364,55 @@ public class DefaultRenderManager implements IRenderManager {
 		}
 
 		void addMesh(IMesh mesh) {
-//			System.out.println("addMesh");
-			if (meshes.putIfAbsent(mesh, new SceneMeshState()) != null)
+			if (meshes.containsKey(mesh))
 				throw new IllegalArgumentException("mesh already in renderer: " + mesh);
-			rebuildMeshes = true;
+			MaterialState material = materials.computeIfAbsent(mesh.getMaterial(), m -> {
+				MaterialState state = new MaterialState(dirty, m, nextMaterialId++);
+				m.getUpdater().addListener(state);
+				m.getUpdater().clear();
+				return state;
+			});
+			GeometryState geometry = geometries.computeIfAbsent(mesh.getGeometry(), g -> {
+				GeometryState state = new GeometryState(dirty, g, nextGeometryId++);
+				g.getUpdater().addListener(state);
+				g.getUpdater().clear();
+				return state;
+			});
+			SceneMeshState state = new SceneMeshState(dirty, mesh, material, geometry);
+			meshes.put(mesh, state);
+			material.meshes.add(state);
+			geometry.meshes.add(state);
+			mesh.getUpdater().addListener(state);
+			added.add(state);
+			if (mesh.getQueue() == IMesh.Queue.POST)
+				numPost++;
 		}
 
 		void removeMesh(IMesh mesh) {
-//			System.out.println("removeMesh");
-			if (meshes.remove(mesh) == null)
+			SceneMeshState state = meshes.remove(mesh);
+			if (state == null)
 				throw new IllegalArgumentException("mesh not in renderer: " + mesh);
-			rebuildMeshes = true;
+			state.removed = true;
+			mesh.getUpdater().removeListener(state);
+			if (state.renderable != null) {
+				drawList.remove(state.key, state);
+				if (!state.cullable)
+					fixedList.remove(state.key, state);
+				else if (cullTree.contains(state))
+					cullTree.remove(state);
+			}
+			state.material.meshes.remove(state);
+			if (state.material.meshes.isEmpty()) {
+				materials.remove(state.material.material);
+				state.material.material.getUpdater().removeListener(state.material);
+			}
+			state.geometry.meshes.remove(state);
+			if (state.geometry.meshes.isEmpty()) {
+				geometries.remove(state.geometry.geometry);
+				state.geometry.geometry.getUpdater().removeListener(state.geometry);
+			}
+			if (mesh.getQueue() == IMesh.Queue.POST)
+				numPost--;
 		}
 
 		void addLight(ILight light) {
@@ -180,12 +433,72 @@ public class DefaultRenderManager implements IRenderManager {
 		}
 
 		public void clear() {
-//			System.out.println("clear");
+			meshes.forEach((mesh, state) -> {
+				state.removed = true;
+				mesh.getUpdater().removeListener(state);
+			});
+			materials.forEach((material, state) -> material.getUpdater().removeListener(state));
+			geometries.forEach((geometry, state) -> geometry.getUpdater().removeListener(state));
 			materials.clear();
 			geometries.clear();
 			meshes.clear();
 			lights.clear();
-			rebuildMeshes = true;
+			added.clear();
+			dirty.clear();
+			drawList.clear();
+			fixedList.clear();
+			cullTree.clear();
+			numPost = 0;
+		}
+
+		private long key(SceneMeshState state) {
+			IShader shader = state.renderable.getShader();
+			int shaderId = shaderIds.computeIfAbsent(shader.getClass().getName() + ":" + shader.id(), id -> shaderIds.size());
+			return ((long) state.mesh.getQueue().ordinal() << 56) |
+				   ((long) (shaderId & 0xFFFF) << 40) |
+				   ((long) (state.material.id & 0xFFFFF) << 20) |
+				   (state.geometry.id & 0xFFFFF);
+		}
+
+		private boolean isCullable(IMesh mesh) {
+			// instanced meshes are bounded by their instances, and meshes
+			// with shader transformation do not report transform changes
+			IMesh.Queue queue = mesh.getQueue();
+			return (queue == IMesh.Queue.DEPTH || queue == IMesh.Queue.TRANSPARENCY) && 
+				   !mesh.hasFlag(IMesh.Flag.SHADER_TRANSFORMATION) && 
+				   !(mesh instanceof InstancedMesh);
+		}
+
+		// meshes without valid bounds are not in the tree, i.e. always culled
+		private void updateBounds(SceneMeshState state) {
+			BoundingBox b = state.geometry.getBounds();
+			if (b.isValid() && state.mesh.getTransform() != Mat4.ID)
+				b = b.transform(state.mesh.getTransform());
+			state.bounds = b;
+			if (!b.isValid()) {
+				if (cullTree.contains(state))
+					cullTree.remove(state);
+			} else if (cullTree.contains(state)) {
+				cullTree.update(state, b);
+			} else {
+				cullTree.add(state, b);
+			}
+		}
+
+		private List<Renderable> cull(IViewCameraState vcs, SceneViewState svs) {
+			Frustum frustum = new Frustum(vcs.getViewProjMatrix());
+			numVisible = 0;
+			cullTree.query(frustum::intersects, frustum::contains, state -> {
+				if (numVisible == visible.length)
+					visible = Arrays.copyOf(visible, numVisible * 2);
+				visible[numVisible++] = state;
+			});
+			Arrays.sort(visible, 0, numVisible, (a, b) -> Long.compare(a.key, b.key));
+			List<Renderable> result = fixedList.merge(visible, numVisible);
+			Arrays.fill(visible, 0, numVisible, null);
+			svs.numDrawn = result.size();
+			svs.numCulled = drawList.size() - result.size();
+			return result;
 		}
 
 		/**
@@ -193,60 +506,50 @@ public class DefaultRenderManager implements IRenderManager {
 		 * render state that can be executed on a separate thread. Resets all
 		 * scene update flags, this renderer needs to take care that the
 		 * returned render state is always realized, otherwise the states will
-		 * get out of sync resulting in undefined overall state.
+		 * get out of sync resulting in undefined overall state. Only meshes
+		 * that were added or requested an update (directly or through their
+		 * material or geometry) are visited.
 		 * 
 		 * @param renderer
 		 * @return render state to be submitted to renderer
 		 */
 		IRenderState create(IRenderer renderer) {
-			// 1. add meshes and mesh updates to render state
-			final List<IRenderUpdate> updates = new ArrayList<>();
-			if (rebuildMeshes) {
-				renderables = new HashMap<>();
-				hasPost = false;
-				materials.clear();
-				geometries.clear();
-				meshes.forEach((mesh, state) -> {
-					materials.add(mesh.getMaterial());
-					geometries.add(mesh.getGeometry());
-					if (mesh.getQueue() == Queue.POST)
-						hasPost = true;
-				});
+			// 1. add new meshes to draw list, collect mesh updates
+			final List<SceneMeshState> touched = new ArrayList<>();
+			for (SceneMeshState state : added) {
+				if (state.removed)
+					continue;
+				// TODO: optionally we could do the first update() on
+				// drawable already here, using a shared context
+				// (thus, shaders would be compiled on scene thread)
+				state.renderable = renderer.createRenderable(state.mesh);
+				state.key = key(state);
+				state.cullable = isCullable(state.mesh);
+				drawList.add(state.key, state);
+				if (!state.cullable)
+					fixedList.add(state.key, state);
+				state.mesh.getUpdater().clear();
+				state.touch(touched, true, true);
+			}
+			added.clear();
+
+			for (TrackedState state; (state = dirty.poll()) != null;)
+				state.collect(touched);
+
+			final List<IRenderUpdate> updates = new ArrayList<>(touched.size());
+			for (SceneMeshState state : touched) {
+				if (state.cullable && state.geometryChanged)
+					updateBounds(state);
+				updates.add(new RenderUpdate(state.renderable, state.mesh, state.materialChanged, state.geometryChanged));
+				state.touched = false;
+				state.materialChanged = false;
+				state.geometryChanged = false;
 			}
-			meshes.forEach((mesh, state) -> {
-				IMaterial material = mesh.getMaterial();
-				IGeometry geometry = mesh.getGeometry();
-
-				boolean materialChanged;
-				boolean geometryChanged;
-				if (state.renderable == null) {
-					// TODO: optionally we could do the first update() on
-					// drawable already here, using a shared context
-					// (thus, shaders would be compiled on scene thread)
-					state.renderable = renderer.createRenderable(mesh);
-					materialChanged = true;
-					geometryChanged = true;
-				} else {
-					materialChanged = material.getUpdater().test();
-					geometryChanged = geometry.getUpdater().test() | mesh.getUpdater().test();
-				}
-				mesh.getUpdater().clear();
-
-				if (materialChanged || geometryChanged) {
-					updates.add(new RenderUpdate(state.renderable, mesh, materialChanged, geometryChanged));
-				}
-				if (rebuildMeshes){
-					renderables.computeIfAbsent(material, (mat) -> new ArrayList<>()).add(state.renderable);
-				}
-			});
-
-			// second loop required to update flags
-			materials.forEach(material -> material.getUpdater().clear());
-			geometries.forEach(geometry -> geometry.getUpdater().clear());
 
 			// seal collections
-			final Map<IMaterial, List<Renderable>> renderRenderables = Collections.unmodifiableMap(renderables);
+			final List<Renderable> renderRenderables = drawList.snapshot();
 			final List<IRenderUpdate> renderUpdates = Collections.unmodifiableList(updates);
+			final boolean hasPost = numPost > 0;
 
 			// 2. add lights to render state
 			// TODO: currently updates are not checked, we simply update everything
@@ -259,6 +562,14 @@ public class DefaultRenderManager implements IRenderManager {
 				if (svs.camera.getUpdater().test())
 					svs.viewCameraState = new ViewCameraState(view, svs.camera);
 				final IViewCameraState viewCameraState = svs.viewCameraState;
+				final List<Renderable> visibleRenderables;
+				if (culling) {
+					visibleRenderables = cull(viewCameraState, svs);
+				} else {
+					visibleRenderables = renderRenderables;
+					svs.numDrawn = renderRenderables.size();
+					svs.numCulled = 0;
+				}
 				targets.add(new IRenderTargetState() {
 					@Override
 					public IView getView() {
@@ -271,7 +582,12 @@ public class DefaultRenderManager implements IRenderManager {
 					}
 
 					@Override
-					public  Map<IMaterial, List<Renderable>> getRenderables() {
+					public List<Renderable> getRenderables() {
+						return visibleRenderables;
+					}
+
+					@Override
+					public List<Renderable> getAllRenderables() {
 						return renderRenderables;
 					}
 
@@ -294,7 +610,6 @@ public class DefaultRenderManager implements IRenderManager {
 			final List<IRenderTargetState> renderTargets = Collections.unmodifiableList(targets);
 
 			// 4. hey, we're done!
-			rebuildMeshes = false;
 			return new IRenderState() {
 				@Override
 				public List<IRenderUpdate> getRenderUpdates() {
@@ -313,6 +628,10 @@ public class DefaultRenderManager implements IRenderManager {
 	private final IRenderer renderer;
 
 	private final SceneState sceneState = new SceneState();
+	private final MeshBatcher batcher = new MeshBatcher(mesh -> sceneState.addMesh(mesh), mesh -> sceneState.removeMesh(mesh));
+
+	private boolean batching;
+	private volatile boolean culling = true;
 
 	public DefaultRenderManager(IRenderer renderer) {
 		this(null, renderer);
@@ -374,25 +693,81 @@ public class DefaultRenderManager implements IRenderManager {
 	@Override
 	public void addMesh(IMesh mesh) {
 		ensureSceneThread();
-		sceneState.addMesh(mesh);
+		if (batching && MeshBatcher.isBatchable(mesh))
+			batcher.add(mesh);
+		else
+			sceneState.addMesh(mesh);
 	}
 
 	@Override
 	public void removeMesh(IMesh mesh) {
 		ensureSceneThread();
-		sceneState.removeMesh(mesh);
+		if (batcher.contains(mesh))
+			batcher.remove(mesh);
+		else
+			sceneState.removeMesh(mesh);
+	}
+
+	@Override
+	public boolean isBatching() {
+		return batching;
+	}
+
+	@Override
+	public void setBatching(boolean batching) {
+		ensureSceneThread();
+		if (this.batching == batching)
+			return;
+		this.batching = batching;
+		if (batching) {
+			for (IMesh mesh : new ArrayList<>(sceneState.meshes.keySet())) {
+				if (MeshBatcher.isBatchable(mesh)) {
+					sceneState.removeMesh(mesh);
+					batcher.add(mesh);
+				}
+			}
+		} else {
+			batcher.clear().forEach(sceneState::addMesh);
+		}
+	}
+
+	@Override
+	public boolean isCulling() {
+		return culling;
+	}
+
+	@Override
+	public void setCulling(boolean culling) {
+		this.culling = culling;
+	}
+
+	@Override
+	public int getNumDrawn(IView view) {
+		ensureSceneThread();
+		SceneViewState state = sceneState.views.get(view);
+		return state == null ? 0 : state.numDrawn;
+	}
+
+	@Override
+	public int getNumCulled(IView view) {
+		ensureSceneThread();
+		SceneViewState state = sceneState.views.get(view);
+		return state == null ? 0 : state.numCulled;
 	}
 
 	@Override
 	public void update() {
 		ensureSceneThread();
-		if (!sceneState.views.isEmpty() && renderer.ready())
+		if (!sceneState.views.isEmpty() && renderer.ready()) {
+			batcher.update();
 			renderer.submit(sceneState.create(renderer));
+		}
 	}
 
 	@Override
 	public void clear() {
 		ensureSceneThread();
+		batcher.clear();
 		sceneState.clear();
 	}
 
@@ -112,6 +112,45 @@ public interface IRenderManager {
 	 */
 	void removeMesh(IMesh mesh);
 
+	/**
+	 * Returns true if static meshes are batched.
+	 */
+	boolean isBatching();
+
+	/**
+	 * Enable or disable batching of static meshes. If enabled, meshes sharing
+	 * a material are merged into a single draw call, and meshes sharing
+	 * geometry as well (see {@link IMesh#createInstance()}) are drawn as
+	 * instances. Meshes with shader transformation, incremental meshes and
+	 * meshes outside the depth and transparency queues are never batched.
+	 * Note that the visibility of batched meshes is ignored.
+	 */
+	void setBatching(boolean batching);
+
+	/**
+	 * Returns true if meshes outside the view frustum are culled.
+	 */
+	boolean isCulling();
+
+	/**
+	 * Enable or disable view frustum culling. Only meshes in the depth and
+	 * transparency queues are culled, meshes with shader transformation and
+	 * instanced meshes are always drawn.
+	 */
+	void setCulling(boolean culling);
+
+	/**
+	 * Returns the number of renderables drawn in the last frame of given view.
+	 * Returns 0 if the view is not registered.
+	 */
+	int getNumDrawn(IView view);
+
+	/**
+	 * Returns the number of renderables culled in the last frame of given view.
+	 * Returns 0 if the view is not registered.
+	 */
+	int getNumCulled(IView view);
+
 	/**
 	 * Update render state and submit to renderer if necessary.
 	 */
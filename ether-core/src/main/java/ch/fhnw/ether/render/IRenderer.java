@@ -32,13 +32,11 @@
 package ch.fhnw.ether.render;
 
 import java.util.List;
-import java.util.Map;
 
 import ch.fhnw.ether.scene.attribute.AbstractAttribute;
 import ch.fhnw.ether.scene.camera.IViewCameraState;
 import ch.fhnw.ether.scene.light.ILight.LightSource;
 import ch.fhnw.ether.scene.mesh.IMesh;
-import ch.fhnw.ether.scene.mesh.material.IMaterial;
 import ch.fhnw.ether.view.IView;
 
 /**
@@ -62,7 +60,18 @@ public interface IRenderer {
 
 		List<LightSource> getLights();
 
-		Map<IMaterial, List<Renderable>> getRenderables();
+		/**
+		 * Returns all visible renderables, sorted by queue, shader, material
+		 * and geometry. Renderables sharing a material are contiguous.
+		 * Renderables outside the view frustum may have been culled.
+		 */
+		List<Renderable> getRenderables();
+
+		/**
+		 * Returns all renderables including culled ones (e.g. for shadow
+		 * casters), in the same order as {@link #getRenderables()}.
+		 */
+		List<Renderable> getAllRenderables();
 		
 		boolean hasPost();
 	}
@@ -49,4 +49,12 @@ public interface IVertexBuffer {
 
 	void disableAttribute(int bufferIndex, int shaderIndex);
 
+	/**
+	 * Enable per-instance transforms at given shader index. Does nothing if
+	 * buffer is not instanced.
+	 */
+	void enableInstances(int shaderIndex);
+
+	void disableInstances(int shaderIndex);
+
 }
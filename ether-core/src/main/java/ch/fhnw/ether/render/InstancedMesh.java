@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.render;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import ch.fhnw.ether.scene.mesh.DefaultMesh;
+import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.util.math.Mat4;
+
+/**
+ * Mesh drawing its geometry once per instance with a per-instance transform,
+ * as a single instanced draw call. Created by {@link MeshBatcher} for
+ * builtin materials, or directly for custom materials whose shader is
+ * instanced (see {@link ch.fhnw.ether.render.shader.base.AbstractShader}).
+ * The updated geometry data consists of the untransformed geometry data
+ * followed by one array holding the column-major instance transforms.
+ */
+public final class InstancedMesh extends DefaultMesh {
+	public static final int TRANSFORM_SIZE = 16;
+
+	private float[] transforms = new float[TRANSFORM_SIZE * 16];
+	private int numInstances;
+
+	public InstancedMesh(IMesh mesh) {
+		super(mesh.getType(), mesh.getMaterial(), mesh.getGeometry(), mesh.getQueue(), flags(mesh));
+		setName("instances of " + mesh.getName());
+	}
+
+	public int getNumInstances() {
+		return numInstances;
+	}
+
+	/**
+	 * Add an instance and return its index.
+	 */
+	public int addInstance(Mat4 transform) {
+		if (TRANSFORM_SIZE * (numInstances + 1) > transforms.length)
+			transforms = Arrays.copyOf(transforms, Math.max(TRANSFORM_SIZE, 2 * transforms.length));
+		setInstance(numInstances, transform);
+		return numInstances++;
+	}
+
+	public void setInstance(int index, Mat4 transform) {
+		System.arraycopy(transform.toArray(), 0, transforms, TRANSFORM_SIZE * index, TRANSFORM_SIZE);
+	}
+
+	/**
+	 * Remove an instance. The last instance is moved to the removed index.
+	 */
+	public void removeInstance(int index) {
+		numInstances--;
+		System.arraycopy(transforms, TRANSFORM_SIZE * numInstances, transforms, TRANSFORM_SIZE * index, TRANSFORM_SIZE);
+	}
+
+	/**
+	 * Replace all instances by the first numInstances column-major transforms
+	 * of the given array, which is taken over without copying, and request an
+	 * update. Use this to update many instances at once.
+	 */
+	public void setInstances(float[] transforms, int numInstances) {
+		if (TRANSFORM_SIZE * numInstances > transforms.length)
+			throw new IllegalArgumentException("array too small for " + numInstances + " instances");
+		this.transforms = transforms;
+		this.numInstances = numInstances;
+		getUpdater().request();
+	}
+
+	@Override
+	public float[][] getUpdatedGeometryData() {
+		float[][] data = getGeometry().getData();
+		float[][] result = Arrays.copyOf(data, data.length + 1);
+		result[data.length] = Arrays.copyOf(transforms, TRANSFORM_SIZE * numInstances);
+		return result;
+	}
+
+	// instances are transformed in the vertex shader, which the shadow volume
+	// shader does not support
+	private static EnumSet<Flag> flags(IMesh mesh) {
+		EnumSet<Flag> flags = EnumSet.of(Flag.DONT_CAST_SHADOW);
+		flags.addAll(mesh.getFlags());
+		return flags;
+	}
+}
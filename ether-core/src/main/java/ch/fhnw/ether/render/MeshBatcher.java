@@ -0,0 +1,495 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.render;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import ch.fhnw.ether.scene.mesh.DefaultMesh;
+import ch.fhnw.ether.scene.mesh.IIncrementalMesh;
+import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.IMesh.Flag;
+import ch.fhnw.ether.scene.mesh.IMesh.Primitive;
+import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.IGeometryAttribute;
+import ch.fhnw.ether.scene.mesh.material.IMaterial;
+import ch.fhnw.util.UpdateRequest;
+import ch.fhnw.util.UpdateRequest.IUpdateListener;
+
+/**
+ * Batches static meshes for {@link DefaultRenderManager}. Meshes sharing
+ * material, primitive type, queue, flags and attribute layout are merged into
+ * batch meshes holding pre-transformed geometry. Meshes that in addition
+ * share their geometry (e.g. created through {@link IMesh#createInstance()})
+ * are drawn as a single instanced draw, once there are at least
+ * {@link #MIN_INSTANCES} of them and the builtin shaders support it.
+ * 
+ * Member updates are queued through {@link UpdateRequest} notifications and
+ * applied on {@link #update()}: instance transforms and same-size geometry
+ * changes are patched in place, everything else re-lays out the affected
+ * batch only. Batch and instance meshes are handed to the scene state
+ * through the add / remove callbacks. Note that the visibility of individual
+ * members is not taken into account.
+ */
+final class MeshBatcher {
+	static final int MIN_INSTANCES = 4;
+	static final int MAX_BATCH_VERTICES = 1 << 16;
+
+	private static final class Key {
+		final IMaterial material;
+		final IGeometry geometry;
+		final Primitive type;
+		final IMesh.Queue queue;
+		final Set<Flag> flags;
+		final IGeometryAttribute[] attributes;
+
+		Key(IMesh mesh, boolean instanced) {
+			this.material = mesh.getMaterial();
+			this.geometry = instanced ? mesh.getGeometry() : null;
+			this.type = mesh.getType();
+			this.queue = mesh.getQueue();
+			this.flags = mesh.getFlags();
+			this.attributes = mesh.getGeometry().getAttributes();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key key = (Key) obj;
+			// materials and geometries are compared by reference
+			return material == key.material && geometry == key.geometry && type == key.type && queue == key.queue
+					&& flags.equals(key.flags) && Arrays.equals(attributes, key.attributes);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(material), System.identityHashCode(geometry), type, queue, flags);
+		}
+	}
+
+	private abstract class Tracked implements IUpdateListener {
+		boolean removed;
+
+		@Override
+		public final void requested(UpdateRequest request) {
+			dirty.add(this);
+		}
+
+		abstract void collect();
+	}
+
+	private final class Member extends Tracked {
+		final IMesh mesh;
+		final InstanceGroup group;
+		Batch batch;
+		int index;
+		int offset;
+		int count;
+		boolean modified;
+		float[][] data;
+
+		Member(IMesh mesh, InstanceGroup group) {
+			this.mesh = mesh;
+			this.group = group;
+		}
+
+		@Override
+		void collect() {
+			mesh.getUpdater().clear();
+			if (batch != null) {
+				batch.modify(this);
+			} else if (group != null && group.mesh != null) {
+				group.mesh.setInstance(index, mesh.getTransform());
+				group.modify();
+			}
+		}
+	}
+
+	private final class GeometryRef extends Tracked {
+		final IGeometry geometry;
+		final Set<Member> members = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		GeometryRef(IGeometry geometry) {
+			this.geometry = geometry;
+		}
+
+		@Override
+		void collect() {
+			geometry.getUpdater().clear();
+			members.forEach(member -> member.batch.modify(member));
+		}
+	}
+
+	private final class Batch {
+		final Key key;
+		final List<Member> members = new ArrayList<>();
+		final List<Member> modified = new ArrayList<>();
+		IMesh mesh;
+		int numVertices;
+		boolean structural;
+
+		Batch(Key key) {
+			this.key = key;
+		}
+
+		void add(Member member) {
+			member.batch = this;
+			member.index = members.size();
+			member.count = 0;
+			members.add(member);
+			numVertices += vertices(member.mesh.getGeometry().getData());
+			structural = true;
+			modify(member);
+		}
+
+		void remove(Member member) {
+			Member last = members.remove(members.size() - 1);
+			if (last != member) {
+				members.set(member.index, last);
+				last.index = member.index;
+			}
+			numVertices -= vertices(member.mesh.getGeometry().getData());
+			member.batch = null;
+			member.modified = false;
+			member.data = null;
+			structural = true;
+			modifiedBatches.add(this);
+		}
+
+		void modify(Member member) {
+			if (!member.modified) {
+				member.modified = true;
+				modified.add(member);
+				modifiedBatches.add(this);
+			}
+		}
+
+		void rebuild() {
+			boolean relayout = structural || mesh == null;
+			for (Member member : modified) {
+				if (member.batch != this || !member.modified)
+					continue;
+				member.data = member.mesh.getUpdatedGeometryData();
+				relayout |= vertices(member.data) != member.count;
+			}
+			if (members.isEmpty()) {
+				if (mesh != null)
+					removeMesh.accept(mesh);
+				mesh = null;
+				List<Batch> list = batches.get(key);
+				list.remove(this);
+				if (list.isEmpty())
+					batches.remove(key);
+			} else if (relayout) {
+				relayout();
+			} else {
+				mesh.getGeometry().modify((attributes, data) -> {
+					for (Member member : modified) {
+						if (member.batch != this || member.data == null)
+							continue;
+						for (int i = 0; i < attributes.length; ++i) {
+							int n = attributes[i].getNumComponents();
+							System.arraycopy(member.data[i], 0, data[i], member.offset * n, member.count * n);
+						}
+					}
+				});
+			}
+			for (Member member : modified) {
+				if (member.batch == this) {
+					member.modified = false;
+					member.data = null;
+				}
+			}
+			modified.clear();
+			structural = false;
+		}
+
+		private void relayout() {
+			IGeometryAttribute[] attributes = key.attributes;
+			float[][] src = mesh != null ? mesh.getGeometry().getData() : null;
+			numVertices = 0;
+			for (Member member : members)
+				numVertices += member.data != null ? vertices(member.data) : member.count;
+
+			float[][] dst = new float[attributes.length][];
+			for (int i = 0; i < attributes.length; ++i)
+				dst[i] = new float[numVertices * attributes[i].getNumComponents()];
+
+			int offset = 0;
+			for (Member member : members) {
+				int count = member.data != null ? vertices(member.data) : member.count;
+				for (int i = 0; i < attributes.length; ++i) {
+					int n = attributes[i].getNumComponents();
+					if (member.data != null)
+						System.arraycopy(member.data[i], 0, dst[i], offset * n, count * n);
+					else
+						System.arraycopy(src[i], member.offset * n, dst[i], offset * n, count * n);
+				}
+				member.offset = offset;
+				member.count = count;
+				offset += count;
+			}
+
+			if (mesh == null) {
+				mesh = new DefaultMesh(key.type, key.material, new DefaultGeometry(attributes, dst), key.queue, key.flags);
+				mesh.setName("batch of " + members.get(0).mesh.getName());
+				addMesh.accept(mesh);
+			} else {
+				mesh.getGeometry().modify((a, data) -> System.arraycopy(dst, 0, data, 0, dst.length));
+			}
+		}
+	}
+
+	private final class InstanceGroup {
+		final Key key;
+		final List<Member> members = new ArrayList<>();
+		InstancedMesh mesh;
+		boolean added;
+
+		InstanceGroup(Key key) {
+			this.key = key;
+		}
+
+		void add(Member member) {
+			members.add(member);
+			if (mesh != null) {
+				member.index = mesh.addInstance(member.mesh.getTransform());
+				modify();
+			} else if (members.size() >= MIN_INSTANCES) {
+				mesh = new InstancedMesh(member.mesh);
+				for (int i = 0; i < members.size(); ++i) {
+					Member m = members.get(i);
+					if (m.batch != null)
+						removeFromBatch(m);
+					m.index = mesh.addInstance(m.mesh.getTransform());
+				}
+				modify();
+			} else {
+				addToBatch(member);
+			}
+		}
+
+		void remove(Member member) {
+			if (mesh != null) {
+				// instances are kept in same order as members
+				mesh.removeInstance(member.index);
+				Member last = members.remove(members.size() - 1);
+				if (last != member) {
+					members.set(member.index, last);
+					last.index = member.index;
+				}
+				modify();
+			} else {
+				members.remove(member);
+				removeFromBatch(member);
+			}
+			if (members.isEmpty()) {
+				if (added)
+					removeMesh.accept(mesh);
+				groups.remove(key);
+			}
+		}
+
+		void modify() {
+			modifiedGroups.add(this);
+		}
+
+		void flush() {
+			if (members.isEmpty())
+				return;
+			if (!added) {
+				addMesh.accept(mesh);
+				added = true;
+			} else {
+				mesh.getUpdater().request();
+			}
+		}
+	}
+
+	private final Consumer<IMesh> addMesh;
+	private final Consumer<IMesh> removeMesh;
+
+	private final Map<IMesh, Member> members = new IdentityHashMap<>();
+	private final Map<IGeometry, GeometryRef> geometries = new IdentityHashMap<>();
+	private final Map<Key, List<Batch>> batches = new HashMap<>();
+	private final Map<Key, InstanceGroup> groups = new HashMap<>();
+
+	private final Queue<Tracked> dirty = new ConcurrentLinkedQueue<>();
+	private final Set<Batch> modifiedBatches = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final Set<InstanceGroup> modifiedGroups = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	MeshBatcher(Consumer<IMesh> addMesh, Consumer<IMesh> removeMesh) {
+		this.addMesh = addMesh;
+		this.removeMesh = removeMesh;
+	}
+
+	/**
+	 * Returns true if mesh can be batched. Incremental meshes, meshes
+	 * transformed by the shader, non-list primitives and meshes outside the
+	 * depth and transparency queues are not batched.
+	 */
+	static boolean isBatchable(IMesh mesh) {
+		if (mesh instanceof IIncrementalMesh || mesh.hasFlag(Flag.SHADER_TRANSFORMATION))
+			return false;
+		if (mesh.getQueue() != IMesh.Queue.DEPTH && mesh.getQueue() != IMesh.Queue.TRANSPARENCY)
+			return false;
+		switch (mesh.getType()) {
+		case POINTS:
+		case LINES:
+		case TRIANGLES:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	boolean contains(IMesh mesh) {
+		return members.containsKey(mesh);
+	}
+
+	void add(IMesh mesh) {
+		if (members.containsKey(mesh))
+			throw new IllegalArgumentException("mesh already in renderer: " + mesh);
+		InstanceGroup group = null;
+		if (ShaderBuilder.supportsInstancing(mesh))
+			group = groups.computeIfAbsent(new Key(mesh, true), InstanceGroup::new);
+		Member member = new Member(mesh, group);
+		members.put(mesh, member);
+		mesh.getUpdater().addListener(member);
+		mesh.getUpdater().clear();
+		if (group != null)
+			group.add(member);
+		else
+			addToBatch(member);
+	}
+
+	void remove(IMesh mesh) {
+		Member member = members.remove(mesh);
+		if (member == null)
+			throw new IllegalArgumentException("mesh not in renderer: " + mesh);
+		member.removed = true;
+		mesh.getUpdater().removeListener(member);
+		if (member.group != null)
+			member.group.remove(member);
+		else
+			removeFromBatch(member);
+	}
+
+	/**
+	 * Apply all pending member changes to batch and instance meshes. Needs to
+	 * be called on scene thread before the scene state is created.
+	 */
+	void update() {
+		for (Tracked tracked; (tracked = dirty.poll()) != null;) {
+			if (!tracked.removed)
+				tracked.collect();
+		}
+		modifiedBatches.forEach(Batch::rebuild);
+		modifiedBatches.clear();
+		modifiedGroups.forEach(InstanceGroup::flush);
+		modifiedGroups.clear();
+	}
+
+	/**
+	 * Remove all batch and instance meshes and return the batched meshes.
+	 */
+	List<IMesh> clear() {
+		List<IMesh> result = new ArrayList<>(members.keySet());
+		members.forEach((mesh, member) -> mesh.getUpdater().removeListener(member));
+		geometries.forEach((geometry, ref) -> geometry.getUpdater().removeListener(ref));
+		batches.values().forEach(list -> list.forEach(batch -> {
+			if (batch.mesh != null)
+				removeMesh.accept(batch.mesh);
+		}));
+		groups.values().forEach(group -> {
+			if (group.added)
+				removeMesh.accept(group.mesh);
+		});
+		members.clear();
+		geometries.clear();
+		batches.clear();
+		groups.clear();
+		dirty.clear();
+		modifiedBatches.clear();
+		modifiedGroups.clear();
+		return result;
+	}
+
+	private void addToBatch(Member member) {
+		Key key = new Key(member.mesh, false);
+		List<Batch> list = batches.computeIfAbsent(key, k -> new ArrayList<>());
+		int count = vertices(member.mesh.getGeometry().getData());
+		Batch batch = list.isEmpty() ? null : list.get(list.size() - 1);
+		if (batch == null || batch.numVertices + count > MAX_BATCH_VERTICES) {
+			batch = new Batch(key);
+			list.add(batch);
+		}
+		batch.add(member);
+
+		GeometryRef ref = geometries.computeIfAbsent(member.mesh.getGeometry(), g -> {
+			GeometryRef r = new GeometryRef(g);
+			g.getUpdater().addListener(r);
+			g.getUpdater().clear();
+			return r;
+		});
+		ref.members.add(member);
+	}
+
+	private void removeFromBatch(Member member) {
+		member.batch.remove(member);
+		IGeometry geometry = member.mesh.getGeometry();
+		GeometryRef ref = geometries.get(geometry);
+		ref.members.remove(member);
+		if (ref.members.isEmpty()) {
+			ref.removed = true;
+			geometries.remove(geometry);
+			geometry.getUpdater().removeListener(ref);
+		}
+	}
+
+	private static int vertices(float[][] data) {
+		return data[0].length / 3;
+	}
+}
@@ -41,12 +41,14 @@ import ch.fhnw.ether.render.shader.IShader;
 import ch.fhnw.ether.scene.attribute.IAttribute;
 import ch.fhnw.ether.scene.mesh.IMesh;
 import ch.fhnw.ether.scene.mesh.IMesh.Flag;
+import ch.fhnw.ether.scene.mesh.material.IMaterial;
 
 public final class Renderable {
 	private final IShader shader;
 	private final VertexBuffer buffer;
 	private final IMesh.Queue queue;
 	private final Set<IMesh.Flag> flags;
+	private final IMaterial material;
 
 	public Renderable(IMesh mesh, Map<IAttribute, Supplier<?>> globals) {
 		this(null, mesh, globals);
@@ -57,6 +59,7 @@ public final class Renderable {
 		this.buffer = new VertexBuffer(this.shader, mesh);
 		this.queue = mesh.getQueue();
 		this.flags = mesh.getFlags();
+		this.material = mesh.getMaterial();
 	}
 
 	public void update(Object[] materialData, float[][] geometryData) {
@@ -91,6 +94,10 @@ public final class Renderable {
 		return queue;
 	}
 
+	public IMaterial getMaterial() {
+		return material;
+	}
+
 	public boolean hasFlag(IMesh.Flag flag) {
 		return flags.contains(flag);
 	}
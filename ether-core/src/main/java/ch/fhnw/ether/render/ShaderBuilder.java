@@ -121,6 +121,16 @@ public final class ShaderBuilder {
 		return shader;
 	}
 
+	/**
+	 * Returns true if the builtin shader for given mesh can draw instances.
+	 */
+	public static boolean supportsInstancing(IMesh mesh) {
+		IMaterial material = mesh.getMaterial();
+		if (material instanceof ICustomMaterial || mesh.getType() != IMesh.Primitive.TRIANGLES)
+			return false;
+		return material instanceof ColorMaterial || material instanceof ColorMapMaterial || material instanceof ShadedMaterial;
+	}
+
 	// as soon as we have more builtin shaders we should move to a more flexible
 	// scheme, e.g. derive shader from provided attributes
 	private static IShader createShader(IMesh mesh, Collection<IAttribute> attributes) {
@@ -129,6 +139,7 @@ public final class ShaderBuilder {
 			return ((ICustomMaterial) material).getShader();
 		}
 		Supplier<Mat4> transformer = mesh.hasFlag(Flag.SHADER_TRANSFORMATION) ? () -> mesh.getTransform() : null;
+		boolean instanced = mesh instanceof InstancedMesh;
 		switch (mesh.getType()) {
 		case POINTS:
 			return new PointShader(attributes, transformer);
@@ -140,10 +151,10 @@ public final class ShaderBuilder {
 		case TRIANGLE_STRIP:
 		case TRIANGLE_FAN:
 			if (material instanceof ColorMaterial || material instanceof ColorMapMaterial) {
-				return new UnshadedTriangleShader(attributes, transformer);
+				return new UnshadedTriangleShader(attributes, transformer, instanced);
 			} else if (material instanceof ShadedMaterial) {
 				//return new FlatShadedTriangleShader(attributes);
-				return new FragmentShadedTriangleShader(attributes, transformer);
+				return new FragmentShadedTriangleShader(attributes, transformer, instanced);
 			}
 		}
 		throw new UnsupportedOperationException("cant create shader for mesh: " + mesh);
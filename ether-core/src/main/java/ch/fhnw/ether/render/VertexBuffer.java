@@ -38,6 +38,8 @@ import java.util.function.Consumer;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
 
 import ch.fhnw.ether.render.gl.FloatArrayBuffer;
 import ch.fhnw.ether.render.gl.IArrayBuffer;
@@ -54,6 +56,7 @@ public final class VertexBuffer implements IVertexBuffer {
 			ThreadLocal.withInitial(() -> BufferUtils.createFloatBuffer(1024 * 1024));
 
 	private final IArrayBuffer buffer;
+	private final IArrayBuffer instances;
 
 	private final int stride;
 	private final int[] sizes;
@@ -63,6 +66,7 @@ public final class VertexBuffer implements IVertexBuffer {
 	
 	public VertexBuffer(IShader shader, IMesh mesh) {
 		this.buffer = (mesh instanceof IIncrementalMesh) ? ((IIncrementalMesh) mesh).getArrayBuffer() : new FloatArrayBuffer();
+		this.instances = (mesh instanceof InstancedMesh) ? new FloatArrayBuffer() : null;
 		this.mesh = mesh;
 		IGeometryAttribute[] attributes = mesh.getGeometry().getAttributes();
 		List<IShaderArray<?>> arrays = shader.getArrays();
@@ -105,15 +109,17 @@ public final class VertexBuffer implements IVertexBuffer {
 			sources[attributeIndex] = source;
 			size += source.length;
 		}
-		FloatBuffer buffer = TARGET.get();
-		if (buffer.capacity() < size) {
-			buffer = BufferUtils.createFloatBuffer(2 * size);
-			TARGET.set(buffer);
-		}
-		buffer.clear();
-		buffer.limit(size);
+		FloatBuffer buffer = target(size);
 		interleave(buffer, sources, sizes);
 		this.buffer.load(buffer);
+
+		// instance transforms are passed as last array
+		if (instances != null) {
+			float[] transforms = data[data.length - 1];
+			buffer = target(transforms.length);
+			buffer.put(transforms);
+			instances.load(buffer);
+		}
 	}
 	
 	@Override
@@ -145,12 +151,45 @@ public final class VertexBuffer implements IVertexBuffer {
 			GL20.glDisableVertexAttribArray(shaderIndex);
 	}
 
+	@Override
+	public void enableInstances(int shaderIndex) {
+		if (instances == null || instances.isEmpty() || shaderIndex < 0)
+			return;
+		instances.bind();
+		for (int i = 0; i < 4; ++i) {
+			GL20.glEnableVertexAttribArray(shaderIndex + i);
+			GL20.glVertexAttribPointer(shaderIndex + i, 4, GL11.GL_FLOAT, false, InstancedMesh.TRANSFORM_SIZE * 4, i * 16);
+			GL33.glVertexAttribDivisor(shaderIndex + i, 1);
+		}
+	}
+
+	@Override
+	public void disableInstances(int shaderIndex) {
+		if (instances == null || instances.isEmpty() || shaderIndex < 0)
+			return;
+		for (int i = 0; i < 4; ++i) {
+			GL33.glVertexAttribDivisor(shaderIndex + i, 0);
+			GL20.glDisableVertexAttribArray(shaderIndex + i);
+		}
+	}
+
 	@Override
 	public String toString() {
 		return buffer.size() + " " + stride;
 	}
 
-	private static void interleave(FloatBuffer target, float[][] data, int[] sizes) {
+	private static FloatBuffer target(int size) {
+		FloatBuffer buffer = TARGET.get();
+		if (buffer.capacity() < size) {
+			buffer = BufferUtils.createFloatBuffer(2 * size);
+			TARGET.set(buffer);
+		}
+		buffer.clear();
+		buffer.limit(size);
+		return buffer;
+	}
+
+	static void interleave(FloatBuffer target, float[][] data, int[] sizes) {
 		for (int i = 0; i < data[0].length / sizes[0]; ++i) {
 			for (int j = 0; j < data.length; ++j) {
 				int k = (i * sizes[j]) % data[j].length;
@@ -168,6 +207,8 @@ public final class VertexBuffer implements IVertexBuffer {
 	public Consumer<Integer> drawing() {
 		if (mesh instanceof IIncrementalMesh) 
 			return (mode) -> ((IIncrementalMesh) mesh).glDrawArrays(mode, getNumVertices());
+		if (instances != null)
+			return (mode) -> GL31.glDrawArraysInstanced(mode, 0, getNumVertices(), instances.size() / InstancedMesh.TRANSFORM_SIZE);
 		return (mode) -> GL11.glDrawArrays(mode, 0, getNumVertices());
 	}
 }
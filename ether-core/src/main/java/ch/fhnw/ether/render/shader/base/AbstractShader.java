@@ -52,6 +52,8 @@ public abstract class AbstractShader implements IShader {
 
 	public static final String INLINE = "/*__inline__*/\n";
 
+	public static final String INSTANCE_TRANSFORM = "instanceTransform";
+
 	// important: keep this in sync with Primitive enum in IMesh
 	public static final int[] MODE = { 
 			GL11.GL_POINTS, GL11.GL_LINES, GL11.GL_LINE_STRIP, GL11.GL_LINE_LOOP,
@@ -64,7 +66,9 @@ public abstract class AbstractShader implements IShader {
 	private final Primitive type;
 	private final boolean SHADER_TRANSFORMATION;
 	private final Supplier<Mat4> transformer;
+	private final boolean instanced;
 	private Program program;
+	private int instanceIndex = -1;
 	private Mat4FloatUniform transformation;
 
 	private List<IShaderUniform<?>> uniforms = new ArrayList<>();
@@ -72,12 +76,21 @@ public abstract class AbstractShader implements IShader {
 	private List<Runnable> preShades = new ArrayList<>();
 	
 	protected AbstractShader(Class<?> root, String name, String source, Primitive type, Supplier<Mat4> transformer) {
+		this(root, name, source, type, transformer, false);
+	}
+
+	/**
+	 * Instanced shaders use the "_vert_inst.glsl" vertex shader, which
+	 * receives a per-instance transform as mat4 attribute "instanceTransform".
+	 */
+	protected AbstractShader(Class<?> root, String name, String source, Primitive type, Supplier<Mat4> transformer, boolean instanced) {
 		this.root = root;
 		this.name = name;
 		this.source = new String[] { source };
 		this.type = type;
 		this.transformer = transformer;
 		this.SHADER_TRANSFORMATION = transformer != null;
+		this.instanced = instanced;
 		transformationInit();
 	}
 
@@ -88,6 +101,7 @@ public abstract class AbstractShader implements IShader {
 		this.type = type;
 		this.transformer = transformer;
 		this.SHADER_TRANSFORMATION = transformer != null;
+		this.instanced = false;
 		transformationInit();
 	}
 
@@ -113,7 +127,7 @@ public abstract class AbstractShader implements IShader {
 			String fragShader;
 			String geomShader;
 			if (source.length == 1) {
-				vertShader = source[0] + (SHADER_TRANSFORMATION ? "_vert_trans.glsl" : "_vert.glsl");
+				vertShader = source[0] + (instanced ? "_vert_inst.glsl" : SHADER_TRANSFORMATION ? "_vert_trans.glsl" : "_vert.glsl");
 				fragShader = source[0] + "_frag.glsl";
 				geomShader = source[0] + "_geom.glsl";
 			} else {
@@ -123,6 +137,8 @@ public abstract class AbstractShader implements IShader {
 			}
 			try {
 				program = Program.create(root, vertShader, fragShader, geomShader, System.err);
+				if (instanced)
+					instanceIndex = program.getAttributeLocation(INSTANCE_TRANSFORM);
 			} catch (Throwable t) {
 				LOG.severe("cannot create glsl program. exiting.", t);
 				System.exit(1);
@@ -150,10 +166,14 @@ public abstract class AbstractShader implements IShader {
 		
 		buffer.bind();
 		arrays.forEach(attr -> attr.enable(program, buffer));
+		if (instanced)
+			buffer.enableInstances(instanceIndex);
 
 		int mode = MODE[type.ordinal()];
 		buffer.drawing().accept(mode);
 
+		if (instanced)
+			buffer.disableInstances(instanceIndex);
 		arrays.forEach(attr -> attr.disable(program, buffer));
 		buffer.unbind();
 	}
@@ -53,8 +53,12 @@ import ch.fhnw.util.math.Mat4;
 
 public class FragmentShadedTriangleShader extends AbstractShader {
 	public FragmentShadedTriangleShader(Collection<IAttribute> attributes, Supplier<Mat4> transformer) {
+		this(attributes, transformer, false);
+	}
+
+	public FragmentShadedTriangleShader(Collection<IAttribute> attributes, Supplier<Mat4> transformer, boolean instanced) {
 		super(IShader.class, "builtin.shader.fragment_shaded_triangles", "/shaders/fragment_shaded_vct", 
-				Primitive.TRIANGLES, transformer);
+				Primitive.TRIANGLES, transformer, instanced);
 
 		boolean useTexture = attributes.contains(IGeometry.COLOR_MAP_ARRAY);
 
@@ -52,7 +52,11 @@ import ch.fhnw.util.math.Mat4;
 
 public class UnshadedTriangleShader extends AbstractShader {
 	public UnshadedTriangleShader(Collection<IAttribute> attributes, Supplier<Mat4> transformer) {
-		super(IShader.class, "builtin.shader.unshaded_triangles", "/shaders/unshaded_vct", Primitive.TRIANGLES, transformer);
+		this(attributes, transformer, false);
+	}
+
+	public UnshadedTriangleShader(Collection<IAttribute> attributes, Supplier<Mat4> transformer, boolean instanced) {
+		super(IShader.class, "builtin.shader.unshaded_triangles", "/shaders/unshaded_vct", Primitive.TRIANGLES, transformer, instanced);
 
 		boolean useVertexColors = attributes.contains(IGeometry.COLOR_ARRAY);
 		boolean useTexture = attributes.contains(IGeometry.COLOR_MAP_ARRAY);
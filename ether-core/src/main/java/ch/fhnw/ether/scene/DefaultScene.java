@@ -34,18 +34,50 @@ package ch.fhnw.ether.scene;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import ch.fhnw.ether.controller.IController;
 import ch.fhnw.ether.render.IRenderManager;
 import ch.fhnw.ether.scene.light.ILight;
 import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.IMesh.Flag;
+import ch.fhnw.util.UpdateRequest;
+import ch.fhnw.util.UpdateRequest.IUpdateListener;
+import ch.fhnw.util.math.geometry.BoundingBox;
+import ch.fhnw.util.math.geometry.BoundingVolumeHierarchy;
 
 public class DefaultScene implements IScene {
 
+	// Meshes are kept in a bounding volume hierarchy that is refitted lazily
+	// from their update notifications. All other objects (cameras, lights, and
+	// meshes whose transform is applied in the shader) are tested linearly.
+	private final class Entry implements IUpdateListener {
+		final I3DObject object;
+		BoundingBox bounds;
+
+		Entry(I3DObject object) {
+			this.object = object;
+		}
+
+		@Override
+		public void requested(UpdateRequest request) {
+			dirty.add(this);
+		}
+	}
+
 	private final IController controller;
 
-	private final List<I3DObject> objects = new ArrayList<>();
+	private final Map<I3DObject, Entry> objects = new LinkedHashMap<>();
+	private final List<Entry> unindexed = new ArrayList<>();
+	private final BoundingVolumeHierarchy<Entry> tree = new BoundingVolumeHierarchy<>();
+	private final Queue<Entry> dirty = new ConcurrentLinkedQueue<>();
+	private List<I3DObject> snapshot;
 
 	public DefaultScene(IController controller) {
 		this.controller = controller;
@@ -55,7 +87,7 @@ public class DefaultScene implements IScene {
 	public final void add3DObject(I3DObject object) {
 		if(object == null)
 			throw new NullPointerException("object == null");
-		if (objects.contains(object))
+		if (objects.containsKey(object))
 			throw new IllegalArgumentException("object already in scene: " + object);
 
 		IRenderManager rm = controller.getRenderManager();
@@ -63,7 +95,16 @@ public class DefaultScene implements IScene {
 			rm.addLight((ILight) object);
 		else if (object instanceof IMesh)
 			rm.addMesh((IMesh) object);
-		objects.add(object);
+
+		Entry entry = new Entry(object);
+		objects.put(object, entry);
+		snapshot = null;
+		if (isIndexed(object)) {
+			object.getUpdater().addListener(entry);
+			index(entry);
+		} else {
+			unindexed.add(entry);
+		}
 	}
 
 	@Override
@@ -80,7 +121,8 @@ public class DefaultScene implements IScene {
 
 	@Override
 	public final void remove3DObject(I3DObject object) {
-		if (!objects.contains(object))
+		Entry entry = objects.get(object);
+		if (entry == null)
 			throw new IllegalArgumentException("object not in scene: " + object);
 
 		IRenderManager rm = controller.getRenderManager();
@@ -88,7 +130,19 @@ public class DefaultScene implements IScene {
 			rm.removeLight((ILight) object);
 		else if (object instanceof IMesh)
 			rm.removeMesh((IMesh) object);
+
 		objects.remove(object);
+		snapshot = null;
+		if (isIndexed(object)) {
+			object.getUpdater().removeListener(entry);
+			dirty.remove(entry);
+			if (tree.contains(entry))
+				tree.remove(entry);
+			else
+				unindexed.remove(entry);
+		} else {
+			unindexed.remove(entry);
+		}
 	}
 
 	@Override
@@ -105,10 +159,62 @@ public class DefaultScene implements IScene {
 
 	@Override
 	public final List<I3DObject> get3DObjects() {
-		return Collections.unmodifiableList(objects);
+		List<I3DObject> result = snapshot;
+		if (result == null) {
+			result = Collections.unmodifiableList(new ArrayList<>(objects.keySet()));
+			snapshot = result;
+		}
+		return result;
+	}
+
+	@Override
+	public final void visit3DObjects(Predicate<BoundingBox> bounds, Consumer<I3DObject> visitor) {
+		refit();
+		tree.query(bounds, entry -> {
+			if (bounds.test(entry.bounds))
+				visitor.accept(entry.object);
+		});
+		for (Entry entry : unindexed) {
+			BoundingBox b = entry.object.getBounds();
+			if (b == null || !b.isValid() || bounds.test(b))
+				visitor.accept(entry.object);
+		}
 	}
 
 	protected final IController getController() {
 		return controller;
 	}
+
+	private static boolean isIndexed(I3DObject object) {
+		return object instanceof IMesh && !((IMesh) object).hasFlag(Flag.SHADER_TRANSFORMATION);
+	}
+
+	private void index(Entry entry) {
+		// clear before reading, so changes during refit are not lost
+		entry.object.getUpdater().clear();
+		BoundingBox b = entry.object.getBounds();
+		boolean valid = b != null && b.isValid();
+		boolean inTree = tree.contains(entry);
+		if (valid) {
+			entry.bounds = b;
+			if (inTree) {
+				tree.update(entry, b);
+			} else {
+				unindexed.remove(entry);
+				tree.add(entry, b);
+			}
+		} else if (!unindexed.contains(entry)) {
+			if (inTree)
+				tree.remove(entry);
+			entry.bounds = null;
+			unindexed.add(entry);
+		}
+	}
+
+	private void refit() {
+		for (Entry entry; (entry = dirty.poll()) != null;) {
+			if (objects.get(entry.object) == entry)
+				index(entry);
+		}
+	}
 }
@@ -31,11 +31,14 @@
 
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import ch.fhnw.ether.scene.camera.ICamera;
 import ch.fhnw.ether.scene.light.ILight;
 import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.util.math.geometry.BoundingBox;
 
 // TODO: needs extensions (hierarchy, visitors, picking, etc)
 public interface IScene {
@@ -64,6 +67,20 @@ public interface IScene {
 		}
 
 	Collection<I3DObject> get3DObjects();
+
+		/**
+		 * Visit all objects whose bounds pass the predicate. Objects without
+		 * valid bounds are always visited. The predicate must hold for a box if
+		 * it holds for any box contained in it, so implementations may prune
+		 * with enclosing boxes.
+		 */
+		default void visit3DObjects(Predicate<BoundingBox> bounds, Consumer<I3DObject> visitor) {
+			for (I3DObject object : get3DObjects()) {
+				BoundingBox b = object.getBounds();
+				if (b == null || !b.isValid() || bounds.test(b))
+					visitor.accept(object);
+			}
+		}
 	
 		default Set<ICamera> getCameras() {
 			return get3DObjects().stream().filter(p -> p instanceof ICamera).map(p -> (ICamera) p).collect(Collectors.toSet());		
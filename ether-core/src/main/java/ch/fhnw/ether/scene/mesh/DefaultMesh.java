@@ -214,14 +214,12 @@ public class DefaultMesh implements IMesh {
 		float[][] dst = new float[src.length][];
 		IGeometryAttribute[] attrs = geometry.getAttributes();
 		Mat4 tp = getTransform();
-		dst[0] = tp.transform(src[0]);
-		for (int i = 1; i < src.length; ++i) {
-			if (attrs[i].equals(IGeometry.NORMAL_ARRAY)) {
-				Mat3 tn = new Mat3(tp).inverse().transpose();
-				dst[i] = tn.transform(src[i]);
-			} else {
-				dst[i] = Arrays.copyOf(src[i], src[i].length);
-			}
+		Mat3 tn = null;
+		for (int i = 0; i < src.length; ++i) {
+			if (tn == null && i > 0 && attrs[i].equals(IGeometry.NORMAL_ARRAY))
+				tn = MeshUtilities.getNormalTransform(tp);
+			dst[i] = new float[src[i].length];
+			MeshUtilities.transform(attrs, i, src[i], tp, tn, dst[i], 0);
 		}
 		return dst;
 	}
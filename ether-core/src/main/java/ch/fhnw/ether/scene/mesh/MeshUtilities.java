@@ -52,10 +52,12 @@ import ch.fhnw.ether.scene.mesh.material.LineMaterial;
 import ch.fhnw.ether.scene.mesh.material.PointMaterial;
 import ch.fhnw.ether.scene.mesh.material.ShadedMaterial;
 import ch.fhnw.util.ArrayUtilities;
-import ch.fhnw.util.FloatList;
 import ch.fhnw.util.color.RGB;
 import ch.fhnw.util.color.RGBA;
+import ch.fhnw.util.math.Mat3;
+import ch.fhnw.util.math.Mat4;
 import ch.fhnw.util.math.Vec3;
+import ch.fhnw.util.math.Vec3Arrays;
 import ch.fhnw.util.math.geometry.Polygon;
 
 public final class MeshUtilities {
@@ -407,14 +409,6 @@ public final class MeshUtilities {
 	 * reference.
 	 */
 	public static List<IMesh> mergeMeshes(Collection<IMesh> meshes) {
-		int maxNumAttributes = 0;
-		for (IMesh mesh : meshes)
-			maxNumAttributes = Math.max(maxNumAttributes, mesh.getMaterial().getRequiredAttributes().length);
-		
-		FloatList[] buffers = new FloatList[maxNumAttributes];
-		for (int i = 0; i < maxNumAttributes; ++i)
-			buffers[i] = new FloatList();		
-		
 		// create a set from list (because of removeAll at the end)
 		Set<IMesh> set = new HashSet<>(meshes);
 
@@ -432,19 +426,43 @@ public final class MeshUtilities {
 
 			IMaterial material = first.getMaterial();
 			IGeometryAttribute[] attributes = material.getRequiredAttributes();
-			FloatList data[] = new FloatList[attributes.length];
-			for (int i = 0; i < data.length; ++i) {
-				data[i] = buffers[i];
-				data[i].clear();
-			}
 
+			// size the merged arrays first, then transform each mesh directly into them
+			List<float[][]> sources = new ArrayList<>(same.size());
+			int[] sizes = new int[attributes.length];
 			for (IMesh mesh : same) {
 				IGeometryAttribute[] ga = mesh.getGeometry().getAttributes();
-				float[][] gd = mesh.getTransformedGeometryData();
+				float[][] gd = mesh instanceof DefaultMesh ? mesh.getGeometry().getData() : mesh.getTransformedGeometryData();
+				sources.add(gd);
+				for (int i = 0; i < attributes.length; ++i) {
+					for (int j = 0; j < ga.length; j++) {
+						if (attributes[i].id().equals(ga[j].id()))
+							sizes[i] += gd[j].length;
+					}
+				}
+			}
+
+			float[][] data = new float[attributes.length][];
+			for (int i = 0; i < data.length; ++i)
+				data[i] = new float[sizes[i]];
+			int[] offsets = new int[attributes.length];
+			for (int k = 0; k < same.size(); ++k) {
+				IMesh mesh = same.get(k);
+				IGeometryAttribute[] ga = mesh.getGeometry().getAttributes();
+				float[][] gd = sources.get(k);
+				Mat4 transform = mesh.getTransform();
+				Mat3 normalTransform = null;
 				for (int i = 0; i < attributes.length; ++i) {
 					for (int j = 0; j < ga.length; j++) {
 						if (attributes[i].id().equals(ga[j].id())) {
-							data[i].addAll(gd[j]);
+							if (mesh instanceof DefaultMesh) {
+								if (normalTransform == null && ga[j].equals(IGeometry.NORMAL_ARRAY))
+									normalTransform = getNormalTransform(transform);
+								transform(ga, j, gd[j], transform, normalTransform, data[i], offsets[i]);
+							} else {
+								System.arraycopy(gd[j], 0, data[i], offsets[i], gd[j].length);
+							}
+							offsets[i] += gd[j].length;
 						}
 					}
 				}
@@ -453,5 +471,24 @@ public final class MeshUtilities {
 			set.removeAll(same);
 		}
 		return result;
-	}	
+	}
+
+	/**
+	 * Writes attribute index of a geometry to dst at offset: vertices
+	 * (attribute 0) are transformed by transform, normals by normalTransform
+	 * and all other attributes are copied.
+	 */
+	static void transform(IGeometryAttribute[] attributes, int index, float[] src, Mat4 transform, Mat3 normalTransform, float[] dst, int offset) {
+		int count = src.length / 3;
+		if (index == 0 && transform != Mat4.ID)
+			Vec3Arrays.transformPoints(transform, src, 0, dst, offset, count);
+		else if (index != 0 && attributes[index].equals(IGeometry.NORMAL_ARRAY) && normalTransform != Mat3.ID)
+			Vec3Arrays.transformVectors(normalTransform, src, 0, dst, offset, count);
+		else
+			System.arraycopy(src, 0, dst, offset, src.length);
+	}
+
+	static Mat3 getNormalTransform(Mat4 transform) {
+		return transform == Mat4.ID ? Mat3.ID : new Mat3(transform).inverse().transpose();
+	}
 }
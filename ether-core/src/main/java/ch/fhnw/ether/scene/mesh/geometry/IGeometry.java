@@ -34,8 +34,8 @@ package ch.fhnw.ether.scene.mesh.geometry;
 import ch.fhnw.ether.scene.attribute.AbstractAttribute;
 import ch.fhnw.ether.scene.attribute.ITypedAttribute;
 import ch.fhnw.util.UpdateRequest.IUpdateTracker;
-import ch.fhnw.util.math.MathUtilities;
 import ch.fhnw.util.math.Vec3;
+import ch.fhnw.util.math.Vec3Arrays;
 
 public interface IGeometry extends IUpdateTracker {
 	interface IGeometryAttribute extends ITypedAttribute<float[]> {
@@ -157,33 +157,7 @@ public interface IGeometry extends IUpdateTracker {
 	 */
 	static float[] createNormals(float[] triangles) {
 		float[] normals = new float[triangles.length];
-		for (int i = 0; i < triangles.length; i += 9) {
-			float ax = triangles[i + 3] - triangles[i];
-			float ay = triangles[i + 4] - triangles[i + 1];
-			float az = triangles[i + 5] - triangles[i + 2];
-			float bx = triangles[i + 6] - triangles[i];
-			float by = triangles[i + 7] - triangles[i + 1];
-			float bz = triangles[i + 8] - triangles[i + 2];
-			
-			float nx = ay * bz - az * by;
-			float ny = az * bx - ax * bz;
-			float nz = ax * by - ay * bx;
-			
-			float l = MathUtilities.length(nx, ny, nz);
-			if (MathUtilities.isZero(l)) {
-				nx = 0;
-				ny = 0;
-				nz = 1;
-			} else {
-				nx /= l;
-				ny /= l;
-				nz /= l;
-			}
-			
-			normals[i] = normals[i + 3] = normals[i + 6] = nx;
-			normals[i + 1] = normals[i + 4] = normals[i + 7] = ny;
-			normals[i + 2] = normals[i + 5] = normals[i + 8] = nz;
-		}
+		Vec3Arrays.triangleNormals(triangles, 0, normals, 0, triangles.length / 9);
 		return normals;
 	}
 
@@ -61,6 +61,7 @@ public class ArrayVideoSource extends AbstractFrameSource implements IVideoSourc
 			synchronized (ArrayVideoSource.this) {
 				VideoFrame frame = getFrame();
 				frame.getHostImage();
+				frame.retain();
 				frames.add(frame);
 			}
 		}
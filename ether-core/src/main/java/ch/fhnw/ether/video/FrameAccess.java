@@ -44,6 +44,7 @@ public class FrameAccess implements IDisposable {
 	private   final URLVideoSource src;
 	private         IHostImage     hostImage;
 	private         IGPUImage      gpuImage;
+	private         KeyframeIndex  keyframes;
 	protected int                  numPlays;
 
 	FrameAccess(URLVideoSource src) throws IOException {
@@ -74,6 +75,14 @@ public class FrameAccess implements IDisposable {
 		return gpuImage;
 	}
 
+	/**
+	 * Returns the pool the pixel buffers of host images returned by this access
+	 * come from, or null if they are not pooled.
+	 */
+	protected FrameBufferPool getFrameBufferPool() {
+		return null;
+	}
+
 	protected int getWidth() {
 		return hostImage.getWidth();
 	}
@@ -116,6 +125,44 @@ public class FrameAccess implements IDisposable {
 	public boolean isKeyframe() {
 		return true;
 	}
+
+	/**
+	 * Returns the media time of the current frame. Unlike the play out time, the
+	 * media time does not advance when the access loops or seeks.
+	 */
+	public double getMediaTimeInSec() {
+		return getPlayOutTimeInSec();
+	}
+
+	/**
+	 * Positions the access at media time sec. The next decoded frame is the frame
+	 * at sec if precise is set, otherwise the keyframe at or before sec. Play out
+	 * times continue at playOutTime with the next decoded frame.
+	 * 
+	 * @return false if this access cannot seek.
+	 */
+	public boolean seek(double sec, boolean precise, double playOutTime) throws IOException {
+		return false;
+	}
+
+	/**
+	 * Returns the keyframe index of the source, building or loading it on first use.
+	 * 
+	 * @return The index or null if this access does not support indexing.
+	 */
+	public synchronized KeyframeIndex getKeyframeIndex() throws IOException {
+		if(keyframes == null && src != null)
+			keyframes = KeyframeIndex.get(src.getURL(), this::buildKeyframeIndex);
+		return keyframes;
+	}
+
+	/**
+	 * Scans the source for keyframes. Called at most once per source file if a
+	 * cache directory is set.
+	 */
+	protected KeyframeIndex buildKeyframeIndex() throws IOException {
+		return null;
+	}
 	
 	@Override
 	public void dispose() {
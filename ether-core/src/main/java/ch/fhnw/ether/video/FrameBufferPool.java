@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.video;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.lwjgl.BufferUtils;
+
+/**
+ * Recycles the direct pixel buffers of host images produced by video sources.
+ * Buffers are pooled by size and return to the pool when their
+ * {@link VideoFrame} is disposed, so decoding does not allocate direct memory
+ * once the pool has reached its working size.
+ */
+public final class FrameBufferPool {
+	private static final int DEFAULT_CAPACITY = 4;
+
+	private final int      capacity;
+	private       Bucket[] buckets = new Bucket[0];
+
+	public FrameBufferPool() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a new buffer pool.
+	 * 
+	 * @param capacity The maximum number of idle buffers kept per size.
+	 */
+	public FrameBufferPool(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Get a buffer from the pool. The contents of the buffer are not cleared.
+	 * 
+	 * @param size The size of the buffer in bytes.
+	 * @return A direct buffer of the given capacity, with position 0 and limit at capacity.
+	 */
+	public ByteBuffer acquire(int size) {
+		ByteBuffer result = bucket(size).pop();
+		if(result == null)
+			result = BufferUtils.createByteBuffer(size);
+		result.clear();
+		return result;
+	}
+
+	/**
+	 * Return a buffer to the pool. The buffer (or any view of it) must not be used afterwards.
+	 */
+	public void release(ByteBuffer buffer) {
+		bucket(buffer.capacity()).push(buffer);
+	}
+
+	private synchronized Bucket bucket(int size) {
+		for(Bucket b : buckets)
+			if(b.size == size)
+				return b;
+		Bucket result = new Bucket(size, capacity);
+		buckets = Arrays.copyOf(buckets, buckets.length + 1);
+		buckets[buckets.length - 1] = result;
+		return result;
+	}
+
+	private static final class Bucket {
+		final int          size;
+		final ByteBuffer[] buffers;
+		int                count;
+
+		Bucket(int size, int capacity) {
+			this.size    = size;
+			this.buffers = new ByteBuffer[capacity];
+		}
+
+		synchronized ByteBuffer pop() {
+			if(count == 0) return null;
+			ByteBuffer result = buffers[--count];
+			buffers[count] = null;
+			return result;
+		}
+
+		synchronized void push(ByteBuffer buffer) {
+			if(count < buffers.length)
+				buffers[count++] = buffer;
+		}
+	}
+}
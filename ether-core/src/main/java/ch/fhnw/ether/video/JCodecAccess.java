@@ -34,12 +34,22 @@ package ch.fhnw.ether.video;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.jcodec.api.JCodecException;
+import org.jcodec.common.DemuxerTrackMeta;
 import org.jcodec.common.NIOUtils;
 import org.jcodec.common.SeekableByteChannel;
+import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.Packet;
 import org.jcodec.common.model.Picture8Bit;
+import org.jcodec.containers.mp4.demuxer.AbstractMP4DemuxerTrack;
+import org.jcodec.containers.mp4.demuxer.MP4Demuxer;
+import org.jcodec.scale.ColorUtil;
+import org.jcodec.scale.Transform8Bit;
 
 import ch.fhnw.ether.image.IGPUImage;
 import ch.fhnw.ether.image.IHostImage;
@@ -47,24 +57,95 @@ import ch.fhnw.ether.image.IImage.ComponentFormat;
 import ch.fhnw.ether.image.IImage.ComponentType;
 import ch.fhnw.util.Log;
 
-public final class JCodecAccess extends FrameAccess {
+/**
+ * Video access through JCodec. Frames are decoded ahead on a decoder thread
+ * into a bounded ring of pre-allocated RGB frames, so that decode spikes
+ * (e.g. on keyframes) are absorbed by the queue instead of delaying the frame
+ * pump. Frames are recycled once the next frame is taken.
+ */
+public final class JCodecAccess extends FrameAccess implements Runnable {
 	private static final Log log = Log.create();
 
-	private   SeekableByteChannel channel;
-	protected FrameGrab           grab;
+	private static final double SEC2NS = 1000000000.0;
+
+	private static final class Frame {
+		final byte[] pixels;
+		double       playOutTime;
+		double       mediaTime;
+		boolean      isKeyframe;
+		boolean      rewound;
+		int          generation;
+
+		Frame(int width, int height) {
+			pixels = new byte[width * height * 3];
+		}
+	}
+
+	private final File             file;
+	private   SeekableByteChannel  channel;
+	protected FrameGrab            grab;
+	private final int              width;
+	private final int              height;
+	private final BlockingQueue<Frame> free;
+	private final BlockingQueue<Frame> decoded;
+	private       Frame            current;
+	private final Thread           decoderThread;
+	private volatile boolean       decoding = true;
+	private volatile int           generation;
+	private volatile double        seekTime;
+	private volatile boolean       seekPrecise = true;
+	private volatile double        seekPlayOut;
+	private final FrameBufferPool  framePool = new FrameBufferPool();
+
+	// decoder thread only
+	private Picture8Bit   rgb;
+	private Transform8Bit transform;
+	private ColorSpace    transformSource;
+
+	private volatile long decodedFrames;
+	private volatile long decodeNs;
+	private volatile long maxDecodeNs;
+	private volatile long underruns;
 
 	public JCodecAccess(URLVideoSource src, int numPlays) throws IOException, URISyntaxException {
+		this(src, numPlays, 8);
+	}
+
+	public JCodecAccess(URLVideoSource src, int numPlays, int queueSize) throws IOException, URISyntaxException {
+		this(src, new File(src.getURL().toURI()), numPlays, queueSize);
+	}
+
+	JCodecAccess(URLVideoSource src, File file, int numPlays, int queueSize) throws IOException {
 		super(src, numPlays);
-		this.channel = NIOUtils.readableFileChannel(new File(src.getURL().toURI()));
+		this.file    = file;
+		this.channel = NIOUtils.readableFileChannel(file);
 		try {
 			this.grab = new FrameGrab(channel);
 		} catch(JCodecException e) {
 			throw new IOException(e);
 		}
+		this.width   = grab.getMediaInfo().getDim().getWidth();
+		this.height  = grab.getMediaInfo().getDim().getHeight();
+		// one frame more than the queue holds, for the current frame
+		this.free    = new ArrayBlockingQueue<>(queueSize + 1);
+		this.decoded = new ArrayBlockingQueue<>(queueSize + 1);
+		for(int i = 0; i <= queueSize; i++)
+			free.add(new Frame(width, height));
+
+		decoderThread = new Thread(this, "JCodec:" + file.getName());
+		decoderThread.setPriority(Thread.MIN_PRIORITY);
+		decoderThread.setDaemon(true);
+		decoderThread.start();
 	}
 
 	@Override
 	public void dispose() {
+		decoding = false;
+		decoderThread.interrupt();
+		try {
+			decoderThread.join(1000);
+		} catch (InterruptedException e) {
+		}
 		try {
 			channel.close();
 		} catch (IOException e) {
@@ -91,21 +172,55 @@ public final class JCodecAccess extends FrameAccess {
 
 	@Override
 	public int getWidth() {
-		return grab.getMediaInfo().getDim().getWidth();
+		return width;
 	}
 
 	@Override
 	public int getHeight() {
-		return grab.getMediaInfo().getDim().getHeight();
+		return height;
 	}
 
+	/**
+	 * Restarts playback at the first frame. Frames already decoded ahead are
+	 * dropped, the decoder thread seeks before decoding its next frame.
+	 */
 	@Override
 	public void rewind() {
-		try {
-			numPlays--;
-			grab.seekToFramePrecise(0);
-		} catch (Throwable t) {
-			log.warning(t);
+		numPlays--;
+		requestSeek(0, true, getPlayOutTimeInSec() + 1 / getFrameRate());
+	}
+
+	@Override
+	public boolean seek(double sec, boolean precise, double playOutTime) {
+		requestSeek(sec, precise, playOutTime);
+		return true;
+	}
+
+	private synchronized void requestSeek(double sec, boolean precise, double playOutTime) {
+		seekTime    = sec;
+		seekPrecise = precise;
+		seekPlayOut = playOutTime;
+		generation++;
+		for(Frame frame; (frame = decoded.poll()) != null;)
+			free.add(frame);
+	}
+
+	@Override
+	protected KeyframeIndex buildKeyframeIndex() throws IOException {
+		try(SeekableByteChannel in = NIOUtils.readableFileChannel(file)) {
+			AbstractMP4DemuxerTrack track      = new MP4Demuxer(in).getVideoTrack();
+			DemuxerTrackMeta        meta       = track.getMeta();
+			int[]                   seekFrames = meta.getSeekFrames();
+			int                     count      = seekFrames == null ? meta.getTotalFrames() : seekFrames.length;
+			long[]                  frames     = new long[count];
+			double[]                times      = new double[count];
+			for(int i = 0; i < count; i++) {
+				frames[i] = seekFrames == null ? i : seekFrames[i];
+				track.gotoFrame(frames[i]);
+				Packet pkt = track.nextFrame();
+				times[i] = pkt == null ? meta.getTotalDuration() : pkt.getPtsD();
+			}
+			return new KeyframeIndex(frames, times, meta.getTotalFrames(), meta.getTotalDuration());
 		}
 	}
 
@@ -113,19 +228,132 @@ public final class JCodecAccess extends FrameAccess {
 	static final int ATTR_BASE_TIME    = 1;
 	static final int ATTR_IS_KEYFRAME  = 2;
 
-	private Picture8Bit currentPicture;
-	private double[]    attrs = new double[3];
+	@Override
+	public void run() {
+		final double[] attrs = new double[3];
+		int seekGeneration = generation;
+		try {
+			while(decoding) {
+				Frame frame = free.take();
+				boolean rebase = false;
+				if(seekGeneration != generation) {
+					seekGeneration = generation;
+					seek(seekTime, seekPrecise);
+					rebase = true;
+				}
+				long        start   = System.nanoTime();
+				boolean     rewound = false;
+				Picture8Bit picture = grab.decode(attrs);
+				if(picture == null) {
+					seek(0, true);
+					rewound                  = true;
+					attrs[ATTR_BASE_TIME]   += attrs[ATTR_PLAYOUT_TIME];
+					attrs[ATTR_PLAYOUT_TIME] = 0;
+					picture = grab.decode(attrs);
+				}
+				if(rebase)
+					attrs[ATTR_BASE_TIME] = seekPlayOut - attrs[ATTR_PLAYOUT_TIME];
+				if(picture == null || !decoding) {
+					free.add(frame);
+					break;
+				}
+				toRGB(picture, frame.pixels);
+				recordDecodeTime(System.nanoTime() - start);
+
+				frame.playOutTime = attrs[ATTR_PLAYOUT_TIME] + attrs[ATTR_BASE_TIME];
+				frame.mediaTime   = attrs[ATTR_PLAYOUT_TIME];
+				frame.isKeyframe  = attrs[ATTR_IS_KEYFRAME] != 0;
+				frame.rewound     = rewound;
+				frame.generation  = seekGeneration;
+				decoded.put(frame);
+			}
+		} catch(InterruptedException e) {
+		} catch(Throwable t) {
+			log.severe(t);
+		} finally {
+			decoding = false;
+		}
+	}
+
+	/**
+	 * Positions the grabber at media time sec. A precise seek decodes the frames
+	 * from the previous keyframe up to sec, i.e. at most one GOP.
+	 */
+	private void seek(double sec, boolean precise) {
+		try {
+			if(sec <= 0)
+				grab.seekToFramePrecise(0);
+			else if(precise)
+				grab.seekToSecondPrecise(sec);
+			else
+				grab.seekToSecondSloppy(sec);
+		} catch (Throwable t) {
+			log.warning(t);
+		}
+	}
+
+	/**
+	 * Converts picture to bottom-up RGB, reusing the conversion picture and
+	 * transform of the previous frame.
+	 */
+	private void toRGB(Picture8Bit picture, byte[] dst) {
+		if (picture.getColor() != ColorSpace.RGB) {
+			if(rgb == null || rgb.getWidth() != picture.getWidth() || rgb.getHeight() != picture.getHeight())
+				rgb = Picture8Bit.create(picture.getWidth(), picture.getHeight(), ColorSpace.RGB, picture.getCrop());
+			if(transformSource != picture.getColor()) {
+				transform       = ColorUtil.getTransform8Bit(picture.getColor(), ColorSpace.RGB);
+				transformSource = picture.getColor();
+			}
+			transform.transform(picture, rgb);
+			picture = rgb;
+		}
+
+		final byte[] src  = picture.getPlaneData(0);
+		final int    line = width * 3;
+		int k = 0;
+		for(int j = height; --j >= 0;) {
+			int idx = j * line;
+			for (int i = width; --i >= 0;) {
+				dst[k++] = (byte) (src[idx+2] + 128);
+				dst[k++] = (byte) (src[idx+1] + 128);
+				dst[k++] = (byte) (src[idx+0] + 128);
+				idx += 3;
+			}
+		}
+	}
+
+	private void recordDecodeTime(long ns) {
+		decodedFrames++;
+		decodeNs += ns;
+		if(ns > maxDecodeNs) maxDecodeNs = ns;
+	}
+
 	@Override
 	public boolean decodeFrame() {
 		try {
-			currentPicture = grab.decode(attrs);
-			if(currentPicture == null) {
-				rewind();
-				attrs[ATTR_BASE_TIME]    = attrs[ATTR_PLAYOUT_TIME];
-				attrs[ATTR_PLAYOUT_TIME] = 0;
-				currentPicture = grab.decode(attrs);
+			for(;;) {
+				Frame frame = decoded.poll();
+				if(frame == null) {
+					if(!(decoding) && decoded.isEmpty())
+						return false;
+					underruns++;
+					frame = decoded.poll(1000, TimeUnit.MILLISECONDS);
+					if(frame == null)
+						return false;
+				}
+				if(frame.generation != generation) {
+					free.add(frame);
+					continue;
+				}
+				synchronized (this) {
+					if(current != null)
+						free.add(current);
+					current = frame;
+				}
+				if(frame.rewound)
+					numPlays--;
+				return true;
 			}
-			return currentPicture != null;
 		} catch(Throwable t) {
 			return false;
 		}
@@ -133,19 +361,31 @@ public final class JCodecAccess extends FrameAccess {
 
 	@Override
 	public double getPlayOutTimeInSec() {
-		return attrs[ATTR_PLAYOUT_TIME] + attrs[ATTR_BASE_TIME];
+		Frame frame = current;
+		return frame == null ? 0 : frame.playOutTime;
+	}
+
+	@Override
+	public double getMediaTimeInSec() {
+		Frame frame = current;
+		return frame == null ? 0 : frame.mediaTime;
 	}
 
 	@Override
 	public boolean isKeyframe() {
-		return attrs[ATTR_IS_KEYFRAME] != 0;
+		Frame frame = current;
+		return frame != null && frame.isKeyframe;
 	}
 
 	@Override
 	public IHostImage getHostImage(BlockingQueue<float[]> audioData) {
-		IHostImage result = IHostImage.create(getWidth(), getHeight(), ComponentType.BYTE, ComponentFormat.RGB);
-		grab.grabAndSet(currentPicture, result, audioData);
-		return result;
+		synchronized (this) {
+			if(current == null)
+				return IHostImage.create(getWidth(), getHeight(), ComponentType.BYTE, ComponentFormat.RGB);
+			ByteBuffer pixels = framePool.acquire(current.pixels.length);
+			pixels.put(current.pixels);
+			return IHostImage.create(getWidth(), getHeight(), ComponentType.BYTE, ComponentFormat.RGB, pixels);
+		}
 	}
 
 	@Override
@@ -153,6 +393,54 @@ public final class JCodecAccess extends FrameAccess {
 		return getHostImage(audioData).createGPUImage();
 	}
 
+	@Override
+	protected FrameBufferPool getFrameBufferPool() {
+		return framePool;
+	}
+
+	/**
+	 * Returns the number of frames decoded ahead and waiting for playback.
+	 */
+	public int getQueueDepth() {
+		return decoded.size();
+	}
+
+	/**
+	 * Returns the number of times the frame pump found no decoded frame and had to wait for the decoder.
+	 */
+	public long getUnderrunCount() {
+		return underruns;
+	}
+
+	/**
+	 * Returns the number of frames decoded so far.
+	 */
+	public long getDecodedFrameCount() {
+		return decodedFrames;
+	}
+
+	/**
+	 * Returns the average time in seconds to decode and convert a frame.
+	 */
+	public double getAverageDecodeTime() {
+		final long count = decodedFrames;
+		return count == 0 ? 0 : (decodeNs / (double)count) / SEC2NS;
+	}
+
+	/**
+	 * Returns the maximum time in seconds to decode and convert a frame.
+	 */
+	public double getMaxDecodeTime() {
+		return maxDecodeNs / SEC2NS;
+	}
+
+	public void resetDecodeStats() {
+		decodedFrames = 0;
+		decodeNs      = 0;
+		maxDecodeNs   = 0;
+		underruns     = 0;
+	}
+
 	@Override
 	protected int getNumChannels() {
 		return grab.getNumChannels();
@@ -161,5 +449,5 @@ public final class JCodecAccess extends FrameAccess {
 	@Override
 	protected float getSampleRate() {
 		return grab.getSampleRate();
-	}	
+	}
 }
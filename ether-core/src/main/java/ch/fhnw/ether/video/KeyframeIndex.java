@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.video;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import ch.fhnw.util.Log;
+
+/**
+ * Keyframe positions of the video stream of a media file. The index is built
+ * once per file, by the frame access of the file, and persisted in the cache
+ * directory if one is set. With the index, a seek goes to the keyframe before
+ * the requested time and decodes at most one GOP instead of the clip up to the
+ * requested time.
+ */
+public final class KeyframeIndex {
+	private static final Log log = Log.create();
+
+	private static final int MAGIC   = 0x454B4649; // 'EKFI'
+	private static final int VERSION = 1;
+
+	private static File cacheDir;
+
+	private final long[]   frames;
+	private final double[] times;
+	private final long     frameCount;
+	private final double   duration;
+
+	/**
+	 * Create a new keyframe index.
+	 * 
+	 * @param frames The frame numbers of the keyframes in ascending order.
+	 * @param times The media times of the keyframes in seconds.
+	 * @param frameCount The number of frames of the video stream.
+	 * @param duration The duration of the video stream in seconds.
+	 */
+	public KeyframeIndex(long[] frames, double[] times, long frameCount, double duration) {
+		if(frames.length != times.length)
+			throw new IllegalArgumentException("frames.length != times.length");
+		this.frames     = frames;
+		this.times      = times;
+		this.frameCount = frameCount;
+		this.duration   = duration;
+	}
+
+	/**
+	 * Returns the number of keyframes.
+	 */
+	public int size() {
+		return frames.length;
+	}
+
+	public long getFrame(int i) {
+		return frames[i];
+	}
+
+	public double getTime(int i) {
+		return times[i];
+	}
+
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	public double getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Returns the index of the last keyframe at or before time sec, or 0 if sec
+	 * precedes the first keyframe.
+	 */
+	public int floorIndex(double sec) {
+		int idx = Arrays.binarySearch(times, sec);
+		return idx >= 0 ? idx : Math.max(0, -idx - 2);
+	}
+
+	/**
+	 * Returns the index of the last keyframe at or before frame, or 0 if frame
+	 * precedes the first keyframe.
+	 */
+	public int floorFrameIndex(long frame) {
+		int idx = Arrays.binarySearch(frames, frame);
+		return idx >= 0 ? idx : Math.max(0, -idx - 2);
+	}
+
+	/**
+	 * Returns the longest distance between two keyframes in seconds, i.e. the
+	 * maximum media time a precise seek has to decode.
+	 */
+	public double getMaxGOPDuration() {
+		double result = 0;
+		for(int i = 0; i < times.length; i++)
+			result = Math.max(result, (i + 1 < times.length ? times[i + 1] : duration) - times[i]);
+		return result;
+	}
+
+	/**
+	 * Sets the directory where indices of local files are persisted. With no
+	 * directory set (the default), indices are built once per frame access.
+	 */
+	public static synchronized void setCacheDirectory(File dir) {
+		if(dir != null && !(dir.exists()))
+			dir.mkdirs();
+		cacheDir = dir;
+	}
+
+	public static synchronized File getCacheDirectory() {
+		return cacheDir;
+	}
+
+	/**
+	 * Returns the cached index of url or builds it with builder. Built indices of
+	 * local files are written to the cache directory.
+	 * 
+	 * @return The index or null if builder returns null.
+	 */
+	static KeyframeIndex get(URL url, Callable<KeyframeIndex> builder) throws IOException {
+		File media = toFile(url);
+		File cache = media == null ? null : cacheFile(media);
+		if(cache != null && cache.exists()) {
+			KeyframeIndex result = load(cache, media);
+			if(result != null)
+				return result;
+		}
+		KeyframeIndex result;
+		try {
+			result = builder.call();
+		} catch(IOException e) {
+			throw e;
+		} catch(Exception e) {
+			throw new IOException(e);
+		}
+		if(result != null && cache != null)
+			result.save(cache, media);
+		return result;
+	}
+
+	private static File toFile(URL url) {
+		try {
+			return "file".equals(url.getProtocol()) ? new File(url.toURI()).getAbsoluteFile() : null;
+		} catch(URISyntaxException e) {
+			return null;
+		}
+	}
+
+	private static File cacheFile(File media) {
+		File dir = getCacheDirectory();
+		if(dir == null)
+			return null;
+		return new File(dir, Integer.toHexString(media.getPath().hashCode()) + "_" + Long.toHexString(media.length()) + ".kfi");
+	}
+
+	/**
+	 * Loads the index of media from file. Returns null if the file is not readable
+	 * or belongs to a different or modified media file.
+	 */
+	private static KeyframeIndex load(File file, File media) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			if(!(in.readUTF().equals(media.getPath())) || in.readLong() != media.length() || in.readLong() != media.lastModified())
+				return null;
+			long     frameCount = in.readLong();
+			double   duration   = in.readDouble();
+			long[]   frames     = new long[in.readInt()];
+			double[] times      = new double[frames.length];
+			for(int i = 0; i < frames.length; i++) {
+				frames[i] = in.readLong();
+				times[i]  = in.readDouble();
+			}
+			return new KeyframeIndex(frames, times, frameCount, duration);
+		} catch(Throwable t) {
+			log.warning(file.toString(), t);
+			return null;
+		}
+	}
+
+	private void save(File file, File media) {
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(media.getPath());
+				out.writeLong(media.length());
+				out.writeLong(media.lastModified());
+				out.writeLong(frameCount);
+				out.writeDouble(duration);
+				out.writeInt(frames.length);
+				for(int i = 0; i < frames.length; i++) {
+					out.writeLong(frames[i]);
+					out.writeDouble(times[i]);
+				}
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch(Throwable t) {
+			log.warning(file.toString(), t);
+			tmp.delete();
+		}
+	}
+}
@@ -105,10 +105,10 @@ public class URLVideoSource extends AbstractFrameSource implements IAudioSource,
 		String mime = MIME.getContentTypeFor(url);
 		if(MIME.match(mime, MIME.MT_GIF))
 			return new GIFAccess(this, numPlays);
-		return still.canRead(mime) ? new FrameAccess(this) : USE_JCODEC ? new JCodecAccess(this, numPlays) : new XuggleAccess(this, numPlays, queueSize);
+		return still.canRead(mime) ? new FrameAccess(this) : USE_JCODEC ? new JCodecAccess(this, numPlays, queueSize) : new XuggleAccess(this, numPlays, queueSize);
 	}
 
-	private void init(URL url, double startInSec, double lengthInSec, int numPlays) {
+	private void init(URL url, double startInSec, double lengthInSec, int numPlays) throws IOException {
 		width       = frameAccess.getWidth();
 		height      = frameAccess.getHeight();
 		frameRate   = frameAccess.getFrameRate();
@@ -117,7 +117,8 @@ public class URLVideoSource extends AbstractFrameSource implements IAudioSource,
 		start       = startInSec;
 		length      = lengthInSec;
 		lengthInFrames  = lengthInSec == frameAccess.getDuration() ? frameAccess.getFrameCount() : (long)(lengthInSec * frameRate);
-		if(startInSec != 0) throw new IllegalArgumentException("startTime != 0 not implemented yet");
+		if(startInSec != 0 && !(frameAccess.seek(startInSec, true, 0)))
+			throw new IllegalArgumentException("cannot start " + url + " at " + startInSec + "s");
 	}
 
 	@Override
@@ -179,10 +180,19 @@ public class URLVideoSource extends AbstractFrameSource implements IAudioSource,
 					} while(frameAccess.getPlayOutTimeInSec() < targetTime);
 				} else
 					frameAccess.decodeFrame();
+				if(start > 0 && frameAccess.getMediaTimeInSec() < start - 0.5 / frameRate) {
+					// the access wrapped around at the end of the file by itself
+					frameAccess.seek(start, true, frameAccess.getPlayOutTimeInSec());
+					frameAccess.decodeFrame();
+				}
 				VideoFrame frame = new VideoFrame(frameAccess, audioData);
 				startup.set(false);
-				if(frameAccess.getPlayOutTimeInSec() > start + length)
-					frameAccess.rewind();
+				if(frameAccess.getMediaTimeInSec() > start + length) {
+					if(start == 0)
+						frameAccess.rewind();
+					else if(--frameAccess.numPlays > 0)
+						frameAccess.seek(start, true, nextPlayOutTime());
+				}
 				if(frameAccess.numPlays <= 0)
 					frame.setLast(true);
 				((IVideoRenderTarget)target).setFrame(this, frame);
@@ -205,6 +215,52 @@ public class URLVideoSource extends AbstractFrameSource implements IAudioSource,
 		return frameAccess.getPlayOutTimeInSec();
 	}
 
+	/**
+	 * Returns the position of the current frame in the media file.
+	 */
+	public double getMediaTimeInSec() {
+		return frameAccess.getMediaTimeInSec();
+	}
+
+	/**
+	 * Continues playback at the frame at media time sec. Decodes at most the GOP
+	 * before sec. Play out times continue without a jump, so real-time targets
+	 * neither skip nor wait after the seek.
+	 * 
+	 * @throws IOException if seeking fails or is not supported by the media type.
+	 */
+	public void seekPrecise(double sec) throws IOException {
+		seek(sec, true);
+	}
+
+	/**
+	 * Continues playback at the keyframe at or before media time sec. Faster than
+	 * {@link #seekPrecise(double)} because no frames before sec are decoded.
+	 * 
+	 * @throws IOException if seeking fails or is not supported by the media type.
+	 */
+	public void seekSloppy(double sec) throws IOException {
+		seek(sec, false);
+	}
+
+	private void seek(double sec, boolean precise) throws IOException {
+		if(!(frameAccess.seek(sec, precise, nextPlayOutTime())))
+			throw new IOException("cannot seek in " + url);
+	}
+
+	private double nextPlayOutTime() {
+		return Math.max(0, frameAccess.getPlayOutTimeInSec() + 1 / frameRate);
+	}
+
+	/**
+	 * Returns the keyframe index of the media file, or null if the media type does
+	 * not support it. The index is built on first use and persisted in
+	 * {@link KeyframeIndex#getCacheDirectory()} if set.
+	 */
+	public KeyframeIndex getKeyframeIndex() throws IOException {
+		return frameAccess.getKeyframeIndex();
+	}
+
 	private static Set<String> TYPES;
 
 	public synchronized static boolean canRead(String mimeType) {
@@ -31,6 +31,7 @@
 
 package ch.fhnw.ether.video;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.BlockingQueue;
 
 import ch.fhnw.ether.image.IGPUImage;
@@ -42,6 +43,8 @@ public class VideoFrame extends AbstractFrame {
 	private       IHostImage             hostImage;
 	private       IGPUImage              gpuImage;
 	private final BlockingQueue<float[]> audioData;
+	private       ByteBuffer             pooledPixels;
+	private       boolean                retained;
 
 	public VideoFrame(IHostImage frame) {
 		this(new FrameAccess(frame), null);
@@ -63,6 +66,8 @@ public class VideoFrame extends AbstractFrame {
 				hostImage = gpuImage.createHostImage();
 			} else {
 				hostImage = framea.getHostImage(audioData);
+				if(hostImage != null && framea.getFrameBufferPool() != null)
+					pooledPixels = hostImage.getPixels();
 			}
 		}
 		return hostImage;
@@ -70,8 +75,10 @@ public class VideoFrame extends AbstractFrame {
 
 	public synchronized IGPUImage getGPUImage() {
 		if(gpuImage == null) {
-			if(hostImage != null) {
-				setGPUImage(hostImage.createGPUImage());
+			if(hostImage != null || framea.getFrameBufferPool() != null) {
+				IHostImage image = getHostImage();
+				if(image != null)
+					setGPUImage(image.createGPUImage());
 			} else {
 				setGPUImage(framea.getGPUImage(audioData));
 			}
@@ -86,4 +93,26 @@ public class VideoFrame extends AbstractFrame {
 	public boolean isKeyframe() {
 		return framea.isKeyframe();
 	}
+
+	/**
+	 * Keeps the host image of this frame valid after the frame was disposed.
+	 * Must be called by targets that hold on to the frame or its host image
+	 * beyond rendering, otherwise the pixel buffer may be reused for a later frame.
+	 */
+	public synchronized void retain() {
+		retained = true;
+	}
+
+	/**
+	 * Returns the pixel buffer of the host image to the pool of the frame
+	 * access, unless the frame was retained.
+	 */
+	@Override
+	public synchronized void dispose() {
+		if(pooledPixels != null && !(retained)) {
+			framea.getFrameBufferPool().release(pooledPixels);
+			pooledPixels = null;
+			hostImage    = null;
+		}
+	}
 }
@@ -44,8 +44,6 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sound.sampled.AudioFormat;
 
-import org.lwjgl.BufferUtils;
-
 import com.xuggle.xuggler.Global;
 import com.xuggle.xuggler.IAudioSamples;
 import com.xuggle.xuggler.ICodec;
@@ -66,7 +64,9 @@ import ch.fhnw.ether.image.IImage.ComponentType;
 import ch.fhnw.ether.media.AbstractFrameSource;
 import ch.fhnw.ether.media.IScheduler;
 import ch.fhnw.ether.media.ITimebase;
+import ch.fhnw.util.DoubleList;
 import ch.fhnw.util.Log;
+import ch.fhnw.util.LongList;
 import ch.fhnw.util.SortedLongMap;
 import ch.fhnw.util.TextUtilities;
 
@@ -87,24 +87,30 @@ public final class XuggleAccess extends FrameAccess implements Runnable {
 	private       long                            maxTimeStamp;
 	private       long                            timeOffset;
 	private final BlockingQueue<float[]>          audioData      = new LinkedBlockingQueue<>();
-	private       double                          baseTime;
-	private       Thread                          decoderThread;
+	private volatile double                       baseTime;
+	private       double                          mediaTime;
+	private volatile Thread                       decoderThread;
 	private final SortedLongMap<IVideoPicture>    pictureQueue   = new SortedLongMap<>();
 	private final Semaphore                       pictures       = new Semaphore(0);
 	private final Semaphore                       queueSize;
 	private       int                             width;
 	private       int                             height;
 	private       AtomicBoolean                   doDecode       = new AtomicBoolean(false);
+	private final FrameBufferPool                 framePool      = new FrameBufferPool();
+	private       long                            skipUntil      = Long.MIN_VALUE;
+	private       boolean                         resync;
+	private       double                          seekPlayOut;
 	
 	public XuggleAccess(URLVideoSource src, int numPlays, int qSize) throws IOException {
 		super(src, numPlays);
 		queueSize = new Semaphore(qSize);
 		container = IContainer.make();
 		open(src);
+		startDecoder();
 	}
 
 	@SuppressWarnings("deprecation")
-	private void open(URLVideoSource src) throws IOException {
+	private static void open(IContainer container, URLVideoSource src) throws IOException {
 		try {
 			if("file".equals(src.getURL().getProtocol())) {
 				File f = new File(src.getURL().toURI());
@@ -118,6 +124,11 @@ public final class XuggleAccess extends FrameAccess implements Runnable {
 		} catch(URISyntaxException e) {
 			throw new IOException(e);
 		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private void open(URLVideoSource src) throws IOException {
+		open(container, src);
 		// query how many streams the call to open found
 		int numStreams = container.getNumStreams();
 		// and iterate through the streams to find the first audio stream
@@ -172,7 +183,10 @@ public final class XuggleAccess extends FrameAccess implements Runnable {
 			if (audioCoder.open() < 0)
 				throw new IOException("could not open audio decoder for container: " + src);
 		}
-		decoderThread = new Thread(this, src.getURL().toString());
+	}
+
+	private void startDecoder() {
+		decoderThread = new Thread(this, getSource().getURL().toString());
 		decoderThread.setPriority(Thread.MIN_PRIORITY);
 		decoderThread.setDaemon(true);
 		doDecode.set(true);
@@ -220,27 +234,107 @@ public final class XuggleAccess extends FrameAccess implements Runnable {
 	}
 
 	@Override
-	public void rewind() throws IOException {
+	public synchronized void rewind() throws IOException {
 		try {
-			doDecode.set(false);
-			while(decoderThread.isAlive()) {
-				Thread.sleep(10);
-				getPictureFromQ();
-			}
+			stopDecoder();
 			
 			double tmp  = playOutTime;
 			numPlays--;
-			if(numPlays > 0)
-				open(getSource());
 			playOutTime   = 0;
 			lastTimeStamp = 0;
 			maxTimeStamp  = 0;
 			baseTime      = tmp;
+			if(numPlays > 0) {
+				open(getSource());
+				startDecoder();
+			}
+		} catch (Throwable t) {
+			throw new IOException(t);
+		}
+	}
+
+	/**
+	 * Reopens the container and seeks to the keyframe at or before sec, taken
+	 * from the keyframe index. A precise seek then drops the decoded pictures
+	 * before sec, so the latency is bounded by one GOP.
+	 */
+	@Override
+	public synchronized boolean seek(double sec, boolean precise, double playOutTime) throws IOException {
+		try {
+			KeyframeIndex index = getKeyframeIndex();
+			stopDecoder();
+			open(getSource());
+
+			double    keyTime  = index == null || index.size() == 0 ? sec : index.getTime(index.floorIndex(sec));
+			IRational timeBase = videoStream.getTimeBase();
+			long      ts       = (long)((keyTime * timeBase.getDenominator()) / timeBase.getNumerator());
+			if(container.seekKeyFrame(videoStream.getIndex(), 0, ts, ts, 0) < 0)
+				log.warning("could not seek to " + sec + "s in " + getSource());
+
+			skipUntil   = precise ? (long)((sec - 0.5 / getFrameRate()) * IScheduler.SEC2US) : Long.MIN_VALUE;
+			seekPlayOut = playOutTime;
+			resync      = true;
+			audioData.clear();
+			startDecoder();
+			return true;
+		} catch (IOException e) {
+			throw e;
 		} catch (Throwable t) {
 			throw new IOException(t);
 		}
 	}
 
+	/**
+	 * Stops the decoder thread and drops the pictures decoded ahead.
+	 */
+	private void stopDecoder() throws InterruptedException {
+		doDecode.set(false);
+		while(decoderThread.isAlive()) {
+			Thread.sleep(10);
+			getPictureFromQ();
+		}
+		while(getPictureFromQ() != null);
+		pictures.drainPermits();
+	}
+
+	/**
+	 * Scans the packets of the container (without decoding) for key packets of
+	 * the video stream.
+	 */
+	@Override
+	protected KeyframeIndex buildKeyframeIndex() throws IOException {
+		IContainer scan = IContainer.make();
+		try {
+			open(scan, getSource());
+			IStream stream = null;
+			for(int i = 0; i < scan.getNumStreams() && stream == null; i++)
+				if(scan.getStream(i).getStreamCoder().getCodecType() == ICodec.Type.CODEC_TYPE_VIDEO)
+					stream = scan.getStream(i);
+			if(stream == null)
+				return null;
+
+			final IRational  timeBase = stream.getTimeBase();
+			final double     toSec    = timeBase.getNumerator() / (double)timeBase.getDenominator();
+			final LongList   frames   = new LongList();
+			final DoubleList times    = new DoubleList();
+			final IPacket    packet   = IPacket.make();
+			long frameCount = 0;
+			while(scan.readNextPacket(packet) >= 0) {
+				if(packet.getStreamIndex() != stream.getIndex())
+					continue;
+				if(packet.isKeyPacket()) {
+					long pts = packet.getPts() == Global.NO_PTS ? packet.getDts() : packet.getPts();
+					frames.add(frameCount);
+					times.add(pts * toSec);
+				}
+				frameCount++;
+			}
+			return new KeyframeIndex(frames.toArray(), times.toArray(), frameCount, getDuration());
+		} finally {
+			scan.close();
+		}
+	}
+
 	int decoded;
 	
 	@Override
@@ -257,11 +351,24 @@ public final class XuggleAccess extends FrameAccess implements Runnable {
 						// terrible hack for fixing up screwed timestamps
 						long pt = picture.getTimeStamp();
 						if(timeOffset == 0 && pt < 0) timeOffset = -pt;
-						picture.setTimeStamp(pt + timeOffset);
-						maxTimeStamp = Math.max(maxTimeStamp, picture.getTimeStamp());
-						long correction = Math.min((maxTimeStamp - lastTimeStamp) / 2, (long)(IScheduler.SEC2US / getFrameRate()));
-						picture.setTimeStamp(lastTimeStamp + correction);
-						lastTimeStamp = picture.getTimeStamp();
+						pt += timeOffset;
+						if(pt < skipUntil)
+							continue;
+						if(resync) {
+							// first picture after a seek, its own time stamp is the new reference
+							resync        = false;
+							skipUntil     = Long.MIN_VALUE;
+							maxTimeStamp  = pt;
+							lastTimeStamp = pt;
+							baseTime      = seekPlayOut - pt / IScheduler.SEC2US;
+							picture.setTimeStamp(pt);
+						} else {
+							picture.setTimeStamp(pt);
+							maxTimeStamp = Math.max(maxTimeStamp, picture.getTimeStamp());
+							long correction = Math.min((maxTimeStamp - lastTimeStamp) / 2, (long)(IScheduler.SEC2US / getFrameRate()));
+							picture.setTimeStamp(lastTimeStamp + correction);
+							lastTimeStamp = picture.getTimeStamp();
+						}
 						queueSize.acquire();
 						synchronized (pictureQueue) {
 							if(pictureQueue.put(picture.getTimeStamp(), picture) == null) {
@@ -297,15 +404,19 @@ public final class XuggleAccess extends FrameAccess implements Runnable {
 		try {
 			IVideoPicture picture = null;
 			if(!(pictures.tryAcquire(1000, TimeUnit.MILLISECONDS))) {
-				if(decoderThread.isAlive())
-					return false;
-				rewind();
+				// a concurrent seek stops and restarts the decoder, check again under its lock
+				synchronized (this) {
+					if(decoderThread.isAlive() || pictures.availablePermits() > 0)
+						return false;
+					rewind();
+				}
 				if(numPlays > 0)
 					decodeFrame();
 				return numPlays <= 0;
 			}
 			picture     = getPictureFromQ();
-			playOutTime = baseTime + (picture.getTimeStamp() / IScheduler.SEC2US);
+			mediaTime   = picture.getTimeStamp() / IScheduler.SEC2US;
+			playOutTime = baseTime + mediaTime;
 			isKeyframe  = picture.isKeyFrame();
 			this.currentPicture.set(picture);
 			return true;
@@ -333,22 +444,26 @@ public final class XuggleAccess extends FrameAccess implements Runnable {
 		try {
 			final int w = getWidth();
 			final int h = getHeight();
-			IVideoPicture newPic = currentPicture.get();
-			if (resampler != null) {
-				if(tmpPicture == null)
-					tmpPicture = IVideoPicture.make(resampler.getOutputPixelFormat(), w, h); 
-				newPic = tmpPicture;
-				if (resampler.resample(newPic, currentPicture.get()) < 0) {
-					log.warning("could not resample video");
+			IVideoPicture picture   = currentPicture.get();
+			ByteBuffer    dstBuffer = framePool.acquire(w * h * 3);
+			if (!(picture.getPixelType() == IPixelFormat.Type.YUV420P && convertYUV420P(picture, dstBuffer, w, h))) {
+				if (resampler != null) {
+					if(tmpPicture == null)
+						tmpPicture = IVideoPicture.make(resampler.getOutputPixelFormat(), w, h); 
+					if (resampler.resample(tmpPicture, picture) < 0) {
+						framePool.release(dstBuffer);
+						log.warning("could not resample video");
+						return null;
+					}
+					picture = tmpPicture;
+				}
+				if (picture.getPixelType() != IPixelFormat.Type.RGB24) {
+					framePool.release(dstBuffer);
+					log.warning("could not decode video as RGB24 bit data");
 					return null;
 				}
+				flip(picture.getByteBuffer(), dstBuffer, w, h);
 			}
-			if (newPic.getPixelType() != IPixelFormat.Type.RGB24) {
-				log.warning("could not decode video as RGB24 bit data");
-				return null;
-			}
-			ByteBuffer dstBuffer = BufferUtils.createByteBuffer(w * h * 3);
-			flip(newPic.getByteBuffer(), dstBuffer, w, h);
 			result = IHostImage.create(w, h, ComponentType.BYTE, ComponentFormat.RGB, dstBuffer);
 			if(!(this.audioData.isEmpty())) {
 				while(audioData.size() > (2  * this.audioData.size()) + 128)
@@ -368,6 +483,34 @@ public final class XuggleAccess extends FrameAccess implements Runnable {
 		return getHostImage(audioData).createGPUImage();
 	}
 
+	@Override
+	protected FrameBufferPool getFrameBufferPool() {
+		return framePool;
+	}
+
+	/**
+	 * Converts a YUV420P picture straight to bottom-up RGB, without resampling
+	 * to RGB24 first. The planes are expected one after the other in the
+	 * picture buffer, as allocated by IVideoPicture.make(). Returns false,
+	 * i.e. falls back to the resampler, unless the buffer has exactly the size
+	 * of this layout.
+	 */
+	private static boolean convertYUV420P(IVideoPicture picture, ByteBuffer dst, int width, int height) {
+		final int yStride = picture.getDataLineSize(0);
+		final int uStride = picture.getDataLineSize(1);
+		final int vStride = picture.getDataLineSize(2);
+		final int cWidth  = (width + 1) / 2;
+		final int uOff    = yStride * height;
+		final int vOff    = uOff + uStride * ((height + 1) / 2);
+		if (yStride < width || uStride < cWidth || vStride < cWidth)
+			return false;
+		final ByteBuffer src = picture.getByteBuffer();
+		if (src == null || src.capacity() != vOff + vStride * ((height + 1) / 2))
+			return false;
+		YUV420PConverter.toRGB(src, 0, yStride, uOff, uStride, vOff, vStride, dst, width, height);
+		return true;
+	}
+
 	private void flip(ByteBuffer src, ByteBuffer dst, int width, int height) {
 		dst.clear();
 		final int rowLength = width * 3;
@@ -383,6 +526,11 @@ public final class XuggleAccess extends FrameAccess implements Runnable {
 		return playOutTime;
 	}
 
+	@Override
+	public double getMediaTimeInSec() {
+		return mediaTime;
+	}
+
 	@Override
 	public boolean isKeyframe() {
 		return isKeyframe;
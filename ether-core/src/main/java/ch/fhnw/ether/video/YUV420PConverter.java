@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.video;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Converts planar YUV 4:2:0 pictures to bottom-up RGB in a single pass. Colour
+ * conversion and the vertical flip are fused, and large pictures are converted
+ * in bands of rows on the common fork/join pool. Uses the BT.601 studio swing
+ * coefficients of the default FFmpeg scaler.
+ */
+final class YUV420PConverter {
+	private static final ExecutorService POOL              = ForkJoinPool.commonPool();
+	private static final int             MIN_PARALLEL_WORK = 1 << 17;
+	private static final int             MIN_BAND_ROWS     = 16;
+
+	private YUV420PConverter() {}
+
+	/**
+	 * Converts the picture in src to RGB. Row y of the picture is written to
+	 * row height - 1 - y of dst. Buffer positions and limits are not changed.
+	 * 
+	 * @param src The picture data.
+	 * @param yOff The offset of the luma plane in src.
+	 * @param yStride The number of bytes per luma row.
+	 * @param uOff The offset of the U plane in src.
+	 * @param uStride The number of bytes per U row.
+	 * @param vOff The offset of the V plane in src.
+	 * @param vStride The number of bytes per V row.
+	 * @param dst The destination buffer with room for width * height * 3 bytes.
+	 * @param width The picture width.
+	 * @param height The picture height.
+	 */
+	static void toRGB(ByteBuffer src, int yOff, int yStride, int uOff, int uStride, int vOff, int vStride, ByteBuffer dst, int width, int height) {
+		int numBands = Math.min(ForkJoinPool.getCommonPoolParallelism() + 1, height / MIN_BAND_ROWS);
+		if (numBands < 2 || (long)width * height < MIN_PARALLEL_WORK) {
+			toRGB(src, yOff, yStride, uOff, uStride, vOff, vStride, dst, width, height, 0, height);
+			return;
+		}
+
+		List<Future<?>> futures = new ArrayList<>(numBands - 1);
+		for (int band = 1; band < numBands; band++) {
+			final int from = bandStart(band, numBands, height);
+			final int to   = bandStart(band + 1, numBands, height);
+			futures.add(POOL.submit(() -> toRGB(src, yOff, yStride, uOff, uStride, vOff, vStride, dst, width, height, from, to)));
+		}
+		toRGB(src, yOff, yStride, uOff, uStride, vOff, vStride, dst, width, height, 0, bandStart(1, numBands, height));
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// bands start at even rows so that no chroma row is shared between bands
+	private static int bandStart(int band, int numBands, int height) {
+		return band == numBands ? height : (band * height / numBands) & ~1;
+	}
+
+	/**
+	 * Converts rows from (inclusive, even) to to (exclusive). Each band reads
+	 * and writes through its own buffer views and row buffers.
+	 */
+	private static void toRGB(ByteBuffer src, int yOff, int yStride, int uOff, int uStride, int vOff, int vStride, ByteBuffer dst, int width, int height, int from, int to) {
+		final ByteBuffer in      = src.duplicate();
+		final ByteBuffer out     = dst.duplicate();
+		final int        cWidth  = (width + 1) / 2;
+		final int        rowSize = width * 3;
+		final byte[]     yRow    = new byte[width];
+		final byte[]     uRow    = new byte[cWidth];
+		final byte[]     vRow    = new byte[cWidth];
+		final byte[]     rgb     = new byte[rowSize];
+
+		in.clear();
+		out.clear();
+		for (int y = from; y < to; y++) {
+			if ((y & 1) == 0) {
+				in.position(uOff + (y >> 1) * uStride);
+				in.get(uRow);
+				in.position(vOff + (y >> 1) * vStride);
+				in.get(vRow);
+			}
+			in.position(yOff + y * yStride);
+			in.get(yRow);
+
+			// two horizontally adjacent pixels share their chroma terms
+			for (int x = 0, k = 0; x < width; x++) {
+				final int d = (uRow[x >> 1] & 0xFF) - 128;
+				final int e = (vRow[x >> 1] & 0xFF) - 128;
+				final int r = 409 * e;
+				final int g = -100 * d - 208 * e;
+				final int b = 516 * d;
+				int c = ((yRow[x] & 0xFF) - 16) * 298 + 128;
+				rgb[k++] = clamp((c + r) >> 8);
+				rgb[k++] = clamp((c + g) >> 8);
+				rgb[k++] = clamp((c + b) >> 8);
+				if (++x == width) break;
+				c = ((yRow[x] & 0xFF) - 16) * 298 + 128;
+				rgb[k++] = clamp((c + r) >> 8);
+				rgb[k++] = clamp((c + g) >> 8);
+				rgb[k++] = clamp((c + b) >> 8);
+			}
+
+			out.position((height - 1 - y) * rowSize);
+			out.put(rgb);
+		}
+	}
+
+	// branch free, out of range values are frequent and unpredictable in noisy pictures
+	private static byte clamp(int v) {
+		v &= ~(v >> 31);
+		return (byte)(v | ((255 - v) >> 31));
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Blocking deque without duplicates. An index from elements to list nodes
+ * makes contains, remove and moving an element to the front constant time
+ * operations, e.g. for work queues where visible items jump ahead.
+ */
+public final class LinkedHashDeque<E> {
+	private static final class Node<E> {
+		final E element;
+		Node<E> prev;
+		Node<E> next;
+
+		Node(E element) {
+			this.element = element;
+		}
+	}
+
+	private final Map<E, Node<E>> index = new HashMap<>();
+	private final Node<E>         head  = new Node<>(null);
+
+	public LinkedHashDeque() {
+		head.prev = head;
+		head.next = head;
+	}
+
+	/**
+	 * Inserts element at the front, or moves it to the front if it is already
+	 * contained.
+	 */
+	public synchronized void addFirst(E element) {
+		Node<E> node = index.get(element);
+		if (node != null) {
+			unlink(node);
+		} else {
+			node = new Node<>(element);
+			index.put(element, node);
+		}
+		link(head, node);
+		notify();
+	}
+
+	/**
+	 * Inserts element at the end unless it is already contained. Returns true
+	 * if element was inserted.
+	 */
+	public synchronized boolean addLast(E element) {
+		if (index.containsKey(element))
+			return false;
+		Node<E> node = new Node<>(element);
+		index.put(element, node);
+		link(head.prev, node);
+		notify();
+		return true;
+	}
+
+	public synchronized boolean contains(E element) {
+		return index.containsKey(element);
+	}
+
+	public synchronized boolean remove(E element) {
+		Node<E> node = index.remove(element);
+		if (node == null)
+			return false;
+		unlink(node);
+		return true;
+	}
+
+	/**
+	 * Removes and returns the first element, or null if the deque is empty.
+	 */
+	public synchronized E poll() {
+		if (head.next == head)
+			return null;
+		Node<E> node = head.next;
+		unlink(node);
+		index.remove(node.element);
+		return node.element;
+	}
+
+	/**
+	 * Removes and returns the first element, waiting for one if the deque is
+	 * empty.
+	 */
+	public synchronized E take() throws InterruptedException {
+		while (head.next == head)
+			wait();
+		return poll();
+	}
+
+	public synchronized int size() {
+		return index.size();
+	}
+
+	public synchronized boolean isEmpty() {
+		return index.isEmpty();
+	}
+
+	public synchronized void clear() {
+		index.clear();
+		head.prev = head;
+		head.next = head;
+	}
+
+	private void link(Node<E> prev, Node<E> node) {
+		node.prev = prev;
+		node.next = prev.next;
+		prev.next.prev = node;
+		prev.next = node;
+	}
+
+	private void unlink(Node<E> node) {
+		node.prev.next = node.next;
+		node.next.prev = node.prev;
+		node.prev = null;
+		node.next = null;
+	}
+}
@@ -31,6 +31,7 @@
 
 package ch.fhnw.util;
 
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -43,8 +44,16 @@ public final class UpdateRequest {
 		UpdateRequest getUpdater();
 	}
 	
+	public interface IUpdateListener {
+		/**
+		 * Called when a request is made while no request is pending. May be
+		 * called from any thread.
+		 */
+		void requested(UpdateRequest request);
+	}
 	
 	private final AtomicBoolean update = new AtomicBoolean();
+	private final CopyOnWriteArrayList<IUpdateListener> listeners = new CopyOnWriteArrayList<>();
 
 	public UpdateRequest() {
 	}
@@ -58,7 +67,10 @@ public final class UpdateRequest {
 	 * Request an update.
 	 */
 	public void request() {
-		update.set(true);
+		if (!update.getAndSet(true) && !listeners.isEmpty()) {
+			for (IUpdateListener listener : listeners)
+				listener.requested(this);
+		}
 	}
 
 	/**
@@ -88,6 +100,17 @@ public final class UpdateRequest {
 		update.set(false);
 	}
 	
+	/**
+	 * Add a listener that is notified whenever this request goes from cleared
+	 * to requested.
+	 */
+	public void addListener(IUpdateListener listener) {
+		listeners.addIfAbsent(listener);
+	}
+
+	public void removeListener(IUpdateListener listener) {
+		listeners.remove(listener);
+	}
 
 	@Override
 	public String toString() {
@@ -156,14 +156,7 @@ public final class Mat3 implements IFloatArrayCopyProvider {
 			System.arraycopy(xyz, 0, result, 0, xyz.length);
 			return result;
 		}
-		for (int i = 0; i < xyz.length; i += 3) {
-			float x = m00 * xyz[i] + m01 * xyz[i + 1] + m02 * xyz[i + 2];
-			float y = m10 * xyz[i] + m11 * xyz[i + 1] + m12 * xyz[i + 2];
-			float z = m20 * xyz[i] + m21 * xyz[i + 1] + m22 * xyz[i + 2];
-			result[i] = x;
-			result[i + 1] = y;
-			result[i + 2] = z;
-		}
+		Vec3Arrays.transformVectors(this, xyz, 0, result, 0, xyz.length / 3);
 		return result;
 	}
 
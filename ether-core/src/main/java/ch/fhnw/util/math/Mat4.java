@@ -219,15 +219,7 @@ public final class Mat4 implements IFloatArrayCopyProvider {
 			System.arraycopy(xyz, 0, result, 0, xyz.length);
 			return result;
 		}
-		for (int i = 0; i < xyz.length; i += 3) {
-			float x = m00 * xyz[i] + m01 * xyz[i + 1] + m02 * xyz[i + 2] + m03;
-			float y = m10 * xyz[i] + m11 * xyz[i + 1] + m12 * xyz[i + 2] + m13;
-			float z = m20 * xyz[i] + m21 * xyz[i + 1] + m22 * xyz[i + 2] + m23;
-			float w = m30 * xyz[i] + m31 * xyz[i + 1] + m32 * xyz[i + 2] + m33;
-			result[i] = x / w;
-			result[i + 1] = y / w;
-			result[i + 2] = z / w;
-		}
+		Vec3Arrays.transformPoints(this, xyz, 0, result, 0, xyz.length / 3);
 		return result;
 	}
 
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util.math;
+
+/**
+ * Bulk operations on packed xyz float arrays, as used for geometry data. The
+ * kernels work on the arrays in place, without allocating a {@link Vec3} per
+ * vertex. Offsets are array indices, counts are numbers of vectors. Source
+ * and destination may be the same array at the same offset.
+ */
+public final class Vec3Arrays {
+	private Vec3Arrays() {
+	}
+
+	/**
+	 * Transforms count points by m and divides by w. The division is skipped
+	 * for affine transforms, for which w is always 1.
+	 */
+	public static void transformPoints(Mat4 m, float[] src, int srcOffset, float[] dst, int dstOffset, int count) {
+		final float m00 = m.m00, m01 = m.m01, m02 = m.m02, m03 = m.m03;
+		final float m10 = m.m10, m11 = m.m11, m12 = m.m12, m13 = m.m13;
+		final float m20 = m.m20, m21 = m.m21, m22 = m.m22, m23 = m.m23;
+		final float m30 = m.m30, m31 = m.m31, m32 = m.m32, m33 = m.m33;
+		final int end = srcOffset + 3 * count;
+		if (m30 == 0 && m31 == 0 && m32 == 0 && m33 == 1) {
+			for (int i = srcOffset, j = dstOffset; i < end; i += 3, j += 3) {
+				float x = src[i], y = src[i + 1], z = src[i + 2];
+				dst[j]     = m00 * x + m01 * y + m02 * z + m03;
+				dst[j + 1] = m10 * x + m11 * y + m12 * z + m13;
+				dst[j + 2] = m20 * x + m21 * y + m22 * z + m23;
+			}
+		} else {
+			for (int i = srcOffset, j = dstOffset; i < end; i += 3, j += 3) {
+				float x = src[i], y = src[i + 1], z = src[i + 2];
+				float w = m30 * x + m31 * y + m32 * z + m33;
+				dst[j]     = (m00 * x + m01 * y + m02 * z + m03) / w;
+				dst[j + 1] = (m10 * x + m11 * y + m12 * z + m13) / w;
+				dst[j + 2] = (m20 * x + m21 * y + m22 * z + m23) / w;
+			}
+		}
+	}
+
+	/**
+	 * Transforms count vectors by m, e.g. normals by the normal matrix. The
+	 * results are not normalized.
+	 */
+	public static void transformVectors(Mat3 m, float[] src, int srcOffset, float[] dst, int dstOffset, int count) {
+		final float m00 = m.m00, m01 = m.m01, m02 = m.m02;
+		final float m10 = m.m10, m11 = m.m11, m12 = m.m12;
+		final float m20 = m.m20, m21 = m.m21, m22 = m.m22;
+		final int end = srcOffset + 3 * count;
+		for (int i = srcOffset, j = dstOffset; i < end; i += 3, j += 3) {
+			float x = src[i], y = src[i + 1], z = src[i + 2];
+			dst[j]     = m00 * x + m01 * y + m02 * z;
+			dst[j + 1] = m10 * x + m11 * y + m12 * z;
+			dst[j + 2] = m20 * x + m21 * y + m22 * z;
+		}
+	}
+
+	/**
+	 * Normalizes count vectors in place. Zero length vectors are left unchanged.
+	 */
+	public static void normalize(float[] xyz, int offset, int count) {
+		final int end = offset + 3 * count;
+		for (int i = offset; i < end; i += 3) {
+			float x = xyz[i], y = xyz[i + 1], z = xyz[i + 2];
+			float l = MathUtilities.length(x, y, z);
+			if (MathUtilities.isZero(l))
+				continue;
+			xyz[i]     = x / l;
+			xyz[i + 1] = y / l;
+			xyz[i + 2] = z / l;
+		}
+	}
+
+	/**
+	 * Extends bounds { minX, minY, minZ, maxX, maxY, maxZ } by count points,
+	 * skipping points with infinite or NaN coordinates. Returns true if at
+	 * least one point was added.
+	 */
+	public static boolean bounds(float[] xyz, int offset, int count, float[] bounds) {
+		float minX = bounds[0], minY = bounds[1], minZ = bounds[2];
+		float maxX = bounds[3], maxY = bounds[4], maxZ = bounds[5];
+		boolean valid = false;
+		final int end = offset + 3 * count;
+		for (int i = offset; i < end; i += 3) {
+			float x = xyz[i], y = xyz[i + 1], z = xyz[i + 2];
+			// x - x is NaN for infinite and NaN values, which are skipped so that plain comparisons suffice
+			if (x - x != 0 || y - y != 0 || z - z != 0)
+				continue;
+			if (x < minX) minX = x;
+			if (x > maxX) maxX = x;
+			if (y < minY) minY = y;
+			if (y > maxY) maxY = y;
+			if (z < minZ) minZ = z;
+			if (z > maxZ) maxZ = z;
+			valid = true;
+		}
+		bounds[0] = minX;
+		bounds[1] = minY;
+		bounds[2] = minZ;
+		bounds[3] = maxX;
+		bounds[4] = maxY;
+		bounds[5] = maxZ;
+		return valid;
+	}
+
+	/**
+	 * Writes the normalized face normal of each of count triangles to its
+	 * three vertices. Degenerate triangles get (0, 0, 1).
+	 */
+	public static void triangleNormals(float[] triangles, int offset, float[] normals, int normalOffset, int count) {
+		final int end = offset + 9 * count;
+		for (int i = offset, j = normalOffset; i < end; i += 9, j += 9) {
+			float x0 = triangles[i], y0 = triangles[i + 1], z0 = triangles[i + 2];
+			float ax = triangles[i + 3] - x0;
+			float ay = triangles[i + 4] - y0;
+			float az = triangles[i + 5] - z0;
+			float bx = triangles[i + 6] - x0;
+			float by = triangles[i + 7] - y0;
+			float bz = triangles[i + 8] - z0;
+
+			float nx = ay * bz - az * by;
+			float ny = az * bx - ax * bz;
+			float nz = ax * by - ay * bx;
+
+			float l = MathUtilities.length(nx, ny, nz);
+			if (MathUtilities.isZero(l)) {
+				nx = 0;
+				ny = 0;
+				nz = 1;
+			} else {
+				nx /= l;
+				ny /= l;
+				nz /= l;
+			}
+
+			normals[j] = normals[j + 3] = normals[j + 6] = nx;
+			normals[j + 1] = normals[j + 4] = normals[j + 7] = ny;
+			normals[j + 2] = normals[j + 5] = normals[j + 8] = nz;
+		}
+	}
+
+	/**
+	 * Computes result[i] = a[i] . b[i] for the vectors of a and b.
+	 */
+	public static void dot(float[] a, float[] b, float[] result) {
+		for (int i = 0, j = 0; j < result.length; i += 3, j++)
+			result[j] = a[i] * b[i] + a[i + 1] * b[i + 1] + a[i + 2] * b[i + 2];
+	}
+
+	/**
+	 * Computes result[i] = a[i] x b[i] for the vectors of a and b. Result may
+	 * be the same array as a or b.
+	 */
+	public static void cross(float[] a, float[] b, float[] result) {
+		for (int i = 0; i < result.length; i += 3) {
+			float ax = a[i], ay = a[i + 1], az = a[i + 2];
+			float bx = b[i], by = b[i + 1], bz = b[i + 2];
+			result[i]     = ay * bz - az * by;
+			result[i + 1] = az * bx - ax * bz;
+			result[i + 2] = ax * by - ay * bx;
+		}
+	}
+}
@@ -36,6 +36,7 @@ import java.util.Collection;
 import ch.fhnw.util.HashUtilities;
 import ch.fhnw.util.math.Mat4;
 import ch.fhnw.util.math.Vec3;
+import ch.fhnw.util.math.Vec3Arrays;
 
 /**
  * Axis aligned 3D bounding box. Also contains 2D operations that only take x
@@ -188,8 +189,10 @@ public final class BoundingBox {
 
 	public void add(float[] vertices) {
 		if (vertices != null) {
-			for (int i = 0; i < vertices.length; i += 3) {
-				add(vertices[i], vertices[i + 1], vertices[i + 2]);
+			float[] b = { minX, minY, minZ, maxX, maxY, maxZ };
+			if (Vec3Arrays.bounds(vertices, 0, vertices.length / 3, b)) {
+				add(b[0], b[1], b[2]);
+				add(b[3], b[4], b[5]);
 			}
 		}
 	}
@@ -268,11 +271,16 @@ public final class BoundingBox {
 	}
 	
 	public BoundingBox transform(Mat4 m){
-		Vec3 min = m.transform(new Vec3(minX, minY, minZ));
-		Vec3 max = m.transform(new Vec3(maxX, maxY, maxZ));
+		// transform all corners, otherwise rotated boxes end up too small
 		BoundingBox bb = new BoundingBox();
-		bb.add(min);
-		bb.add(max);
+		if (!valid)
+			return bb;
+		bb.add(m.transform(new float[] {
+			minX, minY, minZ, minX, minY, maxZ, 
+			minX, maxY, minZ, minX, maxY, maxZ, 
+			maxX, minY, minZ, maxX, minY, maxZ, 
+			maxX, maxY, minZ, maxX, maxY, maxZ, 
+		}));
 		return bb;
 	}
 
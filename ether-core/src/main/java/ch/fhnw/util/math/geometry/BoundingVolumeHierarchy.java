@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util.math.geometry;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Dynamic bounding volume hierarchy over axis aligned bounding boxes. Leaves
+ * keep a slightly enlarged box, so small movements do not require
+ * re-insertion. Leaves are inserted next to the sibling with the least
+ * surface area cost and the tree is kept balanced through rotations, thus
+ * queries are logarithmic for reasonably distributed items. Items are
+ * compared by reference. Not thread safe.
+ */
+public final class BoundingVolumeHierarchy<T> {
+	private static final float MARGIN = 0.1f;
+	private static final float MIN_MARGIN = 0.001f;
+
+	private static final class Node<T> {
+		final BoundingBox bounds = new BoundingBox();
+		Node<T> parent;
+		Node<T> left;
+		Node<T> right;
+		T item;
+		int height;
+
+		boolean isLeaf() {
+			return left == null;
+		}
+	}
+
+	private final Map<T, Node<T>> leaves = new IdentityHashMap<>();
+	private Node<T> root;
+
+	public int size() {
+		return leaves.size();
+	}
+
+	public boolean contains(T item) {
+		return leaves.containsKey(item);
+	}
+
+	/**
+	 * Add item with given bounds.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if item already in hierarchy or bounds are invalid.
+	 */
+	public void add(T item, BoundingBox bounds) {
+		if (bounds == null || !bounds.isValid())
+			throw new IllegalArgumentException("invalid bounds: " + bounds);
+		if (leaves.containsKey(item))
+			throw new IllegalArgumentException("item already in hierarchy: " + item);
+		Node<T> leaf = new Node<>();
+		leaf.item = item;
+		setFatBounds(leaf.bounds, bounds);
+		leaves.put(item, leaf);
+		insertLeaf(leaf);
+	}
+
+	/**
+	 * Remove item.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if item not in hierarchy.
+	 */
+	public void remove(T item) {
+		Node<T> leaf = leaves.remove(item);
+		if (leaf == null)
+			throw new IllegalArgumentException("item not in hierarchy: " + item);
+		removeLeaf(leaf);
+	}
+
+	/**
+	 * Update bounds of item. The item is only re-inserted if the new bounds
+	 * are not contained in its enlarged leaf box.
+	 * 
+	 * @return true if item was re-inserted
+	 * @throws IllegalArgumentException
+	 *             if item not in hierarchy or bounds are invalid.
+	 */
+	public boolean update(T item, BoundingBox bounds) {
+		if (bounds == null || !bounds.isValid())
+			throw new IllegalArgumentException("invalid bounds: " + bounds);
+		Node<T> leaf = leaves.get(item);
+		if (leaf == null)
+			throw new IllegalArgumentException("item not in hierarchy: " + item);
+		if (leaf.bounds.contains(bounds))
+			return false;
+		removeLeaf(leaf);
+		setFatBounds(leaf.bounds, bounds);
+		insertLeaf(leaf);
+		return true;
+	}
+
+	public void clear() {
+		leaves.clear();
+		root = null;
+	}
+
+	/**
+	 * Visit all items whose enlarged box passes the predicate. Subtrees whose
+	 * box fails the predicate are skipped, hence the predicate must hold for
+	 * a box if it holds for any box contained in it (e.g. intersection tests).
+	 * Since leaf boxes are enlarged, visitors need to test the exact bounds of
+	 * an item if required.
+	 */
+	public void query(Predicate<BoundingBox> predicate, Consumer<T> visitor) {
+		if (root == null)
+			return;
+		ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			Node<T> node = stack.pop();
+			if (!predicate.test(node.bounds))
+				continue;
+			if (node.isLeaf()) {
+				visitor.accept(node.item);
+			} else {
+				stack.push(node.right);
+				stack.push(node.left);
+			}
+		}
+	}
+
+	/**
+	 * Like {@link #query(Predicate, Consumer)}, but all items of a subtree
+	 * whose box passes the inside predicate are visited without further
+	 * tests (e.g. for boxes completely inside a frustum).
+	 */
+	public void query(Predicate<BoundingBox> predicate, Predicate<BoundingBox> inside, Consumer<T> visitor) {
+		if (root == null)
+			return;
+		ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			Node<T> node = stack.pop();
+			if (!predicate.test(node.bounds))
+				continue;
+			if (node.isLeaf()) {
+				visitor.accept(node.item);
+			} else if (inside.test(node.bounds)) {
+				visitAll(node, visitor);
+			} else {
+				stack.push(node.right);
+				stack.push(node.left);
+			}
+		}
+	}
+
+	/**
+	 * Visit all items whose enlarged box intersects given box.
+	 */
+	public void query(BoundingBox bounds, Consumer<T> visitor) {
+		query(b -> b.intersects(bounds), visitor);
+	}
+
+	private static <T> void visitAll(Node<T> node, Consumer<T> visitor) {
+		ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+		stack.push(node);
+		while (!stack.isEmpty()) {
+			Node<T> n = stack.pop();
+			if (n.isLeaf()) {
+				visitor.accept(n.item);
+			} else {
+				stack.push(n.right);
+				stack.push(n.left);
+			}
+		}
+	}
+
+	private void insertLeaf(Node<T> leaf) {
+		if (root == null) {
+			root = leaf;
+			leaf.parent = null;
+			return;
+		}
+
+		// descend to sibling with least surface area cost
+		BoundingBox box = leaf.bounds;
+		Node<T> node = root;
+		while (!node.isLeaf()) {
+			float area = area(node.bounds);
+			float combinedArea = unionArea(node.bounds, box);
+			float cost = 2 * combinedArea;
+			float inheritanceCost = 2 * (combinedArea - area);
+			float costLeft = descendCost(node.left, box) + inheritanceCost;
+			float costRight = descendCost(node.right, box) + inheritanceCost;
+			if (cost < costLeft && cost < costRight)
+				break;
+			node = costLeft < costRight ? node.left : node.right;
+		}
+
+		Node<T> sibling = node;
+		Node<T> oldParent = sibling.parent;
+		Node<T> newParent = new Node<>();
+		newParent.parent = oldParent;
+		newParent.left = sibling;
+		newParent.right = leaf;
+		newParent.height = sibling.height + 1;
+		setUnion(newParent.bounds, sibling.bounds, box);
+		sibling.parent = newParent;
+		leaf.parent = newParent;
+		if (oldParent == null) {
+			root = newParent;
+		} else if (oldParent.left == sibling) {
+			oldParent.left = newParent;
+		} else {
+			oldParent.right = newParent;
+		}
+		refit(leaf.parent);
+	}
+
+	private void removeLeaf(Node<T> leaf) {
+		if (leaf == root) {
+			root = null;
+			return;
+		}
+		Node<T> parent = leaf.parent;
+		Node<T> grandParent = parent.parent;
+		Node<T> sibling = parent.left == leaf ? parent.right : parent.left;
+		leaf.parent = null;
+		if (grandParent == null) {
+			root = sibling;
+			sibling.parent = null;
+			return;
+		}
+		if (grandParent.left == parent)
+			grandParent.left = sibling;
+		else
+			grandParent.right = sibling;
+		sibling.parent = grandParent;
+		refit(grandParent);
+	}
+
+	private void refit(Node<T> node) {
+		while (node != null) {
+			node = balance(node);
+			node.height = 1 + Math.max(node.left.height, node.right.height);
+			setUnion(node.bounds, node.left.bounds, node.right.bounds);
+			node = node.parent;
+		}
+	}
+
+	// rotates the higher child of a up if a is unbalanced, returns new subtree root
+	private Node<T> balance(Node<T> a) {
+		if (a.isLeaf() || a.height < 2)
+			return a;
+
+		Node<T> b = a.left;
+		Node<T> c = a.right;
+		int balance = c.height - b.height;
+
+		if (balance > 1) {
+			Node<T> f = c.left;
+			Node<T> g = c.right;
+			replace(a, c);
+			c.left = a;
+			a.parent = c;
+			if (f.height > g.height) {
+				c.right = f;
+				a.right = g;
+				g.parent = a;
+			} else {
+				c.right = g;
+				a.right = f;
+				f.parent = a;
+			}
+			update(a);
+			update(c);
+			return c;
+		}
+
+		if (balance < -1) {
+			Node<T> d = b.left;
+			Node<T> e = b.right;
+			replace(a, b);
+			b.left = a;
+			a.parent = b;
+			if (d.height > e.height) {
+				b.right = d;
+				a.left = e;
+				e.parent = a;
+			} else {
+				b.right = e;
+				a.left = d;
+				d.parent = a;
+			}
+			update(a);
+			update(b);
+			return b;
+		}
+
+		return a;
+	}
+
+	// puts child in place of node within node's parent
+	private void replace(Node<T> node, Node<T> child) {
+		child.parent = node.parent;
+		if (child.parent == null)
+			root = child;
+		else if (child.parent.left == node)
+			child.parent.left = child;
+		else
+			child.parent.right = child;
+	}
+
+	private static <T> void update(Node<T> node) {
+		node.height = 1 + Math.max(node.left.height, node.right.height);
+		setUnion(node.bounds, node.left.bounds, node.right.bounds);
+	}
+
+	private static <T> float descendCost(Node<T> child, BoundingBox box) {
+		if (child.isLeaf())
+			return unionArea(child.bounds, box);
+		return unionArea(child.bounds, box) - area(child.bounds);
+	}
+
+	private static void setFatBounds(BoundingBox target, BoundingBox bounds) {
+		target.reset();
+		target.add(bounds);
+		target.grow(Math.max(MARGIN * bounds.getExtentX(), MIN_MARGIN), 
+				    Math.max(MARGIN * bounds.getExtentY(), MIN_MARGIN), 
+				    Math.max(MARGIN * bounds.getExtentZ(), MIN_MARGIN));
+	}
+
+	private static void setUnion(BoundingBox target, BoundingBox a, BoundingBox b) {
+		target.reset();
+		target.add(a);
+		target.add(b);
+	}
+
+	private static float area(BoundingBox b) {
+		float dx = b.getExtentX();
+		float dy = b.getExtentY();
+		float dz = b.getExtentZ();
+		return 2 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	private static float unionArea(BoundingBox a, BoundingBox b) {
+		float dx = Math.max(a.getMaxX(), b.getMaxX()) - Math.min(a.getMinX(), b.getMinX());
+		float dy = Math.max(a.getMaxY(), b.getMaxY()) - Math.min(a.getMinY(), b.getMinY());
+		float dz = Math.max(a.getMaxZ(), b.getMaxZ()) - Math.min(a.getMinZ(), b.getMinZ());
+		return 2 * (dx * dy + dy * dz + dz * dx);
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util.math.geometry;
+
+import ch.fhnw.util.Viewport;
+import ch.fhnw.util.math.Mat4;
+
+/**
+ * View frustum given by six planes extracted from a view-projection matrix,
+ * optionally restricted to a sub-rectangle of the viewport (e.g. for picking
+ * or rectangle selection). Planes are given in world space with normals
+ * pointing inwards.
+ */
+public final class Frustum {
+	// a, b, c, d for left, right, bottom, top, near, far
+	private final float[] planes = new float[24];
+
+	/**
+	 * Create frustum of given view-projection matrix.
+	 */
+	public Frustum(Mat4 viewProjMatrix) {
+		this(viewProjMatrix, -1, -1, 1, 1);
+	}
+
+	/**
+	 * Create frustum of given view-projection matrix, restricted to given
+	 * screen rectangle in viewport (window) coordinates.
+	 */
+	public Frustum(Mat4 viewProjMatrix, Viewport viewport, float x0, float y0, float x1, float y1) {
+		this(viewProjMatrix, 
+			 2 * (Math.min(x0, x1) - viewport.x) / viewport.w - 1, 
+			 2 * (Math.min(y0, y1) - viewport.y) / viewport.h - 1, 
+			 2 * (Math.max(x0, x1) - viewport.x) / viewport.w - 1, 
+			 2 * (Math.max(y0, y1) - viewport.y) / viewport.h - 1);
+	}
+
+	/**
+	 * Create frustum of given view-projection matrix, restricted to given
+	 * rectangle in normalized device coordinates.
+	 */
+	public Frustum(Mat4 m, float x0, float y0, float x1, float y1) {
+		// rows of the view-projection matrix
+		float[] r0 = { m.m00, m.m01, m.m02, m.m03 };
+		float[] r1 = { m.m10, m.m11, m.m12, m.m13 };
+		float[] r2 = { m.m20, m.m21, m.m22, m.m23 };
+		float[] r3 = { m.m30, m.m31, m.m32, m.m33 };
+		for (int i = 0; i < 4; ++i) {
+			planes[i] = r0[i] - x0 * r3[i];
+			planes[4 + i] = x1 * r3[i] - r0[i];
+			planes[8 + i] = r1[i] - y0 * r3[i];
+			planes[12 + i] = y1 * r3[i] - r1[i];
+			planes[16 + i] = r3[i] + r2[i];
+			planes[20 + i] = r3[i] - r2[i];
+		}
+	}
+
+	/**
+	 * Returns true if point is inside frustum.
+	 */
+	public boolean contains(float x, float y, float z) {
+		for (int i = 0; i < 24; i += 4) {
+			if (planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3] < 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if box intersects or is inside frustum. Conservative, i.e.
+	 * may return true for boxes close to frustum corners.
+	 */
+	public boolean intersects(BoundingBox b) {
+		if (b == null || !b.isValid())
+			return false;
+		for (int i = 0; i < 24; i += 4) {
+			// test corner furthest along plane normal
+			float x = planes[i] >= 0 ? b.getMaxX() : b.getMinX();
+			float y = planes[i + 1] >= 0 ? b.getMaxY() : b.getMinY();
+			float z = planes[i + 2] >= 0 ? b.getMaxZ() : b.getMinZ();
+			if (planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3] < 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if box is completely inside frustum.
+	 */
+	public boolean contains(BoundingBox b) {
+		if (b == null || !b.isValid())
+			return false;
+		for (int i = 0; i < 24; i += 4) {
+			// test corner furthest against plane normal
+			float x = planes[i] >= 0 ? b.getMinX() : b.getMaxX();
+			float y = planes[i + 1] >= 0 ? b.getMinY() : b.getMaxY();
+			float z = planes[i + 2] >= 0 ? b.getMinZ() : b.getMaxZ();
+			if (planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3] < 0)
+				return false;
+		}
+		return true;
+	}
+}
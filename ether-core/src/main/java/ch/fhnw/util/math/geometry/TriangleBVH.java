@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util.math.geometry;
+
+import java.util.Arrays;
+
+import ch.fhnw.util.math.Vec3;
+
+/**
+ * Static bounding volume hierarchy over a triangle array (9 floats per
+ * triangle) for ray queries. Built top-down with median splits along the
+ * largest centroid extent. The triangle array is referenced, not copied, and
+ * must not be modified while the hierarchy is in use.
+ */
+public final class TriangleBVH {
+	private static final int LEAF_SIZE = 4;
+
+	private final float[] triangles;
+	private final int[] indices;
+
+	// per node: min x/y/z, max x/y/z
+	private final float[] bounds;
+
+	// per node: first child (inner node) or first index (leaf), and number of
+	// triangles (0 for inner nodes)
+	private final int[] nodes;
+	private int numNodes;
+
+	public TriangleBVH(float[] triangles) {
+		int n = triangles.length / 9;
+		this.triangles = triangles;
+		this.indices = new int[n];
+		for (int i = 0; i < n; ++i)
+			indices[i] = i;
+		// median splits of ranges larger than LEAF_SIZE leave at least two
+		// triangles per leaf, hence there are at most n nodes
+		int maxNodes = Math.max(1, n);
+		this.bounds = new float[6 * maxNodes];
+		this.nodes = new int[2 * maxNodes];
+
+		float[] centroids = new float[3 * n];
+		for (int i = 0; i < n; ++i) {
+			for (int k = 0; k < 3; ++k)
+				centroids[3 * i + k] = (triangles[9 * i + k] + triangles[9 * i + 3 + k] + triangles[9 * i + 6 + k]) / 3;
+		}
+		numNodes = 1;
+		build(0, 0, n, centroids);
+	}
+
+	public int getNumTriangles() {
+		return indices.length;
+	}
+
+	/**
+	 * Intersect ray with triangles. Returns the smallest positive ray
+	 * parameter t (hit point = origin + t * direction), or
+	 * Float.POSITIVE_INFINITY if there is no intersection.
+	 */
+	public float intersect(Vec3 origin, Vec3 direction) {
+		if (indices.length == 0)
+			return Float.POSITIVE_INFINITY;
+		float[] o = { origin.x, origin.y, origin.z };
+		float[] inv = { 1 / direction.x, 1 / direction.y, 1 / direction.z };
+		float best = Float.POSITIVE_INFINITY;
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (!hitBox(node, o, inv, best))
+				continue;
+			int first = nodes[2 * node];
+			int count = nodes[2 * node + 1];
+			if (count > 0) {
+				for (int i = first; i < first + count; ++i) {
+					float t = GeometryUtilities.intersectRayWithTriangle(origin, direction, triangles, 9 * indices[i]);
+					if (t > 0 && t < best)
+						best = t;
+				}
+			} else {
+				if (top + 2 > stack.length)
+					stack = Arrays.copyOf(stack, 2 * stack.length);
+				stack[top++] = first + 1;
+				stack[top++] = first;
+			}
+		}
+		return best;
+	}
+
+	private boolean hitBox(int node, float[] o, float[] inv, float tMax) {
+		float t0 = 0;
+		float t1 = tMax;
+		for (int k = 0; k < 3; ++k) {
+			float tNear = (bounds[6 * node + k] - o[k]) * inv[k];
+			float tFar = (bounds[6 * node + 3 + k] - o[k]) * inv[k];
+			if (tNear > tFar) {
+				float t = tNear;
+				tNear = tFar;
+				tFar = t;
+			}
+			// note: NaN (ray parallel to and on slab) fails both tests and passes
+			if (tNear > t0)
+				t0 = tNear;
+			if (tFar < t1)
+				t1 = tFar;
+			if (t0 > t1)
+				return false;
+		}
+		return true;
+	}
+
+	private void build(int node, int start, int end, float[] centroids) {
+		float[] b = new float[] { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		float[] c = b.clone();
+		for (int i = start; i < end; ++i) {
+			int t = 9 * indices[i];
+			for (int v = 0; v < 9; v += 3) {
+				for (int k = 0; k < 3; ++k) {
+					b[k] = Math.min(b[k], triangles[t + v + k]);
+					b[3 + k] = Math.max(b[3 + k], triangles[t + v + k]);
+				}
+			}
+			for (int k = 0; k < 3; ++k) {
+				c[k] = Math.min(c[k], centroids[3 * indices[i] + k]);
+				c[3 + k] = Math.max(c[3 + k], centroids[3 * indices[i] + k]);
+			}
+		}
+		System.arraycopy(b, 0, bounds, 6 * node, 6);
+
+		int axis = 0;
+		for (int k = 1; k < 3; ++k) {
+			if (c[3 + k] - c[k] > c[3 + axis] - c[axis])
+				axis = k;
+		}
+		if (end - start <= LEAF_SIZE || !(c[3 + axis] - c[axis] > 0)) {
+			nodes[2 * node] = start;
+			nodes[2 * node + 1] = end - start;
+			return;
+		}
+
+		int mid = (start + end) >>> 1;
+		select(start, end - 1, mid, axis, centroids);
+		int left = numNodes;
+		numNodes += 2;
+		nodes[2 * node] = left;
+		nodes[2 * node + 1] = 0;
+		build(left, start, mid, centroids);
+		build(left + 1, mid, end, centroids);
+	}
+
+	// partial sort of indices so that element k is at its sorted position
+	private void select(int lo, int hi, int k, int axis, float[] centroids) {
+		while (hi > lo) {
+			float pivot = centroids[3 * indices[(lo + hi) >>> 1] + axis];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (centroids[3 * indices[i] + axis] < pivot)
+					i++;
+				while (centroids[3 * indices[j] + axis] > pivot)
+					j--;
+				if (i <= j) {
+					int t = indices[i];
+					indices[i] = indices[j];
+					indices[j] = t;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+				hi = j;
+			else if (k >= i)
+				lo = i;
+			else
+				return;
+		}
+	}
+}
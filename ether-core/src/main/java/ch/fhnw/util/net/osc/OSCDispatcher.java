@@ -34,7 +34,7 @@ package ch.fhnw.util.net.osc;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Arrays;
 
 import ch.fhnw.util.Log;
 
@@ -67,7 +67,8 @@ public abstract class OSCDispatcher {
 		}
 	};
 
-	private OSCNode addressSpace = new OSCNode(DEFAULT_HANDLER);
+	private final OSCNode    addressSpace = new OSCNode(null, DEFAULT_HANDLER);
+	private final OSCMessage message      = new OSCMessage();
 	private int  messageCount;
 	private long lastMessageTime = -1;
 
@@ -79,160 +80,164 @@ public abstract class OSCDispatcher {
 	}
 
 	public void addHandler(String address, IOSCHandler handler) {
+		setHandler(address, handler);
+	}
+
+	public void addHandler(String address, IOSCMessageHandler handler) {
+		setHandler(address, handler);
+	}
+
+	private synchronized void setHandler(String address, Object handler) {
 		if (address.equals("/"))
-			addressSpace.setHandler(handler);
+			addressSpace.handler = handler;
 		else {
 			String[] parts = OSCCommon.split(address, '/');
 			OSCNode node = addressSpace;
-			for (int i = 1; i < parts.length - 1; i++)
+			for (int i = 1; i < parts.length; i++)
 				node = node.get(parts[i]);
-			node.get(parts[parts.length - 1]).setHandler(handler);
+			node.handler = handler;
 		}
 	}
 
+	/**
+	 * Process packet from its position to its limit. Not thread safe, i.e.
+	 * must be called from a single thread. The packet's position is set to
+	 * its limit.
+	 */
 	protected void process(SocketAddress peer, ByteBuffer packet, long timetag, OSCSender sender) {
-		StringBuilder address = new StringBuilder();
-		for (;;) {
-			char c = (char) packet.get();
-			if (c == 0)
-				break;
-			address.append(c);
-		}
-		OSCCommon.align(packet);
-		dispatch(peer, address.toString(), packet, timetag, sender);
+		process(peer, packet, packet.position(), packet.limit(), timetag, sender);
+		packet.position(packet.limit());
 	}
 
-	private void dispatch(SocketAddress peer, String address, ByteBuffer packet, long timetag, OSCSender sender) {
-		if (address.equals("#bundle")) {
-			timetag = packet.getLong();
-			while (packet.position() < packet.limit()) {
-				packet.getInt(); // skip size
-				process(peer, packet, timetag, sender);
+	private void process(SocketAddress peer, ByteBuffer packet, int start, int end, long timetag, OSCSender sender) {
+		if (isBundle(packet, start, end)) {
+			timetag = packet.getLong(start + BUNDLE.length);
+			int pos = start + BUNDLE.length + 8;
+			while (pos + 4 <= end) {
+				int size = packet.getInt(pos);
+				pos += 4;
+				process(peer, packet, pos, Math.min(pos + size, end), timetag, sender);
+				pos += size;
 			}
 		} else {
-			messageCount++;
-			lastMessageTime = System.currentTimeMillis();
-			int messageStart = packet.position() - (4 * ((address.length() / 4) + 1));
-			StringBuilder typeString = new StringBuilder();
-			for (;;) {
-				char c = (char) packet.get();
-				if (c == 0)
-					break;
-				typeString.append(c);
-			}
-			OSCCommon.align(packet);
-			Object[] args = new Object[typeString.length() - 1];
-			for (int i = 1; i < typeString.length(); i++) {
-				switch (typeString.charAt(i)) {
-				case 'i':
-					args[i - 1] = packet.getInt();
-					break;
-				case 'f':
-					args[i - 1] = packet.getFloat();
-					break;
-				case 'd':
-					args[i - 1] = packet.getDouble();
-					break;
-				case 's':
-					StringBuilder tmp = new StringBuilder();
-					for (;;) {
-						char c = (char) packet.get();
-						if (c == 0)
-							break;
-						tmp.append(c);
-					}
-					args[i - 1] = tmp.toString();
-					OSCCommon.align(packet);
-					break;
-				case 'T':
-					args[i - 1] = true;
-					break;
-				case 'F':
-					args[i - 1] = false;
-					break;
-				case 'N':
-					args[i - 1] = null;
-					break;
-				case 'b':
-					int size = packet.getInt();
-					byte[] blob = new byte[size];
-					packet.get(blob);
-					args[i - 1] = blob;
-					OSCCommon.align(packet);
-					break;
-				default:
-					throw new IllegalArgumentException("Illegal type string: '" + typeString.charAt(i) + "' in " + typeString);
-				}
-			}
-			int messageEnd = packet.position();
-			
-			OSCNode node = addressSpace;
-			IOSCHandler handler = node.getHandler();
-			String[] parts = OSCCommon.split(address, '/');
-			int idx = 0;
-			for (int i = 1; i < parts.length; i++) {
-				OSCNode tmp = node.lookup(parts[i]);
-				if (tmp != null) {
-					if (tmp.getHandler() != null) {
-						handler = tmp.getHandler();
-						idx = i;
-					}
-					node = tmp;
-				} else
-					break;
+			dispatch(peer, message.wrap(packet, start, end - start), timetag, sender);
+		}
+	}
+
+	private static final byte[] BUNDLE = { '#', 'b', 'u', 'n', 'd', 'l', 'e', 0 };
+
+	private static boolean isBundle(ByteBuffer packet, int start, int end) {
+		if (end - start < BUNDLE.length + 8)
+			return false;
+		for (int i = 0; i < BUNDLE.length; i++)
+			if (packet.get(start + i) != BUNDLE[i])
+				return false;
+		return true;
+	}
+
+	private void dispatch(SocketAddress peer, OSCMessage msg, long timetag, OSCSender sender) {
+		messageCount++;
+		lastMessageTime = System.currentTimeMillis();
+
+		// walk address space on the raw address bytes, skipping the part
+		// before the first '/'
+		ByteBuffer packet = msg.getBuffer();
+		int         end     = msg.getAddressEnd();
+		int         pos     = indexOf(packet, '/', msg.getAddressStart(), end) + 1;
+		OSCNode     node    = addressSpace;
+		Object      handler = node.handler;
+		int         idx     = 0;
+		for (int i = 1; pos > 0 && pos <= end; i++) {
+			int next = indexOf(packet, '/', pos, end);
+			if (next < 0)
+				next = end;
+			node = node.lookup(packet, pos, next);
+			if (node == null)
+				break;
+			if (node.handler != null) {
+				handler = node.handler;
+				idx = i;
 			}
-			
-			Object[] reply = handler.handle(parts, idx + 1, typeString, timetag, args);
-			if (reply != null) {
-				byte[] request = new byte[messageEnd - messageStart];
-				packet.position(messageStart);
-				packet.get(request);
-				ByteBuffer msg = OSCMessage.getBytes("#reply", request, reply);
-				try {
-					sender.send(peer, msg);
-				} catch (IOException ex) {
-					OSCCommon.handleException(ex, OSCDispatcher.this);
-				}
+			pos = next + 1;
+		}
+
+		Object[] reply;
+		if (handler instanceof IOSCMessageHandler) {
+			reply = ((IOSCMessageHandler) handler).handle(msg, timetag);
+		} else {
+			String[] parts = OSCCommon.split(msg.getAddress(), '/');
+			reply = ((IOSCHandler) handler).handle(parts, idx + 1, new StringBuilder(msg.getTypeString()), timetag, msg.getArgs());
+		}
+
+		if (reply != null) {
+			ByteBuffer replyMsg = OSCMessage.getBytes("#reply", msg.getBytes(), reply);
+			try {
+				sender.send(peer, replyMsg);
+			} catch (IOException ex) {
+				OSCCommon.handleException(ex, OSCDispatcher.this);
 			}
 		}
 	}
 
+	private static int indexOf(ByteBuffer packet, char c, int from, int to) {
+		for (int i = from; i < to; i++)
+			if (packet.get(i) == c)
+				return i;
+		return -1;
+	}
+
 	public int getMessageCount() {
 		return messageCount;
 	}
 
-	class OSCNode {
-		private ConcurrentHashMap<String, OSCNode> children;
-		private IOSCHandler handler;
+	/**
+	 * Address space trie. Children are kept in a copy-on-write array and
+	 * matched against the raw address bytes, so lookups do not allocate.
+	 */
+	static final class OSCNode {
+		private static final OSCNode[] NO_CHILDREN = new OSCNode[0];
 
-		public OSCNode() {
-		}
+		private final byte[]       name;
+		private volatile OSCNode[] children = NO_CHILDREN;
+		volatile Object            handler;
 
-		public OSCNode(IOSCHandler handler) {
-			setHandler(handler);
-		}
-
-		public IOSCHandler getHandler() {
-			return handler;
+		OSCNode(String name, Object handler) {
+			this.name    = name == null ? null : bytes(name);
+			this.handler = handler;
 		}
 
-		public OSCNode lookup(String name) {
-			return children == null ? null : children.get(name);
+		OSCNode lookup(ByteBuffer buffer, int from, int to) {
+			int len = to - from;
+			outer:
+			for (OSCNode child : children) {
+				if (child.name.length != len)
+					continue;
+				for (int i = 0; i < len; i++)
+					if (child.name[i] != buffer.get(from + i))
+						continue outer;
+				return child;
+			}
+			return null;
 		}
 
-		public OSCNode get(String name) {
-			if (children == null)
-				children = new ConcurrentHashMap<>();
-			OSCNode result = children.get(name);
-			if (result == null) {
-				result = new OSCNode();
-				children.put(name, result);
-			}
+		// called with dispatcher lock held
+		OSCNode get(String name) {
+			byte[] bytes = bytes(name);
+			for (OSCNode child : children)
+				if (Arrays.equals(child.name, bytes))
+					return child;
+			OSCNode result = new OSCNode(name, null);
+			OSCNode[] tmp = Arrays.copyOf(children, children.length + 1);
+			tmp[tmp.length - 1] = result;
+			children = tmp;
 			return result;
 		}
 
-		public void setHandler(IOSCHandler handler) {
-			this.handler = handler;
+		private static byte[] bytes(String s) {
+			byte[] result = new byte[s.length()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = (byte) s.charAt(i);
+			return result;
 		}
 	}
 }
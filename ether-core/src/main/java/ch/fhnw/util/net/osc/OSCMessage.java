@@ -32,8 +32,271 @@
 package ch.fhnw.util.net.osc;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
+/**
+ * OSC message encoding, and a reusable flyweight view on a received message.
+ * The view decodes arguments on access without boxing, and is only valid
+ * until it is wrapped around the next message.
+ */
 public class OSCMessage {
+	private ByteBuffer buffer;
+	private int        start;
+	private int        end;
+	private int        addressStart;
+	private int        addressEnd;
+	private int        typeStart;
+	private int        numArgs;
+	private int[]      offsets = new int[16];
+	private String     address;
+
+	/**
+	 * Wrap view around message at [offset, offset + length) of buffer. The
+	 * buffer's position is not changed.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the type tag string contains unsupported types.
+	 */
+	public OSCMessage wrap(ByteBuffer buffer, int offset, int length) {
+		this.buffer  = buffer;
+		this.start   = offset;
+		this.end     = offset + length;
+		this.address = null;
+
+		addressStart = offset;
+		addressEnd   = terminator(addressStart);
+		typeStart    = align(addressEnd + 1);
+		numArgs      = 0;
+		if (typeStart >= end || buffer.get(typeStart) != ',') {
+			// messages without type tag string have no arguments
+			typeStart = end;
+			return this;
+		}
+		int typeEnd = terminator(typeStart);
+		numArgs = typeEnd - typeStart - 1;
+		if (offsets.length < numArgs)
+			offsets = Arrays.copyOf(offsets, Math.max(numArgs, offsets.length * 2));
+		int pos = align(typeEnd + 1);
+		for (int i = 0; i < numArgs; i++) {
+			offsets[i] = pos;
+			char type = getType(i);
+			switch (type) {
+			case 'i':
+			case 'f':
+				pos += 4;
+				break;
+			case 'd':
+				pos += 8;
+				break;
+			case 's':
+				pos = align(terminator(pos) + 1);
+				break;
+			case 'b':
+				pos = align(pos + 4 + buffer.getInt(pos));
+				break;
+			case 'T':
+			case 'F':
+			case 'N':
+				break;
+			default:
+				throw new IllegalArgumentException("Illegal type string: '" + type + "' in " + getTypeString());
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the address of this message. The string is created on first
+	 * access.
+	 */
+	public String getAddress() {
+		if (address == null)
+			address = string(addressStart, addressEnd);
+		return address;
+	}
+
+	/**
+	 * Compares the address of this message without creating a string.
+	 */
+	public boolean addressEquals(String other) {
+		int len = addressEnd - addressStart;
+		if (other.length() != len)
+			return false;
+		for (int i = 0; i < len; i++)
+			if ((buffer.get(addressStart + i) & 0xFF) != other.charAt(i))
+				return false;
+		return true;
+	}
+
+	public String getTypeString() {
+		return typeStart < end ? string(typeStart, terminator(typeStart)) : "";
+	}
+
+	public int getNumArgs() {
+		return numArgs;
+	}
+
+	/**
+	 * Returns the OSC type tag of argument i.
+	 */
+	public char getType(int i) {
+		return (char) buffer.get(typeStart + 1 + checkIndex(i));
+	}
+
+	public int getInt(int i) {
+		switch (getType(i)) {
+		case 'i': return buffer.getInt(offsets[i]);
+		case 'f': return (int) buffer.getFloat(offsets[i]);
+		case 'd': return (int) buffer.getDouble(offsets[i]);
+		default:  throw typeMismatch(i, "int");
+		}
+	}
+
+	public float getFloat(int i) {
+		switch (getType(i)) {
+		case 'i': return buffer.getInt(offsets[i]);
+		case 'f': return buffer.getFloat(offsets[i]);
+		case 'd': return (float) buffer.getDouble(offsets[i]);
+		default:  throw typeMismatch(i, "float");
+		}
+	}
+
+	public double getDouble(int i) {
+		switch (getType(i)) {
+		case 'i': return buffer.getInt(offsets[i]);
+		case 'f': return buffer.getFloat(offsets[i]);
+		case 'd': return buffer.getDouble(offsets[i]);
+		default:  throw typeMismatch(i, "double");
+		}
+	}
+
+	public boolean getBoolean(int i) {
+		switch (getType(i)) {
+		case 'T': return true;
+		case 'F': return false;
+		case 'i': return buffer.getInt(offsets[i]) != 0;
+		default:  throw typeMismatch(i, "boolean");
+		}
+	}
+
+	public String getString(int i) {
+		if (getType(i) != 's')
+			throw typeMismatch(i, "string");
+		return string(offsets[i], terminator(offsets[i]));
+	}
+
+	public int getBlobLength(int i) {
+		if (getType(i) != 'b')
+			throw typeMismatch(i, "blob");
+		return buffer.getInt(offsets[i]);
+	}
+
+	/**
+	 * Copy blob argument i to dst, which must have room for
+	 * {@link #getBlobLength(int)} bytes.
+	 */
+	public void getBlob(int i, byte[] dst, int offset) {
+		int length = getBlobLength(i);
+		int pos = offsets[i] + 4;
+		for (int j = 0; j < length; j++)
+			dst[offset + j] = buffer.get(pos + j);
+	}
+
+	/**
+	 * Decode all arguments into boxed objects, as passed to
+	 * {@link IOSCHandler}.
+	 */
+	public Object[] getArgs() {
+		Object[] args = new Object[numArgs];
+		for (int i = 0; i < numArgs; i++) {
+			switch (getType(i)) {
+			case 'i': args[i] = buffer.getInt(offsets[i]); break;
+			case 'f': args[i] = buffer.getFloat(offsets[i]); break;
+			case 'd': args[i] = buffer.getDouble(offsets[i]); break;
+			case 's': args[i] = getString(i); break;
+			case 'T': args[i] = true; break;
+			case 'F': args[i] = false; break;
+			case 'N': args[i] = null; break;
+			case 'b':
+				byte[] blob = new byte[getBlobLength(i)];
+				getBlob(i, blob, 0);
+				args[i] = blob;
+				break;
+			}
+		}
+		return args;
+	}
+
+	/**
+	 * Copy the raw message bytes, e.g. for replies.
+	 */
+	public byte[] getBytes() {
+		byte[] result = new byte[getLength()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = buffer.get(start + i);
+		return result;
+	}
+
+	/**
+	 * Returns the length of the message including all arguments.
+	 */
+	public int getLength() {
+		if (numArgs == 0)
+			return (typeStart < end ? align(terminator(typeStart) + 1) : typeStart) - start;
+		int last = numArgs - 1;
+		int pos = offsets[last];
+		switch (getType(last)) {
+		case 'i': case 'f': pos += 4; break;
+		case 'd': pos += 8; break;
+		case 's': pos = align(terminator(pos) + 1); break;
+		case 'b': pos = align(pos + 4 + buffer.getInt(pos)); break;
+		}
+		return pos - start;
+	}
+
+	int getAddressStart() {
+		return addressStart;
+	}
+
+	int getAddressEnd() {
+		return addressEnd;
+	}
+
+	ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	@Override
+	public String toString() {
+		return buffer == null ? "[]" : "[" + getAddress() + "(" + getTypeString() + ")]";
+	}
+
+	private int checkIndex(int i) {
+		if (i < 0 || i >= numArgs)
+			throw new IndexOutOfBoundsException("argument " + i + " of " + numArgs);
+		return i;
+	}
+
+	private IllegalArgumentException typeMismatch(int i, String type) {
+		return new IllegalArgumentException("argument " + i + " of type '" + getType(i) + "' is not a " + type);
+	}
+
+	private int terminator(int pos) {
+		while (pos < end && buffer.get(pos) != 0)
+			pos++;
+		return pos;
+	}
+
+	private String string(int from, int to) {
+		char[] chars = new char[to - from];
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = (char) (buffer.get(from + i) & 0xFF);
+		return new String(chars);
+	}
+
+	private int align(int pos) {
+		return start + (((pos - start) + 3) & ~3);
+	}
 	private static int buildTypeTagString(byte[] typeTag, int ttidx, int size, Object[] args) {
 		for (Object o : args) {
 			if (o instanceof Integer) {
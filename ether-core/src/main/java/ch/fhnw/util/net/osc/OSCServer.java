@@ -32,15 +32,19 @@
 package ch.fhnw.util.net.osc;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
+import java.net.NetworkInterface;
 import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.Collection;
+import java.util.Enumeration;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -56,11 +60,32 @@ public final class OSCServer extends OSCDispatcher implements OSCSender {
 	private static final int RECEIVE_BUFFER_SIZE = 1024 * 1024;
 	private static final int SEND_BUFFER_SIZE = 1024 * 1024;
 
+	// max. UDP payload
+	private static final int MAX_PACKET_SIZE = 65536;
+	private static final int NUM_RX_BUFFERS = 64;
+
+	// pooled receive buffer, handed from receiver to processor and back
+	private static final class RxBuffer {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_PACKET_SIZE);
+		SocketAddress peer;
+	}
+
+	private static final class TxPacket {
+		final SocketAddress destination;
+		final ByteBuffer packet;
+
+		TxPacket(SocketAddress destination, ByteBuffer packet) {
+			this.destination = destination;
+			this.packet = packet;
+		}
+	}
+
 	private final InetSocketAddress address;
-	private final DatagramSocket socket;
+	private final DatagramChannel channel;
 
-	private final BlockingQueue<DatagramPacket> txQueue = new LinkedBlockingQueue<>();
-	private final BlockingQueue<DatagramPacket> rxQueue = new LinkedBlockingQueue<>();
+	private final BlockingQueue<TxPacket> txQueue = new LinkedBlockingQueue<>();
+	private final BlockingQueue<RxBuffer> rxQueue = new ArrayBlockingQueue<>(NUM_RX_BUFFERS);
+	private final BlockingQueue<RxBuffer> rxPool  = new ArrayBlockingQueue<>(NUM_RX_BUFFERS);
 
 	private final Map<String, SocketAddress> remotePeers = new ConcurrentHashMap<>();
 
@@ -72,23 +97,44 @@ public final class OSCServer extends OSCDispatcher implements OSCSender {
 		this(port, null);
 	}
 
+	/**
+	 * Returns the interface of addr if it can receive multicast, otherwise the
+	 * first interface that is up, not loopback and supports multicast.
+	 */
+	private static NetworkInterface getMulticastInterface(InetAddress addr) throws IOException {
+		NetworkInterface result = NetworkInterface.getByInetAddress(addr);
+		if (result != null && isMulticastCapable(result))
+			return result;
+		for (Enumeration<NetworkInterface> e = NetworkInterface.getNetworkInterfaces(); e != null && e.hasMoreElements();) {
+			result = e.nextElement();
+			if (isMulticastCapable(result))
+				for (Enumeration<InetAddress> a = result.getInetAddresses(); a.hasMoreElements();)
+					if (a.nextElement() instanceof Inet4Address)
+						return result;
+		}
+		throw new IOException("No multicast capable network interface found");
+	}
+
+	private static boolean isMulticastCapable(NetworkInterface iface) throws IOException {
+		return iface.isUp() && !(iface.isLoopback()) && iface.supportsMulticast();
+	}
+
 	public OSCServer(int port, String multicastAddress) throws IOException {
 		address = new InetSocketAddress(NetworkUtilities.getDefaultInterface(), port);
 		if (multicastAddress == null) {
-			socket = new DatagramSocket(address.getPort());
+			channel = DatagramChannel.open(StandardProtocolFamily.INET);
+			channel.bind(new InetSocketAddress(address.getPort()));
 		} else {
-			MulticastSocket multicastSocket = new MulticastSocket(address.getPort());
-			multicastSocket.joinGroup(InetAddress.getByName(multicastAddress));
-			socket = multicastSocket;
-		}
-		int dec = socket.getReceiveBufferSize();
-		for (int size = RECEIVE_BUFFER_SIZE; socket.getReceiveBufferSize() < size; size -= dec) {
-			socket.setReceiveBufferSize(size);
-		}
-		dec = socket.getSendBufferSize();
-		for (int size = SEND_BUFFER_SIZE; socket.getSendBufferSize() < size; size -= dec) {
-			socket.setSendBufferSize(size);
+			channel = DatagramChannel.open(StandardProtocolFamily.INET);
+			channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			channel.bind(new InetSocketAddress(address.getPort()));
+			channel.join(InetAddress.getByName(multicastAddress), getMulticastInterface(address.getAddress()));
 		}
+		channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_SIZE);
+		channel.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER_SIZE);
+
+		for (int i = 0; i < NUM_RX_BUFFERS; i++)
+			rxPool.add(new RxBuffer());
 
 		StringBuilder ifaddrs = new StringBuilder();
 		for(InetAddress ifaddr : NetworkUtilities.getLocalAddresses(true))
@@ -99,17 +145,15 @@ public final class OSCServer extends OSCDispatcher implements OSCSender {
 			@Override
 			public void run() {
 				try {
-					log.info(Thread.currentThread().getName() + " started (" + ifaddrs + ":" + socket.getLocalPort() + ")");
+					log.info(Thread.currentThread().getName() + " started (" + ifaddrs + ":" + address.getPort() + ")");
 					for (;;) {
 						try {
-							byte[] buffer = new byte[socket.getReceiveBufferSize()];
-							DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-							socket.receive(packet);
-							try {
-								rxQueue.put(packet);
-							} catch (Exception e) {
-								OSCCommon.handleException(e, this);							
-							}
+							// blocks (i.e. drops packets in the OS) if processing falls behind
+							RxBuffer rx = rxPool.take();
+							rx.buffer.clear();
+							rx.peer = channel.receive(rx.buffer);
+							rx.buffer.flip();
+							rxQueue.put(rx);
 						} catch (Throwable t) {
 							log.warning(t);
 						}
@@ -131,8 +175,8 @@ public final class OSCServer extends OSCDispatcher implements OSCSender {
 				int i = count;
 				for (;;) {
 					try {
-						DatagramPacket packet = txQueue.take();
-						socket.send(packet);
+						TxPacket tx = txQueue.take();
+						channel.send(tx.packet, tx.destination);
 						if (i-- <= 0) {
 							i = count;
 							Thread.sleep(10);
@@ -150,11 +194,17 @@ public final class OSCServer extends OSCDispatcher implements OSCSender {
 			public void run() {
 				log.info(Thread.currentThread().getName() + " started)");
 				for (;;) {
+					RxBuffer rx = null;
 					try {
-						DatagramPacket packet = rxQueue.take();
-						process(packet.getSocketAddress(), ByteBuffer.wrap(packet.getData(), 0, packet.getLength()), OSCCommon.TIMETAG_IMMEDIATE, OSCServer.this);
+						rx = rxQueue.take();
+						process(rx.peer, rx.buffer, OSCCommon.TIMETAG_IMMEDIATE, OSCServer.this);
 					} catch (Throwable t) {
 						log.warning(t);
+					} finally {
+						if (rx != null) {
+							rx.peer = null;
+							rxPool.add(rx);
+						}
 					}
 				}
 			}
@@ -196,9 +246,10 @@ public final class OSCServer extends OSCDispatcher implements OSCSender {
 
 	@Override
 	public void send(SocketAddress destination, ByteBuffer packet) {
-		DatagramPacket p = new DatagramPacket(packet.array(), packet.capacity());
-		p.setSocketAddress(destination);
-		txQueue.add(p);
+		// packets may be shared among destinations, hence send a view
+		ByteBuffer p = packet.duplicate();
+		p.clear();
+		txQueue.add(new TxPacket(destination, p));
 	}
 
 	public static void main(String[] args) throws IOException, InterruptedException {
@@ -46,6 +46,7 @@ public class RTPFrameTarget extends AbstractVideoTarget {
 	@Override
 	public void render() {
 		VideoFrame frame = getFrame();
+		frame.retain();
 		server.setImage(frame.getHostImage());
 		sleepUntil(frame.playOutTime);		
 	}	
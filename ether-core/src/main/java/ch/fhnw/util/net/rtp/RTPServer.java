@@ -52,6 +52,8 @@ public class RTPServer extends Thread {
 			IHostImage.create(1, 1, ComponentType.BYTE, ComponentFormat.RGB)
 			);
 
+	private final RTPStream stream = new RTPStream(this);
+
 	private final int port;
 
 	public RTPServer(int port) {
@@ -103,6 +105,10 @@ public class RTPServer extends Thread {
 		new RTPServer(Integer.parseInt(args[0]), false).run();
 	}
 
+	RTPStream getStream() {
+		return stream;
+	}
+
 	public IHostImage getImage() {
 		return currentImage.get();
 	}
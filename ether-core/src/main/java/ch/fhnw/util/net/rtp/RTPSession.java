@@ -31,30 +31,21 @@
 
 package ch.fhnw.util.net.rtp;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketException;
-import java.util.List;
+import java.net.InetSocketAddress;
 import java.util.concurrent.LinkedBlockingQueue;
 
-import javax.swing.Timer;
-
-import ch.fhnw.ether.image.IHostImage;
 import ch.fhnw.util.Log;
 import ch.fhnw.util.TextUtilities;
-import ch.fhnw.util.net.NetworkUtilities;
 
-public class RTPSession implements ActionListener {
+public class RTPSession {
 	private static final Log LOG = Log.create();
 
 	private static final String CRLF = "\r\n";
 
-	private static final int FRAMERATE = 25; // fix for now
-
 	//rtsp states
 	enum State {
 		INIT,
@@ -64,10 +55,8 @@ public class RTPSession implements ActionListener {
 
 	//RTP variables:
 	//----------------
-	private DatagramSocket    socketRTP; //socket to be used to send and receive UDP packets
-	private DatagramPacket    senddp; //UDP packet containing the video frames
+	private boolean           udp; //true if packets are sent over UDP, false if interleaved
 	private State             state = State.INIT; //RTSP Server state == INIT or READY or PLAY
-	private Timer             timer;    //timer used to send the images at the video frame rate
 	private RTCPReceiver      rtcpReceiver;
 	private DatagramSocket    socketRTCP;
 	private final InetAddress clientIP;   //Client IP address
@@ -77,10 +66,7 @@ public class RTPSession implements ActionListener {
 	private final RTPServer   server;
 	private final LinkedBlockingQueue<RTCPpacket> rtpcQ = new LinkedBlockingQueue<>(); 
 
-	//Video variables:
-	//----------------
-	private int               imagenb = 1; //image nb of the image currently transmitted
-	private RTSPRequest       lastReq;
+	private volatile RTSPRequest lastReq;
 
 	public RTPSession(RTPServer server, RTSPRequest req) throws Exception {
 		this.lastReq        = req;
@@ -97,22 +83,16 @@ public class RTPSession implements ActionListener {
 		LOG.info(this + "New RTSP state: READY");
 
 		if(req.get("Transport:").contains("client_port=")) {
-			//init RTP and RTCP sockets
-			socketRTP  = new DatagramSocket();
+			//init RTCP socket, RTP packets are sent through the server's stream
+			udp        = true;
 			socketRTCP = new DatagramSocket();
-			socketRTP.setTrafficClass(NetworkUtilities.IPTOS_LOWDELAY | NetworkUtilities.IPTOS_THROUGHPUT);
 
 			//Send response
-			req.send(RTSP_setup(req, socketRTP.getLocalPort(), socketRTCP.getLocalPort()));
+			req.send(RTSP_setup(req, server.getStream().getLocalPort(), socketRTCP.getLocalPort()));
 		} else {
 			req.send(RTSP_setup(req));
 		}
 
-		//init RTP sending Timer
-		timer = new Timer(1000/FRAMERATE, this);
-		timer.setInitialDelay(0);
-		timer.setCoalesce(true);
-
 		//init the RTCP packet receiver
 		rtcpReceiver = new RTCPReceiver();
 	}
@@ -134,8 +114,11 @@ public class RTPSession implements ActionListener {
 		if(state == State.READY) {
 			//send back response
 			req.send(RTSP_ok(req));
-			//start timer
-			timer.start();
+			//start streaming
+			if(udp)
+				server.getStream().add(this, new InetSocketAddress(clientIP, clientRTPport));
+			else
+				server.getStream().add(this, packet -> lastReq.send(clientRTPport, packet));
 			//update state
 			state = State.PLAYING;
 			LOG.info(this + "New RTSP state: PLAYING");
@@ -183,53 +166,13 @@ public class RTPSession implements ActionListener {
 
 	}
 
-	//------------------------
-	//Handler for timer
-	//------------------------
-	@Override
-	public void actionPerformed(ActionEvent e) {
-		//if the current image nb is less than the length of the video
-		//update current imagenb
-		imagenb++;
-
-		try {
-			//get next frame to send from the video, as well as its size
-			IHostImage image = server.getImage();
-
-			//Builds an RTPpackets object containing the frame
-			RTPmjpg mjpg = new RTPmjpg(image, imagenb, imagenb*(RTSPRequest.MJPEG_TIMEBASE/FRAMERATE));
-			if(socketRTP == null) mjpg.setMTU(63 * 1024);
-			List<RTPpacket> rtp_packets = mjpg.createPackets();
-			for(RTPpacket rtp_packet : rtp_packets) {
-				if(socketRTP != null) {
-					//send the packet as a DatagramPacket over the UDP socket 
-					senddp = new DatagramPacket(rtp_packet.getPacket(), rtp_packet.size(), clientIP, clientRTPport);
-					socketRTP.send(senddp);
-				} else {
-					lastReq.send(clientRTPport, rtp_packet.getPacket());
-				}
-			}
-			//LOG.info(this + "Sent frame #" + imagenb + " as "+rtp_packets.size()+" packets to " + (socketRTP == null ? " channel " : clientIP + ":") + clientRTPport); 
-		}
-		catch(SocketException t) {
-			LOG.severe(t.getMessage());
-			timer.stop();
-			rtcpReceiver.close();
-		}
-		catch(Throwable t) {
-			LOG.severe(t);
-			timer.stop();
-			rtcpReceiver.close();
-		}
-	}
-
 	public void pause(RTSPRequest req) throws IOException {
 		this.lastReq = req;
 		if(state == State.PLAYING) {
 			//send back response
 			req.send(RTSP_ok(req));
-			//stop timer
-			timer.stop();
+			//stop streaming
+			server.getStream().remove(this);
 			//update state
 			state = State.READY;
 			LOG.info(this + "New RTSP state: READY");
@@ -281,12 +224,9 @@ public class RTPSession implements ActionListener {
 	}
 
 	public void close() {
-		//stop timer
-		timer.stop();
+		//stop streaming
+		server.getStream().remove(this);
 		rtcpReceiver.close();
-		//close sockets
-		if(socketRTP != null)
-			socketRTP.close();
 		state = State.READY;
 	}
 }
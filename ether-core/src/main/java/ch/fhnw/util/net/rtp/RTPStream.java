@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util.net.rtp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import ch.fhnw.ether.image.IHostImage;
+import ch.fhnw.util.Log;
+import ch.fhnw.util.net.NetworkUtilities;
+
+/**
+ * MJPEG stream of an RTP server. Each frame is encoded once and packetised
+ * once per MTU, the resulting packets are shared by all playing sessions.
+ * UDP packets are sent through a single datagram channel from a pre-allocated
+ * direct buffer, interleaved packets through the session's RTSP connection.
+ */
+final class RTPStream {
+	private static final Log LOG = Log.create();
+
+	static final int FRAMERATE = 25; // fix for now
+	static final int UDP_MTU   = 1450;
+	static final int TCP_MTU   = 63 * 1024;
+
+	interface IInterleavedSink {
+		void send(byte[] packet) throws IOException;
+	}
+
+	private static final class Target {
+		final Object            key;
+		final InetSocketAddress address;
+		final IInterleavedSink  sink;
+
+		Target(Object key, InetSocketAddress address, IInterleavedSink sink) {
+			this.key     = key;
+			this.address = address;
+			this.sink    = sink;
+		}
+	}
+
+	private final RTPServer                 server;
+	private final boolean                   threaded;
+	private final List<Target>              targets = new CopyOnWriteArrayList<>();
+	private       DatagramChannel           channel;
+	private       ByteBuffer                buffer = ByteBuffer.allocateDirect(256 * 1024);
+	private       Thread                    thread;
+	private       int                       frameNb = 1;
+
+	RTPStream(RTPServer server) {
+		this(server, true);
+	}
+
+	/**
+	 * Create stream. If threaded is false, frames are only sent by calling
+	 * {@link #sendFrame()} (e.g. for benchmarks).
+	 */
+	RTPStream(RTPServer server, boolean threaded) {
+		this.server   = server;
+		this.threaded = threaded;
+	}
+
+	/**
+	 * Returns the local port of the UDP channel, opening it if necessary.
+	 */
+	synchronized int getLocalPort() throws IOException {
+		return getChannel().socket().getLocalPort();
+	}
+
+	void add(Object key, InetSocketAddress address) throws IOException {
+		synchronized (this) {
+			getChannel();
+		}
+		add(new Target(key, address, null));
+	}
+
+	void add(Object key, IInterleavedSink sink) {
+		add(new Target(key, null, sink));
+	}
+
+	void remove(Object key) {
+		targets.removeIf(t -> t.key == key);
+	}
+
+	int getNumTargets() {
+		return targets.size();
+	}
+
+	private void add(Target target) {
+		remove(target.key);
+		targets.add(target);
+		synchronized (this) {
+			if (!threaded) {
+				return;
+			} else if (thread == null) {
+				thread = new Thread(this::run, RTPStream.class.getName());
+				thread.setDaemon(true);
+				thread.start();
+			} else {
+				LockSupport.unpark(thread);
+			}
+		}
+	}
+
+	private DatagramChannel getChannel() throws IOException {
+		if (channel == null) {
+			channel = DatagramChannel.open();
+			channel.bind(null);
+			channel.socket().setTrafficClass(NetworkUtilities.IPTOS_LOWDELAY | NetworkUtilities.IPTOS_THROUGHPUT);
+		}
+		return channel;
+	}
+
+	private void run() {
+		final long period = TimeUnit.SECONDS.toNanos(1) / FRAMERATE;
+		long next = System.nanoTime();
+		for (;;) {
+			if (targets.isEmpty()) {
+				LockSupport.park(this);
+				next = System.nanoTime();
+				continue;
+			}
+			try {
+				sendFrame();
+			} catch (Throwable t) {
+				LOG.severe(t);
+			}
+			next += period;
+			long delay = next - System.nanoTime();
+			if (delay > 0)
+				LockSupport.parkNanos(this, delay);
+			else
+				next = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Encode current image of server and send it to all targets. Called from
+	 * the stream thread only.
+	 */
+	void sendFrame() throws IOException {
+		frameNb++;
+		if (targets.isEmpty())
+			return;
+		byte[]       jpeg = RTPmjpg.encode(server.getImage());
+		List<byte[]> udp  = null;
+		List<byte[]> tcp  = null;
+		for (Target target : targets) {
+			try {
+				if (target.address != null) {
+					if (udp == null) {
+						udp = packetize(jpeg, UDP_MTU);
+						fillBuffer(udp);
+					}
+					sendUDP(target.address, udp);
+				} else {
+					if (tcp == null)
+						tcp = packetize(jpeg, TCP_MTU);
+					for (byte[] packet : tcp)
+						target.sink.send(packet);
+				}
+			} catch (IOException e) {
+				LOG.severe(e.getMessage());
+				targets.remove(target);
+			}
+		}
+	}
+
+	private List<byte[]> packetize(byte[] jpeg, int mtu) {
+		RTPmjpg mjpg = new RTPmjpg(frameNb, frameNb * (RTSPRequest.MJPEG_TIMEBASE / FRAMERATE));
+		mjpg.setMTU(mtu);
+		List<byte[]> packets = new ArrayList<>();
+		for (RTPpacket packet : mjpg.createPackets(jpeg))
+			packets.add(packet.getPacket());
+		return Collections.unmodifiableList(packets);
+	}
+
+	private void fillBuffer(List<byte[]> packets) {
+		int size = 0;
+		for (byte[] packet : packets)
+			size += packet.length;
+		if (buffer.capacity() < size)
+			buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+		buffer.clear();
+		for (byte[] packet : packets)
+			buffer.put(packet);
+	}
+
+	private void sendUDP(InetSocketAddress address, List<byte[]> packets) throws IOException {
+		int offset = 0;
+		for (byte[] packet : packets) {
+			buffer.limit(offset + packet.length);
+			buffer.position(offset);
+			channel.send(buffer, address);
+			offset += packet.length;
+		}
+	}
+}
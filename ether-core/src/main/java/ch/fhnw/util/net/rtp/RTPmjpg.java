@@ -262,11 +262,29 @@ public class RTPmjpg {
 		this.timestamp = timestamp;
 	}
 
+	/**
+	 * Create payloader for already encoded frames, see
+	 * {@link #createPackets(byte[])}.
+	 */
+	public RTPmjpg(int seqNb, int timestamp) {
+		this(null, seqNb, timestamp);
+	}
+
 	public List<RTPpacket> createPackets() throws IOException {
+		return createPackets(encode(image));
+	}
+
+	/**
+	 * Packetise a JPEG encoded frame.
+	 */
+	public List<RTPpacket> createPackets(byte[] jpeg) {
+		return gst_rtp_jpeg_pay_handle_buffer(jpeg, jpeg.length, seqNb, timestamp);
+	}
+
+	public static byte[] encode(IHostImage image) throws IOException {
 		try(ByteArrayOutputStream out = new ByteArrayOutputStream()) {
 			Platform.get().getImageSupport().write(image, out, FileFormat.JPEG);
-			byte[] result = out.toByteArray();
-			return gst_rtp_jpeg_pay_handle_buffer(result, result.length, seqNb, timestamp);
+			return out.toByteArray();
 		}
 	}
 
@@ -0,0 +1,31 @@
+#version 330
+
+#include <view_block.glsl>
+
+struct VertexData {
+	vec4 position;				// vertex position in eye space
+	vec3 normal;				// vertex normal in eye space
+	vec2 texCoord;				// texture coordinate of color map
+};
+
+uniform bool useColorMap;
+
+in vec4 vertexPosition;
+in vec4 vertexNormal;
+in vec2 vertexTexCoord;
+in mat4 instanceTransform;
+
+out VertexData vd;
+
+void main() {
+	vec4 position = instanceTransform * vertexPosition;
+	vec3 normal = transpose(inverse(mat3(instanceTransform))) * vertexNormal.xyz;
+
+	vd.position = view.viewMatrix * position;
+	vd.normal = normalize(view.normalMatrix * normal);
+
+	if (useColorMap)
+		vd.texCoord = vertexTexCoord;
+
+	gl_Position = view.viewProjMatrix * position;
+}
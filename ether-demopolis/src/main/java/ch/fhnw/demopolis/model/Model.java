@@ -34,7 +34,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import ch.fhnw.demopolis.config.ILogConfig;
+import ch.fhnw.demopolis.model.entities.BuildingBlock;
+import ch.fhnw.demopolis.model.entities.BuildingBlock.Building;
 import ch.fhnw.demopolis.model.entities.IDesignEntity;
+import ch.fhnw.ether.scene.mesh.IMesh;
 
 public final class Model {
 	private final IScenario scenario;
@@ -82,6 +85,25 @@ public final class Model {
 		setDesignEntities(scenario.getEntities());
 	}
 	
+	/**
+	 * Generates the meshes of all design entities. Buildings do not depend on
+	 * each other and are generated in parallel first, all entities then
+	 * collect their meshes in order since streets and open spaces register
+	 * with the population.
+	 */
+	public List<IMesh> generate() {
+		List<Building> buildings = new ArrayList<>();
+		for (IDesignEntity entity : designEntities) {
+			if (entity instanceof BuildingBlock)
+				buildings.addAll(((BuildingBlock)entity).getBuildings());
+		}
+		buildings.parallelStream().forEach(b -> b.generate(materials));
+
+		List<IMesh> meshes = new ArrayList<>();
+		designEntities.forEach(e -> meshes.addAll(e.generate(this)));
+		return meshes;
+	}
+	
 	public void write() {
 		try {
 			writer.write(this, ILogConfig.BASE_PATH);
@@ -40,6 +40,7 @@ import ch.fhnw.demopolis.render.MaskMaterial;
 import ch.fhnw.demopolis.render.PolisMaterial;
 import ch.fhnw.ether.formats.obj.ObjReader;
 import ch.fhnw.ether.image.IGPUImage;
+import ch.fhnw.ether.render.InstancedMesh;
 import ch.fhnw.ether.scene.IScene;
 import ch.fhnw.ether.scene.mesh.DefaultMesh;
 import ch.fhnw.ether.scene.mesh.IMesh;
@@ -47,8 +48,9 @@ import ch.fhnw.ether.scene.mesh.IMesh.Flag;
 import ch.fhnw.ether.scene.mesh.IMesh.Primitive;
 import ch.fhnw.ether.scene.mesh.MeshUtilities;
 import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
+import ch.fhnw.util.FloatList;
+import ch.fhnw.util.IntList;
 import ch.fhnw.util.color.RGB;
-import ch.fhnw.util.math.Mat4;
 import ch.fhnw.util.math.MathUtilities;
 import ch.fhnw.util.math.Vec3;
 import ch.fhnw.util.math.geometry.Polygon;
@@ -89,14 +91,22 @@ public class Population {
 		}
 	}
 
-	private final List<IMesh> persons = new ArrayList<>();
-	private final List<IMesh> cyclists = new ArrayList<>();
-	private final List<IMesh> cars = new ArrayList<>();
+	// each asset draws all its agents with a single instanced draw call
+	private final List<InstancedMesh> assets = new ArrayList<>();
+	private final IntList persons = new IntList();
+	private final IntList cyclists = new IntList();
+	private final IntList cars = new IntList();
 	
 	private final List<Lane> lanes = new ArrayList<>();
 	private final List<Place> places = new ArrayList<>();
 	
-	private List<IMesh> meshes = new ArrayList<>();
+	// agents: position, angle in degrees and asset index
+	private final FloatList agentX = new FloatList();
+	private final FloatList agentY = new FloatList();
+	private final FloatList agentAngle = new FloatList();
+	private final IntList agentAsset = new IntList();
+
+	private final List<IMesh> meshes = new ArrayList<>();
 	
 	private boolean fender = false;
 	
@@ -105,13 +115,13 @@ public class Population {
 
 	public void load(Model model) throws IOException {
 		for (String s : IPopulationAssets.PERSONS)
-			persons.add(getFlatMesh(s, IPopulationAssets.PERSON_HEIGHT));
+			persons.add(addAsset(getFlatMesh(s, IPopulationAssets.PERSON_HEIGHT)));
 		
 		for (String s : IPopulationAssets.CYLISTS)
-			cyclists.add(getFlatMesh(s, IPopulationAssets.CYCLIST_HEIGHT));
+			cyclists.add(addAsset(getFlatMesh(s, IPopulationAssets.CYCLIST_HEIGHT)));
 		
 		for (String s : IPopulationAssets.CARS)
-			cars.add(getVehicleMesh(s));
+			cars.add(addAsset(getVehicleMesh(s)));
 	}
 	
 	public void addToScene(IScene scene) {
@@ -128,7 +138,7 @@ public class Population {
 				float x = pedestrian ? v.x + MathUtilities.random(-lane.width / 3, lane.width / 3) : v.x;
 				float y = pedestrian ? v.y + MathUtilities.random(-lane.width / 3, lane.width / 3) : v.y;
 				float angle = pedestrian ? lane.angle + MathUtilities.random(0, 360) : lane.angle;
-				meshes.add(instantiate(getMesh(lane.types), x, y, angle));
+				addAgent(getAsset(lane.types), x, y, angle);
 			}
 		}
 		
@@ -152,19 +162,21 @@ public class Population {
 						continue person;
 				}
 				float angle = MathUtilities.random(0, 360);
-				meshes.add(instantiate(getMesh(EnumSet.of(Type.PERSONS)), v0.x, v0.y, angle));
+				addAgent(getAsset(EnumSet.of(Type.PERSONS)), v0.x, v0.y, angle);
 			}
 		}
 
-		System.out.println("merging from: " + meshes.size());
-		meshes = MeshUtilities.mergeMeshes(meshes);
-		System.out.println("merged to: " + meshes.size());
+		updateInstances();
+		for (InstancedMesh asset : assets) {
+			if (asset.getNumInstances() > 0)
+				meshes.add(asset);
+		}
 		scene.add3DObjects(meshes);
 	}
 	
-	private IMesh getMesh(EnumSet<Type> types) {
+	private int getAsset(EnumSet<Type> types) {
 		boolean checkFender = false;
-		List<IMesh> meshes = null;
+		IntList meshes = null;
 		if (types.size() == 1) {
 			if (types.contains(Type.PERSONS)) {
 				meshes = persons;
@@ -192,11 +204,48 @@ public class Population {
 		return meshes.get(index);
 	}
 
+	private void addAgent(int asset, float x, float y, float angle) {
+		agentX.add(x);
+		agentY.add(y);
+		agentAngle.add(angle);
+		agentAsset.add(asset);
+	}
+
+	/**
+	 * Writes the transforms of all agents to the instances of their assets.
+	 */
+	private void updateInstances() {
+		int     n     = agentAsset.size();
+		int[]   asset = agentAsset._getArray();
+		float[] x     = agentX._getArray();
+		float[] y     = agentY._getArray();
+		float[] angle = agentAngle._getArray();
+
+		int[] counts = new int[assets.size()];
+		for (int i = 0; i < n; ++i)
+			counts[asset[i]]++;
+		float[][] transforms = new float[counts.length][];
+		for (int a = 0; a < counts.length; ++a) {
+			transforms[a] = new float[InstancedMesh.TRANSFORM_SIZE * counts[a]];
+			counts[a] = 0;
+		}
+		for (int i = 0; i < n; ++i) {
+			int a = asset[i];
+			setTransform(transforms[a], InstancedMesh.TRANSFORM_SIZE * counts[a]++, x[i], y[i], angle[i]);
+		}
+		for (int a = 0; a < counts.length; ++a)
+			assets.get(a).setInstances(transforms[a], counts[a]);
+	}
+
 	public void removeFromScene(IScene scene) {
 		scene.remove3DObjects(meshes);
 		
 		// clean up for next round
 		meshes.clear();
+		agentX.clear();
+		agentY.clear();
+		agentAngle.clear();
+		agentAsset.clear();
 		lanes.clear();
 		places.clear();
 		fender = false;
@@ -219,11 +268,11 @@ public class Population {
 				-w, 0, 0, w, 0, h, -w, 0, h
 		};
 		float[] t = MeshUtilities.UNIT_QUAD_TEX_COORDS;
-		return new DefaultMesh(Primitive.TRIANGLES, new MaskMaterial(texture), DefaultGeometry.createVM(v, t), Flag.DONT_CULL_FACE);
+		return new DefaultMesh(Primitive.TRIANGLES, new MaskMaterial(texture, true), DefaultGeometry.createVM(v, t), Flag.DONT_CULL_FACE);
 	}
 	
 	private static IMesh getVehicleMesh(String asset) throws IOException {
-		PolisMaterial material = new PolisMaterial(RGB.BLACK, RGB.GRAY80);
+		PolisMaterial material = new PolisMaterial(RGB.BLACK, RGB.GRAY80, 1, true);
 		List<IMesh> meshes = new ObjReader(Asset.get(asset), ObjReader.Options.CONVERT_TO_Z_UP).getMeshes(material, name -> name);
 		meshes = MeshUtilities.mergeMeshes(meshes);
 		if (meshes.size() != 1)
@@ -231,9 +280,24 @@ public class Population {
 		return meshes.get(0);
 	}
 
-	private static IMesh instantiate(IMesh mesh, float x, float y, float rot) {
-		IMesh instance = mesh.createInstance();
-		instance.setTransform(Mat4.trs(x, y, I3DConfig.LAYER_2, 0, 0, rot, 1, 1, 1));
-		return instance;
+	private int addAsset(IMesh mesh) {
+		assets.add(new InstancedMesh(mesh));
+		return assets.size() - 1;
+	}
+
+	// column-major Mat4.trs(x, y, LAYER_2, 0, 0, rot, 1, 1, 1) at offset, without allocating a matrix
+	private static void setTransform(float[] transform, int offset, float x, float y, float rot) {
+		float a = rot * MathUtilities.DEGREES_TO_RADIANS;
+		float c = (float)Math.cos(a);
+		float s = (float)Math.sin(a);
+		transform[offset]      = c;
+		transform[offset + 1]  = s;
+		transform[offset + 4]  = -s;
+		transform[offset + 5]  = c;
+		transform[offset + 10] = 1;
+		transform[offset + 12] = x;
+		transform[offset + 13] = y;
+		transform[offset + 14] = I3DConfig.LAYER_2;
+		transform[offset + 15] = 1;
 	}
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2015 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.demopolis.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.fhnw.util.math.Vec3;
+import ch.fhnw.util.math.geometry.Polygon;
+
+/**
+ * Uniform grid over the xy ground plane for point and neighbourhood queries.
+ * Items are added with their 2D bounds and stored in every cell they overlap,
+ * queries return candidates that callers test exactly.
+ */
+public final class SpatialGrid<T> {
+	private final float              cellSize;
+	private final Map<Long, List<T>> cells = new HashMap<>();
+
+	public SpatialGrid(float cellSize) {
+		if (cellSize <= 0)
+			throw new IllegalArgumentException("cell size must be positive: " + cellSize);
+		this.cellSize = cellSize;
+	}
+
+	public void add(T item, Vec3 position) {
+		add(item, position.x, position.y, position.x, position.y);
+	}
+
+	public void add(T item, Polygon polygon) {
+		float minX = Float.POSITIVE_INFINITY;
+		float minY = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY;
+		float maxY = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < polygon.getNumVertices(); i++) {
+			Vec3 v = polygon.get(i);
+			minX = Math.min(minX, v.x);
+			minY = Math.min(minY, v.y);
+			maxX = Math.max(maxX, v.x);
+			maxY = Math.max(maxY, v.y);
+		}
+		add(item, minX, minY, maxX, maxY);
+	}
+
+	public void add(T item, float minX, float minY, float maxX, float maxY) {
+		int x0 = cell(minX);
+		int y0 = cell(minY);
+		int x1 = cell(maxX);
+		int y1 = cell(maxY);
+		for (int y = y0; y <= y1; y++)
+			for (int x = x0; x <= x1; x++)
+				cells.computeIfAbsent(key(x, y), k -> new ArrayList<>()).add(item);
+	}
+
+	/**
+	 * Returns the items whose bounds may contain the point (x, y), in the order
+	 * they were added.
+	 */
+	public List<T> get(float x, float y) {
+		List<T> result = cells.get(key(cell(x), cell(y)));
+		return result == null ? Collections.emptyList() : Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Adds all items whose bounds may overlap the given rectangle to result.
+	 * Items that span several cells may be added more than once.
+	 */
+	public List<T> get(float minX, float minY, float maxX, float maxY, List<T> result) {
+		int x0 = cell(minX);
+		int y0 = cell(minY);
+		int x1 = cell(maxX);
+		int y1 = cell(maxY);
+		for (int y = y0; y <= y1; y++) {
+			for (int x = x0; x <= x1; x++) {
+				List<T> cell = cells.get(key(x, y));
+				if (cell != null)
+					result.addAll(cell);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds all items whose bounds may lie within radius of (x, y) to result.
+	 */
+	public List<T> getNeighbours(float x, float y, float radius, List<T> result) {
+		return get(x - radius, y - radius, x + radius, y + radius, result);
+	}
+
+	public void clear() {
+		cells.clear();
+	}
+
+	private int cell(float v) {
+		return (int)Math.floor(v / cellSize);
+	}
+
+	private static long key(int x, int y) {
+		return ((long)x << 32) | (y & 0xFFFFFFFFL);
+	}
+}
@@ -39,6 +39,7 @@ import ch.fhnw.demopolis.config.I3DConfig;
 import ch.fhnw.demopolis.config.IUIColors;
 import ch.fhnw.demopolis.model.Materials;
 import ch.fhnw.demopolis.model.Model;
+import ch.fhnw.demopolis.model.SpatialGrid;
 import ch.fhnw.demopolis.model.entities.Block.BlockType;
 import ch.fhnw.demopolis.render.PolisMaterial;
 import ch.fhnw.ether.scene.mesh.DefaultMesh;
@@ -255,6 +256,13 @@ public final class BuildingBlock extends AbstractDesignEntity {
 		
 		private List<Polygon> finalPlan;
 		private float finalHeight;
+		private float finalBaseHeight = Float.NaN;
+		
+		private List<IMesh> generated;
+		private Materials generatedMaterials;
+		private BuildingLine generatedLine;
+		private BuildingSetback generatedSetback;
+		private float generatedHeight;
 		
 		public Building(Polygon lot, String id, BuildingType type) {
 			this.lot = lot;
@@ -351,15 +359,39 @@ public final class BuildingBlock extends AbstractDesignEntity {
 		
 		public void setFinalHeight(float finalHeight) {
 			this.finalHeight = finalHeight;
+			this.finalBaseHeight = Float.NaN;
+		}
+		
+		// keeps the previous random variation as long as the base height does not change
+		private void setFinalHeight(float baseHeight, boolean vary) {
+			if (baseHeight == finalBaseHeight)
+				return;
+			finalHeight = vary ? BuildingBlock.getHeight(baseHeight) : baseHeight;
+			finalBaseHeight = baseHeight;
 		}
 		
+		/**
+		 * Generates the meshes of this building. Meshes are only generated again
+		 * if a parameter changed. Different buildings may be generated concurrently.
+		 */
 		public List<IMesh> generate(Materials materials) {
-			return generateBuilding(materials, this);
+			if (generated == null || materials != generatedMaterials || line != generatedLine || setback != generatedSetback || finalHeight != generatedHeight) {
+				generated = Collections.unmodifiableList(generateBuilding(materials, this));
+				generatedMaterials = materials;
+				generatedLine = line;
+				generatedSetback = setback;
+				generatedHeight = finalHeight;
+			}
+			return generated;
 		}		
 	}
 
+	private static final float LOT_CELL_SIZE = 50.0f;
+
 	private final Polygon shape;
 	private final List<Building> buildings = new ArrayList<>();
+	private SpatialGrid<Building> lots;
+	private int numLots;
 
 	public BuildingBlock(IDesignEntity entity) {
 		super(entity);
@@ -374,6 +406,7 @@ public final class BuildingBlock extends AbstractDesignEntity {
 	public void setBuildings(List<Building> buildings) {
 		this.buildings.clear();
 		this.buildings.addAll(buildings);
+		this.lots = null;
 	}
 
 	@Override
@@ -494,7 +527,13 @@ public final class BuildingBlock extends AbstractDesignEntity {
 	}
 
 	public Building getBuilding(Vec3 position) {
-		for (Building b : buildings) {
+		// buildings are replaced through setBuildings() or removed through getBuildings()
+		if (lots == null || numLots != buildings.size()) {
+			lots = new SpatialGrid<>(LOT_CELL_SIZE);
+			buildings.forEach(b -> lots.add(b, b.getLot()));
+			numLots = buildings.size();
+		}
+		for (Building b : lots.get(position.x, position.y)) {
 			if (b.getLot().project(position) != null)
 				return b;
 		}
@@ -502,38 +541,51 @@ public final class BuildingBlock extends AbstractDesignEntity {
 	}
 	
 	public static void setFinalBuildingHeights(List<Building> buildings) {
-		// TODO: warning - the current implementation doesn't scale for many buildings...
-		for (Building b0 : buildings) {
+		// plan centers are indexed by a grid with cells of the largest distance that can limit a height
+		float maxDistance = 0;
+		for (BuildingHeight h : BuildingHeight.values())
+			maxDistance = Math.max(maxDistance, h.maxHeight / HEIGHT_DISTANCE_RATIO);
+		SpatialGrid<Integer> grid = new SpatialGrid<>(maxDistance);
+		Vec3[] centers = new Vec3[buildings.size()];
+		for (int i = 0; i < centers.length; i++) {
+			List<Polygon> plan = buildings.get(i).getPlan();
+			if (plan.isEmpty())
+				continue;
+			centers[i] = getCenter(plan);
+			grid.add(i, centers[i]);
+		}
+
+		List<Integer> neighbours = new ArrayList<>();
+		for (int i = 0; i < centers.length; i++) {
+			Building b0 = buildings.get(i);
 			if (b0.getPlan().isEmpty())
 				continue;
 
 			BuildingHeight h0 = b0.getHeight();
 			if (h0 == BuildingHeight.BERLIN_BLOCK) {
-				b0.setFinalHeight(h0.maxHeight);
+				b0.setFinalHeight(h0.maxHeight, false);
 				continue;
 			}
 			if (h0 == BuildingHeight.ONE_STOREY || h0 == BuildingHeight.TWO_STOREY) {
-				b0.setFinalHeight(getHeight(h0.maxHeight));
+				b0.setFinalHeight(h0.maxHeight, true);
 				continue;
 			}
 				
+			// only buildings closer than maxHeight / HEIGHT_DISTANCE_RATIO can lower the height (+1 for rounding)
 			float height = h0.maxHeight;
-			Vec3 c0 = getCenter(b0.getPlan());
-			for (Building b1 : buildings) {
-				if (b0 == b1 || b1.getPlan().isEmpty())
+			Vec3 c0 = centers[i];
+			neighbours.clear();
+			for (int j : grid.getNeighbours(c0.x, c0.y, height / HEIGHT_DISTANCE_RATIO + 1, neighbours)) {
+				if (j == i)
 					continue;
-				Vec3 c1 = getCenter(b1.getPlan());
-				float d = c1.distance(c0);
+				float d = centers[j].distance(c0);
 				height = Math.min(height, d * HEIGHT_DISTANCE_RATIO);
 			}
-			height = getHeight(Math.max(height, HEIGHT_ONE_STOREY));
-			b0.setFinalHeight(height);
+			b0.setFinalHeight(Math.max(height, HEIGHT_ONE_STOREY), true);
 		}
 	}
 	
 	
-	private static final FloatList TRI = new FloatList();
-
 	private static List<IMesh> generateBuilding(Materials materials, Building building) {
 		List<IMesh> meshes = new ArrayList<>();
 
@@ -551,14 +603,14 @@ public final class BuildingBlock extends AbstractDesignEntity {
 			return meshes;
 		
 		// generate building triangles
-		TRI.clear();
+		FloatList tri = new FloatList();
 		switch (building.getType()) {
 		case NO_BUILDING:
 			break;
 		case PERIMETER: {
 			for (Polygon p : plan) {
 				for (Polygon e : p.extrude(building.finalHeight, false, true))
-					TRI.addAll(e.getTriangleVertices());
+					tri.addAll(e.getTriangleVertices());
 			}
 			break;
 		}
@@ -568,26 +620,26 @@ public final class BuildingBlock extends AbstractDesignEntity {
 			if (building.getSetback() == BuildingSetback.NO_SETBACK) {
 				for (Polygon p : plan) {
 					for (Polygon e : p.extrude(building.finalHeight, false, true))
-						TRI.addAll(e.getTriangleVertices());
+						tri.addAll(e.getTriangleVertices());
 				}
 			} else {
 				for (Polygon p : plan) {
 					Pair<Polygon, Polygon> split = p.split(0, p.getExtentV() * SETBACK_RATIO);
 					if (split.first != null) {
 						for (Polygon e : split.first.extrude(building.finalHeight / 2, false, true))
-							TRI.addAll(e.getTriangleVertices());
+							tri.addAll(e.getTriangleVertices());
 					}
 					if (split.second != null) {
 						for (Polygon e : split.second.extrude(building.finalHeight, false, true))
-							TRI.addAll(e.getTriangleVertices());
+							tri.addAll(e.getTriangleVertices());
 					}
 				}				
 			}
 			break;
 		}
 		}
-		if (!TRI.isEmpty())
-			meshes.add(new DefaultMesh(Primitive.TRIANGLES, materials.buildingMaterial, DefaultGeometry.createVN(TRI.toArray(), null)));
+		if (!tri.isEmpty())
+			meshes.add(new DefaultMesh(Primitive.TRIANGLES, materials.buildingMaterial, DefaultGeometry.createVN(tri.toArray(), null)));
 		return meshes;		
 	}
 	
@@ -45,8 +45,8 @@ import ch.fhnw.ether.scene.mesh.material.IMaterial;
 
 public final class MaskMaterial extends AbstractMaterial implements ICustomMaterial {
 	private static class MaskShader extends AbstractShader {
-		MaskShader() {
-			super(Asset.class, "demopolis.mask_shader", "/assets/shaders/mask_shader", Primitive.TRIANGLES, null);
+		MaskShader(boolean instanced) {
+			super(Asset.class, "demopolis.mask_shader" + (instanced ? "_inst" : ""), "/assets/shaders/mask_shader", Primitive.TRIANGLES, null, instanced);
 			addArray(new PositionArray());
 			addArray(new ColorMapArray());
 
@@ -56,12 +56,21 @@ public final class MaskMaterial extends AbstractMaterial implements ICustomMater
 		}
 	}
 
-	private final IShader shader = new MaskShader();
+	private final IShader shader;
 	private IGPUImage texture;
 
 	public MaskMaterial(IGPUImage texture) {
+		this(texture, false);
+	}
+
+	/**
+	 * An instanced material draws an InstancedMesh, using the per-instance
+	 * transforms instead of the mesh transform.
+	 */
+	public MaskMaterial(IGPUImage texture, boolean instanced) {
 		super(provide(IMaterial.COLOR_MAP), 
 			  require(IGeometry.POSITION_ARRAY, IGeometry.COLOR_MAP_ARRAY));
+		this.shader = new MaskShader(instanced);
 		this.texture = texture;
 	}
 
@@ -47,8 +47,8 @@ import ch.fhnw.util.color.RGB;
 
 public final class PolisMaterial extends AbstractMaterial implements ICustomMaterial {
 	private static class PolisShader extends AbstractShader {
-		PolisShader() {
-			super(Asset.class, "demopolis.panel_shader", "/assets/shaders/polis_shader_v", Primitive.TRIANGLES, null);
+		PolisShader(boolean instanced) {
+			super(Asset.class, "demopolis.panel_shader" + (instanced ? "_inst" : ""), "/assets/shaders/polis_shader_v", Primitive.TRIANGLES, null, instanced);
 
 			addArray(new PositionArray());
 			addArray(new NormalArray());
@@ -62,7 +62,7 @@ public final class PolisMaterial extends AbstractMaterial implements ICustomMate
 		}
 	}
 
-	private final IShader shader = new PolisShader();
+	private final IShader shader;
 	
 	private RGB ambient;
 	private RGB diffuse;
@@ -77,8 +77,17 @@ public final class PolisMaterial extends AbstractMaterial implements ICustomMate
 	}
 
 	public PolisMaterial(RGB ambient, RGB diffuse, float alpha) {
+		this(ambient, diffuse, alpha, false);
+	}
+
+	/**
+	 * An instanced material draws an InstancedMesh, using the per-instance
+	 * transforms instead of the mesh transform.
+	 */
+	public PolisMaterial(RGB ambient, RGB diffuse, float alpha, boolean instanced) {
 		super(provide(IMaterial.AMBIENT, IMaterial.DIFFUSE, IMaterial.ALPHA), 
 			  require(IGeometry.POSITION_ARRAY, IGeometry.NORMAL_ARRAY));
+		this.shader = new PolisShader(instanced);
 		this.ambient = ambient;
 		this.diffuse = diffuse;
 		this.alpha = alpha;
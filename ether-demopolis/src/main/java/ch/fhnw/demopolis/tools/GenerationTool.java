@@ -77,8 +77,7 @@ public final class GenerationTool extends AbstractDesignTool {
 		BuildingBlock.setFinalBuildingHeights(buildings);
 		
 		// generate all meshes
-		meshes.clear();
-		getDesignEntities().forEach(e -> meshes.addAll(e.generate(getModel())));
+		meshes = getModel().generate();
 		
 		System.out.println("meshes: " + meshes.size());
 		meshes = MeshUtilities.mergeMeshes(meshes);
@@ -0,0 +1,14 @@
+#version 330
+
+#include <view_block.glsl>
+
+in vec4 vertexPosition;
+in vec2 vertexTexCoord;
+in mat4 instanceTransform;
+
+out vec2 vsTexCoord;
+
+void main() {
+	vsTexCoord = vertexTexCoord;
+	gl_Position = view.viewProjMatrix * instanceTransform * vertexPosition;
+}
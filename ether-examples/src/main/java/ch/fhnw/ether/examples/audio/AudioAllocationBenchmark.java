@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013 - 2016 Stefan Muller Arisona, Simon Schubiger
+ * Copyright (c) 2013 - 2016 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Contributions by: Filip Schramka, Samuel von Stachelski
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.examples.audio;
+
+import java.lang.management.ManagementFactory;
+
+import ch.fhnw.ether.audio.AudioUtilities.Window;
+import ch.fhnw.ether.audio.IAudioRenderTarget;
+import ch.fhnw.ether.audio.NullAudioTarget;
+import ch.fhnw.ether.audio.SilenceAudioSource;
+import ch.fhnw.ether.audio.fx.FFT;
+import ch.fhnw.ether.audio.fx.InvFFT;
+import ch.fhnw.ether.audio.fx.SinGen;
+import ch.fhnw.ether.media.RenderCommandException;
+import ch.fhnw.ether.media.RenderProgram;
+
+/**
+ * Runs an audio chain (silence -> sine -> FFT -> inverse FFT) as fast as possible on a
+ * null target and reports the bytes allocated by the frame pump per frame once the
+ * chain has warmed up. Pooled frames and recycled FFT blocks should bring this to zero.
+ * 
+ * Usage: AudioAllocationBenchmark [block size] [seconds]
+ */
+public class AudioAllocationBenchmark {
+	private static final float S_RATE     = 48000;
+	private static final int   N_CHANNELS = 2;
+
+	public static void main(String[] args) throws RenderCommandException, InterruptedException {
+		int  blockSize = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+		long millis    = args.length > 1 ? Long.parseLong(args[1]) * 1000 : 5000;
+
+		FFT                               fft     = new FFT(40, Window.HANN);
+		RenderProgram<IAudioRenderTarget> program = new RenderProgram<>(
+				new SilenceAudioSource(N_CHANNELS, S_RATE, blockSize * N_CHANNELS), 
+				new SinGen(0), 
+				fft, 
+				new InvFFT(fft));
+
+		NullAudioTarget target = new NullAudioTarget(N_CHANNELS, S_RATE);
+		target.useProgram(program);
+		target.start();
+
+		Thread pump = null;
+		for(Thread t : Thread.getAllStackTraces().keySet())
+			if(t.getName().equals(NullAudioTarget.class.getSimpleName()))
+				pump = t;
+		if(pump == null) throw new IllegalStateException("Frame pump not found");
+
+		com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+		Thread.sleep(millis / 2);
+
+		long bytes0  = mx.getThreadAllocatedBytes(pump.getId());
+		long frames0 = target.getTotalElapsedFrames();
+		Thread.sleep(millis);
+		long bytes1  = mx.getThreadAllocatedBytes(pump.getId());
+		long frames1 = target.getTotalElapsedFrames();
+		target.stop();
+
+		long frames = frames1 - frames0;
+		System.out.println("block size:        " + blockSize);
+		System.out.println("frames:            " + frames);
+		System.out.println("bytes allocated:   " + (bytes1 - bytes0));
+		System.out.println("bytes / frame:     " + (frames == 0 ? 0 : (bytes1 - bytes0) / (double)frames));
+	}
+}
@@ -66,6 +66,7 @@ public class BrowserPanel implements SelectionListener, IChangeListener, Runnabl
 	private List<Resource>       resources  = new ArrayList<>();
 	private Table                table;
 	private AtomicBoolean        scheduled = new AtomicBoolean();
+	private AtomicBoolean        previews  = new AtomicBoolean();
 	private String               search    = "";
 	private String               sort      = Resource.NAME;
 	private boolean              tooltip;
@@ -96,6 +97,17 @@ public class BrowserPanel implements SelectionListener, IChangeListener, Runnabl
 		this.pusher        = new Pusher(db, pf, osc);
 
 		this.db.addChangeListener(this);
+		this.pf.addPreviewListener(res->previewChanged());
+	}
+
+	// previews arrive in bursts while scrolling, refresh visible items once per burst
+	private void previewChanged() {
+		if(!(previews.getAndSet(true)))
+			Display.getDefault().asyncExec(()->{
+				previews.set(false);
+				if(table != null && !table.isDisposed())
+					table.clearAll();
+			});
 	}
 
 	private LRUList<String> loadHistory() {
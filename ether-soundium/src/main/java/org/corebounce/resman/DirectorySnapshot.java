@@ -0,0 +1,207 @@
+package org.corebounce.resman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import ch.fhnw.util.Log;
+
+/**
+ * Persisted state of a scanned directory tree. A directory is only listed again
+ * if its modification date changed, and files remember size, date, partial hash
+ * and digest so that unchanged or moved files are not hashed again.
+ */
+final class DirectorySnapshot {
+	private static final Log log = Log.create();
+
+	private static final int MAGIC   = 0x45534E50; // 'ESNP'
+	private static final int VERSION = 1;
+
+	static final class DirEntry {
+		final long     lastModified;
+		final String[] files;
+		final String[] dirs;
+
+		DirEntry(long lastModified, String[] files, String[] dirs) {
+			this.lastModified = lastModified;
+			this.files        = files;
+			this.dirs         = dirs;
+		}
+	}
+
+	static final class FileEntry {
+		final long   size;
+		final long   lastModified;
+		final long   partialHash;
+		final String md5;
+
+		FileEntry(long size, long lastModified, long partialHash, String md5) {
+			this.size         = size;
+			this.lastModified = lastModified;
+			this.partialHash  = partialHash;
+			this.md5          = md5;
+		}
+
+		boolean isUnchanged(File file) {
+			return size == file.length() && lastModified == file.lastModified();
+		}
+	}
+
+	private final File                   file;
+	private final Map<String, DirEntry>  dirs         = new HashMap<>();
+	private final Map<String, FileEntry> files        = new HashMap<>();
+	private final Map<Long, FileEntry>   fingerprints = new HashMap<>();
+	private boolean                      dirty;
+
+	private DirectorySnapshot(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Loads the snapshot stored in file. A missing or unreadable file results in
+	 * an empty snapshot, i.e. a full scan.
+	 */
+	static DirectorySnapshot load(File file) {
+		DirectorySnapshot result = new DirectorySnapshot(file);
+		if (!file.exists())
+			return result;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return result;
+			for (int i = in.readInt(); --i >= 0;) {
+				String   path         = in.readUTF();
+				long     lastModified = in.readLong();
+				String[] files        = readNames(in);
+				String[] dirs         = readNames(in);
+				result.dirs.put(path, new DirEntry(lastModified, files, dirs));
+			}
+			for (int i = in.readInt(); --i >= 0;) {
+				String    path  = in.readUTF();
+				FileEntry entry = new FileEntry(in.readLong(), in.readLong(), in.readLong(), in.readUTF());
+				result.files.put(path, entry);
+				result.fingerprints.put(fingerprint(entry.size, entry.lastModified), entry);
+			}
+		} catch (Throwable t) {
+			log.warning(file.toString(), t);
+			result.dirs.clear();
+			result.files.clear();
+			result.fingerprints.clear();
+		}
+		return result;
+	}
+
+	synchronized void save() {
+		if (!dirty)
+			return;
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(dirs.size());
+				for (Map.Entry<String, DirEntry> e : dirs.entrySet()) {
+					out.writeUTF(e.getKey());
+					out.writeLong(e.getValue().lastModified);
+					writeNames(out, e.getValue().files);
+					writeNames(out, e.getValue().dirs);
+				}
+				out.writeInt(files.size());
+				for (Map.Entry<String, FileEntry> e : files.entrySet()) {
+					FileEntry entry = e.getValue();
+					out.writeUTF(e.getKey());
+					out.writeLong(entry.size);
+					out.writeLong(entry.lastModified);
+					out.writeLong(entry.partialHash);
+					out.writeUTF(entry.md5);
+				}
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			dirty = false;
+		} catch (Throwable t) {
+			log.warning(file.toString(), t);
+			tmp.delete();
+		}
+	}
+
+	synchronized DirEntry getDir(String path) {
+		return dirs.get(path);
+	}
+
+	/**
+	 * Replaces the entry of directory path and forgets files and directories
+	 * that are no longer listed. Fingerprints of removed files are kept until
+	 * the next load so that moves within a session are recognized.
+	 */
+	synchronized void putDir(String path, DirEntry entry) {
+		DirEntry old = dirs.put(path, entry);
+		dirty = true;
+		if (old == null)
+			return;
+		Set<String> names = new HashSet<>(Arrays.asList(entry.files));
+		for (String name : old.files)
+			if (!names.contains(name))
+				files.remove(new File(path, name).getPath());
+		names = new HashSet<>(Arrays.asList(entry.dirs));
+		for (String name : old.dirs)
+			if (!names.contains(name))
+				removeDir(new File(path, name).getPath());
+	}
+
+	private void removeDir(String path) {
+		DirEntry entry = dirs.remove(path);
+		if (entry == null)
+			return;
+		for (String name : entry.files)
+			files.remove(new File(path, name).getPath());
+		for (String name : entry.dirs)
+			removeDir(new File(path, name).getPath());
+	}
+
+	synchronized FileEntry getFile(String path) {
+		return files.get(path);
+	}
+
+	synchronized void putFile(String path, FileEntry entry) {
+		files.put(path, entry);
+		fingerprints.put(fingerprint(entry.size, entry.lastModified), entry);
+		dirty = true;
+	}
+
+	/**
+	 * Returns a known file with the same size and date, e.g. the previous
+	 * location of a moved file, or null if there is none.
+	 */
+	synchronized FileEntry findFingerprint(long size, long lastModified) {
+		FileEntry result = fingerprints.get(fingerprint(size, lastModified));
+		return result != null && result.size == size && result.lastModified == lastModified ? result : null;
+	}
+
+	private static long fingerprint(long size, long lastModified) {
+		return size * 31 + lastModified;
+	}
+
+	private static String[] readNames(DataInputStream in) throws IOException {
+		String[] result = new String[in.readInt()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = in.readUTF();
+		return result;
+	}
+
+	private static void writeNames(DataOutputStream out, String[] names) throws IOException {
+		out.writeInt(names.length);
+		for (String name : names)
+			out.writeUTF(name);
+	}
+}
@@ -1,32 +1,73 @@
 package org.corebounce.resman;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
 import java.io.File;
-import java.io.IOException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.corebounce.resman.DirectorySnapshot.DirEntry;
+import org.corebounce.resman.DirectorySnapshot.FileEntry;
+
 import ch.fhnw.util.Log;
 
+/**
+ * Keeps the MetaDB in sync with a resource directory. The directory tree is
+ * scanned once against a persisted snapshot, afterwards only directories
+ * reported by a WatchService (or, if there is none, directories whose date
+ * changed) are listed again. New files are hashed in parallel.
+ */
 public final class FileScanner implements Runnable {
 	private static final Log log = Log.create();
 
 	private static final String[] IGNORE_EXT = { ".db", ".html", ".swf", ".ini", ".cbr", ".constraints", ".bak"};
 
+	private static final long SCAN_INTERVAL = 10000;
+	private static final long SETTLE_TIME   = 2000; // files modified more recently are probably still being written
+
+	private static final int             NUM_HASHERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+	private static final ExecutorService HASHERS     = Executors.newFixedThreadPool(NUM_HASHERS, runnable -> {
+		Thread thread = new Thread(runnable, "FSHasher");
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	private static int threadCount;
 
 	private final File dir;
 
 	private final AtomicBoolean running = new AtomicBoolean(true);
-	private final Object        lock    = new Object();
 
-	private final MetaDB         db;
-	private final PreviewFactory pf;
+	private final MetaDB            db;
+	private final PreviewFactory    pf;
+	private final DirectorySnapshot snapshot;
+
+	private final Set<File>          pending   = ConcurrentHashMap.newKeySet();
+	private final Set<File>          unsettled = ConcurrentHashMap.newKeySet();
+	private final Map<WatchKey, File> watchKeys = new HashMap<>();
+	private WatchService              watcher;
 
 	public FileScanner(MetaDB db, PreviewFactory pf, File dir) {
-		this.db   = db;
-		this.pf   = pf;
-		this.dir = dir;
+		this.db       = db;
+		this.pf       = pf;
+		this.dir      = dir;
+		this.snapshot = DirectorySnapshot.load(db.getSnapshotFile(dir));
 		Thread thread = new Thread(this, "FSScanner[" + (threadCount++) + "]");
 		thread.setPriority(Thread.MIN_PRIORITY);
 		thread.setDaemon(true);
@@ -40,32 +81,21 @@ public final class FileScanner implements Runnable {
 
 	@Override
 	public void run() {
-		Set<File> processedFiles = new HashSet<File>();
+		watcher = createWatcher();
+		scan(dir, true, true);
 
 		while (running.get()) {
-			HashSet<File> addFiles = scan(dir, new HashSet<File>());
-
-			synchronized (lock) {
-				addFiles.removeAll(processedFiles);
-			}
-
-			fileLoop: for (File file : addFiles) {
-				if (db.inMetaDB(file))
-					continue fileLoop;
-				try {
-					addToMetaDB(file);
-				} catch (Throwable e) {
-					log.warning(file.toString(), e);
-				}
-				synchronized (lock) {
-					processedFiles.add(file);
-				}
-			}
-
 			try {
+				retryUnsettled();
+				snapshot.save();
 				setStatus("Sleeping...");
-				synchronized (FileScanner.this) {
-					FileScanner.this.wait(10000);
+				if (watcher == null) {
+					synchronized (FileScanner.this) {
+						FileScanner.this.wait(SCAN_INTERVAL);
+					}
+					scan(dir, true, false);
+				} else {
+					processEvents(watcher.poll(SCAN_INTERVAL, TimeUnit.MILLISECONDS));
 				}
 				db.syncDB();
 			} catch (Exception e) {
@@ -74,28 +104,179 @@ public final class FileScanner implements Runnable {
 		}
 	}
 
-	private void addToMetaDB(File file) throws IOException {
-		Resource res = db.addToDB(file);
-		pf.generateAsync(res, false);
+	/**
+	 * Lists directory d again if its date changed since the snapshot was taken
+	 * and checks new files. Subdirectories are scanned if recursive is set or
+	 * if they are not yet known. With verify set, files of unchanged
+	 * directories are checked as well, e.g. after a restart.
+	 */
+	private void scan(File d, boolean recursive, boolean verify) {
+		String   path         = d.getPath();
+		long     lastModified = d.lastModified();
+		DirEntry entry        = snapshot.getDir(path);
+		boolean  changed      = entry == null || entry.lastModified != lastModified;
+		if (changed) {
+			setStatus("Scanning " + path + "...");
+			entry = list(d, lastModified);
+			snapshot.putDir(path, entry);
+		}
+		if (watcher != null)
+			watch(d);
+		if (changed || verify) {
+			for (String name : entry.files)
+				check(new File(d, name));
+		}
+		for (String name : entry.dirs) {
+			File sub = new File(d, name);
+			if (recursive || snapshot.getDir(sub.getPath()) == null)
+				scan(sub, recursive, verify);
+		}
 	}
 
-	private HashSet<File> scan(File file, HashSet<File> result) {
-		if (file.isFile() && !file.getName().startsWith(".")) {
-			for (int j = 0; j < IGNORE_EXT.length; j++) {
-				if (file.getName().endsWith(IGNORE_EXT[j]))
-					return result;
+	private DirEntry list(File d, long lastModified) {
+		List<String> files = new ArrayList<>();
+		List<String> dirs  = new ArrayList<>();
+		File[] children = d.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				String name = child.getName();
+				if (child.isDirectory())
+					dirs.add(name);
+				else if (!isIgnored(name) && child.isFile())
+					files.add(name);
 			}
-			result.add(file);
-		} else if (file.isDirectory()) {
-			setStatus("Scanning " + file.getPath() + "...");
-			File[] files = file.listFiles();
-			if (files != null) {
-				for (int i = files.length; --i >= 0;) {
-					scan(files[i], result);
+		}
+		return new DirEntry(lastModified, files.toArray(new String[files.size()]), dirs.toArray(new String[dirs.size()]));
+	}
+
+	private static boolean isIgnored(String name) {
+		if (name.startsWith("."))
+			return true;
+		for (int j = 0; j < IGNORE_EXT.length; j++) {
+			if (name.endsWith(IGNORE_EXT[j]))
+				return true;
+		}
+		return false;
+	}
+
+	private void check(File file) {
+		if (pending.contains(file))
+			return;
+		long      size         = file.length();
+		long      lastModified = file.lastModified();
+		FileEntry entry        = snapshot.getFile(file.getPath());
+		if (entry != null && entry.isUnchanged(file) && db.getResourceForMD(entry.md5) != null)
+			return;
+		if (db.inMetaDB(file))
+			return;
+
+		Resource res = db.getResourceForPath(file.getAbsolutePath());
+		if (res != null && res.getSize() == size && lastModified <= res.getDate().getTime() + 2000) { // +2000 for M$ filesystems with 2sec resolution
+			snapshot.putFile(file.getPath(), new FileEntry(size, lastModified, 0, res.getMD5()));
+			return;
+		}
+
+		if (lastModified > System.currentTimeMillis() - SETTLE_TIME) {
+			unsettled.add(file);
+			return;
+		}
+
+		if (pending.add(file))
+			HASHERS.execute(() -> hash(file));
+	}
+
+	private void retryUnsettled() {
+		List<File> files = new ArrayList<>(unsettled);
+		unsettled.removeAll(files);
+		for (File file : files) {
+			if (file.isFile())
+				check(file);
+		}
+	}
+
+	/**
+	 * Computes the digest of file. A file with the size, date and partial hash
+	 * of a known file, e.g. one that was moved, takes the known digest instead
+	 * of reading the whole file.
+	 */
+	private void hash(File file) {
+		try {
+			long      size         = file.length();
+			long      lastModified = file.lastModified();
+			long      partialHash  = Resource.getPartialHash(file);
+			FileEntry known        = snapshot.findFingerprint(size, lastModified);
+			String    md5          = known != null && known.partialHash == partialHash ? known.md5 : Resource.getMD5(file);
+			// modified while hashing, retry once it settled. Not pending anymore
+			// before it is queued, otherwise a concurrent retry would skip it.
+			if (file.lastModified() != lastModified) {
+				pending.remove(file);
+				unsettled.add(file);
+				return;
+			}
+
+			Resource res = db.addToDB(file, md5);
+			snapshot.putFile(file.getPath(), new FileEntry(size, lastModified, partialHash, md5));
+			pf.generateAsync(res, false);
+		} catch (Throwable e) {
+			log.warning(file.toString(), e);
+		} finally {
+			pending.remove(file);
+		}
+	}
+
+	private void processEvents(WatchKey key) {
+		Set<File> dirs     = new HashSet<>();
+		boolean   overflow = false;
+		for (; key != null; key = watcher.poll()) {
+			File d = watchKeys.get(key);
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == OVERFLOW) {
+					overflow = true;
+				} else if (d != null) {
+					File file = new File(d, event.context().toString());
+					if (event.kind() == ENTRY_MODIFY && !isIgnored(file.getName()) && file.isFile())
+						check(file);
+					else
+						dirs.add(d);
 				}
 			}
+			if (!key.reset())
+				watchKeys.remove(key);
+		}
+		if (overflow) {
+			scan(dir, true, false);
+		} else {
+			for (File d : dirs)
+				scan(d, false, false);
+		}
+	}
+
+	private WatchService createWatcher() {
+		try {
+			WatchService result = dir.toPath().getFileSystem().newWatchService();
+			// the generic implementation polls every registered directory, which is slower than scanning the snapshot
+			if (result.getClass().getName().endsWith("PollingWatchService")) {
+				result.close();
+				return null;
+			}
+			return result;
+		} catch (Throwable t) {
+			log.warning(t);
+			return null;
+		}
+	}
+
+	private void watch(File d) {
+		try {
+			watchKeys.put(d.toPath().register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), d);
+		} catch (Throwable t) {
+			log.warning("Cannot watch " + d + ", falling back to periodic scans", t);
+			try {
+				watcher.close();
+			} catch (Throwable t0) {}
+			watcher = null;
+			watchKeys.clear();
 		}
-		return result;
 	}
 
 	private void setStatus(String msg) {
@@ -11,6 +11,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -25,6 +26,8 @@ import org.corebounce.soundium.Subsystem;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Display;
 
+import ch.fhnw.ether.audio.PCMCache;
+import ch.fhnw.ether.video.KeyframeIndex;
 import ch.fhnw.util.IOUtilities;
 import ch.fhnw.util.Log;
 import ch.fhnw.util.TextUtilities;
@@ -32,12 +35,15 @@ import ch.fhnw.util.TextUtilities;
 public final class MetaDB extends Subsystem {
 	private static final Log log = Log.create();
 
-	private static final String MD_ALGO  = "MD5";
-	private static final String ROOT_RES = "root_res";
-	private static final String PROPS    = "props";
-	private static final String PREVIEWS = "prevw";
-	private static final String CACHE    = "cache";
-	private static final String ICONS    = "icons";
+	private static final String MD_ALGO   = "MD5";
+	private static final String ROOT_RES  = "root_res";
+	private static final String PROPS     = "props";
+	private static final String PREVIEWS  = "prevw";
+	private static final String CACHE     = "cache";
+	private static final String ICONS     = "icons";
+	private static final String SCANS     = "scans";
+	private static final String KEYFRAMES = "keyframes";
+	private static final String PCM       = "pcm";
 
 	public static final int DIGEST_LEN = 32;
 
@@ -98,6 +104,9 @@ public final class MetaDB extends Subsystem {
 				d.mkdirs();
 		}
 
+		KeyframeIndex.setCacheDirectory(new File(dir, KEYFRAMES));
+		PCMCache.setCacheDirectory(new File(dir, PCM));
+
 		// init icons
 		for(String icon : DEF_ICONS) {
 			iconsDir.mkdir();
@@ -198,21 +207,25 @@ public final class MetaDB extends Subsystem {
 	}
 
 	public Resource addToDB(File f) throws IOException {
+		Resource res = getResourceForPath(f.getAbsolutePath());
+		return res == null ? addToDB(f, Resource.getMD5(f)) : res;
+	}
+
+	/**
+	 * Adds file with an already computed digest. Hashing is done by the caller
+	 * so that several files can be hashed in parallel.
+	 */
+	public Resource addToDB(File f, String md5) {
 		synchronized (path2res) {
 			Resource res = path2res.get(f.getAbsolutePath());
 			if (res == null) {
-				try(BufferedInputStream in = new BufferedInputStream(new FileInputStream(f))) {
-					String md5 = Resource.getMD5(in);
-					res = getResourceForMD(md5);
-					if (res == null) {
-						res = new Resource(f, md5);
-						if (getPreviewFile(md5).exists())
-							getPreviewFile(md5).delete();
-					} else {
-						res.addDuplicate(f);
-					}
-				} catch (IOException ex) {
-					throw ex;
+				res = getResourceForMD(md5);
+				if (res == null) {
+					res = new Resource(f, md5);
+					if (getPreviewFile(md5).exists())
+						getPreviewFile(md5).delete();
+				} else {
+					res.addDuplicate(f);
 				}
 
 				sync(res);
@@ -221,6 +234,7 @@ public final class MetaDB extends Subsystem {
 					md2res.get(res.getIndex()).put(res.getMD5(), res);
 				}
 				path2res.put(res.getPath(), res);
+				path2res.put(f.getAbsolutePath(), res);
 				modCount++;
 			}
 			return res;
@@ -261,6 +275,17 @@ public final class MetaDB extends Subsystem {
 		return new File(new File(cacheDir, "" + digest.charAt(0)), digest + "." + ext);
 	}
 
+	public File getSnapshotFile(File root) {
+		File scansDir = new File(dir, SCANS);
+		scansDir.mkdirs();
+		try {
+			byte[] digest = MessageDigest.getInstance(MD_ALGO).digest(root.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+			return new File(scansDir, Resource.toHex(digest) + ".snapshot");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
 	public File getConstraintsDir() {
 		return dir;
 	}
@@ -9,14 +9,14 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.DecimalFormat;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
-import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingDeque;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Font;
@@ -32,6 +32,7 @@ import ch.fhnw.ether.formats.obj.ObjReader;
 import ch.fhnw.ether.image.IHostImage;
 import ch.fhnw.ether.image.IImage.ComponentFormat;
 import ch.fhnw.ether.image.IImage.ComponentType;
+import ch.fhnw.ether.image.ImageCache;
 import ch.fhnw.ether.media.IScheduler;
 import ch.fhnw.ether.media.RenderCommandException;
 import ch.fhnw.ether.media.RenderProgram;
@@ -57,6 +58,7 @@ import ch.fhnw.ether.view.IView.Config;
 import ch.fhnw.ether.view.IView.ViewType;
 import ch.fhnw.ether.view.OffscreenView;
 import ch.fhnw.util.IOUtilities;
+import ch.fhnw.util.LinkedHashDeque;
 import ch.fhnw.util.Log;
 import ch.fhnw.util.MIME;
 import ch.fhnw.util.TextUtilities;
@@ -73,14 +75,31 @@ public class PreviewFactory {
 	protected static final int STRIP_HEIGHT         = 48;
 	protected static final int STRIP_WIDTH          = 1400;
 	private   static final int CACHE_SIZE           = 8192;
+	private   static final long CACHE_BUDGET        = 64L * 1024 * 1024;
 
-	private final Set<String>               negativeCache     = new HashSet<>();
-	private final Map<Resource, IHostImage> previewCache      = new WeakHashMap<>(CACHE_SIZE);
-	private final Map<Resource, Image>      previewImageCache = new HashMap<>(CACHE_SIZE);
-	private final BlockingDeque<Resource>   generateQueue     = new LinkedBlockingDeque<>();
-	private final Set<String>               generateLock      = new HashSet<String>();
-	private       int                       progressCnt;
-	private final MetaDB                    db;
+	public interface IPreviewListener {
+		void previewChanged(Resource resource);
+	}
+
+	private final Set<String>                negativeCache     = new HashSet<>();
+	private final ImageCache<IHostImage>     previewCache;
+	private final Map<Resource, Image>       previewImageCache = new LinkedHashMap<Resource, Image>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Resource, Image> eldest) {
+			if (size() <= CACHE_SIZE)
+				return false;
+			dispose(eldest.getValue());
+			return true;
+		}
+	};
+	private final LinkedHashDeque<Resource>  generateQueue     = new LinkedHashDeque<>();
+	private final Set<String>                generateLock      = new HashSet<String>();
+	private final List<IPreviewListener>     listeners         = new CopyOnWriteArrayList<>();
+	private       Image                      noPreviewImage;
+	private       int                        progressCnt;
+	private final MetaDB                     db;
 
 	private static final IImageSupport LOADER = Platform.get().getImageSupport();
 
@@ -129,6 +148,8 @@ public class PreviewFactory {
 
 	public PreviewFactory(MetaDB metadb) {
 		db = metadb;
+		// previews are cached by md5, loaded from the preview files of the db
+		previewCache = new ImageCache<>(CACHE_BUDGET, md5 -> load(db.getPreviewFile(md5)));
 		for (int i = 0; i < Runtime.getRuntime().availableProcessors(); ++i) {
 			Thread t = new Thread(new Runnable() {
 				@Override
@@ -160,43 +181,60 @@ public class PreviewFactory {
 		}
 	}
 
+	/**
+	 * Returns the cached preview of resource. If it is not cached, it is
+	 * loaded (or generated) asynchronously, listeners are notified once it is
+	 * available, and noPreview is returned meanwhile.
+	 */
 	public IHostImage getPreview(Resource resource) {
 		synchronized (negativeCache) {
 			if (negativeCache.contains(resource.getPath()))
 				return noPreview;
 		}
-		synchronized (previewCache) {
-			IHostImage result = previewCache.get(resource);
-			if (result == null) {
-				try {
-					result = loadPreview(resource, db.getPreviewFile(resource.getMD5()));
-					if(result != null) {
-						synchronized (previewCache) {
-							previewCache.put(resource, result);
-							previewImageCache.remove(resource);
-						}
-						return result;
-					}
-				} catch (Exception ex) {}
-			} else 
-				return result;
+		String md5 = resource.getMD5();
+		IHostImage result = md5 == null ? null : previewCache.getIfPresent(md5);
+		if (result != null)
+			return result;
+
+		if (md5 == null || generateQueue.contains(resource)) {
+			// already waiting for generation, just move it ahead
+			generateAsync(resource, true);
+			return noPreview;
 		}
-		generateAsync(resource, true);
+
+		CompletableFuture<IHostImage> preview = previewCache.getAsync(md5);
+		if (preview.isDone() && !preview.isCompletedExceptionally())
+			return preview.join();
+		preview.whenComplete((image, error) -> {
+			if (error != null)
+				generateAsync(resource, true);
+			else
+				previewChanged(resource);
+		});
 		return noPreview;
 	}
 
 	public void generateAsync(Resource resource, boolean front) {
-		if (front) {
-			if (generateQueue.contains(resource)) {
-				synchronized (generateQueue) {
-					generateQueue.remove(resource);
-				}
-			}
+		if (front)
 			generateQueue.addFirst(resource);
-		} else {
-			if (!generateQueue.contains(resource))
-				generateQueue.addLast(resource);
+		else
+			generateQueue.addLast(resource);
+	}
+
+	public void addPreviewListener(IPreviewListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removePreviewListener(IPreviewListener listener) {
+		listeners.remove(listener);
+	}
+
+	private void previewChanged(Resource resource) {
+		synchronized (previewImageCache) {
+			dispose(previewImageCache.remove(resource));
 		}
+		for (IPreviewListener listener : listeners)
+			listener.previewChanged(resource);
 	}
 
 	private void generatePreview(Resource resource) {
@@ -231,10 +269,9 @@ public class PreviewFactory {
 				negativeCache.add(resource.getPath());
 			}
 		} else {
-			synchronized (previewCache) {
-				previewCache.put(resource, preview);
-				previewImageCache.remove(resource);
-			}
+			if (resource.getMD5() != null)
+				previewCache.put(resource.getMD5(), preview);
+			previewChanged(resource);
 		}
 	}
 
@@ -513,13 +550,30 @@ public class PreviewFactory {
 		return LOADER.readHost(new FileInputStream(file), null, null, null);
 	}
 
+	// deferred to the display thread, so that a paint in progress can finish
+	private static void dispose(Image image) {
+		if (image == null)
+			return;
+		if (image.getDevice() instanceof Display)
+			((Display)image.getDevice()).asyncExec(image::dispose);
+		else
+			image.dispose();
+	}
+
 	public Image getPreviewImage(Resource res, Display display) {
 		synchronized (previewImageCache) {
 			Image result = previewImageCache.get(res);
 			if(result == null) {
 				try {
-					result = new Image(display, SWTImageSupport.toImageData(getPreview(res)));
-					previewImageCache.put(res, result);
+					IHostImage preview = getPreview(res);
+					// share one image while previews are pending
+					if(preview == noPreview) {
+						if(noPreviewImage == null)
+							noPreviewImage = new Image(display, SWTImageSupport.toImageData(noPreview));
+						return noPreviewImage;
+					}
+					result = new Image(display, SWTImageSupport.toImageData(preview));
+					dispose(previewImageCache.put(res, result));
 				} catch(Throwable t) {
 					log.warning(res.getPath(), t);
 				}
@@ -1,12 +1,14 @@
 package org.corebounce.resman;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
@@ -43,6 +45,9 @@ public final class Resource implements Comparable<Resource>, IProgressListener {
 	public static final String USE_COUNT   = "useCount";
 	public static final String DUP         = "dup";
 
+	private static final int MAP_WINDOW   = 64 * 1024 * 1024;
+	private static final int PARTIAL_SIZE = 64 * 1024;
+
 	private static final DateFormat GMT_FORMATTER = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss 'GMT'", Locale.US);
 
 	private static List<String> PROPERTIES         = new ArrayList<>();
@@ -302,9 +307,45 @@ public final class Resource implements Comparable<Resource>, IProgressListener {
 	}
 
 	public static String getMD5(File file) throws IOException {
-		try(BufferedInputStream in = new BufferedInputStream(new FileInputStream(file))) {
-			return getMD5(in);
-		}		
+		try(FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MessageDigest md   = getDigest();
+			long          size = in.size();
+			for (long pos = 0; pos < size; pos += MAP_WINDOW)
+				md.update(in.map(MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, size - pos)));
+			return toHex(md.digest());
+		}
+	}
+
+	/**
+	 * Returns a cheap fingerprint of file built from its first and last
+	 * PARTIAL_SIZE bytes. Never returns 0, which marks an unknown partial hash.
+	 */
+	public static long getPartialHash(File file) throws IOException {
+		try(FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MessageDigest md     = getDigest();
+			ByteBuffer    buffer = ByteBuffer.allocate(PARTIAL_SIZE);
+			long          size   = in.size();
+			update(md, in, buffer, 0);
+			if (size > PARTIAL_SIZE)
+				update(md, in, buffer, Math.max(PARTIAL_SIZE, size - PARTIAL_SIZE));
+			long result = ByteBuffer.wrap(md.digest()).getLong();
+			return result == 0 ? 1 : result;
+		}
+	}
+
+	private static void update(MessageDigest md, FileChannel in, ByteBuffer buffer, long pos) throws IOException {
+		buffer.clear();
+		while (buffer.hasRemaining() && in.read(buffer, pos + buffer.position()) >= 0) {}
+		buffer.flip();
+		md.update(buffer);
+	}
+
+	private static MessageDigest getDigest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new RuntimeException(ex);
+		}
 	}
 
 	public String getMD5() {